@@ -0,0 +1,181 @@
+/*
+ * This file is part of GriefPrevention, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Ryan Hamshire
+ * Copyright (c) bloodmc
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package me.ryanhamshire.griefprevention;
+
+import me.ryanhamshire.griefprevention.claim.GPClaim;
+import me.ryanhamshire.griefprevention.configuration.ClaimLogStore;
+import ninja.leaping.configurate.commented.CommentedConfigurationNode;
+import ninja.leaping.configurate.loader.ConfigurationLoader;
+import org.spongepowered.api.world.storage.WorldProperties;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.annotation.Nullable;
+
+/**
+ * Stores each world's claims in a single binary {@link ClaimLogStore} instead
+ * of one HOCON file per claim. Claim storage paths keep their flat file
+ * layout and are used as keys into the log, player data is still stored as
+ * files.
+ */
+public class BinaryFileDataStore extends FlatFileDataStore {
+
+    // ClaimData folder -> claim log
+    private final Map<Path, ClaimLogStore> claimLogs = new ConcurrentHashMap<>();
+
+    @Override
+    public void registerWorld(WorldProperties worldProperties) {
+        super.registerWorld(worldProperties);
+        final Path claimDataPath = this.getWorldDataPath(worldProperties).resolve("ClaimData");
+        if (this.claimLogs.containsKey(claimDataPath)) {
+            return;
+        }
+
+        try {
+            final Path logPath = claimDataPath.resolveSibling(ClaimLogStore.LOG_FILE_NAME);
+            if (Files.notExists(logPath)) {
+                // First load in binary mode. The files are left in place as a backup and are never
+                // imported again, the log is built aside so an interrupted import starts over.
+                final Path importPath = logPath.resolveSibling(ClaimLogStore.LOG_FILE_NAME + ".import");
+                Files.deleteIfExists(importPath);
+                final ClaimLogStore importLog = new ClaimLogStore(importPath);
+                final int count = importLog.importFiles(claimDataPath);
+                importLog.close();
+                Files.move(importPath, logPath);
+                if (count > 0) {
+                    GriefPreventionPlugin.instance.getLogger().info("[" + worldProperties.getWorldName() + "] Imported " + count + " claim files into " + ClaimLogStore.LOG_FILE_NAME + ".");
+                }
+            }
+            this.claimLogs.put(claimDataPath, new ClaimLogStore(logPath));
+        } catch (IOException e) {
+            e.printStackTrace();
+            GriefPreventionPlugin.addLogEntry("Error: Unable to open claim log for world " + worldProperties.getWorldName() + ", falling back to claim files.");
+        }
+    }
+
+    @Override
+    public void unloadWorldData(WorldProperties worldProperties) {
+        super.unloadWorldData(worldProperties);
+        CLAIM_SAVE_QUEUE.flush();
+        final ClaimLogStore claimLog = this.claimLogs.remove(this.getWorldDataPath(worldProperties).resolve("ClaimData"));
+        if (claimLog != null) {
+            try {
+                claimLog.compact();
+                claimLog.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    public Map<Path, ClaimLogStore> getClaimLogs() {
+        return Collections.unmodifiableMap(this.claimLogs);
+    }
+
+    @Override
+    protected List<File> listClaimFiles(Path claimDataPath) {
+        final ClaimLogStore claimLog = this.claimLogs.get(claimDataPath);
+        if (claimLog == null) {
+            return super.listClaimFiles(claimDataPath);
+        }
+
+        final List<File> claimFiles = new ArrayList<>();
+        for (String key : claimLog.getKeys()) {
+            claimFiles.add(claimDataPath.resolve(key).toFile());
+        }
+        return claimFiles;
+    }
+
+    @Override
+    public ConfigurationLoader<CommentedConfigurationNode> createClaimLoader(Path path) throws IOException {
+        final Path claimDataPath = this.getClaimDataPath(path);
+        if (claimDataPath == null) {
+            return super.createClaimLoader(path);
+        }
+
+        return this.claimLogs.get(claimDataPath).createLoader(ClaimLogStore.toKey(claimDataPath, path));
+    }
+
+    @Override
+    public void writeClaimFile(Path path, CommentedConfigurationNode snapshot) throws IOException {
+        final Path claimDataPath = this.getClaimDataPath(path);
+        if (claimDataPath == null) {
+            super.writeClaimFile(path, snapshot);
+            return;
+        }
+
+        this.claimLogs.get(claimDataPath).put(ClaimLogStore.toKey(claimDataPath, path), ClaimLogStore.encodeNode(snapshot));
+    }
+
+    @Override
+    public void moveClaimFile(Path from, Path to) throws IOException {
+        final Path claimDataPath = this.getClaimDataPath(from);
+        if (claimDataPath == null || !to.startsWith(claimDataPath)) {
+            super.moveClaimFile(from, to);
+            return;
+        }
+
+        CLAIM_SAVE_QUEUE.flush();
+        this.claimLogs.get(claimDataPath).move(ClaimLogStore.toKey(claimDataPath, from), ClaimLogStore.toKey(claimDataPath, to));
+    }
+
+    @Override
+    public void deleteClaimFromSecondaryStorage(GPClaim claim) {
+        final Path path = claim.getClaimStorage().filePath;
+        final Path claimDataPath = this.getClaimDataPath(path);
+        if (claimDataPath == null) {
+            super.deleteClaimFromSecondaryStorage(claim);
+            return;
+        }
+
+        try {
+            CLAIM_SAVE_QUEUE.cancel(path);
+            this.claimLogs.get(claimDataPath).remove(ClaimLogStore.toKey(claimDataPath, path));
+        } catch (IOException e) {
+            e.printStackTrace();
+            GriefPreventionPlugin.addLogEntry("Error: Unable to delete claim \"" + path + "\" from claim log.");
+        }
+    }
+
+    // Finds the ClaimData folder containing the claim file, if it has a log
+    @Nullable
+    private Path getClaimDataPath(Path path) {
+        for (Path parent = path.getParent(); parent != null; parent = parent.getParent()) {
+            if (this.claimLogs.containsKey(parent)) {
+                return parent;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,200 @@
+/*
+ * This file is part of GriefPrevention, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) bloodmc
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package me.ryanhamshire.griefprevention;
+
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import me.ryanhamshire.griefprevention.claim.ClaimsMode;
+import me.ryanhamshire.griefprevention.task.RestoreNatureProcessingTask;
+import me.ryanhamshire.griefprevention.util.BlockUtils;
+import me.ryanhamshire.griefprevention.util.PaletteChunkSnapshot;
+import net.minecraft.util.math.ChunkPos;
+import net.minecraft.world.WorldServer;
+import org.spongepowered.api.Sponge;
+import org.spongepowered.api.entity.living.player.Player;
+import org.spongepowered.api.world.Location;
+import org.spongepowered.api.world.World;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.PriorityQueue;
+import java.util.UUID;
+
+/**
+ * Spreads chunk regeneration and nature restoration over several ticks.
+ *
+ * <p>Requests are queued by the tick they become ready and at most the
+ * configured number of chunks is handled each tick, so expiring or
+ * abandoning many claims at once no longer stalls the server. Regeneration
+ * starts right away and skips any chunk that intersects a live claim by the
+ * time it is reached, so claimed blocks are never changed. Nature
+ * restoration only captures a {@link PaletteChunkSnapshot} on the main
+ * thread, the processing itself runs on the plugin executor.</p>
+ *
+ * <p>Must only be used from the main thread.</p>
+ */
+public class ChunkRestoreQueue implements Runnable {
+
+    private final PriorityQueue<Request> queue = new PriorityQueue<>();
+    // World -> chunks with a pending regeneration, used to skip duplicates from neighboring claims
+    private final Map<UUID, LongOpenHashSet> pendingRegenerations = new HashMap<>();
+    private long currentTick = 0;
+    private long sequence = 0;
+    private long chunksRegenerated = 0;
+    private long chunksSkipped = 0;
+    private long chunksRestored = 0;
+
+    /**
+     * Queues a chunk to be regenerated from the world generator.
+     *
+     * @param world The world
+     * @param chunkX The chunk x coordinate
+     * @param chunkZ The chunk z coordinate
+     */
+    public void regenerate(World world, int chunkX, int chunkZ) {
+        final LongOpenHashSet pending = this.pendingRegenerations.computeIfAbsent(world.getUniqueId(), k -> new LongOpenHashSet());
+        if (!pending.add(ChunkPos.asLong(chunkX, chunkZ))) {
+            return;
+        }
+        this.queue.add(new Request(world.getUniqueId(), chunkX, chunkZ, this.currentTick, this.sequence++, true, 0, false, null));
+    }
+
+    /**
+     * Queues a chunk to be restored to nature.
+     *
+     * @param world The world
+     * @param chunkX The chunk x coordinate
+     * @param chunkZ The chunk z coordinate
+     * @param miny The lowest y to restore
+     * @param aggressiveMode Whether to also remove natural blocks commonly used to grief
+     * @param delayInTicks The delay before the chunk is restored
+     * @param player The player to show the result to, or null
+     */
+    public void restoreNature(World world, int chunkX, int chunkZ, int miny, boolean aggressiveMode, long delayInTicks, Player player) {
+        this.queue.add(new Request(world.getUniqueId(), chunkX, chunkZ, this.currentTick + delayInTicks, this.sequence++, false, miny,
+                aggressiveMode, player));
+    }
+
+    @Override
+    public void run() {
+        this.currentTick++;
+        int budget = GriefPreventionPlugin.getGlobalConfig().getConfig().claim.restoreChunksPerTick;
+        while (budget > 0) {
+            final Request request = this.queue.peek();
+            if (request == null || request.readyTick > this.currentTick) {
+                break;
+            }
+
+            this.queue.poll();
+            if (request.regenerate) {
+                final LongOpenHashSet pending = this.pendingRegenerations.get(request.worldId);
+                pending.remove(ChunkPos.asLong(request.chunkX, request.chunkZ));
+                if (pending.isEmpty()) {
+                    this.pendingRegenerations.remove(request.worldId);
+                }
+            }
+
+            final Optional<World> world = Sponge.getServer().getWorld(request.worldId);
+            if (!world.isPresent()) {
+                continue;
+            }
+
+            if (request.regenerate) {
+                if (GriefPreventionPlugin.instance.dataStore.getClaimWorldManager(world.get().getProperties()).getClaimIndex()
+                        .getClaimsInChunk(request.chunkX, request.chunkZ).length > 0) {
+                    // claimed again since it was queued, or shared with a claim that still exists
+                    this.chunksSkipped++;
+                    continue;
+                }
+                final WorldServer worldServer = (WorldServer) world.get();
+                BlockUtils.regenerateChunk(worldServer.getChunkProvider().provideChunk(request.chunkX, request.chunkZ));
+                this.chunksRegenerated++;
+            } else {
+                this.submitRestore(world.get(), request);
+                this.chunksRestored++;
+            }
+            budget--;
+        }
+    }
+
+    private void submitRestore(World world, Request request) {
+        final PaletteChunkSnapshot snapshot = PaletteChunkSnapshot.capture((net.minecraft.world.World) world, request.chunkX, request.chunkZ);
+        final Location<World> lesserBoundaryCorner = new Location<>(world, request.chunkX << 4, 0, request.chunkZ << 4);
+        final Location<World> greaterBoundaryCorner = new Location<>(world, (request.chunkX << 4) + 15, 0, (request.chunkZ << 4) + 15);
+        final Player player = request.player != null && request.player.isOnline() ? request.player : null;
+        final RestoreNatureProcessingTask task = new RestoreNatureProcessingTask(snapshot, request.miny, world.getDimension().getType(),
+                lesserBoundaryCorner.getBiome(), lesserBoundaryCorner, greaterBoundaryCorner, GriefPreventionPlugin.instance.getSeaLevel(world),
+                request.aggressiveMode, GriefPreventionPlugin.instance.claimModeIsActive(world.getProperties(), ClaimsMode.Creative), player);
+        GriefPreventionPlugin.instance.executor.execute(task);
+    }
+
+    public int getQueueDepth() {
+        return this.queue.size();
+    }
+
+    public long getChunksRegenerated() {
+        return this.chunksRegenerated;
+    }
+
+    public long getChunksSkipped() {
+        return this.chunksSkipped;
+    }
+
+    public long getChunksRestored() {
+        return this.chunksRestored;
+    }
+
+    private static final class Request implements Comparable<Request> {
+
+        private final UUID worldId;
+        private final int chunkX;
+        private final int chunkZ;
+        private final long readyTick;
+        private final long sequence;
+        private final boolean regenerate;
+        private final int miny;
+        private final boolean aggressiveMode;
+        private final Player player;
+
+        Request(UUID worldId, int chunkX, int chunkZ, long readyTick, long sequence, boolean regenerate, int miny, boolean aggressiveMode,
+                Player player) {
+            this.worldId = worldId;
+            this.chunkX = chunkX;
+            this.chunkZ = chunkZ;
+            this.readyTick = readyTick;
+            this.sequence = sequence;
+            this.regenerate = regenerate;
+            this.miny = miny;
+            this.aggressiveMode = aggressiveMode;
+            this.player = player;
+        }
+
+        @Override
+        public int compareTo(Request other) {
+            final int compare = Long.compare(this.readyTick, other.readyTick);
+            return compare != 0 ? compare : Long.compare(this.sequence, other.sequence);
+        }
+    }
+}
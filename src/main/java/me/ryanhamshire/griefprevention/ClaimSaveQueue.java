@@ -0,0 +1,153 @@
+/*
+ * This file is part of GriefPrevention, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) bloodmc
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package me.ryanhamshire.griefprevention;
+
+import ninja.leaping.configurate.commented.CommentedConfigurationNode;
+import org.spongepowered.common.SpongeImpl;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Write-behind queue for claim storage files.
+ *
+ * <p>Saves take a snapshot of the claim's config node on the calling thread
+ * and queue it by file path, so repeated saves of the same claim within the
+ * flush window only write the latest snapshot. Rendering and writing happen
+ * on a single writer thread through the data store.</p>
+ */
+public class ClaimSaveQueue {
+
+    private static final long FLUSH_DELAY_MILLIS = 1000;
+
+    // Claim file -> latest snapshot, guarded by this
+    private final Map<Path, CommentedConfigurationNode> pendingSaves = new LinkedHashMap<>();
+    private final ScheduledExecutorService writer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        final Thread thread = new Thread(runnable, "GriefPrevention Claim Writer");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private boolean flushScheduled = false;
+
+    private final AtomicLong filesWritten = new AtomicLong();
+    private final AtomicLong lastFlushNanos = new AtomicLong();
+    private final AtomicLong maxFlushNanos = new AtomicLong();
+
+    public void enqueue(Path path, CommentedConfigurationNode snapshot) {
+        synchronized (this) {
+            this.pendingSaves.put(path, snapshot);
+            if (this.flushScheduled) {
+                return;
+            }
+            this.flushScheduled = true;
+        }
+        this.writer.schedule(this::writePending, FLUSH_DELAY_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Drops any queued save for the file and waits for an in-progress write
+     * to finish. Must be called before a claim file is deleted.
+     *
+     * @param path The claim file
+     */
+    public void cancel(Path path) {
+        synchronized (this) {
+            this.pendingSaves.remove(path);
+        }
+        this.await(() -> {});
+    }
+
+    /**
+     * Writes every queued save and waits for completion. Must be called
+     * before claim files are moved or read back from disk.
+     */
+    public void flush() {
+        this.await(this::writePending);
+    }
+
+    public synchronized int getQueueDepth() {
+        return this.pendingSaves.size();
+    }
+
+    public long getFilesWritten() {
+        return this.filesWritten.get();
+    }
+
+    public long getLastFlushMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(this.lastFlushNanos.get());
+    }
+
+    public long getMaxFlushMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(this.maxFlushNanos.get());
+    }
+
+    private void await(Runnable runnable) {
+        try {
+            this.writer.submit(runnable).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            SpongeImpl.getLogger().error("Failed to flush claim data", e.getCause());
+        }
+    }
+
+    private void writePending() {
+        final Map<Path, CommentedConfigurationNode> batch;
+        synchronized (this) {
+            batch = new LinkedHashMap<>(this.pendingSaves);
+            this.pendingSaves.clear();
+            this.flushScheduled = false;
+        }
+        if (batch.isEmpty()) {
+            return;
+        }
+
+        final long start = System.nanoTime();
+        for (Map.Entry<Path, CommentedConfigurationNode> entry : batch.entrySet()) {
+            write(entry.getKey(), entry.getValue());
+        }
+        final long elapsed = System.nanoTime() - start;
+        this.filesWritten.addAndGet(batch.size());
+        this.lastFlushNanos.set(elapsed);
+        if (elapsed > this.maxFlushNanos.get()) {
+            this.maxFlushNanos.set(elapsed);
+        }
+    }
+
+    private static void write(Path path, CommentedConfigurationNode snapshot) {
+        try {
+            GriefPreventionPlugin.instance.dataStore.writeClaimFile(path, snapshot);
+        } catch (IOException e) {
+            SpongeImpl.getLogger().error("Failed to save claim data to " + path, e);
+        }
+    }
+}
@@ -36,10 +36,13 @@
 import me.ryanhamshire.griefprevention.api.claim.ClaimResult;
 import me.ryanhamshire.griefprevention.api.claim.ClaimResultType;
 import me.ryanhamshire.griefprevention.api.claim.ClaimType;
+import me.ryanhamshire.griefprevention.claim.ClaimBoundaryTracker;
+import me.ryanhamshire.griefprevention.claim.ClaimExpirationQueue;
 import me.ryanhamshire.griefprevention.claim.ClaimsMode;
 import me.ryanhamshire.griefprevention.claim.GPClaim;
 import me.ryanhamshire.griefprevention.claim.GPClaimManager;
 import me.ryanhamshire.griefprevention.claim.GPClaimResult;
+import me.ryanhamshire.griefprevention.claim.OwnerClaimList;
 import me.ryanhamshire.griefprevention.configuration.ClaimTemplateStorage;
 import me.ryanhamshire.griefprevention.configuration.GriefPreventionConfig;
 import me.ryanhamshire.griefprevention.configuration.type.DimensionConfig;
@@ -47,9 +50,12 @@
 import me.ryanhamshire.griefprevention.configuration.type.WorldConfig;
 import me.ryanhamshire.griefprevention.event.GPDeleteClaimEvent;
 import me.ryanhamshire.griefprevention.permission.GPOptions;
+import me.ryanhamshire.griefprevention.permission.GPPermissionHandler;
 import me.ryanhamshire.griefprevention.permission.GPPermissions;
 import me.ryanhamshire.griefprevention.util.WordFinder;
-import net.minecraft.util.math.ChunkPos;
+import ninja.leaping.configurate.commented.CommentedConfigurationNode;
+import ninja.leaping.configurate.hocon.HoconConfigurationLoader;
+import ninja.leaping.configurate.loader.ConfigurationLoader;
 import org.spongepowered.api.Sponge;
 import org.spongepowered.api.command.CommandSource;
 import org.spongepowered.api.entity.living.player.User;
@@ -71,7 +77,10 @@
 import java.io.FileWriter;
 import java.io.IOException;
 import java.nio.charset.Charset;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -87,16 +96,21 @@
 public abstract class DataStore {
 
     // World UUID -> PlayerDataWorldManager
-    protected final Map<UUID, GPClaimManager> claimWorldManagers = Maps.newHashMap();
+    protected final Map<UUID, GPClaimManager> claimWorldManagers = new ConcurrentHashMap<>();
 
     // in-memory cache for claim data
     public static Map<UUID, GriefPreventionConfig<DimensionConfig>> dimensionConfigMap = Maps.newHashMap();
     public static Map<UUID, GriefPreventionConfig<WorldConfig>> worldConfigMap = Maps.newHashMap();
     public static Map<String, ClaimTemplateStorage> globalTemplates = new HashMap<>();
     public static GriefPreventionConfig<GlobalConfig> globalConfig;
-    public static Map<UUID, GPPlayerData> GLOBAL_PLAYER_DATA = Maps.newHashMap();
+    // Read by permission checks off the main thread
+    public static Map<UUID, GPPlayerData> GLOBAL_PLAYER_DATA = new ConcurrentHashMap<>();
+    public static Map<UUID, OwnerClaimList> GLOBAL_OWNER_CLAIMS = Maps.newHashMap();
     public static boolean USE_GLOBAL_PLAYER_STORAGE = true;
     public static Map<ClaimType, Map<String, Boolean>> CLAIM_FLAG_DEFAULTS = Maps.newHashMap();
+    public static final ClaimSaveQueue CLAIM_SAVE_QUEUE = new ClaimSaveQueue();
+    public static final ClaimBoundaryTracker CLAIM_BOUNDARY_TRACKER = new ClaimBoundaryTracker();
+    public static final ClaimExpirationQueue CLAIM_EXPIRATION_QUEUE = new ClaimExpirationQueue();
 
     // pattern for unique user identifiers (UUIDs)
     protected final static Pattern uuidpattern = Pattern.compile("[0-9a-f]{8}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{12}");
@@ -295,6 +309,49 @@ public void clearCachedPlayerData(WorldProperties worldProperties, UUID playerUn
 
     public abstract void deleteClaimFromSecondaryStorage(GPClaim claim);
 
+    /**
+     * Creates the loader used to read a claim's storage data.
+     *
+     * @param path The claim file
+     * @return The loader
+     */
+    public ConfigurationLoader<CommentedConfigurationNode> createClaimLoader(Path path) throws IOException {
+        Files.createDirectories(path.getParent());
+        if (Files.notExists(path)) {
+            Files.createFile(path);
+        }
+        return HoconConfigurationLoader.builder().setPath(path).build();
+    }
+
+    /**
+     * Writes a claim's storage data. Called from the claim writer thread.
+     *
+     * @param path The claim file
+     * @param snapshot The claim's config node
+     */
+    public void writeClaimFile(Path path, CommentedConfigurationNode snapshot) throws IOException {
+        final Path tempPath = path.resolveSibling(path.getFileName() + ".tmp");
+        Files.createDirectories(path.getParent());
+        HoconConfigurationLoader.builder().setPath(tempPath).build().save(snapshot);
+        try {
+            Files.move(tempPath, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(tempPath, path, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Moves a claim's storage data, such as when its type or parent changes.
+     *
+     * @param from The current claim file
+     * @param to The new claim file
+     */
+    public void moveClaimFile(Path from, Path to) throws IOException {
+        CLAIM_SAVE_QUEUE.flush();
+        Files.createDirectories(to.getParent());
+        Files.move(from, to);
+    }
+
     // finds a claim by ID
     public Claim getClaim(WorldProperties worldProperties, UUID id) {
         return this.getClaimWorldManager(worldProperties).getClaimByUUID(id).orElse(null);
@@ -400,8 +457,9 @@ public ClaimResult deleteAllAdminClaims(CommandSource src, World world) {
 
         List<Claim> claimsToDelete = new ArrayList<Claim>();
         boolean adminClaimFound = false;
-        for (Claim claim : claimWorldManager.getWorldClaims()) {
-            if (claim.isAdminClaim()) {
+        for (Claim claim : claimWorldManager.getClaimsByType(ClaimType.ADMIN)) {
+            // children are deleted with their parent
+            if (!claim.getParent().isPresent()) {
                 claimsToDelete.add(claim);
                 adminClaimFound = true;
             }
@@ -445,7 +503,7 @@ public ClaimResult deleteClaim(Claim claim, boolean deleteChildren) {
     // deletes all claims owned by a player
     public void deleteClaimsForPlayer(UUID playerID) {
         if (DataStore.USE_GLOBAL_PLAYER_STORAGE && playerID != null) {
-            List<Claim> claimsToDelete = new ArrayList<>(DataStore.GLOBAL_PLAYER_DATA.get(playerID).getInternalClaims());
+            List<Claim> claimsToDelete = new ArrayList<>(DataStore.GLOBAL_OWNER_CLAIMS.getOrDefault(playerID, new OwnerClaimList()));
             for (Claim claim : claimsToDelete) {
                 ((GPClaim) claim).removeSurfaceFluids(null);
                 GriefPreventionPlugin.GLOBAL_SUBJECT.getSubjectData().clearPermissions(ImmutableSet.of(claim.getContext()));
@@ -539,13 +597,9 @@ public List<Claim> getNearbyClaims(Location<World> location) {
                 for (int chunkZ = lesserChunk.get().getPosition().getZ(); chunkZ <= greaterChunk.get().getPosition().getZ(); chunkZ++) {
                     Optional<Chunk> chunk = location.getExtent().getChunk(chunkX, 0, chunkZ);
                     if (chunk.isPresent()) {
-                        Set<Claim> claimsInChunk = claimWorldManager.getInternalChunksToClaimsMap().get(ChunkPos.asLong(chunkX, chunkZ));
-                        if (claimsInChunk != null) {
-                            for (Claim claim : claimsInChunk) {
-                                final GPClaim gpClaim = (GPClaim) claim;
-                                if (gpClaim.parent == null && !claims.contains(claim)) {
-                                    claims.add(claim);
-                                }
+                        for (GPClaim gpClaim : claimWorldManager.getClaimIndex().getClaimsInChunk(chunkX, chunkZ)) {
+                            if (gpClaim.parent == null && !claims.contains(gpClaim)) {
+                                claims.add(gpClaim);
                             }
                         }
                     }
@@ -576,6 +630,9 @@ public GPPlayerData getPlayerData(World world, UUID playerUniqueId) {
     }
 
     public GPPlayerData getPlayerData(WorldProperties worldProperties, UUID playerUniqueId) {
+        if (playerUniqueId == null) {
+            return null;
+        }
         GPPlayerData playerData = null;
         GPClaimManager claimWorldManager = this.getClaimWorldManager(worldProperties);
         playerData = claimWorldManager.getPlayerDataMap().get(playerUniqueId);
@@ -675,6 +732,7 @@ private void setFlagDefaultPermissions(Set<Context> contexts, Map<String, Boolea
                     }
                 }
             }
+            GPPermissionHandler.invalidatePermissionCache();
         });
     }
 
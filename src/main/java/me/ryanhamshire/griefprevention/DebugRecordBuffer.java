@@ -0,0 +1,145 @@
+/*
+ * This file is part of GriefPrevention, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) bloodmc
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package me.ryanhamshire.griefprevention;
+
+import org.spongepowered.api.service.permission.Subject;
+import org.spongepowered.api.util.Tristate;
+import org.spongepowered.api.world.Location;
+import org.spongepowered.api.world.World;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+
+import javax.annotation.Nullable;
+
+/**
+ * Lock-free ring buffer of debug records.
+ *
+ * <p>Any number of threads may add records, a single exporter thread drains
+ * them. A slot only ever moves forward in sequence, so a slow writer can
+ * not replace a newer record with an older one. Records hold references to
+ * the strings and subjects of the permission check as they are, all
+ * formatting is left to the exporter. When the exporter falls behind the
+ * oldest records are overwritten and counted as dropped instead of
+ * blocking the caller.</p>
+ */
+public class DebugRecordBuffer {
+
+    private final AtomicReferenceArray<Record> slots;
+    private final int mask;
+    private final AtomicLong writeSequence = new AtomicLong();
+    private final AtomicLong droppedRecords = new AtomicLong();
+    // Only accessed by the exporter thread
+    private long readSequence = 0;
+
+    public DebugRecordBuffer(int capacity) {
+        if (Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("Capacity must be a power of two");
+        }
+        this.slots = new AtomicReferenceArray<>(capacity);
+        this.mask = capacity - 1;
+    }
+
+    public void add(String permission, @Nullable String sourceId, @Nullable String targetId, @Nullable Location<World> location,
+            @Nullable Subject eventSubject, Subject permissionSubject, Tristate result) {
+        final long sequence = this.writeSequence.getAndIncrement();
+        final int index = (int) sequence & this.mask;
+        final Record record = new Record(sequence, permission, sourceId, targetId, location, eventSubject, permissionSubject, result);
+        Record current;
+        do {
+            current = this.slots.get(index);
+            if (current != null && current.sequence > sequence) {
+                // a writer a full lap ahead already published here, never move a slot backwards
+                return;
+            }
+        } while (!this.slots.compareAndSet(index, current, record));
+    }
+
+    /**
+     * Passes every record published since the last drain to the consumer, in
+     * order. Must only be called by one thread at a time.
+     *
+     * @param consumer The record consumer
+     * @return The number of records drained
+     */
+    public int drain(Consumer<Record> consumer) {
+        final long limit = this.writeSequence.get();
+        int drained = 0;
+        while (this.readSequence < limit) {
+            final Record record = this.slots.get((int) this.readSequence & this.mask);
+            if (record == null || record.sequence < this.readSequence) {
+                // claimed but not yet published, pick it up on the next drain
+                break;
+            }
+            if (record.sequence > this.readSequence) {
+                // overwritten before it was drained
+                this.droppedRecords.addAndGet(record.sequence - this.readSequence);
+                this.readSequence = record.sequence;
+                continue;
+            }
+
+            consumer.accept(record);
+            this.readSequence++;
+            drained++;
+        }
+        return drained;
+    }
+
+    public long getDroppedRecords() {
+        return this.droppedRecords.get();
+    }
+
+    public static final class Record {
+
+        final long sequence;
+        final long time = System.currentTimeMillis();
+        final String permission;
+        @Nullable final String sourceId;
+        @Nullable final String targetId;
+        final boolean hasLocation;
+        final int x;
+        final int y;
+        final int z;
+        @Nullable final Subject eventSubject;
+        final Subject permissionSubject;
+        final Tristate result;
+
+        Record(long sequence, String permission, @Nullable String sourceId, @Nullable String targetId, @Nullable Location<World> location,
+                @Nullable Subject eventSubject, Subject permissionSubject, Tristate result) {
+            this.sequence = sequence;
+            this.permission = permission;
+            this.sourceId = sourceId;
+            this.targetId = targetId;
+            this.hasLocation = location != null;
+            this.x = location == null ? 0 : location.getBlockX();
+            this.y = location == null ? 0 : location.getBlockY();
+            this.z = location == null ? 0 : location.getBlockZ();
+            this.eventSubject = eventSubject;
+            this.permissionSubject = permissionSubject;
+            this.result = result;
+        }
+    }
+}
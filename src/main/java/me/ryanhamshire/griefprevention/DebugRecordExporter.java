@@ -0,0 +1,221 @@
+/*
+ * This file is part of GriefPrevention, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) bloodmc
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package me.ryanhamshire.griefprevention;
+
+import me.ryanhamshire.griefprevention.api.claim.ClaimFlag;
+import me.ryanhamshire.griefprevention.permission.GPPermissionHandler;
+import org.spongepowered.api.Sponge;
+import org.spongepowered.api.entity.living.player.User;
+import org.spongepowered.api.text.Text;
+import org.spongepowered.common.SpongeImpl;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Drains the record buffers of active debug sessions on a background thread.
+ *
+ * <p>Records are turned into markdown rows here, off the event path, and
+ * handed to the configured {@link DebugRecordSink}. The most recent rows of
+ * each session are kept so they can be pasted without touching the sink.</p>
+ */
+public class DebugRecordExporter {
+
+    private static final long DRAIN_INTERVAL_MILLIS = 1000;
+
+    private final ScheduledExecutorService exporter = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        final Thread thread = new Thread(runnable, "GriefPrevention Debug Exporter");
+        thread.setDaemon(true);
+        return thread;
+    });
+    // Only accessed by the exporter thread
+    private final Map<GPDebugData, Session> sessions = new HashMap<>();
+    private volatile DebugRecordSink sink;
+
+    private final AtomicLong recordsExported = new AtomicLong();
+    private final AtomicLong recordsDropped = new AtomicLong();
+    private final AtomicLong activeSessions = new AtomicLong();
+
+    public DebugRecordExporter(DebugRecordSink sink) {
+        this.sink = sink;
+        this.exporter.scheduleWithFixedDelay(this::drainAll, DRAIN_INTERVAL_MILLIS, DRAIN_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    public void setSink(DebugRecordSink sink) {
+        this.sink = sink;
+    }
+
+    public void register(GPDebugData debugData) {
+        this.exporter.execute(() -> {
+            if (this.sessions.putIfAbsent(debugData, new Session()) == null) {
+                this.activeSessions.incrementAndGet();
+            }
+        });
+    }
+
+    /**
+     * Exports the remaining records of the session and ends it.
+     *
+     * @param debugData The debug session
+     */
+    public void close(GPDebugData debugData) {
+        this.exporter.execute(() -> this.closeSession(debugData));
+    }
+
+    /**
+     * Exports the remaining records of the session, uploads the most recent
+     * rows and ends it. The result is sent to the session's source on the
+     * main thread.
+     *
+     * @param debugData The debug session
+     */
+    public void paste(GPDebugData debugData) {
+        this.exporter.execute(() -> {
+            final Session session = this.sessions.get(debugData);
+            if (session != null) {
+                this.drain(debugData, session);
+            }
+            final List<String> rows = session == null ? new ArrayList<>() : new ArrayList<>(session.recentRows);
+            this.closeSession(debugData);
+
+            final Text message = debugData.pasteRows(rows);
+            Sponge.getScheduler().createTaskBuilder().execute(() -> debugData.getSource().sendMessage(message))
+                    .submit(GriefPreventionPlugin.instance);
+        });
+    }
+
+    /**
+     * Exports every buffered record and waits for completion.
+     */
+    public void flush() {
+        try {
+            this.exporter.submit(this::drainAll).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            SpongeImpl.getLogger().error("Failed to flush debug records", e);
+        }
+    }
+
+    public long getRecordsExported() {
+        return this.recordsExported.get();
+    }
+
+    public long getRecordsDropped() {
+        return this.recordsDropped.get();
+    }
+
+    public long getActiveSessions() {
+        return this.activeSessions.get();
+    }
+
+    private void drainAll() {
+        for (Map.Entry<GPDebugData, Session> mapEntry : this.sessions.entrySet()) {
+            this.drain(mapEntry.getKey(), mapEntry.getValue());
+        }
+    }
+
+    private void drain(GPDebugData debugData, Session session) {
+        final DebugRecordBuffer buffer = debugData.getBuffer();
+        final List<String> rows = new ArrayList<>();
+        buffer.drain(record -> rows.add(formatRecord(record)));
+        final long dropped = buffer.getDroppedRecords();
+        if (dropped != session.droppedRecords) {
+            this.recordsDropped.addAndGet(dropped - session.droppedRecords);
+            session.droppedRecords = dropped;
+        }
+        if (rows.isEmpty()) {
+            return;
+        }
+
+        for (String row : rows) {
+            if (session.recentRows.size() >= GPDebugData.MAX_LINES) {
+                session.recentRows.removeFirst();
+            }
+            session.recentRows.addLast(row);
+        }
+        this.recordsExported.addAndGet(rows.size());
+        try {
+            this.sink.write(debugData, rows);
+        } catch (IOException e) {
+            SpongeImpl.getLogger().error("Failed to write debug records", e);
+        }
+    }
+
+    private void closeSession(GPDebugData debugData) {
+        final Session session = this.sessions.remove(debugData);
+        if (session == null) {
+            return;
+        }
+
+        this.drain(debugData, session);
+        this.activeSessions.decrementAndGet();
+        try {
+            this.sink.close(debugData);
+        } catch (IOException e) {
+            SpongeImpl.getLogger().error("Failed to close debug output", e);
+        }
+    }
+
+    private static String formatRecord(DebugRecordBuffer.Record record) {
+        String messageEvent = record.permission;
+        if (!messageEvent.contains("trust.")) {
+            final ClaimFlag flag = GPPermissionHandler.getFlagFromPermission(messageEvent.replace("griefprevention.flag.", ""));
+            if (flag != null) {
+                messageEvent = flag.toString();
+            }
+        }
+        final String messageSource = record.sourceId == null ? "none" : record.sourceId;
+        String messageTarget = record.targetId == null ? "none" : record.targetId;
+        if (messageTarget.endsWith(".0")) {
+            messageTarget = messageTarget.substring(0, messageTarget.length() - 2);
+        }
+        final String messageLocation = record.hasLocation ? "(" + record.x + ", " + record.y + ", " + record.z + ")" : "none";
+        String messageUser;
+        if (record.eventSubject instanceof User) {
+            messageUser = ((User) record.eventSubject).getName();
+        } else {
+            messageUser = record.permissionSubject.getIdentifier();
+            if (record.permissionSubject instanceof User) {
+                messageUser = ((User) record.permissionSubject).getName();
+            }
+        }
+        return "| " + messageEvent + " | " + messageSource + " | " + messageTarget + " | " + messageLocation + " | " + messageUser + " | " + record.result + " | ";
+    }
+
+    private static final class Session {
+
+        final ArrayDeque<String> recentRows = new ArrayDeque<>();
+        long droppedRecords = 0;
+    }
+}
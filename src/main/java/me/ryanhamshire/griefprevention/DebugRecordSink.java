@@ -0,0 +1,52 @@
+/*
+ * This file is part of GriefPrevention, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) bloodmc
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package me.ryanhamshire.griefprevention;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Destination for formatted debug records. Only called from the debug
+ * exporter thread.
+ */
+public interface DebugRecordSink {
+
+    /**
+     * Writes a batch of formatted markdown table rows for the session.
+     *
+     * @param debugData The debug session
+     * @param rows The rows, in record order
+     * @throws IOException If the rows could not be written
+     */
+    void write(GPDebugData debugData, List<String> rows) throws IOException;
+
+    /**
+     * Releases anything held for the session once it has ended.
+     *
+     * @param debugData The debug session
+     * @throws IOException If the output could not be closed
+     */
+    void close(GPDebugData debugData) throws IOException;
+}
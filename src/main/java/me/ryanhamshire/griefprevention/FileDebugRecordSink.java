@@ -0,0 +1,101 @@
+/*
+ * This file is part of GriefPrevention, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) bloodmc
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package me.ryanhamshire.griefprevention;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes each debug session to markdown files in the plugin's debug folder,
+ * starting a new part once a file reaches {@link GPDebugData#MAX_LINES} rows.
+ */
+public class FileDebugRecordSink implements DebugRecordSink {
+
+    private static final SimpleDateFormat FILE_DATE_FORMAT = new SimpleDateFormat("yyyyMMdd-HHmmss");
+
+    private final Map<GPDebugData, Output> outputs = new HashMap<>();
+
+    @Override
+    public void write(GPDebugData debugData, List<String> rows) throws IOException {
+        Output output = this.outputs.get(debugData);
+        for (String row : rows) {
+            if (output == null || output.lines >= GPDebugData.MAX_LINES) {
+                final int part = output == null ? 1 : output.part + 1;
+                if (output != null) {
+                    output.writer.close();
+                }
+                output = new Output(debugData, part);
+                this.outputs.put(debugData, output);
+            }
+            output.writer.write(row);
+            output.writer.newLine();
+            output.lines++;
+        }
+        if (output != null) {
+            output.writer.flush();
+        }
+    }
+
+    @Override
+    public void close(GPDebugData debugData) throws IOException {
+        final Output output = this.outputs.remove(debugData);
+        if (output != null) {
+            output.writer.close();
+        }
+    }
+
+    private static final class Output {
+
+        final int part;
+        final BufferedWriter writer;
+        int lines = 0;
+
+        Output(GPDebugData debugData, int part) throws IOException {
+            this.part = part;
+            final Path folder = GriefPreventionPlugin.instance.getConfigPath().resolve("debug");
+            Files.createDirectories(folder);
+            final String sourceName = debugData.getSource().getName().replaceAll("[^A-Za-z0-9_\\-]", "_");
+            final String fileName = FILE_DATE_FORMAT.format(new Date(debugData.getStartTime())) + "-" + sourceName + "-" + part + ".md";
+            this.writer = Files.newBufferedWriter(folder.resolve(fileName), StandardCharsets.UTF_8);
+            for (String line : debugData.getHeader()) {
+                this.writer.write(line);
+                this.writer.newLine();
+            }
+            this.writer.newLine();
+            for (String line : GPDebugData.TABLE_HEADER) {
+                this.writer.write(line);
+                this.writer.newLine();
+            }
+        }
+    }
+}
@@ -40,6 +40,8 @@
 import me.ryanhamshire.griefprevention.configuration.type.DimensionConfig;
 import me.ryanhamshire.griefprevention.logging.CustomLogEntryTypes;
 import me.ryanhamshire.griefprevention.migrator.RedProtectMigrator;
+import ninja.leaping.configurate.ConfigurationOptions;
+import ninja.leaping.configurate.commented.CommentedConfigurationNode;
 import org.spongepowered.api.Sponge;
 import org.spongepowered.api.scheduler.Task;
 import org.spongepowered.api.world.DimensionType;
@@ -59,8 +61,19 @@
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import javax.annotation.Nullable;
 
 //manages data stored in the file system
 public class FlatFileDataStore extends DataStore {
@@ -77,6 +90,7 @@ public class FlatFileDataStore extends DataStore {
     private final Path rootConfigPath = GriefPreventionPlugin.instance.getConfigPath().resolve("worlds");
     public static Path rootWorldSavePath;
     private int claimLoadCount = 0;
+    private static final int MAX_LOAD_THREADS = 8;
 
     public FlatFileDataStore() {
     }
@@ -116,9 +130,14 @@ public void loadClaimTemplates() {
         }
     }
 
+    protected Path getWorldDataPath(WorldProperties worldProperties) {
+        final DimensionType dimType = worldProperties.getDimensionType();
+        return rootConfigPath.resolve(((IMixinDimensionType) dimType).getModId()).resolve(((IMixinDimensionType) dimType).getEnumName())
+                .resolve(worldProperties.getWorldName());
+    }
+
     public void registerWorld(WorldProperties worldProperties) {
-        DimensionType dimType = worldProperties.getDimensionType();
-        Path dimPath = rootConfigPath.resolve(((IMixinDimensionType) dimType).getModId()).resolve(((IMixinDimensionType) dimType).getEnumName());
+        Path dimPath = this.getWorldDataPath(worldProperties).getParent();
         if (!Files.exists(dimPath.resolve(worldProperties.getWorldName()))) {
             try {
                 Files.createDirectories(dimPath.resolve(worldProperties.getWorldName()));
@@ -159,9 +178,7 @@ public void registerWorld(WorldProperties worldProperties) {
     @Override
     public void loadWorldData(World world) {
         final WorldProperties worldProperties = world.getProperties();
-        final DimensionType dimType = worldProperties.getDimensionType();
-        final Path dimPath = rootConfigPath.resolve(((IMixinDimensionType) dimType).getModId()).resolve(((IMixinDimensionType) dimType).getEnumName());
-        final Path newWorldDataPath = dimPath.resolve(worldProperties.getWorldName());
+        final Path newWorldDataPath = this.getWorldDataPath(worldProperties);
         GPClaimManager claimWorldManager = this.claimWorldManagers.get(worldProperties.getUniqueId());
         if (claimWorldManager == null) {
             this.registerWorld(worldProperties);
@@ -184,12 +201,13 @@ public void loadWorldData(World world) {
 
         // Load Claim Data
         try {
-            File[] files = newWorldDataPath.resolve("ClaimData").toFile().listFiles();
-            if (files != null && files.length > 0) {
-                this.loadClaimData(files, worldProperties);
+            final List<File> claimFiles = this.listClaimFiles(newWorldDataPath.resolve("ClaimData"));
+            if (!claimFiles.isEmpty()) {
+                this.loadClaimData(claimFiles, worldProperties);
                 GriefPreventionPlugin.instance.getLogger().info("[" + worldProperties.getWorldName() + "] " + this.claimLoadCount + " total claims loaded.");
             }
 
+            File[] files;
             if (GriefPreventionPlugin.getGlobalConfig().getConfig().playerdata.useGlobalPlayerDataStorage) {
                 files = globalPlayerDataPath.toFile().listFiles();
             } else {
@@ -230,53 +248,117 @@ public void unloadWorldData(WorldProperties worldProperties) {
         DataStore.worldConfigMap.remove(worldProperties.getUniqueId());
     }
 
-    void loadClaimData(File[] files, WorldProperties worldProperties) throws Exception {
-        for (int i = 0; i < files.length; i++) {
-            File file = files[i];
+    // Lists every claim file below the world's ClaimData folder
+    protected List<File> listClaimFiles(Path claimDataPath) {
+        final List<File> claimFiles = new ArrayList<>();
+        final File[] files = claimDataPath.toFile().listFiles();
+        if (files != null) {
+            collectClaimFiles(files, claimFiles);
+        }
+        return claimFiles;
+    }
+
+    void loadClaimData(List<File> claimFiles, WorldProperties worldProperties) throws Exception {
+        // Read and parse claim files in parallel. Workers only read storage, mapping the
+        // config and every Sponge lookup happen on this thread while linking.
+        final long parseStart = System.nanoTime();
+        final ForkJoinPool pool = new ForkJoinPool(Math.max(1, Math.min(Runtime.getRuntime().availableProcessors(), MAX_LOAD_THREADS)));
+        final List<ClaimFileData> claimFileData;
+        try {
+            claimFileData = pool.submit(() -> claimFiles.parallelStream()
+                    .map(this::readClaimFile)
+                    .filter(Objects::nonNull)
+                    .collect(Collectors.toList())).get();
+        } finally {
+            pool.shutdown();
+        }
+
+        // Link parents before children and register claims on this thread
+        final long linkStart = System.nanoTime();
+        final Map<UUID, ClaimFileData> claimFileMap = new HashMap<>();
+        for (ClaimFileData data : claimFileData) {
+            claimFileMap.put(data.claimId, data);
+        }
+        final Set<UUID> linkedClaims = new HashSet<>();
+        for (ClaimFileData data : claimFileData) {
+            this.linkClaimFile(data, claimFileMap, linkedClaims, worldProperties);
+        }
+        final long end = System.nanoTime();
+
+        GriefPreventionPlugin.instance.getLogger().info("[" + worldProperties.getWorldName() + "] Loaded " + claimFiles.size() + " claim files in "
+                + TimeUnit.NANOSECONDS.toMillis(end - parseStart) + "ms (parse: " + TimeUnit.NANOSECONDS.toMillis(linkStart - parseStart)
+                + "ms, link: " + TimeUnit.NANOSECONDS.toMillis(end - linkStart) + "ms)");
+    }
+
+    // Same order as the previous sequential load, files first then sub folders
+    private static void collectClaimFiles(File[] files, List<File> claimFiles) {
+        for (File file : files) {
             if (file.isFile()) {
-                this.loadClaimFile(file, worldProperties);
+                claimFiles.add(file);
             }
         }
-        for (int i = 0; i < files.length; i++) {
-            File file = files[i];
+        for (File file : files) {
             if (file.isDirectory()) {
-                this.loadClaimData(file.listFiles(), worldProperties);
+                final File[] subFiles = file.listFiles();
+                if (subFiles != null) {
+                    collectClaimFiles(subFiles, claimFiles);
+                }
             }
         }
     }
 
-    void loadClaimFile(File file, WorldProperties worldProperties) {
-        if (file.isFile()) // avoids folders
-        {
-            // the filename is the claim ID. try to parse it
-            UUID claimId;
+    @Nullable
+    private ClaimFileData readClaimFile(File file) {
+        // the filename is the claim ID. try to parse it
+        UUID claimId;
 
-            try {
-                final String fileName = file.getName();
-                // UUID's should always be 36 in length
-                if (fileName.length() != 36) {
-                    return;
-                }
-
-                claimId = UUID.fromString(fileName);
-            } catch (Exception e) {
-                GriefPreventionPlugin.instance.getLogger().error("Could not read claim file " + file.getAbsolutePath());
-                return;
+        try {
+            final String fileName = file.getName();
+            // UUID's should always be 36 in length
+            if (fileName.length() != 36) {
+                return null;
             }
 
-            try {
-               this.loadClaim(file, worldProperties, claimId);
+            claimId = UUID.fromString(fileName);
+        } catch (Exception e) {
+            GriefPreventionPlugin.instance.getLogger().error("Could not read claim file " + file.getAbsolutePath());
+            return null;
+        }
+
+        try {
+            final CommentedConfigurationNode root = this.createClaimLoader(file.toPath())
+                    .load(ConfigurationOptions.defaults().setHeader(GriefPreventionPlugin.CONFIG_HEADER));
+            return new ClaimFileData(file, claimId, root);
+        } catch (Exception e) {
+            GriefPreventionPlugin.instance.getLogger().error("Could not read claim file " + file.getAbsolutePath(), e);
+            return null;
+        }
+    }
+
+    private void linkClaimFile(ClaimFileData data, Map<UUID, ClaimFileData> claimFileMap, Set<UUID> linkedClaims, WorldProperties worldProperties) {
+        if (!linkedClaims.add(data.claimId)) {
+            return;
+        }
+
+        if (data.parentUniqueId != null) {
+            final ClaimFileData parentData = claimFileMap.get(data.parentUniqueId);
+            if (parentData != null) {
+                this.linkClaimFile(parentData, claimFileMap, linkedClaims, worldProperties);
             }
+        }
 
-            // if there's any problem with the file's content, log an error message and skip it
-            catch (Exception e) {
-                if (e.getMessage() != null && e.getMessage().contains("World not found")) {
-                    file.delete();
-                } else {
-                    StringWriter errors = new StringWriter();
-                    e.printStackTrace(new PrintWriter(errors));
-                    GriefPreventionPlugin.addLogEntry(file.getName() + " " + errors.toString(), CustomLogEntryTypes.Exception);
-                }
+        try {
+            this.loadClaim(data.file, worldProperties, data.claimId, this.createClaimStorage(data.file, worldProperties, data.root));
+        }
+
+        // if there's any problem with the file's content, log an error message and skip it
+        catch (Exception e) {
+            if (e.getMessage() != null && e.getMessage().contains("World not found")) {
+                data.file.delete();
+            } else {
+                StringWriter errors = new StringWriter();
+                e.printStackTrace(new PrintWriter(errors));
+                GriefPreventionPlugin.addLogEntry(data.file.getName() + " " + errors.toString(), CustomLogEntryTypes.Exception);
             }
         }
     }
@@ -329,17 +411,26 @@ void loadPlayerData(WorldProperties worldProperties, File[] files) throws Except
 
     public GPClaim loadClaim(File claimFile, WorldProperties worldProperties, UUID claimId)
             throws Exception {
-        GPClaim claim;
+        return this.loadClaim(claimFile, worldProperties, claimId, this.createClaimStorage(claimFile, worldProperties));
+    }
+
+    private ClaimStorageData createClaimStorage(File claimFile, WorldProperties worldProperties) {
+        return this.createClaimStorage(claimFile, worldProperties, null);
+    }
 
+    private ClaimStorageData createClaimStorage(File claimFile, WorldProperties worldProperties, @Nullable CommentedConfigurationNode root) {
         boolean isTown = claimFile.toPath().getParent().endsWith("town");
-        boolean writeToStorage = false;
-        ClaimStorageData claimStorage = null;
         if (isTown) {
-            claimStorage = new TownStorageData(claimFile.toPath(), worldProperties.getUniqueId());
-        } else {
-            claimStorage = new ClaimStorageData(claimFile.toPath(), worldProperties.getUniqueId());
+            return new TownStorageData(claimFile.toPath(), worldProperties.getUniqueId(), root);
         }
+        return new ClaimStorageData(claimFile.toPath(), worldProperties.getUniqueId(), root);
+    }
+
+    GPClaim loadClaim(File claimFile, WorldProperties worldProperties, UUID claimId, ClaimStorageData claimStorage)
+            throws Exception {
+        GPClaim claim;
 
+        boolean writeToStorage = false;
         final ClaimType type = claimStorage.getConfig().getType();
         final UUID parent = claimStorage.getConfig().getParent().orElse(null);
         final String fileName = claimFile.getName();
@@ -350,8 +441,7 @@ public GPClaim loadClaim(File claimFile, WorldProperties worldProperties, UUID c
 
         if (claimFile.getParentFile().getName().equalsIgnoreCase("claimdata")) {
             final Path newPath = claimStorage.filePath.getParent().resolve(type.name().toLowerCase());
-            Files.createDirectories(newPath);
-            Files.move(claimStorage.filePath, newPath.resolve(fileName));
+            this.moveClaimFile(claimStorage.filePath, newPath.resolve(fileName));
             claimStorage.filePath = newPath.resolve(fileName);
             claimStorage = new ClaimStorageData(claimStorage.filePath, worldProperties.getUniqueId());
         }
@@ -435,6 +525,7 @@ public void writeClaimToStorage(GPClaim claim) {
     @Override
     public void deleteClaimFromSecondaryStorage(GPClaim claim) {
         try {
+            CLAIM_SAVE_QUEUE.cancel(claim.getClaimStorage().filePath);
             Files.delete(claim.getClaimStorage().filePath);
         } catch (IOException e) {
             e.printStackTrace();
@@ -510,4 +601,33 @@ GPPlayerData getPlayerDataFromStorage(UUID playerID) {
     void overrideSavePlayerData(UUID playerID, GPPlayerData playerData) {
     }
 
+
+    // Claim file read during world load. Built by a worker and only handed to the loading
+    // thread afterwards, the node is never modified until the claim storage takes it over
+    private static final class ClaimFileData {
+
+        final File file;
+        final UUID claimId;
+        final CommentedConfigurationNode root;
+        @Nullable final UUID parentUniqueId;
+
+        ClaimFileData(File file, UUID claimId, CommentedConfigurationNode root) {
+            this.file = file;
+            this.claimId = claimId;
+            this.root = root;
+            this.parentUniqueId = readUniqueId(root.getNode(GriefPreventionPlugin.MOD_ID, "parent").getString());
+        }
+
+        @Nullable
+        private static UUID readUniqueId(@Nullable String value) {
+            if (value == null || value.isEmpty()) {
+                return null;
+            }
+            try {
+                return UUID.fromString(value);
+            } catch (IllegalArgumentException e) {
+                return null;
+            }
+        }
+    }
 }
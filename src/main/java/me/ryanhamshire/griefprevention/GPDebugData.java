@@ -24,6 +24,7 @@
  */
 package me.ryanhamshire.griefprevention;
 
+import com.google.common.collect.ImmutableList;
 import com.google.gson.Gson;
 import com.google.gson.JsonObject;
 
@@ -31,10 +32,13 @@
 
 import org.spongepowered.api.command.CommandSource;
 import org.spongepowered.api.entity.living.player.User;
+import org.spongepowered.api.service.permission.Subject;
 import org.spongepowered.api.text.Text;
 import org.spongepowered.api.text.action.TextActions;
 import org.spongepowered.api.text.format.TextColors;
 import org.spongepowered.api.util.Tristate;
+import org.spongepowered.api.world.Location;
+import org.spongepowered.api.world.World;
 
 import okhttp3.MediaType;
 import okhttp3.Request;
@@ -56,17 +60,24 @@
 import java.util.List;
 import java.util.zip.GZIPOutputStream;
 
+import javax.annotation.Nullable;
+
 public class GPDebugData {
     private static final String BYTEBIN_ENDPOINT = "https://bytebin.lucko.me/post";
     private static final String DEBUG_VIEWER_URL = "https://griefprevention.github.io/debug/?";
     private static final MediaType PLAIN_TYPE = MediaType.parse("text/plain; charset=utf-8");
 
-    private static final int MAX_LINES = 5000;
+    public static final int MAX_LINES = 5000;
+    public static final List<String> TABLE_HEADER = ImmutableList.of(
+            "### Output",
+            "| Flag/Trust  | Source | Target | Location | User | Result |",
+            "|-------|--------|--------|----------|------|--------|");
+    private static final int BUFFER_CAPACITY = 8192;
     private static final SimpleDateFormat DATE_FORMAT = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss z");
 
     private final CommandSource source;
     private final List<String> header;
-    private final List<String> records;
+    private final DebugRecordBuffer buffer = new DebugRecordBuffer(BUFFER_CAPACITY);
     private final long startTime = System.currentTimeMillis();
     private boolean verbose;
     private User target;
@@ -75,7 +86,6 @@ public GPDebugData(CommandSource source, User target, boolean verbose) {
         this.source = source;
         this.target = target;
         this.verbose = verbose;
-        this.records = new ArrayList<>();
         this.header = new ArrayList<>();
         this.header.add("# GriefPrevention Debug Log");
         this.header.add("#### This file was automatically generated by [GriefPrevention](https://github.com/MinecraftPortCentral/GriefPrevention) ");
@@ -87,17 +97,24 @@ public GPDebugData(CommandSource source, User target, boolean verbose) {
         this.header.add("| Sponge Version | " + GriefPreventionPlugin.SPONGE_VERSION + "|");
         this.header.add("| User | " + (this.target == null ? "ALL" : this.target.getName()) + "|");
         this.header.add("| Record start | " + DATE_FORMAT.format(new Date(this.startTime)) + "|");
+        GriefPreventionPlugin.DEBUG_RECORD_EXPORTER.register(this);
     }
 
-    public void addRecord(String flag, String source, String target, String location, String user, Tristate result) {
-        if (this.records.size() < MAX_LINES) {
-            this.records.add("| " + flag + " | " + source + " | " + target + " | " + location + " | " + user + " | " + result + " | ");
-        } else {
-            this.source.sendMessage(Text.of("MAX DEBUG LIMIT REACHED!", "\n",
-                    TextColors.GREEN, "Pasting output..."));
-            this.pasteRecords();
-            this.records.clear();
-        }
+    public void addRecord(String permission, @Nullable String sourceId, @Nullable String targetId, @Nullable Location<World> location,
+            @Nullable Subject eventSubject, Subject permissionSubject, Tristate result) {
+        this.buffer.add(permission, sourceId, targetId, location, eventSubject, permissionSubject, result);
+    }
+
+    public DebugRecordBuffer getBuffer() {
+        return this.buffer;
+    }
+
+    public List<String> getHeader() {
+        return this.header;
+    }
+
+    public long getStartTime() {
+        return this.startTime;
     }
 
     public CommandSource getSource() {
@@ -121,9 +138,18 @@ public void setVerbose(boolean verbose) {
     }
 
     public void pasteRecords() {
-        if (this.records.isEmpty()) {
-            this.source.sendMessage(Text.of(TextColors.RED, "No debug records to paste!"));
-            return;
+        this.source.sendMessage(Text.of(TextColors.GREEN, "Pasting debug records..."));
+        GriefPreventionPlugin.DEBUG_RECORD_EXPORTER.paste(this);
+    }
+
+    public void stopRecording() {
+        GriefPreventionPlugin.DEBUG_RECORD_EXPORTER.close(this);
+    }
+
+    // Called from the exporter thread
+    Text pasteRows(List<String> rows) {
+        if (rows.isEmpty()) {
+            return Text.of(TextColors.RED, "No debug records to paste!");
         }
 
         final long endTime = System.currentTimeMillis();
@@ -131,12 +157,14 @@ public void pasteRecords() {
         debugOutput.add("| Record end | " + DATE_FORMAT.format(new Date(endTime)) + "|");
         long elapsed = (endTime - startTime) / 1000L; 
         debugOutput.add("| Time elapsed | " + elapsed + " seconds" + "|");
+        final long dropped = this.buffer.getDroppedRecords();
+        if (dropped > 0) {
+            debugOutput.add("| Records dropped | " + dropped + "|");
+        }
         debugOutput.add("");
-        debugOutput.add("### Output") ;
-        debugOutput.add("| Flag/Trust  | Source | Target | Location | User | Result |");
-        debugOutput.add("|-------|--------|--------|----------|------|--------|");
+        debugOutput.addAll(TABLE_HEADER);
 
-        debugOutput.addAll(this.records);
+        debugOutput.addAll(rows);
 
         String content = String.join("\n", debugOutput);
 
@@ -144,8 +172,7 @@ public void pasteRecords() {
         try {
             pasteId = postContent(content);
         } catch (Exception e) {
-            this.source.sendMessage(Text.of(TextColors.RED, "Error uploading content : ", TextColors.WHITE, e.getMessage()));
-            return;
+            return Text.of(TextColors.RED, "Error uploading content : ", TextColors.WHITE, e.getMessage());
         }
 
         String url = DEBUG_VIEWER_URL + pasteId;
@@ -157,8 +184,8 @@ public void pasteRecords() {
             throw new RuntimeException(e);
         }
 
-        this.source.sendMessage(Text.builder().append(Text.of(TextColors.GREEN, "Paste success! : " + url))
-                .onClick(TextActions.openUrl(jUrl)).build());
+        return Text.builder().append(Text.of(TextColors.GREEN, "Paste success! : " + url))
+                .onClick(TextActions.openUrl(jUrl)).build();
     }
 
     private static String postContent(String content) throws IOException {
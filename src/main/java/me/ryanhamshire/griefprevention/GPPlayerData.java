@@ -30,14 +30,17 @@
 import me.ryanhamshire.griefprevention.api.claim.ClaimType;
 import me.ryanhamshire.griefprevention.api.data.PlayerData;
 import me.ryanhamshire.griefprevention.claim.GPClaim;
+import me.ryanhamshire.griefprevention.claim.OwnerClaimList;
 import me.ryanhamshire.griefprevention.command.CommandHelper;
 import me.ryanhamshire.griefprevention.configuration.GriefPreventionConfig;
 import me.ryanhamshire.griefprevention.configuration.PlayerStorageData;
 import me.ryanhamshire.griefprevention.permission.GPOptionHandler;
 import me.ryanhamshire.griefprevention.permission.GPOptions;
 import me.ryanhamshire.griefprevention.permission.GPPermissions;
+import me.ryanhamshire.griefprevention.permission.PermissionDecisionCache;
 import me.ryanhamshire.griefprevention.util.PermissionUtils;
 import me.ryanhamshire.griefprevention.util.PlayerUtils;
+import me.ryanhamshire.griefprevention.visual.BlockChangeBatch;
 import net.minecraft.world.chunk.Chunk;
 import org.spongepowered.api.Sponge;
 import org.spongepowered.api.block.BlockSnapshot;
@@ -69,8 +72,8 @@ public class GPPlayerData implements PlayerData {
     public WorldProperties worldProperties;
     private WeakReference<Subject> playerSubject;
 
-    // the player's claims
-    private List<Claim> claimList;
+    // the player's claims, shared with the owner claim index
+    private OwnerClaimList claimList;
 
     private PlayerStorageData playerStorage;
 
@@ -131,6 +134,8 @@ public class GPPlayerData implements PlayerData {
     public List<Transaction<BlockSnapshot>> visualBlocks;
     public UUID visualClaimId;
     public Task visualRevertTask;
+    // visual blocks still being sent over the next ticks
+    public BlockChangeBatch visualBatch;
 
     // anti-camping pvp protection
     public boolean pvpImmune = false;
@@ -157,6 +162,8 @@ public class GPPlayerData implements PlayerData {
     public boolean townChat = false;
 
     public boolean ignoreActiveContexts = false;
+    // Contexts cached permission decisions are keyed on, cleared when the player changes world
+    public volatile PermissionDecisionCache.UserKey permissionContexts;
     public InetAddress ipAddress;
 
     // whether or not this player has received a message about unlocking death
@@ -247,10 +254,12 @@ public class GPPlayerData implements PlayerData {
     public boolean ignoreWilderness = false;
 
     public boolean dataInitialized = false;
+    // used to evict offline player data
+    public long lastAccessed = System.currentTimeMillis();
     public boolean showVisualFillers = true;
     private boolean checkedDimensionHeight = false;
 
-    public GPPlayerData(WorldProperties worldProperties, UUID playerUniqueId, PlayerStorageData playerStorage, GriefPreventionConfig<?> activeConfig, List<Claim> claims) {
+    public GPPlayerData(WorldProperties worldProperties, UUID playerUniqueId, PlayerStorageData playerStorage, GriefPreventionConfig<?> activeConfig, OwnerClaimList claims) {
         this.worldProperties = worldProperties;
         this.playerID = playerUniqueId;
         this.playerStorage = playerStorage;
@@ -322,6 +331,7 @@ public void refreshPlayerOptions() {
             }
             this.dataInitialized = true;
             this.checkedDimensionHeight = false;
+            DataStore.CLAIM_EXPIRATION_QUEUE.markOwnerChanged(this);
         });
     }
 
@@ -337,6 +347,10 @@ public void revertActiveVisual(Player player) {
         if (this.visualRevertTask != null) {
             this.visualRevertTask.cancel();
         }
+        if (this.visualBatch != null) {
+            this.visualBatch.cancel();
+            this.visualBatch = null;
+        }
 
         if (this.visualClaimId != null) {
             GPClaim claim = (GPClaim) GriefPreventionPlugin.instance.dataStore.getClaim(this.worldProperties, this.visualClaimId);
@@ -349,10 +363,8 @@ public void revertActiveVisual(Player player) {
             return;
         }
 
-        for (int i = 0; i < this.visualBlocks.size(); i++) {
-            BlockSnapshot snapshot = this.visualBlocks.get(i).getOriginal();
-            player.sendBlockChange(snapshot.getPosition(), snapshot.getState());
-        }
+        // reverts are sent at once so no fake blocks are left behind
+        new BlockChangeBatch(player, this.visualBlocks, true).sendAll();
     }
 
     // whether or not this player is "in" pvp combat
@@ -397,35 +409,11 @@ public int getInitialClaimBlocks() {
     // the number of claim blocks a player has available for claiming land
     @Override
     public int getRemainingClaimBlocks() {
-        int remainingBlocks = this.optionInitialClaimBlocks + this.getAccruedClaimBlocks() + this.getBonusClaimBlocks();
-        for (Claim claim : this.claimList) {
-            if (claim.isSubdivision()) {
-                continue;
-            }
-
-            GPClaim gpClaim = (GPClaim) claim;
-            if ((gpClaim.parent == null || gpClaim.parent.isAdminClaim()) && claim.getData().requiresClaimBlocks()) {
-                remainingBlocks -= claim.getClaimBlocks();
-            }
-        }
-
-        return remainingBlocks;
+        return this.optionInitialClaimBlocks + this.getAccruedClaimBlocks() + this.getBonusClaimBlocks() - this.claimList.getTotalCost();
     }
 
     public int getTotalClaimsCost() {
-        int totalCost = 0;
-        for (Claim claim : this.claimList) {
-            if (claim.isSubdivision()) {
-                continue;
-            }
-
-            final GPClaim gpClaim = (GPClaim) claim;
-            if ((gpClaim.parent == null || gpClaim.parent.isAdminClaim()) && claim.getData().requiresClaimBlocks()) {
-                totalCost += claim.getClaimBlocks();
-            }
-        }
-
-        return totalCost;
+        return this.claimList.getTotalCost();
     }
 
     public double getRemainingChunks() {
@@ -771,5 +759,9 @@ public void onDisconnect() {
             this.visualRevertTask.cancel();
             this.visualRevertTask = null;
         }
+        if (this.visualBatch != null) {
+            this.visualBatch.cancel();
+            this.visualBatch = null;
+        }
     }
 }
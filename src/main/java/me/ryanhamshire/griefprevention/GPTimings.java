@@ -73,6 +73,7 @@ public class GPTimings {
     public static final Timing PROJECTILE_IMPACT_ENTITY_EVENT = Timings.of(GriefPreventionPlugin.instance.pluginContainer, "onProjectileImpactEntity");
     public static final Timing EXPLOSION_EVENT = Timings.of(GriefPreventionPlugin.instance.pluginContainer, "onExplosion");
     public static final Timing CLAIM_GETCLAIM = Timings.of(GriefPreventionPlugin.instance.pluginContainer, "getClaimAt");
+    public static final Timing VISUALIZATION_SEND = Timings.of(GriefPreventionPlugin.instance.pluginContainer, "sendVisualization");
     public static final Timing WORLD_LOAD_EVENT = Timings.of(GriefPreventionPlugin.instance.pluginContainer, "onWorldSave");
     public static final Timing WORLD_SAVE_EVENT = Timings.of(GriefPreventionPlugin.instance.pluginContainer, "onWorldSave");
     public static final Timing WORLD_UNLOAD_EVENT = Timings.of(GriefPreventionPlugin.instance.pluginContainer, "onWorldSave");
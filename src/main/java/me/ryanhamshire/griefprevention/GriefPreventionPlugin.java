@@ -39,9 +39,9 @@
 import com.google.common.collect.Maps;
 import com.google.inject.Inject;
 import me.ryanhamshire.griefprevention.api.GriefPreventionApi;
+import me.ryanhamshire.griefprevention.api.claim.Claim;
 import me.ryanhamshire.griefprevention.api.claim.ClaimBlockSystem;
 import me.ryanhamshire.griefprevention.api.claim.ClaimFlag;
-import me.ryanhamshire.griefprevention.api.claim.ClaimType;
 import me.ryanhamshire.griefprevention.claim.ClaimContextCalculator;
 import me.ryanhamshire.griefprevention.claim.ClaimsMode;
 import me.ryanhamshire.griefprevention.claim.GPClaim;
@@ -90,6 +90,7 @@
 import me.ryanhamshire.griefprevention.command.CommandDebug;
 import me.ryanhamshire.griefprevention.command.CommandGivePet;
 import me.ryanhamshire.griefprevention.command.CommandGpReload;
+import me.ryanhamshire.griefprevention.command.CommandGpStorage;
 import me.ryanhamshire.griefprevention.command.CommandGpVersion;
 import me.ryanhamshire.griefprevention.command.CommandIgnorePlayer;
 import me.ryanhamshire.griefprevention.command.CommandIgnoredPlayerList;
@@ -134,24 +135,24 @@
 import me.ryanhamshire.griefprevention.provider.MCClansApiProvider;
 import me.ryanhamshire.griefprevention.provider.NucleusApiProvider;
 import me.ryanhamshire.griefprevention.provider.WorldEditApiProvider;
+import me.ryanhamshire.griefprevention.task.ClaimBlockAuditTask;
 import me.ryanhamshire.griefprevention.task.CleanupUnusedClaimsTask;
 import me.ryanhamshire.griefprevention.task.DeliverClaimBlocksTask;
 import me.ryanhamshire.griefprevention.task.IgnoreLoaderThread;
+import me.ryanhamshire.griefprevention.task.PlayerDataEvictionTask;
 import me.ryanhamshire.griefprevention.task.PvPImmunityValidationTask;
 import me.ryanhamshire.griefprevention.task.SendPlayerMessageTask;
-import me.ryanhamshire.griefprevention.util.BlockUtils;
+import me.ryanhamshire.griefprevention.util.BlacklistMatcher;
 import me.ryanhamshire.griefprevention.util.PlayerUtils;
 import net.minecraft.entity.EnumCreatureType;
 import net.minecraft.entity.player.EntityPlayerMP;
 import net.minecraft.entity.player.InventoryPlayer;
 import net.minecraft.item.ItemStack;
-import org.apache.commons.io.FilenameUtils;
 import org.apache.commons.lang3.LocaleUtils;
 import org.slf4j.Logger;
 import org.spongepowered.api.Platform.Component;
 import org.spongepowered.api.Sponge;
 import org.spongepowered.api.asset.Asset;
-import org.spongepowered.api.block.BlockSnapshot;
 import org.spongepowered.api.block.BlockType;
 import org.spongepowered.api.command.CommandException;
 import org.spongepowered.api.command.CommandMapping;
@@ -174,6 +175,7 @@
 import org.spongepowered.api.event.game.state.GameAboutToStartServerEvent;
 import org.spongepowered.api.event.game.state.GamePreInitializationEvent;
 import org.spongepowered.api.event.game.state.GameStartedServerEvent;
+import org.spongepowered.api.event.game.state.GameStoppingServerEvent;
 import org.spongepowered.api.event.service.ChangeServiceProviderEvent;
 import org.spongepowered.api.item.ItemType;
 import org.spongepowered.api.item.ItemTypes;
@@ -210,6 +212,7 @@
 import java.util.Optional;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Executor;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
@@ -280,7 +283,7 @@ public class GriefPreventionPlugin {
     CustomLogger customLogger;
     public static boolean debugLogging = false;
     public static boolean debugActive = false;
-    private Map<String, GPDebugData> debugUserMap = Maps.newHashMap();
+    private Map<String, GPDebugData> debugUserMap = new ConcurrentHashMap<>();
 
     // how far away to search from a tree trunk for its branch blocks
     public static final int TREE_RADIUS = 5;
@@ -288,6 +291,8 @@ public class GriefPreventionPlugin {
     // how long to wait before deciding a player is staying online or staying offline, for notication messages
     public static final int NOTIFICATION_SECONDS = 20;
 
+    public static final ChunkRestoreQueue CHUNK_RESTORE_QUEUE = new ChunkRestoreQueue();
+    public static final DebugRecordExporter DEBUG_RECORD_EXPORTER = new DebugRecordExporter(new FileDebugRecordSink());
     public static final Text GP_TEXT = Text.of(TextColors.RESET, "[", TextColors.AQUA, "GP", TextColors.WHITE, "] ");
 
     public static final Map<String, String> ID_MAP = Maps.newHashMap();
@@ -331,6 +336,12 @@ public static void addEventLogEntry(Event event, GPClaim claim, Location<World>
                 }
             }
 
+            // record, formatting is left to the exporter thread
+            if (debugEntry.isRecording()) {
+                debugEntry.addRecord(permission, sourceId, targetId, location, eventSubject, permissionSubject, result);
+                continue;
+            }
+
             String messageUser = "";
             if (eventSubject != null && eventSubject instanceof User) {
                 messageUser = ((User) eventSubject).getName();
@@ -340,22 +351,6 @@ public static void addEventLogEntry(Event event, GPClaim claim, Location<World>
                     messageUser = ((User) permissionSubject).getName();
                 }
             }
-            // record
-            if (debugEntry.isRecording()) {
-                String messageEvent = permission;
-                if (!permission.contains("trust.")) {
-                    permission = permission.replace("griefprevention.flag.", "");
-                    messageEvent = GPPermissionHandler.getFlagFromPermission(permission).toString();
-                }
-                final String messageSource = sourceId == null ? "none" : sourceId;
-                String messageTarget = targetId == null ? "none" : targetId;
-                if (messageTarget.endsWith(".0")) {
-                    messageTarget = messageTarget.substring(0, messageTarget.length() - 2);
-                }
-                final String messageLocation = location == null ? "none" : location.getBlockPosition().toString();
-                debugEntry.addRecord(messageEvent, messageSource, messageTarget, messageLocation, messageUser, result);
-                continue;
-            }
 
             final Text textEvent = Text.of(GP_TEXT, TextColors.GRAY, "Event: ", TextColors.GREEN, event.getClass().getSimpleName().replace('$', '.').replace(".Impl", ""), "\n");
             final Text textCause = Text.of(GP_TEXT, TextColors.GRAY, "Cause: ", TextColors.LIGHT_PURPLE, GPPermissionHandler.getPermissionIdentifier(event.getCause().root()), "\n");
@@ -384,6 +379,11 @@ public static void addEventLogEntry(Event event, GPClaim claim, Location<World>
         }
     }
 
+    // checks whether a log entry would be written, before it is built
+    public static boolean isLogEntryEnabled(CustomLogEntryTypes customLogType) {
+        return GriefPreventionPlugin.instance.customLogger.isEnabled(customLogType);
+    }
+
     public static void addLogEntry(String entry, CustomLogEntryTypes customLogType) {
         addLogEntry(entry, customLogType, false);
     }
@@ -620,6 +620,11 @@ public void onPreInit(GamePreInitializationEvent event) {
                 .description(Text.of("Reloads GriefPrevention's configuration, messages, and player options."))
                 .assign(PermissionDescription.ROLE_ADMIN, true)
                 .register();
+            this.permissionDescriptionBuilder
+                .id(GPPermissions.COMMAND_STORAGE)
+                .description(Text.of("Exports or compacts binary claim data."))
+                .assign(PermissionDescription.ROLE_ADMIN, true)
+                .register();
             this.permissionDescriptionBuilder
                 .id(GPPermissions.COMMAND_REMOVE_TRUST)
                 .description(Text.of("Revokes a player's access to your claim."))
@@ -756,7 +761,11 @@ public void onServerAboutToStart(GameAboutToStartServerEvent event) {
 
         if (this.dataStore == null) {
             try {
-                this.dataStore = new FlatFileDataStore();
+                if (getGlobalConfig().getConfig().storage.isBinaryClaimFormat()) {
+                    this.dataStore = new BinaryFileDataStore();
+                } else {
+                    this.dataStore = new FlatFileDataStore();
+                }
                 this.dataStore.initialize();
             } catch (Exception e) {
                 this.getLogger().info("Unable to initialize the file system data store.  Details:");
@@ -766,7 +775,7 @@ public void onServerAboutToStart(GameAboutToStartServerEvent event) {
             }
         }
 
-        String dataMode = (this.dataStore instanceof FlatFileDataStore) ? "(File Mode)" : "(Database Mode)";
+        String dataMode = (this.dataStore instanceof BinaryFileDataStore) ? "(Binary File Mode)" : (this.dataStore instanceof FlatFileDataStore) ? "(File Mode)" : "(Database Mode)";
         Sponge.getEventManager().registerListeners(this, new BlockEventHandler(dataStore));
         Sponge.getEventManager().registerListeners(this, new PlayerEventHandler(dataStore, this));
         Sponge.getEventManager().registerListeners(this, new EntityEventHandler(dataStore));
@@ -784,14 +793,32 @@ public void onServerAboutToStart(GameAboutToStartServerEvent event) {
         WORLD_USER = Sponge.getServiceManager().provide(UserStorageService.class).get()
                 .getOrCreate(GameProfile.of(GriefPreventionPlugin.WORLD_USER_UUID, GriefPreventionPlugin.WORLD_USER_NAME));
 
-        // run cleanup task
+        // run cleanup task, expired claims are drained from the expiration queue every tick after the initial delay
         int cleanupTaskInterval = GriefPreventionPlugin.getGlobalConfig().getConfig().claim.expirationCleanupInterval;
         if (cleanupTaskInterval > 0) {
+            DataStore.CLAIM_EXPIRATION_QUEUE.enable();
+            for (World world : Sponge.getServer().getWorlds()) {
+                for (Claim claim : this.dataStore.getClaimWorldManager(world.getProperties()).getWorldClaims()) {
+                    DataStore.CLAIM_EXPIRATION_QUEUE.markChanged(claim);
+                }
+            }
             CleanupUnusedClaimsTask cleanupTask = new CleanupUnusedClaimsTask();
-            Sponge.getScheduler().createTaskBuilder().delay(cleanupTaskInterval, TimeUnit.MINUTES).execute(cleanupTask)
+            Sponge.getScheduler().createTaskBuilder().delay(cleanupTaskInterval, TimeUnit.MINUTES).intervalTicks(1).execute(cleanupTask)
                     .submit(GriefPreventionPlugin.instance);
         }
 
+        // drop offline player data that is no longer in use
+        Sponge.getScheduler().createTaskBuilder().interval(1, TimeUnit.MINUTES).execute(new PlayerDataEvictionTask())
+                .submit(GriefPreventionPlugin.instance);
+
+        // regenerate and restore queued chunks a few at a time
+        Sponge.getScheduler().createTaskBuilder().intervalTicks(1).execute(CHUNK_RESTORE_QUEUE)
+                .submit(GriefPreventionPlugin.instance);
+
+        // self-check running claim block totals
+        Sponge.getScheduler().createTaskBuilder().interval(10, TimeUnit.MINUTES).execute(new ClaimBlockAuditTask())
+                .submit(GriefPreventionPlugin.instance);
+
         // if economy is enabled
         if (this.economyService.isPresent()) {
             GriefPreventionPlugin.addLogEntry("GriefPrevention economy integration enabled.");
@@ -880,6 +907,16 @@ public void onServerStarted(GameStartedServerEvent event) {
         this.logger.info("Loaded successfully.");
     }
 
+    @Listener
+    public void onServerStopping(GameStoppingServerEvent event) {
+        // worlds may stay loaded until shutdown, write any queued claim saves
+        DataStore.CLAIM_SAVE_QUEUE.flush();
+        DEBUG_RECORD_EXPORTER.flush();
+        if (this.customLogger != null) {
+            this.customLogger.close();
+        }
+    }
+
     // handles sub commands
     public void registerBaseCommands() {
 
@@ -900,6 +937,12 @@ public void registerBaseCommands() {
         debugChoicesBuilder.put("log", "log");
         debugChoicesBuilder.put("record", "record");
         debugChoicesBuilder.put("paste", "paste");
+        debugChoicesBuilder.put("stats", "stats");
+        debugChoicesBuilder.put("verify", "verify");
+
+        ImmutableMap.Builder<String, String> storageChoicesBuilder = ImmutableMap.builder();
+        storageChoicesBuilder.put("export", "export");
+        storageChoicesBuilder.put("compact", "compact");
 
         ImmutableMap.Builder<String, String> contextChoicesBuilder = ImmutableMap.builder();
         contextChoicesBuilder.put("default", "default");
@@ -907,6 +950,7 @@ public void registerBaseCommands() {
         final ImmutableMap<String, String> flagChoices = flagChoicesBuilder.build();
         final ImmutableMap<String, String> optionChoices = optionChoicesBuilder.build();
         final ImmutableMap<String, String> debugChoices = debugChoicesBuilder.build();
+        final ImmutableMap<String, String> storageChoices = storageChoicesBuilder.build();
         final ImmutableMap<String, String> contextChoices = contextChoicesBuilder.build();
 
         Sponge.getCommandManager().register(this, CommandSpec.builder()
@@ -1195,6 +1239,13 @@ public void registerBaseCommands() {
                 .executor(new CommandGpReload())
                 .build(), "gpreload");
 
+        Sponge.getCommandManager().register(this, CommandSpec.builder()
+                .description(Text.of("Exports or compacts binary claim data"))
+                .permission(GPPermissions.COMMAND_STORAGE)
+                .arguments(choices(Text.of("action"), storageChoices))
+                .executor(new CommandGpStorage())
+                .build(), "gpstorage");
+
         Sponge.getCommandManager().register(this, CommandSpec.builder()
                 .description(Text.of("Displays GriefPrevention's version information"))
                 .permission(GPPermissions.COMMAND_VERSION)
@@ -2027,46 +2078,14 @@ public void restoreClaim(GPClaim claim, long delayInTicks) {
 
         ArrayList<Chunk> chunks = claim.getChunks();
         for (Chunk chunk : chunks) {
-            this.restoreChunk(chunk, this.getSeaLevel(chunk.getWorld()) - 15, false, delayInTicks, null);
+            CHUNK_RESTORE_QUEUE.regenerate(chunk.getWorld(), chunk.getPosition().getX(), chunk.getPosition().getZ());
         }
     }
 
     public void restoreChunk(Chunk chunk, int miny, boolean aggressiveMode, long delayInTicks, Player player) {
-        // build a snapshot of this chunk, including 1 block boundary outside of
-        // the chunk all the way around
-        int maxHeight = chunk.getWorld().getDimension().getBuildHeight() - 1;
-        BlockSnapshot[][][] snapshots = new BlockSnapshot[18][maxHeight][18];
-        BlockSnapshot startBlock = chunk.createSnapshot(0, 0, 0);
-        Location<World> startLocation =
-                new Location<World>(chunk.getWorld(), startBlock.getPosition().getX() - 1, 0, startBlock.getPosition().getZ() - 1);
-        for (int x = 0; x < snapshots.length; x++) {
-            for (int z = 0; z < snapshots[0][0].length; z++) {
-                for (int y = 0; y < snapshots[0].length; y++) {
-                    snapshots[x][y][z] = chunk.getWorld()
-                            .createSnapshot(startLocation.getBlockX() + x, startLocation.getBlockY() + y, startLocation.getBlockZ() + z);
-                }
-            }
-        }
-
-        // create task to process those data in another thread
-        Location<World> lesserBoundaryCorner = chunk.createSnapshot(0, 0, 0).getLocation().get();
-        Location<World> greaterBoundaryCorner = chunk.createSnapshot(15, 0, 15).getLocation().get();
-        // create task when done processing, this task will create a main thread task to actually update the world with processing results
-        /*RestoreNatureProcessingTask task = new RestoreNatureProcessingTask(snapshots, miny, chunk.getWorld().getDimension().getType(),
-                lesserBoundaryCorner.getBiome(), lesserBoundaryCorner, greaterBoundaryCorner, this.getSeaLevel(chunk.getWorld()),
-                aggressiveMode, claimModeIsActive(lesserBoundaryCorner.getExtent().getProperties(), ClaimsMode.Creative),
-                playerReceivingVisualization);*/
-        // show visualization to player who started the restoration
-        if (player != null) {
-            GPPlayerData playerData = GriefPreventionPlugin.instance.dataStore.getOrCreatePlayerData(player.getWorld(), player.getUniqueId());
-            GPClaim claim = new GPClaim(lesserBoundaryCorner, greaterBoundaryCorner , ClaimType.BASIC, false);
-            // TODO
-            claim.getVisualizer().resetVisuals();
-            claim.getVisualizer().createClaimBlockVisuals(player.getLocation().getBlockY(), player.getLocation(), playerData);
-            claim.getVisualizer().apply(player);
-        }
-
-        BlockUtils.regenerateChunk((net.minecraft.world.chunk.Chunk) chunk);
+        // the chunk is captured and processed once the queue reaches it
+        CHUNK_RESTORE_QUEUE.restoreNature(chunk.getWorld(), chunk.getPosition().getX(), chunk.getPosition().getZ(), miny, aggressiveMode,
+                delayInTicks, player);
     }
 
     public int getSeaLevel(World world) {
@@ -2128,72 +2147,44 @@ public static User getOrCreateUser(UUID uuid) {
     public static boolean isSourceIdBlacklisted(String flag, Object source, WorldProperties worldProperties) {
         final GriefPreventionConfig<?> activeConfig = GriefPreventionPlugin.getActiveConfig(worldProperties);
         final String id = GPPermissionHandler.getPermissionIdentifier(source);
-        final String idNoMeta = GPPermissionHandler.getIdentifierWithoutMeta(id);
 
         // Check global
         final BlacklistCategory blacklistCategory = activeConfig.getConfig().blacklist;
-        final List<String> globalSourceBlacklist = blacklistCategory.getGlobalSourceBlacklist();
-        if (globalSourceBlacklist == null) {
+        final BlacklistMatcher globalSourceMatcher = blacklistCategory.getGlobalSourceMatcher();
+        if (globalSourceMatcher == null) {
             return false;
         }
-        for (String str : globalSourceBlacklist) {
-            if (FilenameUtils.wildcardMatch(id, str)) {
-                return true;
-            }
-            if (FilenameUtils.wildcardMatch(idNoMeta, str)) {
-                return true;
-            }
+        if (globalSourceMatcher.matches(id)) {
+            return true;
         }
         // Check flag
-        final List<String> flagBlacklist = blacklistCategory.getFlagBlacklist(flag);
-        if (flagBlacklist == null) {
+        final BlacklistMatcher flagMatcher = blacklistCategory.getFlagMatcher(flag);
+        if (flagMatcher == null) {
             return false;
         }
-        for (String str : flagBlacklist) {
-            if (FilenameUtils.wildcardMatch(id, str)) {
-                return true;
-            }
-            if (FilenameUtils.wildcardMatch(idNoMeta, str)) {
-                return true;
-            }
-        }
 
-        return false;
+        return flagMatcher.matches(id);
     }
 
     public static boolean isTargetIdBlacklisted(String flag, Object target, WorldProperties worldProperties) {
         final GriefPreventionConfig<?> activeConfig = GriefPreventionPlugin.getActiveConfig(worldProperties);
         final String id = GPPermissionHandler.getPermissionIdentifier(target);
-        final String idNoMeta = GPPermissionHandler.getIdentifierWithoutMeta(id);
 
         // Check global
         final BlacklistCategory blacklistCategory = activeConfig.getConfig().blacklist;
-        final List<String> globalTargetBlacklist = blacklistCategory.getGlobalTargetBlacklist();
-        if (globalTargetBlacklist == null) {
+        final BlacklistMatcher globalTargetMatcher = blacklistCategory.getGlobalTargetMatcher();
+        if (globalTargetMatcher == null) {
             return false;
         }
-        for (String str : globalTargetBlacklist) {
-            if (FilenameUtils.wildcardMatch(id, str)) {
-                return true;
-            }
-            if (FilenameUtils.wildcardMatch(idNoMeta, str)) {
-                return true;
-            }
+        if (globalTargetMatcher.matches(id)) {
+            return true;
         }
         // Check flag
-        final List<String> flagBlacklist = blacklistCategory.getFlagBlacklist(flag);
-        if (flagBlacklist == null) {
+        final BlacklistMatcher flagMatcher = blacklistCategory.getFlagMatcher(flag);
+        if (flagMatcher == null) {
             return false;
         }
-        for (String str : flagBlacklist) {
-            if (FilenameUtils.wildcardMatch(id, str)) {
-                return true;
-            }
-            if (FilenameUtils.wildcardMatch(idNoMeta, str)) {
-                return true;
-            }
-        }
 
-        return false;
+        return flagMatcher.matches(id);
     }
 }
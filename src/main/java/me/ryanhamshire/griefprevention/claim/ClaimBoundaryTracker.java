@@ -0,0 +1,113 @@
+/*
+ * This file is part of GriefPrevention, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) bloodmc
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package me.ryanhamshire.griefprevention.claim;
+
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+import org.spongepowered.api.world.Location;
+import org.spongepowered.api.world.World;
+
+/**
+ * Tracks the claim each moving entity is in along with a box around its
+ * last resolved position in which that claim cannot change.
+ *
+ * <p>Moves that stay inside the box resolve their claim without touching
+ * the claim index. Boxes are rebuilt on the first move outside them and
+ * dropped whenever the world's claim index changes. Only accessed from the
+ * main thread.</p>
+ */
+public class ClaimBoundaryTracker {
+
+    private final Int2ObjectOpenHashMap<Entry> entries = new Int2ObjectOpenHashMap<>();
+    private long lookups;
+    private long skipped;
+
+    /**
+     * Gets the claim at a location for a moving entity.
+     *
+     * @param entityId The entity id
+     * @param claimManager The claim manager of the location's world
+     * @param location The location
+     * @return The claim at location
+     */
+    public GPClaim getClaimAt(int entityId, GPClaimManager claimManager, Location<World> location) {
+        final ClaimSpatialIndex index = claimManager.getClaimIndex();
+        final int x = location.getBlockX();
+        final int y = location.getBlockY();
+        final int z = location.getBlockZ();
+        this.lookups++;
+        Entry entry = this.entries.get(entityId);
+        if (entry != null && entry.index == index && entry.modCount == index.getModCount() && entry.contains(x, y, z)) {
+            this.skipped++;
+            return entry.claim;
+        }
+
+        // no cached hint, it would shadow subdivisions of the previous claim
+        final GPClaim claim = (GPClaim) claimManager.getClaimAt(location);
+        if (entry == null) {
+            entry = new Entry();
+            this.entries.put(entityId, entry);
+        }
+        entry.index = index;
+        entry.modCount = index.getModCount();
+        entry.claim = claim;
+        index.getSafeBox(x, y, z, entry.box);
+        return claim;
+    }
+
+    public void remove(int entityId) {
+        this.entries.remove(entityId);
+    }
+
+    public void clear() {
+        this.entries.clear();
+    }
+
+    public int size() {
+        return this.entries.size();
+    }
+
+    public long getLookups() {
+        return this.lookups;
+    }
+
+    public long getSkipped() {
+        return this.skipped;
+    }
+
+    private static class Entry {
+
+        ClaimSpatialIndex index;
+        int modCount;
+        GPClaim claim;
+        // inclusive {minX, minY, minZ, maxX, maxY, maxZ}
+        final int[] box = new int[6];
+
+        boolean contains(int x, int y, int z) {
+            return x >= this.box[0] && x <= this.box[3]
+                    && y >= this.box[1] && y <= this.box[4]
+                    && z >= this.box[2] && z <= this.box[5];
+        }
+    }
+}
@@ -0,0 +1,307 @@
+/*
+ * This file is part of GriefPrevention, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) bloodmc
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package me.ryanhamshire.griefprevention.claim;
+
+import me.ryanhamshire.griefprevention.GPPlayerData;
+import me.ryanhamshire.griefprevention.GriefPreventionPlugin;
+import me.ryanhamshire.griefprevention.api.claim.Claim;
+import me.ryanhamshire.griefprevention.configuration.GriefPreventionConfig;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Queue;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Orders expirable claims by the instant they expire.
+ *
+ * <p>Claims are not evaluated when they change. They are marked pending and
+ * their expiration is computed later by the cleanup task within its tick
+ * budget. Claims are marked when they are added, resized or toggled, when
+ * their last active date changes and when their owner's options are
+ * refreshed. Expirations are computed again before a claim is handed out,
+ * so a missed refresh can only delay an expiration, never cause one.</p>
+ *
+ * <p>Owner data is never loaded while computing expirations. The owner's
+ * expiration options are remembered whenever their data is loaded, so they
+ * survive player data eviction. Claims of owners seen neither way are
+ * deferred and their owner data is loaded one owner per tick.</p>
+ *
+ * <p>Everything except {@link #markOwnerChanged(GPPlayerData)} must be
+ * called from the main thread.</p>
+ */
+public class ClaimExpirationQueue {
+
+    private final TreeSet<Entry> queue = new TreeSet<>();
+    private final Map<GPClaim, Entry> entries = new HashMap<>();
+    private final LinkedHashSet<GPClaim> pendingClaims = new LinkedHashSet<>();
+    // Claims waiting for their owner's data to be loaded
+    private final LinkedHashSet<GPClaim> deferredClaims = new LinkedHashSet<>();
+    // World -> owner -> last known expiration options
+    private final Map<UUID, Map<UUID, OwnerOptions>> ownerOptions = new HashMap<>();
+    // Owners whose options were refreshed off the main thread
+    private final Queue<GPPlayerData> changedOwners = new ConcurrentLinkedQueue<>();
+    private volatile boolean enabled = false;
+    private long sequence = 0;
+    private long claimsExpired = 0;
+
+    /**
+     * Enables tracking. Until this is called all marks are ignored so
+     * nothing accumulates when claim expiration is disabled.
+     */
+    public void enable() {
+        this.enabled = true;
+    }
+
+    /**
+     * Marks a claim so its expiration is computed again.
+     *
+     * @param claim The claim
+     */
+    public void markChanged(Claim claim) {
+        if (this.enabled) {
+            this.pendingClaims.add((GPClaim) claim);
+        }
+    }
+
+    /**
+     * Marks all claims of an owner so their expiration is computed again.
+     * Safe to call from any thread.
+     *
+     * @param playerData The owner's player data
+     */
+    public void markOwnerChanged(GPPlayerData playerData) {
+        if (this.enabled) {
+            this.changedOwners.add(playerData);
+        }
+    }
+
+    /**
+     * Stops tracking a claim, used when it is deleted or becomes a child.
+     *
+     * @param claim The claim
+     */
+    public void remove(Claim claim) {
+        this.pendingClaims.remove(claim);
+        this.deferredClaims.remove(claim);
+        final Entry entry = this.entries.remove(claim);
+        if (entry != null) {
+            this.queue.remove(entry);
+        }
+    }
+
+    /**
+     * Computes the expiration of pending claims until the deadline passes.
+     *
+     * @param deadlineNanos The {@link System#nanoTime()} deadline
+     */
+    public void processPending(long deadlineNanos) {
+        GPPlayerData playerData;
+        while ((playerData = this.changedOwners.poll()) != null) {
+            for (Claim claim : playerData.getInternalClaims()) {
+                this.pendingClaims.add((GPClaim) claim);
+            }
+        }
+
+        final Iterator<GPClaim> iterator = this.pendingClaims.iterator();
+        while (iterator.hasNext() && System.nanoTime() < deadlineNanos) {
+            final GPClaim claim = iterator.next();
+            iterator.remove();
+            this.update(claim);
+        }
+
+        final Iterator<GPClaim> deferredIterator = this.deferredClaims.iterator();
+        if (deferredIterator.hasNext() && System.nanoTime() < deadlineNanos) {
+            final GPClaim claim = deferredIterator.next();
+            deferredIterator.remove();
+            // loads the owner's data, the claim is marked again once it is initialized
+            final GPPlayerData ownerData = claim.getOwnerPlayerData();
+            if (ownerData != null && ownerData.dataInitialized) {
+                this.pendingClaims.add(claim);
+            }
+        }
+    }
+
+    /**
+     * Gets the chest claim expiration of a claim's owner as it was used to
+     * compute the claim's expiration.
+     *
+     * @param claim The claim
+     * @return The chest claim expiration in days
+     */
+    public int getChestClaimExpiration(GPClaim claim) {
+        final OwnerOptions options = this.getOwnerOptions(claim);
+        return options == null ? 0 : options.chestClaimExpiration;
+    }
+
+    /**
+     * Removes and returns the next claim that has expired at the given
+     * instant, computing its expiration again first.
+     *
+     * @param now The current instant
+     * @return The expired claim, or null if no claim has expired yet
+     */
+    public GPClaim pollExpired(Instant now) {
+        while (!this.queue.isEmpty()) {
+            final Entry first = this.queue.first();
+            if (!first.expiration.isBefore(now)) {
+                return null;
+            }
+
+            this.update(first.claim);
+            final Entry entry = this.entries.get(first.claim);
+            if (entry != null && entry.expiration.isBefore(now)) {
+                this.remove(first.claim);
+                this.claimsExpired++;
+                return first.claim;
+            }
+        }
+        return null;
+    }
+
+    private void update(GPClaim claim) {
+        final Entry oldEntry = this.entries.remove(claim);
+        if (oldEntry != null) {
+            this.queue.remove(oldEntry);
+        }
+
+        if (claim.parent != null || claim.isAdminClaim() || claim.isWilderness() || !claim.getInternalClaimData().allowExpiration()) {
+            return;
+        }
+        final OwnerOptions options = this.getOwnerOptions(claim);
+        if (options == null) {
+            this.deferredClaims.add(claim);
+            return;
+        }
+
+        final Instant expiration = getExpiration(claim, options);
+        if (expiration != null) {
+            final Entry entry = new Entry(claim, expiration, this.sequence++);
+            this.entries.put(claim, entry);
+            this.queue.add(entry);
+        }
+    }
+
+    /**
+     * Gets the area at or below which a claim in the given world counts as a
+     * chest claim.
+     *
+     * @param activeConfig The world's active config
+     * @return The area of the default chest claim
+     */
+    public static int getDefaultClaimArea(GriefPreventionConfig<?> activeConfig) {
+        if (activeConfig.getConfig().claim.claimRadius < 0) {
+            return 0;
+        }
+        return (int) Math.pow(activeConfig.getConfig().claim.claimRadius * 2 + 1, 2);
+    }
+
+    // uses loaded owner data only, remembering its options for when it is evicted
+    private OwnerOptions getOwnerOptions(GPClaim claim) {
+        final UUID ownerUniqueId = claim.getOwnerUniqueId();
+        if (ownerUniqueId == null) {
+            return null;
+        }
+
+        final Map<UUID, OwnerOptions> worldOptions = this.ownerOptions.computeIfAbsent(claim.getWorldUniqueId(), k -> new HashMap<>());
+        final GPPlayerData playerData = GriefPreventionPlugin.instance.dataStore.getPlayerData(claim.getWorld().getProperties(), ownerUniqueId);
+        if (playerData == null || !playerData.dataInitialized) {
+            return worldOptions.get(ownerUniqueId);
+        }
+
+        final OwnerOptions options = new OwnerOptions(playerData.getChestClaimExpiration(), playerData.optionClaimExpirationBasic);
+        worldOptions.put(ownerUniqueId, options);
+        return options;
+    }
+
+    /**
+     * Gets the earliest instant a claim expires at, based on its last active
+     * date and the owner's chest and basic claim expiration options.
+     */
+    private static Instant getExpiration(GPClaim claim, OwnerOptions options) {
+        final GriefPreventionConfig<?> activeConfig = GriefPreventionPlugin.getActiveConfig(claim.getWorld().getProperties());
+        final Instant claimLastActive = claim.getInternalClaimData().getDateLastActive();
+        Instant expiration = null;
+        final int claimExpirationChest = options.chestClaimExpiration;
+        if (claim.getArea() <= getDefaultClaimArea(activeConfig) && claimExpirationChest > 0) {
+            expiration = claimLastActive.plus(Duration.ofDays(claimExpirationChest));
+        }
+        if (options.basicClaimExpiration > 0) {
+            final Instant basicExpiration = claimLastActive.plus(Duration.ofDays(options.basicClaimExpiration));
+            if (expiration == null || basicExpiration.isBefore(expiration)) {
+                expiration = basicExpiration;
+            }
+        }
+        return expiration;
+    }
+
+    public int size() {
+        return this.queue.size();
+    }
+
+    public int getPendingCount() {
+        return this.pendingClaims.size();
+    }
+
+    public long getClaimsExpired() {
+        return this.claimsExpired;
+    }
+
+    private static final class OwnerOptions {
+
+        private final int chestClaimExpiration;
+        private final int basicClaimExpiration;
+
+        OwnerOptions(int chestClaimExpiration, int basicClaimExpiration) {
+            this.chestClaimExpiration = chestClaimExpiration;
+            this.basicClaimExpiration = basicClaimExpiration;
+        }
+    }
+
+    private static final class Entry implements Comparable<Entry> {
+
+        private final GPClaim claim;
+        private final Instant expiration;
+        private final long sequence;
+
+        Entry(GPClaim claim, Instant expiration, long sequence) {
+            this.claim = claim;
+            this.expiration = expiration;
+            this.sequence = sequence;
+        }
+
+        @Override
+        public int compareTo(Entry other) {
+            final int compare = this.expiration.compareTo(other.expiration);
+            return compare != 0 ? compare : Long.compare(this.sequence, other.sequence);
+        }
+    }
+}
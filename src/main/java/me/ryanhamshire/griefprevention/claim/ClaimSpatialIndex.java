@@ -0,0 +1,306 @@
+/*
+ * This file is part of GriefPrevention, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) bloodmc
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package me.ryanhamshire.griefprevention.claim;
+
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import me.ryanhamshire.griefprevention.api.claim.Claim;
+import net.minecraft.util.math.ChunkPos;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.Nullable;
+
+/**
+ * Per-world spatial index over every claim, including children, which
+ * resolves the deepest claim containing a block position with a single
+ * chunk lookup.
+ *
+ * <p>Each chunk bucket holds every claim intersecting that chunk. Claim
+ * depth and bounds are read live from the claim so re-parenting a claim
+ * never leaves the index stale, only bound changes require an update.</p>
+ *
+ * <p>Chunk keys are primitive longs and buckets are plain arrays so neither
+ * lookups nor mutations box chunk hashes or allocate per-chunk sets.</p>
+ */
+public class ClaimSpatialIndex {
+
+    private static final GPClaim[] EMPTY_BUCKET = new GPClaim[0];
+
+    // Chunk hash -> claims intersecting chunk
+    private final Long2ObjectOpenHashMap<GPClaim[]> chunkBuckets = new Long2ObjectOpenHashMap<>(4096);
+    // Claim -> indexed chunk area {minX, minZ, maxX, maxZ}
+    private final Map<GPClaim, int[]> indexedChunks = new IdentityHashMap<>();
+    // Bumped whenever a lookup result may change, see ClaimBoundaryTracker
+    private int modCount;
+
+    public void add(GPClaim claim) {
+        if (claim.isWilderness()) {
+            return;
+        }
+
+        this.remove(claim);
+        this.modCount++;
+        final int[] area = new int[] {
+                claim.lesserBoundaryCorner.getBlockX() >> 4,
+                claim.lesserBoundaryCorner.getBlockZ() >> 4,
+                claim.greaterBoundaryCorner.getBlockX() >> 4,
+                claim.greaterBoundaryCorner.getBlockZ() >> 4
+        };
+        for (int x = area[0]; x <= area[2]; x++) {
+            for (int z = area[1]; z <= area[3]; z++) {
+                final long chunkHash = ChunkPos.asLong(x, z);
+                final GPClaim[] bucket = this.chunkBuckets.get(chunkHash);
+                if (bucket == null) {
+                    this.chunkBuckets.put(chunkHash, new GPClaim[] {claim});
+                    continue;
+                }
+
+                final GPClaim[] newBucket = new GPClaim[bucket.length + 1];
+                System.arraycopy(bucket, 0, newBucket, 0, bucket.length);
+                newBucket[bucket.length] = claim;
+                this.chunkBuckets.put(chunkHash, newBucket);
+            }
+        }
+        this.indexedChunks.put(claim, area);
+    }
+
+    public void remove(GPClaim claim) {
+        final int[] area = this.indexedChunks.remove(claim);
+        if (area == null) {
+            return;
+        }
+
+        this.modCount++;
+
+        for (int x = area[0]; x <= area[2]; x++) {
+            for (int z = area[1]; z <= area[3]; z++) {
+                final long chunkHash = ChunkPos.asLong(x, z);
+                final GPClaim[] bucket = this.chunkBuckets.get(chunkHash);
+                if (bucket == null) {
+                    continue;
+                }
+
+                int index = -1;
+                for (int i = 0; i < bucket.length; i++) {
+                    if (bucket[i] == claim) {
+                        index = i;
+                        break;
+                    }
+                }
+                if (index == -1) {
+                    continue;
+                }
+                if (bucket.length == 1) {
+                    this.chunkBuckets.remove(chunkHash);
+                    continue;
+                }
+
+                final GPClaim[] newBucket = new GPClaim[bucket.length - 1];
+                System.arraycopy(bucket, 0, newBucket, 0, index);
+                System.arraycopy(bucket, index + 1, newBucket, index, bucket.length - index - 1);
+                this.chunkBuckets.put(chunkHash, newBucket);
+            }
+        }
+    }
+
+    // Re-indexes a claim and all of its children after their bounds have changed
+    public void update(GPClaim claim) {
+        this.add(claim);
+        for (int i = 0; i < claim.children.size(); i++) {
+            this.update((GPClaim) claim.children.get(i));
+        }
+    }
+
+    /**
+     * Gets the deepest claim containing the block position.
+     *
+     * <p>A child claim is only returned when its top level claim contains
+     * the position as well, matching the containment rules of
+     * {@link GPClaim#contains(int, int, int, boolean)}.</p>
+     *
+     * @param x The block x
+     * @param y The block y
+     * @param z The block z
+     * @return The deepest claim, or null if no claim contains the position
+     */
+    @Nullable
+    public GPClaim getClaimAt(int x, int y, int z) {
+        final GPClaim[] bucket = this.chunkBuckets.get(ChunkPos.asLong(x >> 4, z >> 4));
+        if (bucket == null) {
+            return null;
+        }
+
+        GPClaim result = null;
+        int resultDepth = -1;
+        for (int i = 0; i < bucket.length; i++) {
+            final GPClaim claim = bucket[i];
+            if (!claim.contains(x, y, z, false)) {
+                continue;
+            }
+
+            int depth = 0;
+            GPClaim root = claim;
+            while (root.parent != null) {
+                root = root.parent;
+                depth++;
+            }
+            if (depth > resultDepth && (root == claim || root.contains(x, y, z, true))) {
+                result = claim;
+                resultDepth = depth;
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Computes a box around a block position in which {@link #getClaimAt}
+     * is guaranteed to return the same claim as at the position itself.
+     *
+     * <p>The box never leaves the chunk of the position. Inside it the
+     * containment of every claim in the chunk bucket, and of their parents,
+     * stays the same. A claim containing the position clamps the box to its
+     * bounds, any other claim is excluded along the axis with the widest
+     * gap.</p>
+     *
+     * @param x The block x
+     * @param y The block y
+     * @param z The block z
+     * @param box The inclusive box {minX, minY, minZ, maxX, maxY, maxZ} to fill
+     */
+    public void getSafeBox(int x, int y, int z, int[] box) {
+        box[0] = x & ~15;
+        box[1] = Integer.MIN_VALUE;
+        box[2] = z & ~15;
+        box[3] = box[0] + 15;
+        box[4] = Integer.MAX_VALUE;
+        box[5] = box[2] + 15;
+        final GPClaim[] bucket = this.chunkBuckets.get(ChunkPos.asLong(x >> 4, z >> 4));
+        if (bucket == null) {
+            return;
+        }
+
+        for (int i = 0; i < bucket.length; i++) {
+            // parents decide whether a child contains a position
+            for (GPClaim claim = bucket[i]; claim != null; claim = claim.parent) {
+                clampBox(claim, x, y, z, box);
+            }
+        }
+    }
+
+    private static void clampBox(GPClaim claim, int x, int y, int z, int[] box) {
+        final int minX = claim.lesserBoundaryCorner.getBlockX();
+        final int minY = claim.lesserBoundaryCorner.getBlockY();
+        final int minZ = claim.lesserBoundaryCorner.getBlockZ();
+        final int maxX = claim.greaterBoundaryCorner.getBlockX();
+        final int maxY = claim.greaterBoundaryCorner.getBlockY();
+        final int maxZ = claim.greaterBoundaryCorner.getBlockZ();
+        final int gapX = getGap(x, minX, maxX);
+        final int gapY = getGap(y, minY, maxY);
+        final int gapZ = getGap(z, minZ, maxZ);
+        if (gapX == 0 && gapY == 0 && gapZ == 0) {
+            // inside, stay within the claim
+            box[0] = Math.max(box[0], minX);
+            box[1] = Math.max(box[1], minY);
+            box[2] = Math.max(box[2], minZ);
+            box[3] = Math.min(box[3], maxX);
+            box[4] = Math.min(box[4], maxY);
+            box[5] = Math.min(box[5], maxZ);
+        } else if (gapX >= gapY && gapX >= gapZ) {
+            // on equal gaps the first axis wins
+            excludeAxis(box, 0, x, minX, maxX);
+        } else if (gapY >= gapZ) {
+            excludeAxis(box, 1, y, minY, maxY);
+        } else {
+            excludeAxis(box, 2, z, minZ, maxZ);
+        }
+    }
+
+    private static int getGap(int pos, int min, int max) {
+        return pos < min ? min - pos : pos > max ? pos - max : 0;
+    }
+
+    private static void excludeAxis(int[] box, int axis, int pos, int min, int max) {
+        if (pos < min) {
+            box[axis + 3] = Math.min(box[axis + 3], min - 1);
+        } else {
+            box[axis] = Math.max(box[axis], max + 1);
+        }
+    }
+
+    public int getModCount() {
+        return this.modCount;
+    }
+
+    // Must be called when claim containment changes without a bounds change
+    public void markChanged() {
+        this.modCount++;
+    }
+
+    /**
+     * Gets all claims, of any depth, intersecting a chunk.
+     *
+     * <p>The returned array is shared with the index and must not be
+     * modified.</p>
+     *
+     * @param chunkX The chunk x
+     * @param chunkZ The chunk z
+     * @return The claims in chunk
+     */
+    public GPClaim[] getClaimsInChunk(int chunkX, int chunkZ) {
+        final GPClaim[] bucket = this.chunkBuckets.get(ChunkPos.asLong(chunkX, chunkZ));
+        return bucket == null ? EMPTY_BUCKET : bucket;
+    }
+
+    // Builds a boxed copy of top level claims per chunk for API consumers
+    public Map<Long, Set<Claim>> createTopLevelChunkMap() {
+        final Map<Long, Set<Claim>> chunkMap = new HashMap<>();
+        for (Long2ObjectMap.Entry<GPClaim[]> entry : this.chunkBuckets.long2ObjectEntrySet()) {
+            Set<Claim> claims = null;
+            for (GPClaim claim : entry.getValue()) {
+                if (claim.parent != null) {
+                    continue;
+                }
+                if (claims == null) {
+                    claims = new HashSet<>();
+                    chunkMap.put(entry.getLongKey(), claims);
+                }
+                claims.add(claim);
+            }
+        }
+        return chunkMap;
+    }
+
+    public void clear() {
+        this.modCount++;
+        this.chunkBuckets.clear();
+        this.indexedChunks.clear();
+    }
+}
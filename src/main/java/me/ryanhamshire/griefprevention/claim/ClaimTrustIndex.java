@@ -0,0 +1,122 @@
+/*
+ * This file is part of GriefPrevention, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) bloodmc
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package me.ryanhamshire.griefprevention.claim;
+
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
+import me.ryanhamshire.griefprevention.api.claim.TrustType;
+import me.ryanhamshire.griefprevention.configuration.IClaimData;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Maps each user trusted in a claim to a bitmask of the trust lists they
+ * appear in, so trust checks are a single hash lookup instead of scanning
+ * every trust list.
+ *
+ * <p>The index is bound to the claim data it was built from. Trust list
+ * changes made through {@link GPClaim} update it per user. Changes build a
+ * new map and publish it, a published map is never modified, so trust
+ * checks may run on any thread.</p>
+ */
+public class ClaimTrustIndex {
+
+    private static final int ACCESSOR = 1;
+    private static final int CONTAINER = 1 << 1;
+    private static final int BUILDER = 1 << 2;
+    private static final int MANAGER = 1 << 3;
+
+    private final IClaimData claimData;
+    private volatile Object2IntOpenHashMap<UUID> userTrusts;
+
+    public ClaimTrustIndex(IClaimData claimData) {
+        this.claimData = claimData;
+        this.rebuild();
+    }
+
+    public boolean isFor(IClaimData claimData) {
+        return this.claimData == claimData;
+    }
+
+    public boolean hasTrust(UUID uuid, TrustType type) {
+        return (this.userTrusts.getInt(uuid) & getRequiredMask(type)) != 0;
+    }
+
+    public synchronized void rebuild() {
+        final Object2IntOpenHashMap<UUID> userTrusts = new Object2IntOpenHashMap<>();
+        addAll(userTrusts, this.claimData.getAccessors(), ACCESSOR);
+        addAll(userTrusts, this.claimData.getContainers(), CONTAINER);
+        addAll(userTrusts, this.claimData.getBuilders(), BUILDER);
+        addAll(userTrusts, this.claimData.getManagers(), MANAGER);
+        this.userTrusts = userTrusts;
+    }
+
+    public synchronized void update(UUID uuid) {
+        int mask = 0;
+        if (this.claimData.getAccessors().contains(uuid)) {
+            mask |= ACCESSOR;
+        }
+        if (this.claimData.getContainers().contains(uuid)) {
+            mask |= CONTAINER;
+        }
+        if (this.claimData.getBuilders().contains(uuid)) {
+            mask |= BUILDER;
+        }
+        if (this.claimData.getManagers().contains(uuid)) {
+            mask |= MANAGER;
+        }
+
+        final Object2IntOpenHashMap<UUID> userTrusts = new Object2IntOpenHashMap<>(this.userTrusts);
+        if (mask == 0) {
+            userTrusts.removeInt(uuid);
+        } else {
+            userTrusts.put(uuid, mask);
+        }
+        this.userTrusts = userTrusts;
+    }
+
+    private static void addAll(Object2IntOpenHashMap<UUID> userTrusts, List<UUID> uuids, int bit) {
+        for (UUID uuid : uuids) {
+            userTrusts.put(uuid, userTrusts.getInt(uuid) | bit);
+        }
+    }
+
+    // Higher trust levels imply the lower ones they include
+    private static int getRequiredMask(TrustType type) {
+        if (type == TrustType.ACCESSOR) {
+            return ACCESSOR | CONTAINER | BUILDER | MANAGER;
+        }
+        if (type == TrustType.CONTAINER) {
+            return CONTAINER | BUILDER | MANAGER;
+        }
+        if (type == TrustType.BUILDER) {
+            return BUILDER | MANAGER;
+        }
+        if (type == TrustType.MANAGER) {
+            return MANAGER;
+        }
+        return 0;
+    }
+}
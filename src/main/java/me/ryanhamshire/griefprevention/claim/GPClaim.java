@@ -31,6 +31,8 @@
 import com.google.common.base.Objects;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import it.unimi.dsi.fastutil.longs.LongSet;
 import me.ryanhamshire.griefprevention.DataStore;
 import me.ryanhamshire.griefprevention.GPPlayerData;
 import me.ryanhamshire.griefprevention.GriefPreventionPlugin;
@@ -125,7 +127,7 @@ public class GPClaim implements Claim {
     public Location<World> greaterBoundaryCorner;
     public World world;
     private ClaimType type = ClaimType.BASIC;
-    private Set<Long> chunkHashes;
+    private LongSet chunkHashes;
     private final int hashCode;
     private final GPClaimManager worldClaimManager;
     private final Claim wildernessClaim;
@@ -142,13 +144,13 @@ public class GPClaim implements Claim {
 
     private ClaimStorageData claimStorage;
     private IClaimData claimData;
+    private volatile ClaimTrustIndex trustIndex;
 
     public GPClaim parent = null;
     public ArrayList<Claim> children = new ArrayList<>();
     public Visualization visualization;
     public List<UUID> playersWatching = new ArrayList<>();
 
-    private GPPlayerData ownerPlayerData;
     private Account economyAccount;
     private static final int MAX_AREA = GriefPreventionPlugin.CLAIM_BLOCK_SYSTEM == ClaimBlockSystem.VOLUME ? 2560000 : 10000;
 
@@ -199,7 +201,6 @@ public GPClaim(World world, Vector3i point1, Vector3i point2, ClaimType type, UU
         this.greaterBoundaryCorner = new Location<World>(world, bigx, bigy, bigz);
         if (ownerUniqueId != null) {
             this.ownerUniqueId = ownerUniqueId;
-            this.ownerPlayerData = GriefPreventionPlugin.instance.dataStore.getOrCreatePlayerData(this.world, this.ownerUniqueId);
         }
         this.type = type;
         this.id = UUID.randomUUID();
@@ -231,7 +232,6 @@ public GPClaim(Location<World> lesserBoundaryCorner, Location<World> greaterBoun
         this.world = lesserBoundaryCorner.getExtent();
         if (ownerUniqueId != null) {
             this.ownerUniqueId = ownerUniqueId;
-            this.ownerPlayerData = GriefPreventionPlugin.instance.dataStore.getOrCreatePlayerData(this.world, this.ownerUniqueId);
         }
         this.type = type;
         this.cuboid = cuboid;
@@ -277,6 +277,7 @@ public ClaimType getType() {
     public void setType(ClaimType type) {
         this.type = type;
         this.claimData.setType(type);
+        this.worldClaimManager.updateClaimIndexes(this);
     }
 
     public Visualization getVisualizer() {
@@ -286,12 +287,19 @@ public Visualization getVisualizer() {
         return this.visualization;
     }
 
+    // not cached, offline player data may be evicted and reloaded
     public GPPlayerData getOwnerPlayerData() {
-        if (this.ownerPlayerData == null && this.ownerUniqueId != null) {
-            this.ownerPlayerData = GriefPreventionPlugin.instance.dataStore.getOrCreatePlayerData(this.world, this.ownerUniqueId);
+        if (this.ownerUniqueId == null) {
+            return null;
         }
 
-        return this.ownerPlayerData;
+        return GriefPreventionPlugin.instance.dataStore.getOrCreatePlayerData(this.world, this.ownerUniqueId);
+    }
+
+    // never loads an offline owner, returns null if their data is not in memory
+    @Nullable
+    public GPPlayerData getLoadedOwnerPlayerData() {
+        return GriefPreventionPlugin.instance.dataStore.getPlayerData(this.world, this.ownerUniqueId);
     }
 
     public UUID getOwnerUniqueId() {
@@ -610,10 +618,10 @@ public Text getOwnerName() {
 
     @Override
     public boolean contains(Location<World> location, boolean excludeChildren) {
-        int x = location.getBlockX();
-        int y = location.getBlockY();
-        int z = location.getBlockZ();
+        return this.contains(location.getBlockX(), location.getBlockY(), location.getBlockZ(), excludeChildren);
+    }
 
+    public boolean contains(int x, int y, int z, boolean excludeChildren) {
         // main check
         boolean inClaim = (
                 y >= this.lesserBoundaryCorner.getBlockY()) &&
@@ -631,7 +639,7 @@ public boolean contains(Location<World> location, boolean excludeChildren) {
         // NOTE: if a player creates children then resizes the parent claim,
         // it's possible that a child can reach outside of its parent's boundaries. so this check is important!
         if (!excludeChildren && this.parent != null && (this.getData() == null || (this.getData() != null && this.getData().doesInheritParent()))) {
-            return this.parent.contains(location, false);
+            return this.parent.contains(x, y, z, false);
         }
 
         return true;
@@ -788,7 +796,12 @@ public boolean canIgnoreHeight() {
         if (this.isCuboid()) {
             return false;
         }
-        if (this.ownerPlayerData != null && (this.ownerPlayerData.getMinClaimLevel() > 0 || this.ownerPlayerData.getMaxClaimLevel() < 255)) {
+        final GPPlayerData ownerPlayerData = this.getLoadedOwnerPlayerData();
+        if (ownerPlayerData == null) {
+            // the owner's claim levels were applied to the bounds when the claim was created or resized
+            return this.lesserBoundaryCorner.getBlockY() <= 0 && this.greaterBoundaryCorner.getBlockY() >= 255;
+        }
+        if (ownerPlayerData.getMinClaimLevel() > 0 || ownerPlayerData.getMaxClaimLevel() < 255) {
             return false;
         }
 
@@ -796,13 +809,13 @@ public boolean canIgnoreHeight() {
     }
 
     @Override
-    public Set<Long> getChunkHashes() {
+    public LongSet getChunkHashes() {
         return this.getChunkHashes(true);
     }
 
-    public Set<Long> getChunkHashes(boolean refresh) {
+    public LongSet getChunkHashes(boolean refresh) {
         if (this.chunkHashes == null || refresh) {
-            this.chunkHashes = new HashSet<Long>();
+            this.chunkHashes = new LongOpenHashSet();
             int smallX = this.lesserBoundaryCorner.getBlockX() >> 4;
             int smallZ = this.lesserBoundaryCorner.getBlockZ() >> 4;
             int largeX = this.greaterBoundaryCorner.getBlockX() >> 4;
@@ -961,9 +974,8 @@ public ClaimResult transferOwner(UUID newOwnerID) {
 
         if (this.isAdminClaim()) {
             // convert to basic
-            this.type = ClaimType.BASIC;
+            this.setType(ClaimType.BASIC);
             this.getVisualizer().setType(VisualizationType.CLAIM);
-            this.claimData.setType(ClaimType.BASIC);
         }
 
         this.ownerUniqueId = event.getNewOwner();
@@ -977,7 +989,6 @@ public ClaimResult transferOwner(UUID newOwnerID) {
             newOwnerData.getInternalClaims().add(this);
         }
 
-        this.ownerPlayerData = newOwnerData;
         this.getClaimStorage().save();
         return new GPClaimResult(this, ClaimResultType.SUCCESS);
     }
@@ -1001,19 +1012,23 @@ public ClaimResult doesClaimOverlap() {
         }
 
         final GPClaimManager claimWorldManager = GriefPreventionPlugin.instance.dataStore.getClaimWorldManager(this.world.getProperties());
-        final Set<Long> chunkHashes = this.getChunkHashes(true);
-
-        // Since there is no parent we need to check all claims stored in chunk hashes
-        for (Long chunkHash : chunkHashes) {
-            Set<Claim> claimsInChunk = claimWorldManager.getInternalChunksToClaimsMap().get(chunkHash);
-            if (claimsInChunk == null || claimsInChunk.size() == 0) {
-                continue;
-            }
-            for (Claim child : claimsInChunk) {
-                final GPClaim gpChild = (GPClaim) child;
-                // First check if newly resized claim is crossing another
-                if (this.isBandingAcross(gpChild) || gpChild.isBandingAcross(this)) {
-                    return new GPClaimResult(child, ClaimResultType.OVERLAPPING_CLAIM);
+        final ClaimSpatialIndex claimIndex = claimWorldManager.getClaimIndex();
+        final int smallChunkX = this.lesserBoundaryCorner.getBlockX() >> 4;
+        final int smallChunkZ = this.lesserBoundaryCorner.getBlockZ() >> 4;
+        final int bigChunkX = this.greaterBoundaryCorner.getBlockX() >> 4;
+        final int bigChunkZ = this.greaterBoundaryCorner.getBlockZ() >> 4;
+
+        // Since there is no parent we need to check all top level claims in our chunks
+        for (int chunkX = smallChunkX; chunkX <= bigChunkX; chunkX++) {
+            for (int chunkZ = smallChunkZ; chunkZ <= bigChunkZ; chunkZ++) {
+                for (GPClaim gpChild : claimIndex.getClaimsInChunk(chunkX, chunkZ)) {
+                    if (gpChild.parent != null) {
+                        continue;
+                    }
+                    // First check if newly resized claim is crossing another
+                    if (this.isBandingAcross(gpChild) || gpChild.isBandingAcross(this)) {
+                        return new GPClaimResult(gpChild, ClaimResultType.OVERLAPPING_CLAIM);
+                    }
                 }
             }
         }
@@ -1109,33 +1124,34 @@ public ClaimResult checkArea(boolean resize) {
         }
 
         final GPClaimManager claimWorldManager = GriefPreventionPlugin.instance.dataStore.getClaimWorldManager(this.world.getProperties());
-        final Set<Long> chunkHashes = this.getChunkHashes(true);
-
-        // Since there is no parent we need to check all claims stored in chunk hashes
-        for (Long chunkHash : chunkHashes) {
-            Set<Claim> claimsInChunk = claimWorldManager.getInternalChunksToClaimsMap().get(chunkHash);
-            if (claimsInChunk == null || claimsInChunk.size() == 0) {
-                continue;
-            }
-            for (Claim chunkClaim : claimsInChunk) {
-                final GPClaim gpChunkClaim = (GPClaim) chunkClaim;
-                if (gpChunkClaim.equals(this)) {
-                    continue;
-                }
-
-                // First check if newly resized claim is crossing another
-                if (this.isBandingAcross(gpChunkClaim) || gpChunkClaim.isBandingAcross(this)) {
-                    return new GPClaimResult(gpChunkClaim, ClaimResultType.OVERLAPPING_CLAIM);
-                }
-                if (gpChunkClaim.isInside(this)) {
-                    if (this.type.equals(gpChunkClaim.type)) {
-                        return new GPClaimResult(gpChunkClaim, ClaimResultType.OVERLAPPING_CLAIM);
+        final ClaimSpatialIndex claimIndex = claimWorldManager.getClaimIndex();
+        final int smallChunkX = this.lesserBoundaryCorner.getBlockX() >> 4;
+        final int smallChunkZ = this.lesserBoundaryCorner.getBlockZ() >> 4;
+        final int bigChunkX = this.greaterBoundaryCorner.getBlockX() >> 4;
+        final int bigChunkZ = this.greaterBoundaryCorner.getBlockZ() >> 4;
+
+        // Since there is no parent we need to check all top level claims in our chunks
+        for (int chunkX = smallChunkX; chunkX <= bigChunkX; chunkX++) {
+            for (int chunkZ = smallChunkZ; chunkZ <= bigChunkZ; chunkZ++) {
+                for (GPClaim gpChunkClaim : claimIndex.getClaimsInChunk(chunkX, chunkZ)) {
+                    if (gpChunkClaim.parent != null || gpChunkClaim.equals(this)) {
+                        continue;
                     }
-                    if (!this.canEnclose(gpChunkClaim)) {
+
+                    // First check if newly resized claim is crossing another
+                    if (this.isBandingAcross(gpChunkClaim) || gpChunkClaim.isBandingAcross(this)) {
                         return new GPClaimResult(gpChunkClaim, ClaimResultType.OVERLAPPING_CLAIM);
                     }
-                    if (!this.isSubdivision()) {
-                        claimsInArea.add(gpChunkClaim);
+                    if (gpChunkClaim.isInside(this)) {
+                        if (this.type.equals(gpChunkClaim.type)) {
+                            return new GPClaimResult(gpChunkClaim, ClaimResultType.OVERLAPPING_CLAIM);
+                        }
+                        if (!this.canEnclose(gpChunkClaim)) {
+                            return new GPClaimResult(gpChunkClaim, ClaimResultType.OVERLAPPING_CLAIM);
+                        }
+                        if (!this.isSubdivision()) {
+                            claimsInArea.add(gpChunkClaim);
+                        }
                     }
                 }
             }
@@ -1267,7 +1283,7 @@ public ClaimResult resizeInternal(int smallX, int smallY, int smallZ, int bigX,
             final int newCost = BlockUtils.getClaimBlockCost(this.world, newLesserCorner.getBlockPosition(), newGreaterCorner.getBlockPosition(), this.cuboid);
             final int currentCost = BlockUtils.getClaimBlockCost(this.world, currentLesserCorner.getBlockPosition(), currentGreaterCorner.getBlockPosition(), this.cuboid);
             if (newCost > currentCost) {
-                final int remainingClaimBlocks = this.ownerPlayerData.getRemainingClaimBlocks() - (newCost - currentCost);
+                final int remainingClaimBlocks = this.getOwnerPlayerData().getRemainingClaimBlocks() - (newCost - currentCost);
                 if (remainingClaimBlocks < 0) {
                     if (player != null) {
                         if (GriefPreventionPlugin.CLAIM_BLOCK_SYSTEM == ClaimBlockSystem.VOLUME) {
@@ -1294,10 +1310,6 @@ public ClaimResult resizeInternal(int smallX, int smallY, int smallZ, int bigX,
         this.lesserBoundaryCorner = newLesserCorner;
         this.greaterBoundaryCorner = newGreaterCorner;
 
-        // checkArea refreshes the current chunk hashes so it is important
-        // to make a copy before making the call
-        final Set<Long> currentChunkHashes = new HashSet<>(this.chunkHashes);
-
         final ClaimResult result = this.checkArea(true);
         if (!result.successful()) {
             this.lesserBoundaryCorner = currentLesserCorner;
@@ -1325,27 +1337,10 @@ public ClaimResult resizeInternal(int smallX, int smallY, int smallZ, int bigX,
         this.greaterBoundaryCorner = newGreaterCorner;
         GPClaimManager claimWorldManager = GriefPreventionPlugin.instance.dataStore.getClaimWorldManager(this.world.getProperties());
 
-        // resize validated, remove invalid chunkHashes
-        if (this.parent == null) {
-            for (Long chunkHash : currentChunkHashes) {
-                Set<Claim> claimsInChunk = claimWorldManager.getInternalChunksToClaimsMap().get(chunkHash);
-                if (claimsInChunk != null && claimsInChunk.size() > 0) {
-                    claimsInChunk.remove(this);
-                }
-            }
-
-            final Set<Long> newChunkHashes = this.getChunkHashes(true);
-            // add new chunk hashes
-            for (Long chunkHash : newChunkHashes) {
-                Set<Claim> claimsInChunk = claimWorldManager.getInternalChunksToClaimsMap().get(chunkHash);
-                if (claimsInChunk == null) {
-                    claimsInChunk = new HashSet<>();
-                    claimWorldManager.getInternalChunksToClaimsMap().put(chunkHash, claimsInChunk);
-                }
-
-                claimsInChunk.add(this);
-            }
-        }
+        // resize validated, re-index claim chunks
+        claimWorldManager.getClaimIndex().update(this);
+        claimWorldManager.updateClaimBlockCost(this);
+        DataStore.CLAIM_EXPIRATION_QUEUE.markChanged(this);
 
         this.claimData.setLesserBoundaryCorner(BlockUtils.positionToString(this.lesserBoundaryCorner));
         this.claimData.setGreaterBoundaryCorner(BlockUtils.positionToString(this.greaterBoundaryCorner));
@@ -1417,10 +1412,6 @@ public ClaimResult resizeCuboid(int smallX, int smallY, int smallZ, int bigX, in
         this.lesserBoundaryCorner = newLesserCorner;
         this.greaterBoundaryCorner = newGreaterCorner;
 
-        // checkArea refreshes the current chunk hashes so it is important
-        // to make a copy before making the call
-        final Set<Long> currentChunkHashes = new HashSet<>(this.chunkHashes);
-
         final ClaimResult result = this.checkArea(true);
         if (!result.successful()) {
             this.lesserBoundaryCorner = currentLesserCorner;
@@ -1446,28 +1437,11 @@ public ClaimResult resizeCuboid(int smallX, int smallY, int smallZ, int bigX, in
 
         this.lesserBoundaryCorner = newLesserCorner;
         this.greaterBoundaryCorner = newGreaterCorner;
-        // resize validated, remove invalid chunkHashes
+        // resize validated, re-index claim chunks
         final GPClaimManager claimWorldManager = GriefPreventionPlugin.instance.dataStore.getClaimWorldManager(this.world.getProperties());
-        if (this.parent == null) {
-            for (Long chunkHash : currentChunkHashes) {
-                Set<Claim> claimsInChunk = claimWorldManager.getInternalChunksToClaimsMap().get(chunkHash);
-                if (claimsInChunk != null && claimsInChunk.size() > 0) {
-                    claimsInChunk.remove(this);
-                }
-            }
-
-            final Set<Long> newChunkHashes = this.getChunkHashes(true);
-            // add new chunk hashes
-            for (Long chunkHash : newChunkHashes) {
-                Set<Claim> claimsInChunk = claimWorldManager.getInternalChunksToClaimsMap().get(chunkHash);
-                if (claimsInChunk == null) {
-                    claimsInChunk = new HashSet<>();
-                    claimWorldManager.getInternalChunksToClaimsMap().put(chunkHash, claimsInChunk);
-                }
-
-                claimsInChunk.add(this);
-            }
-        }
+        claimWorldManager.getClaimIndex().update(this);
+        claimWorldManager.updateClaimBlockCost(this);
+        DataStore.CLAIM_EXPIRATION_QUEUE.markChanged(this);
 
         this.claimData.setLesserBoundaryCorner(BlockUtils.positionToString(this.lesserBoundaryCorner));
         this.claimData.setGreaterBoundaryCorner(BlockUtils.positionToString(this.greaterBoundaryCorner));
@@ -1661,10 +1635,13 @@ private ClaimResult checkSizeLimits(Player player, GPPlayerData playerData, Vect
 
     public void unload() {
         // clear any references
-        this.world = null;
-        if (this.ownerPlayerData != null) {
-            this.ownerPlayerData.getInternalClaims().remove(this);
+        if (this.ownerUniqueId != null) {
+            final OwnerClaimList ownerClaims = this.worldClaimManager.getOwnerClaimsMap().get(this.ownerUniqueId);
+            if (ownerClaims != null) {
+                ownerClaims.remove(this);
+            }
         }
+        this.world = null;
     }
 
     @Override
@@ -1862,8 +1839,7 @@ public ClaimResult changeType(ClaimType type, Optional<UUID> ownerUniqueId) {
         final String fileName = this.getClaimStorage().filePath.getFileName().toString();
         final Path newPath = this.getClaimStorage().folderPath.getParent().resolve(type.name().toLowerCase()).resolve(fileName);
         try {
-            Files.createDirectories(newPath.getParent());
-            Files.move(this.getClaimStorage().filePath, newPath);
+            GriefPreventionPlugin.instance.dataStore.moveClaimFile(this.getClaimStorage().filePath, newPath);
             this.setClaimStorage(new ClaimStorageData(newPath, this.getWorldUniqueId(), (ClaimDataConfig) this.getInternalClaimData()));
             this.getClaimStorage().save();
         } catch (IOException e) {
@@ -1886,10 +1862,13 @@ public ClaimResult changeType(ClaimType type, Optional<UUID> ownerUniqueId) {
             }
         }
 
-        if (!this.isAdminClaim() && this.ownerPlayerData != null) {
+        if (!this.isAdminClaim() && this.ownerUniqueId != null) {
             final Player player = Sponge.getServer().getPlayer(this.ownerUniqueId).orElse(null);
             if (player != null) {
-                this.ownerPlayerData.revertActiveVisual(player);
+                final GPPlayerData ownerData = this.getLoadedOwnerPlayerData();
+                if (ownerData != null) {
+                    ownerData.revertActiveVisual(player);
+                }
             }
         }
 
@@ -2002,7 +1981,7 @@ public List<UUID> getUserTrusts() {
 
     @Override
     public List<UUID> getUserTrusts(TrustType type) {
-        return ImmutableList.copyOf(this.getUserTrustList(type));
+        return ImmutableList.copyOf(this.getMutableUserTrustList(type));
     }
 
     @Override
@@ -2021,63 +2000,45 @@ public boolean isUserTrusted(User user, TrustType type, Set<Context> contexts) {
             return false;
         }
 
-        final GPPlayerData playerData = GriefPreventionPlugin.instance.dataStore.getOrCreatePlayerData(world, user.getUniqueId());
-        if (!playerData.executingClaimDebug && !playerData.debugClaimPermissions) {
-            if (user.getUniqueId().equals(this.getOwnerUniqueId())) {
-                return true;
-            }
-            if (this.isAdminClaim() && playerData.canManageAdminClaims) {
-                return true;
-            }
-            if (this.isWilderness() && playerData.canManageWilderness) {
-                return true;
-            }
-            if (playerData.canIgnoreClaim(this)) {
-                return true;
+        // player data is never loaded off the main thread
+        final GPPlayerData playerData = SpongeImpl.getServer().isCallingFromMinecraftThread()
+                ? GriefPreventionPlugin.instance.dataStore.getOrCreatePlayerData(world, user.getUniqueId())
+                : GriefPreventionPlugin.instance.dataStore.getPlayerData(world, user.getUniqueId());
+        final boolean checkOwner = playerData == null || (!playerData.executingClaimDebug && !playerData.debugClaimPermissions);
+        // Walk this claim and every parent it inherits from
+        GPClaim claim = this;
+        while (true) {
+            if (checkOwner) {
+                if (user.getUniqueId().equals(claim.getOwnerUniqueId())) {
+                    return true;
+                }
+                if (playerData != null) {
+                    if (claim.isAdminClaim() && playerData.canManageAdminClaims) {
+                        return true;
+                    }
+                    if (claim.isWilderness() && playerData.canManageWilderness) {
+                        return true;
+                    }
+                    if (playerData.canIgnoreClaim(claim)) {
+                        return true;
+                    }
+                }
             }
-        }
 
-        if (type == null) {
-            return true;
-        }
-        if (this.isPublicTrusted(type)) {
-            return true;
-        }
-
-        if (type == TrustType.ACCESSOR) {
-            if (this.claimData.getAccessors().contains(user.getUniqueId())) {
-                return true;
-            }
-            if (this.claimData.getBuilders().contains(user.getUniqueId())) {
-                return true;
-            }
-            if (this.claimData.getContainers().contains(user.getUniqueId())) {
-                return true;
-            }
-            if (this.claimData.getManagers().contains(user.getUniqueId())) {
-                return true;
-            }
-        } else if (type == TrustType.BUILDER) {
-            if (this.claimData.getBuilders().contains(user.getUniqueId())) {
-                return true;
-            }
-            if (this.claimData.getManagers().contains(user.getUniqueId())) {
+            if (type == null) {
                 return true;
             }
-        } else if (type == TrustType.CONTAINER) {
-            if (this.claimData.getContainers().contains(user.getUniqueId())) {
-                return true;
-            }
-            if (this.claimData.getBuilders().contains(user.getUniqueId())) {
-                return true;
-            }
-            if (this.claimData.getManagers().contains(user.getUniqueId())) {
+
+            final ClaimTrustIndex trustIndex = claim.getTrustIndex();
+            if (trustIndex.hasTrust(GriefPreventionPlugin.PUBLIC_UUID, type) || trustIndex.hasTrust(user.getUniqueId(), type)) {
                 return true;
             }
-        } else if (type == TrustType.MANAGER) {
-            if (this.claimData.getManagers().contains(user.getUniqueId())) {
-                return true;
+
+            // Only check parent if this claim inherits
+            if (claim.parent == null || !claim.getData().doesInheritParent()) {
+                break;
             }
+            claim = claim.parent;
         }
 
         if (contexts == null) {
@@ -2085,56 +2046,16 @@ public boolean isUserTrusted(User user, TrustType type, Set<Context> contexts) {
             contexts.add(this.getContext());
         }
 
-        if (user.hasPermission(contexts, GPPermissions.getTrustPermission(type))) {
-            return true;
-        }
-
-        // Only check parent if this claim inherits
-        if (this.parent != null && this.getData().doesInheritParent()) {
-            return this.parent.isUserTrusted(user, type, contexts);
-        }
-
-        return false;
+        return user.hasPermission(contexts, GPPermissions.getTrustPermission(type));
     }
 
-    private boolean isPublicTrusted(TrustType type) {
-        if (type == TrustType.ACCESSOR) {
-            if (this.claimData.getAccessors().contains(GriefPreventionPlugin.PUBLIC_UUID)) {
-                return true;
-            }
-            if (this.claimData.getBuilders().contains(GriefPreventionPlugin.PUBLIC_UUID)) {
-                return true;
-            }
-            if (this.claimData.getContainers().contains(GriefPreventionPlugin.PUBLIC_UUID)) {
-                return true;
-            }
-            if (this.claimData.getManagers().contains(GriefPreventionPlugin.PUBLIC_UUID)) {
-                return true;
-            }
-        } else if (type == TrustType.BUILDER) {
-            if (this.claimData.getBuilders().contains(GriefPreventionPlugin.PUBLIC_UUID)) {
-                return true;
-            }
-            if (this.claimData.getManagers().contains(GriefPreventionPlugin.PUBLIC_UUID)) {
-                return true;
-            }
-        } else if (type == TrustType.CONTAINER) {
-            if (this.claimData.getContainers().contains(GriefPreventionPlugin.PUBLIC_UUID)) {
-                return true;
-            }
-            if (this.claimData.getBuilders().contains(GriefPreventionPlugin.PUBLIC_UUID)) {
-                return true;
-            }
-            if (this.claimData.getManagers().contains(GriefPreventionPlugin.PUBLIC_UUID)) {
-                return true;
-            }
-        } else if (type == TrustType.MANAGER) {
-            if (this.claimData.getManagers().contains(GriefPreventionPlugin.PUBLIC_UUID)) {
-                return true;
-            }
+    public ClaimTrustIndex getTrustIndex() {
+        ClaimTrustIndex trustIndex = this.trustIndex;
+        if (trustIndex == null || !trustIndex.isFor(this.claimData)) {
+            trustIndex = new ClaimTrustIndex(this.claimData);
+            this.trustIndex = trustIndex;
         }
-
-        return false;
+        return trustIndex;
     }
 
     @Override
@@ -2162,11 +2083,13 @@ public ClaimResult addUserTrust(UUID uuid, TrustType type) {
             return new GPClaimResult(ClaimResultType.CLAIM_EVENT_CANCELLED, event.getMessage().orElse(null));
         }
 
-        List<UUID> userList = this.getUserTrustList(type);
+        List<UUID> userList = this.getMutableUserTrustList(type);
         if (!userList.contains(uuid)) {
             userList.add(uuid);
+            this.getTrustIndex().update(uuid);
         }
 
+        GPPermissionHandler.invalidatePermissionCache();
         this.claimData.setRequiresSave(true);
         this.claimData.save();
         return new GPClaimResult(this, ClaimResultType.SUCCESS);
@@ -2181,12 +2104,14 @@ public ClaimResult addUserTrusts(List<UUID> uuids, TrustType type) {
         }
 
         for (UUID uuid : uuids) {
-            List<UUID> userList = this.getUserTrustList(type);
+            List<UUID> userList = this.getMutableUserTrustList(type);
             if (!userList.contains(uuid)) {
                 userList.add(uuid);
+                this.getTrustIndex().update(uuid);
             }
         }
 
+        GPPermissionHandler.invalidatePermissionCache();
         this.claimData.setRequiresSave(true);
         this.claimData.save();
         return new GPClaimResult(this, ClaimResultType.SUCCESS);
@@ -2202,12 +2127,15 @@ public ClaimResult removeUserTrust(UUID uuid, TrustType type) {
 
         if (type == TrustType.NONE) {
             final ClaimResult result = this.removeAllTrustsFromUser(uuid);
+            GPPermissionHandler.invalidatePermissionCache();
             this.claimData.setRequiresSave(true);
             this.claimData.save();
             return result;
         }
 
-        this.getUserTrustList(type).remove(uuid);
+        this.getMutableUserTrustList(type).remove(uuid);
+        this.getTrustIndex().update(uuid);
+        GPPermissionHandler.invalidatePermissionCache();
         this.claimData.setRequiresSave(true);
         this.claimData.save();
         return new GPClaimResult(this, ClaimResultType.SUCCESS);
@@ -2226,18 +2154,21 @@ public ClaimResult removeUserTrusts(List<UUID> uuids, TrustType type) {
                 this.removeAllTrustsFromUser(uuid);
             }
 
+            GPPermissionHandler.invalidatePermissionCache();
             this.claimData.setRequiresSave(true);
             this.claimData.save();
             return new GPClaimResult(this, ClaimResultType.SUCCESS);
         }
 
-        List<UUID> userList = this.getUserTrustList(type);
+        List<UUID> userList = this.getMutableUserTrustList(type);
         for (UUID uuid : uuids) {
             if (userList.contains(uuid)) {
                 userList.remove(uuid);
+                this.getTrustIndex().update(uuid);
             }
         }
 
+        GPPermissionHandler.invalidatePermissionCache();
         this.claimData.setRequiresSave(true);
         this.claimData.save();
         return new GPClaimResult(this, ClaimResultType.SUCCESS);
@@ -2256,6 +2187,7 @@ public ClaimResult addGroupTrust(String group, TrustType type) {
             groupList.add(group);
         }
 
+        GPPermissionHandler.invalidatePermissionCache();
         this.claimData.setRequiresSave(true);
         this.claimData.save();
         return new GPClaimResult(this, ClaimResultType.SUCCESS);
@@ -2276,6 +2208,7 @@ public ClaimResult addGroupTrusts(List<String> groups, TrustType type) {
             }
         }
 
+        GPPermissionHandler.invalidatePermissionCache();
         this.claimData.setRequiresSave(true);
         this.claimData.save();
         return new GPClaimResult(this, ClaimResultType.SUCCESS);
@@ -2291,12 +2224,14 @@ public ClaimResult removeGroupTrust(String group, TrustType type) {
 
         if (type == TrustType.NONE) {
             final ClaimResult result = this.removeAllTrustsFromGroup(group);
+            GPPermissionHandler.invalidatePermissionCache();
             this.claimData.setRequiresSave(true);
             this.claimData.save();
             return result;
         }
 
         this.getGroupTrustList(type).remove(group);
+        GPPermissionHandler.invalidatePermissionCache();
         this.claimData.setRequiresSave(true);
         this.claimData.save();
         return new GPClaimResult(this, ClaimResultType.SUCCESS);
@@ -2315,6 +2250,7 @@ public ClaimResult removeGroupTrusts(List<String> groups, TrustType type) {
                 this.removeAllTrustsFromGroup(group);
             }
 
+            GPPermissionHandler.invalidatePermissionCache();
             this.claimData.setRequiresSave(true);
             this.claimData.save();
             return new GPClaimResult(this, ClaimResultType.SUCCESS);
@@ -2327,6 +2263,7 @@ public ClaimResult removeGroupTrusts(List<String> groups, TrustType type) {
             }
         }
 
+        GPPermissionHandler.invalidatePermissionCache();
         this.claimData.setRequiresSave(true);
         this.claimData.save();
         return new GPClaimResult(this, ClaimResultType.SUCCESS);
@@ -2349,13 +2286,15 @@ public ClaimResult removeAllTrusts() {
         }
 
         for (TrustType type : TrustType.values()) {
-            this.getUserTrustList(type).clear();
+            this.getMutableUserTrustList(type).clear();
         }
+        this.getTrustIndex().rebuild();
 
         for (TrustType type : TrustType.values()) {
             this.getGroupTrustList(type).clear();
         }
 
+        GPPermissionHandler.invalidatePermissionCache();
         this.claimData.setRequiresSave(true);
         this.claimData.save();
         return new GPClaimResult(this, ClaimResultType.SUCCESS);
@@ -2371,9 +2310,11 @@ public ClaimResult removeAllUserTrusts() {
         }
 
         for (TrustType type : TrustType.values()) {
-            this.getUserTrustList(type).clear();
+            this.getMutableUserTrustList(type).clear();
         }
+        this.getTrustIndex().rebuild();
 
+        GPPermissionHandler.invalidatePermissionCache();
         this.claimData.setRequiresSave(true);
         this.claimData.save();
         return new GPClaimResult(this, ClaimResultType.SUCCESS);
@@ -2392,6 +2333,7 @@ public ClaimResult removeAllGroupTrusts() {
             this.getGroupTrustList(type).clear();
         }
 
+        GPPermissionHandler.invalidatePermissionCache();
         this.claimData.setRequiresSave(true);
         this.claimData.save();
         return new GPClaimResult(this, ClaimResultType.SUCCESS);
@@ -2399,8 +2341,9 @@ public ClaimResult removeAllGroupTrusts() {
 
     public ClaimResult removeAllTrustsFromUser(UUID userUniqueId) {
         for (TrustType type : TrustType.values()) {
-            this.getUserTrustList(type).remove(userUniqueId);
+            this.getMutableUserTrustList(type).remove(userUniqueId);
         }
+        this.getTrustIndex().update(userUniqueId);
 
         return new GPClaimResult(this, ClaimResultType.SUCCESS);
     }
@@ -2413,7 +2356,31 @@ public ClaimResult removeAllTrustsFromGroup(String group) {
         return new GPClaimResult(this, ClaimResultType.SUCCESS);
     }
 
+    /**
+     * Adds a user trust without posting an event, for callers that post
+     * their own.
+     *
+     * @param uuid The user
+     * @param type The trust type
+     * @return Whether the user was not already trusted
+     */
+    public boolean addUserTrustInternal(UUID uuid, TrustType type) {
+        final List<UUID> userList = this.getMutableUserTrustList(type);
+        if (type == TrustType.NONE || userList.contains(uuid)) {
+            return false;
+        }
+
+        userList.add(uuid);
+        this.getTrustIndex().update(uuid);
+        return true;
+    }
+
+    // Trust lists are read only outside of this class so the trust index stays in sync
     public List<UUID> getUserTrustList(TrustType type) {
+        return Collections.unmodifiableList(this.getMutableUserTrustList(type));
+    }
+
+    private List<UUID> getMutableUserTrustList(TrustType type) {
         if (type == TrustType.NONE) {
             return new ArrayList<>();
         }
@@ -2867,8 +2834,7 @@ public boolean migrateClaims(List<Claim> claims) {
             }
 
             try {
-                Files.createDirectories(newPath.getParent());
-                Files.move(childClaim.getClaimStorage().filePath, newPath);
+                GriefPreventionPlugin.instance.dataStore.moveClaimFile(childClaim.getClaimStorage().filePath, newPath);
                 childClaim.setClaimStorage(new ClaimStorageData(newPath, this.getWorldUniqueId(), (ClaimDataConfig) childClaim.getInternalClaimData()));
                 childClaim.getClaimStorage().save();
             } catch (IOException e) {
@@ -2882,6 +2848,7 @@ public boolean migrateClaims(List<Claim> claims) {
             } else {
                 claimWorldManager.updateChunkHashes(childClaim);
             }
+            claimWorldManager.updateClaimBlockCost(childClaim);
             // migrate admin children
             if (!childClaim.children.isEmpty()) {
                 childClaim.migrateClaims(new ArrayList<>(childClaim.children));
@@ -2917,6 +2884,7 @@ public CompletableFuture<FlagResult> clearPermissions(Subject subject) {
         contexts.add(this.getContext());
         contexts.add(this.world.getContext());
         subject.getSubjectData().clearPermissions(contexts);
+        GPPermissionHandler.invalidatePermissionCache();
         result.complete(new GPFlagResult(FlagResultType.SUCCESS));
         return result;
     }
@@ -2940,6 +2908,7 @@ public CompletableFuture<FlagResult> clearPermissions(Subject subject, Context c
 
         contexts.add(this.world.getContext());
         subject.getSubjectData().clearPermissions(contexts);
+        GPPermissionHandler.invalidatePermissionCache();
         result.complete(new GPFlagResult(FlagResultType.SUCCESS));
         return result;
     }
@@ -28,7 +28,6 @@
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Maps;
-import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
 import me.ryanhamshire.griefprevention.DataStore;
 import me.ryanhamshire.griefprevention.GPPlayerData;
 import me.ryanhamshire.griefprevention.GPTimings;
@@ -44,7 +43,7 @@
 import me.ryanhamshire.griefprevention.configuration.GriefPreventionConfig;
 import me.ryanhamshire.griefprevention.configuration.PlayerStorageData;
 import me.ryanhamshire.griefprevention.event.GPDeleteClaimEvent;
-import net.minecraft.util.math.ChunkPos;
+import me.ryanhamshire.griefprevention.permission.GPPermissionHandler;
 import org.spongepowered.api.Sponge;
 import org.spongepowered.api.entity.living.player.Player;
 import org.spongepowered.api.event.CauseStackManager;
@@ -57,15 +56,16 @@
 import org.spongepowered.api.world.storage.WorldProperties;
 
 import java.io.IOException;
-import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
-import java.util.HashSet;
+import java.util.EnumMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 
 import javax.annotation.Nullable;
 
@@ -75,14 +75,20 @@ public class GPClaimManager implements ClaimManager {
     private WorldProperties worldProperties;
     private GriefPreventionConfig<?> activeConfig;
 
-    // Player UUID -> player data
-    private Map<UUID, GPPlayerData> playerDataList = Maps.newHashMap();
+    // Player UUID -> player data, loaded on demand and evicted once offline
+    private Map<UUID, GPPlayerData> playerDataList = new ConcurrentHashMap<>();
+    // Owner UUID -> owned claims, shared with the owner's player data while loaded
+    private Map<UUID, OwnerClaimList> ownerClaims = Maps.newHashMap();
     // World claim list
     private List<Claim> worldClaims = new ArrayList<>();
     // Claim UUID -> Claim
     private Map<UUID, Claim> claimUniqueIdMap = Maps.newHashMap();
-    // String -> Claim
-    private Map<Long, Set<Claim>> chunksToClaimsMap = new Long2ObjectOpenHashMap<>(4096);
+    // Claim type -> claims of all depths
+    private final Map<ClaimType, Set<Claim>> claimTypeIndex = new EnumMap<>(ClaimType.class);
+    // Claims of all depths listed for sale
+    private final Set<Claim> claimsForSale = new LinkedHashSet<>();
+    // Chunk -> claims of all depths
+    private final ClaimSpatialIndex claimIndex = new ClaimSpatialIndex();
     private GPClaim theWildernessClaim;
 
     public GPClaimManager() {
@@ -98,71 +104,66 @@ public GPClaimManager(WorldProperties worldProperties) {
     public GPPlayerData getOrCreatePlayerData(UUID playerUniqueId) {
         GPPlayerData playerData = this.getPlayerDataMap().get(playerUniqueId);
         if (playerData == null) {
-            return createPlayerData(playerUniqueId);
-        } else {
-            return playerData;
+            playerData = createPlayerData(playerUniqueId);
         }
+        playerData.lastAccessed = System.currentTimeMillis();
+        return playerData;
     }
 
-    private GPPlayerData createPlayerData(UUID playerUniqueId) {
-        Path playerFilePath = null;
+    public Path getPlayerDataPath(UUID playerUniqueId) {
         if (DataStore.USE_GLOBAL_PLAYER_STORAGE) {
-            playerFilePath = DataStore.globalPlayerDataPath.resolve(playerUniqueId.toString());
-        } else {
-            playerFilePath = DataStore.worldConfigMap.get(this.worldProperties.getUniqueId()).getPath().getParent().resolve("PlayerData").resolve(playerUniqueId.toString());
+            return DataStore.globalPlayerDataPath.resolve(playerUniqueId.toString());
         }
+        return DataStore.worldConfigMap.get(this.worldProperties.getUniqueId()).getPath().getParent().resolve("PlayerData").resolve(playerUniqueId.toString());
+    }
 
-        PlayerStorageData playerStorage = new PlayerStorageData(playerFilePath);
-        List<Claim> claimList = this.createPlayerClaimList(playerUniqueId);
-        GPPlayerData playerData = new GPPlayerData(this.worldProperties, playerUniqueId, playerStorage, this.activeConfig, claimList);
+    private GPPlayerData createPlayerData(UUID playerUniqueId) {
+        final PlayerStorageData playerStorage = new PlayerStorageData(this.getPlayerDataPath(playerUniqueId));
+        GPPlayerData playerData = new GPPlayerData(this.worldProperties, playerUniqueId, playerStorage, this.activeConfig,
+                this.getInternalPlayerClaims(playerUniqueId));
         this.getPlayerDataMap().put(playerUniqueId, playerData);
         return playerData;
     }
 
-    private List<Claim> createPlayerClaimList(UUID playerUniqueId) {
-        List<Claim> claimList = new ArrayList<>();
-        if (DataStore.USE_GLOBAL_PLAYER_STORAGE) {
-            for (World world : Sponge.getServer().getWorlds()) {
-                GPClaimManager claimmanager = DATASTORE.getClaimWorldManager(world.getProperties());
-                for (Claim claim : claimmanager.worldClaims) {
-                    GPClaim gpClaim = (GPClaim) claim;
-                    if (gpClaim.isAdminClaim()) {
-                        continue;
-                    }
-                    if (gpClaim.parent != null) {
-                       if (gpClaim.parent.getOwnerUniqueId().equals(playerUniqueId)) {
-                           claimList.add(claim);
-                       }
-                    } else {
-                        if (gpClaim.getOwnerUniqueId().equals(playerUniqueId)) {
-                            claimList.add(claim);
-                        }
-                    }
-                }
-            }
-        } else {
-            for (Claim claim : this.worldClaims) {
-                GPClaim gpClaim = (GPClaim) claim;
-                if (gpClaim.isAdminClaim()) {
-                    continue;
-                }
-                if (gpClaim.parent != null) {
-                   if (gpClaim.parent.getOwnerUniqueId().equals(playerUniqueId)) {
-                       claimList.add(claim);
-                   }
-                } else {
-                    if (gpClaim.getOwnerUniqueId().equals(playerUniqueId)) {
-                        claimList.add(claim);
-                    }
-                }
-            }
+    public void removePlayer(UUID playerUniqueId) {
+        this.getPlayerDataMap().remove(playerUniqueId);
+        final OwnerClaimList claims = this.getOwnerClaimsMap().get(playerUniqueId);
+        if (claims != null && claims.isEmpty()) {
+            this.getOwnerClaimsMap().remove(playerUniqueId);
         }
-
-        return claimList;
     }
 
-    public void removePlayer(UUID playerUniqueId) {
-        this.getPlayerDataMap().remove(playerUniqueId);
+    /**
+     * Drops player data of offline players that has not been accessed within
+     * the expiration, then the least recently accessed until at most
+     * maxCached offline players remain. Data is saved before it is dropped.
+     *
+     * @param expirationMillis Time since last access after which data is dropped
+     * @param maxCached The maximum number of offline players to keep
+     * @return The number of players dropped
+     */
+    public int evictPlayerData(long expirationMillis, int maxCached) {
+        final long now = System.currentTimeMillis();
+        final List<GPPlayerData> offline = new ArrayList<>();
+        for (GPPlayerData playerData : this.getPlayerDataMap().values()) {
+            if (!Sponge.getServer().getPlayer(playerData.playerID).isPresent()) {
+                offline.add(playerData);
+            }
+        }
+        offline.sort((a, b) -> Long.compare(a.lastAccessed, b.lastAccessed));
+
+        int evicted = 0;
+        for (int i = 0; i < offline.size(); i++) {
+            final GPPlayerData playerData = offline.get(i);
+            if (offline.size() - i <= maxCached && now - playerData.lastAccessed < expirationMillis) {
+                break;
+            }
+            playerData.saveAllData();
+            playerData.onDisconnect();
+            this.removePlayer(playerData.playerID);
+            evicted++;
+        }
+        return evicted;
     }
 
     public ClaimResult addClaim(Claim claim) {
@@ -208,14 +209,14 @@ public void addClaim(Claim claimToAdd, boolean writeToStorage) {
             this.theWildernessClaim = claim;
             return;
         }
+        this.updateClaimIndexes(claim);
 
         if (claim.parent != null) {
             claim.parent.children.add(claim);
             this.worldClaims.remove(claim);
-            this.deleteChunkHashes((GPClaim) claim);
+            this.claimIndex.add(claim);
             if (!claim.isAdminClaim() && claim.isInTown() && !claim.getTownClaim().getOwnerUniqueId().equals(claim.getOwnerUniqueId())) {
-                final GPPlayerData playerData = this.getPlayerDataMap().get(claim.getOwnerUniqueId());
-                List<Claim> playerClaims = playerData.getInternalClaims();
+                List<Claim> playerClaims = this.getInternalPlayerClaims(claim.getOwnerUniqueId());
                 if (!playerClaims.contains(claim)) {
                     playerClaims.add(claim);
                 }
@@ -226,15 +227,13 @@ public void addClaim(Claim claimToAdd, boolean writeToStorage) {
         if (!this.worldClaims.contains(claim)) {
             this.worldClaims.add(claim);
         }
-        final UUID ownerId = claim.getOwnerUniqueId();
-        final GPPlayerData playerData = this.getPlayerDataMap().get(ownerId);
-        if (playerData != null) {
-            List<Claim> playerClaims = playerData.getInternalClaims();
+        DataStore.CLAIM_EXPIRATION_QUEUE.markChanged(claim);
+        // owner player data is loaded on demand and picks up this list
+        if (!claim.isAdminClaim()) {
+            List<Claim> playerClaims = this.getInternalPlayerClaims(claim.getOwnerUniqueId());
             if (!playerClaims.contains(claim)) {
                 playerClaims.add(claim);
             }
-        } else if (!claim.isAdminClaim()) {
-            this.createPlayerData(ownerId);
         }
 
         this.updateChunkHashes(claim);
@@ -242,23 +241,15 @@ public void addClaim(Claim claimToAdd, boolean writeToStorage) {
     }
 
     public void updateChunkHashes(GPClaim claim) {
-        this.deleteChunkHashes(claim);
-        Set<Long> chunkHashes = claim.getChunkHashes(true);
-        for (Long chunkHash : chunkHashes) {
-            Set<Claim> claimsInChunk = this.getInternalChunksToClaimsMap().get(chunkHash);
-            if (claimsInChunk == null) {
-                claimsInChunk = new HashSet<Claim>();
-                this.getInternalChunksToClaimsMap().put(chunkHash, claimsInChunk);
-            }
-
-            claimsInChunk.add(claim);
-        }
+        this.claimIndex.update(claim);
     }
 
     // Used when parent claims becomes children
+    // Claim stays indexed as its parent now determines its depth
     public void removeClaimData(Claim claim) {
         this.worldClaims.remove(claim);
-        this.deleteChunkHashes((GPClaim) claim);
+        this.claimIndex.markChanged();
+        DataStore.CLAIM_EXPIRATION_QUEUE.remove(claim);
     }
 
     @Override
@@ -288,8 +279,7 @@ public void deleteClaimInternal(Claim claim, boolean deleteChildren) {
             String fileName = childClaim.getClaimStorage().filePath.getFileName().toString();
             final Path newPath = gpClaim.getClaimStorage().filePath.getParent().getParent().resolve(childClaim.getType().name().toLowerCase()).resolve(fileName);
             try {
-                Files.createDirectories(newPath.getParent());
-                Files.move(childClaim.getClaimStorage().filePath, newPath);
+                DATASTORE.moveClaimFile(childClaim.getClaimStorage().filePath, newPath);
                 childClaim.setClaimStorage(new ClaimStorageData(newPath, this.getWorldProperties().getUniqueId(), (ClaimDataConfig) childClaim.getInternalClaimData()));
                 if (childClaim.parent == null) {
                     this.addClaim(childClaim, false);
@@ -300,9 +290,12 @@ public void deleteClaimInternal(Claim claim, boolean deleteChildren) {
         }
 
         // player may be offline so check is needed
+        final OwnerClaimList ownerClaims = this.getOwnerClaimsMap().get(claim.getOwnerUniqueId());
+        if (ownerClaims != null) {
+            ownerClaims.remove(claim);
+        }
         GPPlayerData playerData = this.getPlayerDataMap().get(claim.getOwnerUniqueId());
         if (playerData != null) {
-            playerData.getInternalClaims().remove(claim);
             if (playerData.lastClaim != null) {
                 playerData.lastClaim.clear();
             }
@@ -323,7 +316,10 @@ public void deleteClaimInternal(Claim claim, boolean deleteChildren) {
         }
         this.worldClaims.remove(claim);
         this.claimUniqueIdMap.remove(claim.getUniqueId());
-        this.deleteChunkHashes((GPClaim) claim);
+        this.updateClaimIndexes(claim);
+        this.claimIndex.remove(gpClaim);
+        DataStore.CLAIM_EXPIRATION_QUEUE.remove(claim);
+        GPPermissionHandler.invalidatePermissionCache();
         if (gpClaim.parent != null) {
             gpClaim.parent.children.remove(claim);
         }
@@ -347,40 +343,108 @@ public void deleteClaimInternal(Claim claim, boolean deleteChildren) {
         DATASTORE.deleteClaimFromSecondaryStorage((GPClaim) claim);
     }
 
-    private void deleteChunkHashes(GPClaim claim) {
-        Set<Long> chunkHashes = claim.getChunkHashes(false);
-        if (chunkHashes == null) {
-            return;
+    @Nullable
+    public Optional<Claim> getClaimByUUID(UUID claimUniqueId) {
+        return Optional.ofNullable(this.claimUniqueIdMap.get(claimUniqueId));
+    }
+
+    public OwnerClaimList getInternalPlayerClaims(UUID playerUniqueId) {
+        return this.getOwnerClaimsMap().computeIfAbsent(playerUniqueId, k -> new OwnerClaimList());
+    }
+
+    // The owner index spans all worlds when player data is stored globally
+    public List<Claim> getWorldPlayerClaims(UUID playerUniqueId) {
+        final OwnerClaimList claims = this.getOwnerClaimsMap().get(playerUniqueId);
+        if (claims == null) {
+            return ImmutableList.of();
+        }
+        if (!DataStore.USE_GLOBAL_PLAYER_STORAGE) {
+            return ImmutableList.copyOf(claims);
         }
 
-        for (Long chunkHash : chunkHashes) {
-            Set<Claim> claimsInChunk = this.getInternalChunksToClaimsMap().get(chunkHash);
-            if (claimsInChunk != null) {
-                claimsInChunk.remove(claim);
+        final List<Claim> worldClaims = new ArrayList<>();
+        for (Claim claim : claims) {
+            if (claim.getWorld().getUniqueId().equals(this.worldProperties.getUniqueId())) {
+                worldClaims.add(claim);
             }
         }
+        return worldClaims;
     }
 
-    @Nullable
-    public Optional<Claim> getClaimByUUID(UUID claimUniqueId) {
-        return Optional.ofNullable(this.claimUniqueIdMap.get(claimUniqueId));
+    public List<Claim> getClaimsByType(ClaimType type) {
+        final Set<Claim> claims = this.claimTypeIndex.get(type);
+        if (claims == null) {
+            return ImmutableList.of();
+        }
+        return ImmutableList.copyOf(claims);
     }
 
-    public List<Claim> getInternalPlayerClaims(UUID playerUniqueId) {
-        final GPPlayerData playerData = this.getPlayerDataMap().get(playerUniqueId);
-        if (playerData == null) {
-            return new ArrayList<>();
+    public List<Claim> getClaimsForSale() {
+        return ImmutableList.copyOf(this.claimsForSale);
+    }
+
+    /**
+     * Updates the type and for sale indexes of a claim. Must be called after
+     * a registered claim's type or sale state changes.
+     *
+     * @param claim The claim
+     */
+    public void updateClaimIndexes(Claim claim) {
+        for (Set<Claim> claims : this.claimTypeIndex.values()) {
+            claims.remove(claim);
+        }
+        this.claimsForSale.remove(claim);
+        if (claim.isWilderness() || !this.claimUniqueIdMap.containsKey(claim.getUniqueId())) {
+            return;
+        }
+
+        this.claimTypeIndex.computeIfAbsent(claim.getType(), k -> new LinkedHashSet<>()).add(claim);
+        if (claim.getEconomyData().isForSale() && claim.getEconomyData().getSalePrice() > -1) {
+            this.claimsForSale.add(claim);
+        }
+        // a child's cost depends on its parent's type
+        this.updateClaimBlockCost(claim);
+        for (Claim child : ((GPClaim) claim).children) {
+            this.updateClaimBlockCost(child);
+        }
+    }
+
+    /**
+     * Updates the claim block cost tracked for a claim in its owner's
+     * running total. Must be called after a claim's size, parent or
+     * claim block requirement changes.
+     *
+     * @param claim The claim
+     */
+    public void updateClaimBlockCost(Claim claim) {
+        final OwnerClaimList claims = this.getOwnerClaimsMap().get(claim.getOwnerUniqueId());
+        if (claims != null) {
+            claims.updateCost(claim);
         }
-        return playerData.getInternalClaims();
+    }
+
+    /**
+     * Recomputes the claim block totals of every owner and repairs drift.
+     *
+     * @return The number of owners whose running total was wrong
+     */
+    public int verifyClaimBlockTotals() {
+        int drifted = 0;
+        for (OwnerClaimList claims : this.getOwnerClaimsMap().values()) {
+            if (claims.verify()) {
+                drifted++;
+            }
+        }
+        return drifted;
     }
 
     @Nullable
     public List<Claim> getPlayerClaims(UUID playerUniqueId) {
-        final GPPlayerData playerData = this.getPlayerDataMap().get(playerUniqueId);
-        if (playerData == null) {
+        final OwnerClaimList claims = this.getOwnerClaimsMap().get(playerUniqueId);
+        if (claims == null) {
             return ImmutableList.of();
         }
-        return ImmutableList.copyOf(this.getPlayerDataMap().get(playerUniqueId).getInternalClaims());
+        return ImmutableList.copyOf(claims);
     }
 
     public void createWildernessClaim(WorldProperties worldProperties) {
@@ -415,13 +479,20 @@ public Map<UUID, GPPlayerData> getPlayerDataMap() {
         return this.playerDataList;
     }
 
+    public Map<UUID, OwnerClaimList> getOwnerClaimsMap() {
+        if (DataStore.USE_GLOBAL_PLAYER_STORAGE) {
+            return DataStore.GLOBAL_OWNER_CLAIMS;
+        }
+        return this.ownerClaims;
+    }
+
     @Override
     public Map<Long, Set<Claim>> getChunksToClaimsMap() {
-        return ImmutableMap.copyOf(this.chunksToClaimsMap);
+        return ImmutableMap.copyOf(this.claimIndex.createTopLevelChunkMap());
     }
 
-    public Map<Long, Set<Claim>> getInternalChunksToClaimsMap() {
-        return this.chunksToClaimsMap;
+    public ClaimSpatialIndex getClaimIndex() {
+        return this.claimIndex;
     }
 
     public void save() {
@@ -430,6 +501,7 @@ public void save() {
             gpClaim.save();
         }
         this.theWildernessClaim.save();
+        DataStore.CLAIM_SAVE_QUEUE.flush();
 
         for (GPPlayerData playerData : this.getPlayerDataMap().values()) {
             playerData.getStorageData().save();
@@ -437,10 +509,14 @@ public void save() {
     }
 
     public void unload() {
+        DataStore.CLAIM_SAVE_QUEUE.flush();
         this.playerDataList.clear();
+        this.ownerClaims.clear();
         this.worldClaims.clear();
         this.claimUniqueIdMap.clear();
-        this.chunksToClaimsMap.clear();
+        this.claimTypeIndex.clear();
+        this.claimsForSale.clear();
+        this.claimIndex.clear();
         if (this.theWildernessClaim != null) {
             this.theWildernessClaim.unload();
             this.theWildernessClaim = null;
@@ -467,50 +543,14 @@ public Claim getClaimAt(Location<World> location, GPClaim cachedClaim) {
             return cachedClaim;
         }
 
-        Set<Claim> claimsInChunk = this.getInternalChunksToClaimsMap().get(ChunkPos.asLong(location.getBlockX() >> 4, location.getBlockZ() >> 4));
-        if (claimsInChunk == null) {
-            GPTimings.CLAIM_GETCLAIM.stopTimingIfSync();
+        final GPClaim claim = this.claimIndex.getClaimAt(location.getBlockX(), location.getBlockY(), location.getBlockZ());
+        GPTimings.CLAIM_GETCLAIM.stopTimingIfSync();
+        if (claim == null) {
+            // if no claim found, return the world claim
             return this.getWildernessClaim();
         }
 
-        // TODO change to check deepest level and work its way up to root
-        for (Claim claim : claimsInChunk) {
-            final GPClaim gpClaim = (GPClaim) claim;
-            if (gpClaim.contains(location)) {
-                // when we find a top level claim, if the location is in one of its children,
-                // return the child claim, not the top level claim
-                for (int i = 0; i < gpClaim.children.size(); i++) {
-                    GPClaim child = (GPClaim) gpClaim.children.get(i);
-                    // check if child has children (Town -> Basic -> Subdivision)
-                    for (int j = 0; j < child.children.size(); j++) {
-                        GPClaim innerChild = (GPClaim) child.children.get(j);
-                        for (int k = 0; k < innerChild.children.size(); k++) {
-                            Claim subChild = innerChild.children.get(k);
-                            if (subChild.contains(location)) {
-                                GPTimings.CLAIM_GETCLAIM.stopTimingIfSync();
-                                return subChild;
-                            }
-                        }
-
-                        if (innerChild.contains(location)) {
-                            GPTimings.CLAIM_GETCLAIM.stopTimingIfSync();
-                            return innerChild;
-                        }
-                    }
-                    if (child.contains(location)) {
-                        GPTimings.CLAIM_GETCLAIM.stopTimingIfSync();
-                        return child;
-                    }
-                }
-
-                GPTimings.CLAIM_GETCLAIM.stopTimingIfSync();
-                return gpClaim;
-            }
-        }
-
-        GPTimings.CLAIM_GETCLAIM.stopTimingIfSync();
-        // if no claim found, return the world claim
-        return this.getWildernessClaim();
+        return claim;
     }
 
     @Override
@@ -0,0 +1,231 @@
+/*
+ * This file is part of GriefPrevention, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) bloodmc
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package me.ryanhamshire.griefprevention.claim;
+
+import it.unimi.dsi.fastutil.objects.Object2IntMap;
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
+import me.ryanhamshire.griefprevention.api.claim.Claim;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+
+/**
+ * Claims of a single owner with a running total of the claim blocks they
+ * cost.
+ *
+ * <p>The cost of each claim is recorded when it is added and refreshed
+ * through {@link #updateCost(Claim)} whenever its size, type, parent or
+ * claim block requirement changes, so the total never walks the list.</p>
+ *
+ * <p>The claims are kept in a private list. Iterators and sub lists
+ * inherited from {@link AbstractList} modify it through {@link #add(int, Claim)},
+ * {@link #set(int, Claim)} and {@link #remove(int)}, so every mutation
+ * updates the total.</p>
+ */
+public class OwnerClaimList extends AbstractList<Claim> implements RandomAccess {
+
+    private static final AtomicLong DRIFT_COUNT = new AtomicLong();
+
+    private final List<Claim> claims = new ArrayList<>();
+    // Claim -> claim blocks it cost when last recorded
+    private final Object2IntMap<Claim> costs = new Object2IntOpenHashMap<>();
+    private int totalCost;
+
+    public static long getDriftCount() {
+        return DRIFT_COUNT.get();
+    }
+
+    // Same rules getRemainingClaimBlocks used when walking the list
+    public static int getClaimBlockCost(Claim claim) {
+        if (claim.isSubdivision()) {
+            return 0;
+        }
+
+        final GPClaim gpClaim = (GPClaim) claim;
+        if ((gpClaim.parent == null || gpClaim.parent.isAdminClaim()) && claim.getData().requiresClaimBlocks()) {
+            return claim.getClaimBlocks();
+        }
+        return 0;
+    }
+
+    public int getTotalCost() {
+        return this.totalCost;
+    }
+
+    public void updateCost(Claim claim) {
+        if (!this.costs.containsKey(claim)) {
+            return;
+        }
+
+        final int cost = getClaimBlockCost(claim);
+        this.totalCost += cost - this.costs.put(claim, cost);
+    }
+
+    /**
+     * Recomputes the total from scratch and repairs it if it drifted.
+     *
+     * @return True if the running total was wrong
+     */
+    public boolean verify() {
+        final int previousTotal = this.totalCost;
+        this.recount();
+        if (previousTotal != this.totalCost) {
+            DRIFT_COUNT.incrementAndGet();
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    public Claim get(int index) {
+        return this.claims.get(index);
+    }
+
+    @Override
+    public int size() {
+        return this.claims.size();
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return this.claims.contains(o);
+    }
+
+    @Override
+    public int indexOf(Object o) {
+        return this.claims.indexOf(o);
+    }
+
+    @Override
+    public void add(int index, Claim claim) {
+        this.claims.add(index, claim);
+        this.modCount++;
+        this.record(claim);
+    }
+
+    @Override
+    public boolean addAll(Collection<? extends Claim> claims) {
+        for (Claim claim : claims) {
+            this.add(claim);
+        }
+        return !claims.isEmpty();
+    }
+
+    @Override
+    public Claim set(int index, Claim claim) {
+        final Claim previous = this.claims.set(index, claim);
+        this.forget(previous);
+        this.record(claim);
+        return previous;
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        final int index = this.claims.indexOf(o);
+        if (index < 0) {
+            return false;
+        }
+        this.remove(index);
+        return true;
+    }
+
+    @Override
+    public Claim remove(int index) {
+        final Claim previous = this.claims.remove(index);
+        this.modCount++;
+        this.forget(previous);
+        return previous;
+    }
+
+    @Override
+    public boolean removeAll(Collection<?> c) {
+        return this.removed(this.claims.removeAll(c));
+    }
+
+    @Override
+    public boolean retainAll(Collection<?> c) {
+        return this.removed(this.claims.retainAll(c));
+    }
+
+    @Override
+    public boolean removeIf(Predicate<? super Claim> filter) {
+        return this.removed(this.claims.removeIf(filter));
+    }
+
+    @Override
+    public void clear() {
+        this.claims.clear();
+        this.modCount++;
+        this.costs.clear();
+        this.totalCost = 0;
+    }
+
+    // the order doesn't change the total
+    @Override
+    public void sort(Comparator<? super Claim> c) {
+        this.claims.sort(c);
+        this.modCount++;
+    }
+
+    private boolean removed(boolean changed) {
+        if (changed) {
+            this.modCount++;
+            this.recount();
+        }
+        return changed;
+    }
+
+    private void record(Claim claim) {
+        if (this.costs.containsKey(claim)) {
+            return;
+        }
+
+        final int cost = getClaimBlockCost(claim);
+        this.costs.put(claim, cost);
+        this.totalCost += cost;
+    }
+
+    // the list may hold a claim more than once, only drop its cost with the last copy
+    private void forget(Object o) {
+        if (this.claims.contains(o) || !this.costs.containsKey(o)) {
+            return;
+        }
+        this.totalCost -= this.costs.removeInt(o);
+    }
+
+    private void recount() {
+        this.costs.clear();
+        this.totalCost = 0;
+        for (Claim claim : this.claims) {
+            this.record(claim);
+        }
+    }
+}
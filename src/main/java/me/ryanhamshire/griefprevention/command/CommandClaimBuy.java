@@ -75,20 +75,9 @@ public CommandResult execute(CommandSource src, CommandContext ctx) {
 
         List<Claim> claimsForSale = new ArrayList<>();
         GPClaimManager claimManager = GriefPreventionPlugin.instance.dataStore.getClaimWorldManager(player.getWorld().getProperties());
-        for (Claim worldClaim : claimManager.getWorldClaims()) {
-            if (worldClaim.isWilderness()) {
-                continue;
-            }
-            if (!worldClaim.isAdminClaim() && worldClaim.getEconomyData().isForSale() && worldClaim.getEconomyData().getSalePrice() > -1) {
-                claimsForSale.add(worldClaim);
-            }
-            for (Claim child : worldClaim.getChildren(true)) {
-                if (child.isAdminClaim()) {
-                    continue;
-                }
-                if (child.getEconomyData().isForSale() && child.getEconomyData().getSalePrice() > -1) {
-                    claimsForSale.add(child);
-                }
+        for (Claim claim : claimManager.getClaimsForSale()) {
+            if (!claim.isAdminClaim()) {
+                claimsForSale.add(claim);
             }
         }
 
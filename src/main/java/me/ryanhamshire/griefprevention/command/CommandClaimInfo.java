@@ -26,6 +26,7 @@
 
 import com.flowpowered.math.vector.Vector3d;
 import com.flowpowered.math.vector.Vector3i;
+import me.ryanhamshire.griefprevention.DataStore;
 import me.ryanhamshire.griefprevention.GPPlayerData;
 import me.ryanhamshire.griefprevention.GriefPreventionPlugin;
 import me.ryanhamshire.griefprevention.api.claim.Claim;
@@ -591,12 +592,14 @@ private static Consumer<CommandSource> createClaimInfoConsumer(CommandSource src
                     }
 
                     gpClaim.getInternalClaimData().setInheritParent(!gpClaim.getInternalClaimData().doesInheritParent());
+                    GriefPreventionPlugin.instance.dataStore.getClaimWorldManager(gpClaim.getWorld().getProperties()).getClaimIndex().markChanged();
                     gpClaim.getInternalClaimData().setRequiresSave(true);
                     claim.getData().save();
                     CommandHelper.executeCommand(src, "claiminfo", gpClaim.getUniqueId().toString());
                     return;
                 case CLAIM_EXPIRATION :
                     gpClaim.getInternalClaimData().setExpiration(!gpClaim.getInternalClaimData().allowExpiration());
+                    DataStore.CLAIM_EXPIRATION_QUEUE.markChanged(gpClaim);
                     gpClaim.getInternalClaimData().setRequiresSave(true);
                     gpClaim.getClaimStorage().save();
                     break;
@@ -633,6 +636,7 @@ private static Consumer<CommandSource> createClaimInfoConsumer(CommandSource src
                     gpClaim.getInternalClaimData().setRequiresClaimBlocks(!requiresClaimBlocks);
                     gpClaim.getInternalClaimData().setRequiresSave(true);
                     gpClaim.getClaimStorage().save();
+                    GriefPreventionPlugin.instance.dataStore.getClaimWorldManager(gpClaim.getWorld().getProperties()).updateClaimBlockCost(gpClaim);
                     break;
                 case SIZE_RESTRICTIONS :
                     boolean sizeRestrictions = gpClaim.getInternalClaimData().hasSizeRestrictions();
@@ -643,6 +647,7 @@ private static Consumer<CommandSource> createClaimInfoConsumer(CommandSource src
                 case FOR_SALE :
                     boolean forSale = gpClaim.getEconomyData().isForSale();
                     gpClaim.getEconomyData().setForSale(!forSale);
+                    GriefPreventionPlugin.instance.dataStore.getClaimWorldManager(gpClaim.getWorld().getProperties()).updateClaimIndexes(gpClaim);
                     gpClaim.getInternalClaimData().setRequiresSave(true);
                     gpClaim.getClaimStorage().save();
                     CommandHelper.executeCommand(src, "claiminfo", gpClaim.getUniqueId().toString());
@@ -62,6 +62,7 @@ public CommandResult execute(CommandSource src, CommandContext ctx) {
         }
         claim.getData().setInheritParent(!claim.getData().doesInheritParent());
         claim.getInternalClaimData().setRequiresSave(true);
+        GriefPreventionPlugin.instance.dataStore.getClaimWorldManager(claim.getWorld().getProperties()).getClaimIndex().markChanged();
 
         if (!claim.getData().doesInheritParent()) {
             GriefPreventionPlugin.sendMessage(player, Text.of(TextColors.WHITE, "Parent claim inheritance ", TextColors.RED, "OFF"));
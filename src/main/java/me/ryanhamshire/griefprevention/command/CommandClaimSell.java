@@ -85,6 +85,7 @@ public CommandResult execute(CommandSource src, CommandContext ctx) {
             if (arg.equalsIgnoreCase("cancel")) {
                 claim.getEconomyData().setForSale(false);
                 claim.getEconomyData().setSalePrice(-1);
+                GriefPreventionPlugin.instance.dataStore.getClaimWorldManager(claim.getWorld().getProperties()).updateClaimIndexes(claim);
                 GriefPreventionPlugin.sendMessage(player, GriefPreventionPlugin.instance.messageData.economyClaimSaleCancelled.toText());
                 return CommandResult.success();
             }
@@ -116,6 +117,7 @@ private static Consumer<CommandSource> createSaleConfirmationConsumer(CommandSou
         return confirm -> {
             claim.getEconomyData().setSalePrice(price);
             claim.getEconomyData().setForSale(true);
+            GriefPreventionPlugin.instance.dataStore.getClaimWorldManager(claim.getWorld().getProperties()).updateClaimIndexes(claim);
             claim.getData().save();
             Map<String, ?> params = ImmutableMap.of(
                     "sale_price", price);
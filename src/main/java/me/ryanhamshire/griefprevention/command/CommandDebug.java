@@ -24,15 +24,31 @@
  */
 package me.ryanhamshire.griefprevention.command;
 
+import me.ryanhamshire.griefprevention.ChunkRestoreQueue;
+import me.ryanhamshire.griefprevention.ClaimSaveQueue;
+import me.ryanhamshire.griefprevention.DataStore;
+import me.ryanhamshire.griefprevention.DebugRecordExporter;
 import me.ryanhamshire.griefprevention.GPDebugData;
 import me.ryanhamshire.griefprevention.GriefPreventionPlugin;
+import me.ryanhamshire.griefprevention.claim.ClaimBoundaryTracker;
+import me.ryanhamshire.griefprevention.claim.ClaimExpirationQueue;
+import me.ryanhamshire.griefprevention.claim.OwnerClaimList;
+import me.ryanhamshire.griefprevention.permission.GPPermissionHandler;
+import me.ryanhamshire.griefprevention.permission.PermissionDecisionCache;
+import me.ryanhamshire.griefprevention.task.PermissionQueryCheckTask;
+import me.ryanhamshire.griefprevention.util.BlockUtils;
+import me.ryanhamshire.griefprevention.util.EntityBlockCollideCache;
+import me.ryanhamshire.griefprevention.visual.BlockChangeBatch;
+import org.spongepowered.api.Sponge;
 import org.spongepowered.api.command.CommandResult;
 import org.spongepowered.api.command.CommandSource;
 import org.spongepowered.api.command.args.CommandContext;
 import org.spongepowered.api.command.spec.CommandExecutor;
+import org.spongepowered.api.entity.living.player.Player;
 import org.spongepowered.api.entity.living.player.User;
 import org.spongepowered.api.text.Text;
 import org.spongepowered.api.text.format.TextColors;
+import org.spongepowered.api.world.World;
 
 public class CommandDebug implements CommandExecutor {
 
@@ -40,6 +56,71 @@ public class CommandDebug implements CommandExecutor {
     public CommandResult execute(CommandSource src, CommandContext ctx) {
         String target = ctx.<String>getOne("target").orElse(null);
         User user = ctx.<User>getOne("user").orElse(null);
+        final Text GP_TEXT = Text.of(TextColors.RESET, "[", TextColors.AQUA, "GP", TextColors.WHITE, "] ");
+        if (target.equalsIgnoreCase("stats")) {
+            final PermissionDecisionCache cache = GPPermissionHandler.getDecisionCache();
+            final long hits = cache.getHits();
+            final long misses = cache.getMisses();
+            final long total = hits + misses;
+            src.sendMessage(Text.of(
+                    GP_TEXT, TextColors.GRAY, "Permission cache hits: ", TextColors.GREEN, hits, TextColors.WHITE, " | ",
+                    TextColors.GRAY, "Misses: ", TextColors.RED, misses, TextColors.WHITE, " | ",
+                    TextColors.GRAY, "Hit rate: ", TextColors.GOLD, total == 0 ? "0%" : (hits * 100 / total) + "%"));
+            final ClaimSaveQueue saveQueue = DataStore.CLAIM_SAVE_QUEUE;
+            src.sendMessage(Text.of(
+                    GP_TEXT, TextColors.GRAY, "Claim save queue: ", TextColors.GOLD, saveQueue.getQueueDepth(), TextColors.WHITE, " | ",
+                    TextColors.GRAY, "Written: ", TextColors.GREEN, saveQueue.getFilesWritten(), TextColors.WHITE, " | ",
+                    TextColors.GRAY, "Last flush: ", TextColors.GOLD, saveQueue.getLastFlushMillis(), "ms", TextColors.WHITE, " | ",
+                    TextColors.GRAY, "Max flush: ", TextColors.GOLD, saveQueue.getMaxFlushMillis(), "ms"));
+            src.sendMessage(Text.of(
+                    GP_TEXT, TextColors.GRAY, "Claim block total corrections: ", TextColors.GOLD, OwnerClaimList.getDriftCount()));
+            final EntityBlockCollideCache collideCache = BlockUtils.ENTITY_BLOCK_CACHE;
+            final long collideHits = collideCache.getHits();
+            final long collideTotal = collideHits + collideCache.getMisses();
+            src.sendMessage(Text.of(
+                    GP_TEXT, TextColors.GRAY, "Collide cache size: ", TextColors.GOLD, collideCache.size(), "/", collideCache.capacity(), TextColors.WHITE, " | ",
+                    TextColors.GRAY, "Hit rate: ", TextColors.GOLD, collideTotal == 0 ? "0%" : (collideHits * 100 / collideTotal) + "%"));
+            final ClaimBoundaryTracker boundaryTracker = DataStore.CLAIM_BOUNDARY_TRACKER;
+            final long moveLookups = boundaryTracker.getLookups();
+            src.sendMessage(Text.of(
+                    GP_TEXT, TextColors.GRAY, "Move claim lookups: ", TextColors.GOLD, moveLookups, TextColors.WHITE, " | ",
+                    TextColors.GRAY, "Skipped: ", TextColors.GREEN, moveLookups == 0 ? "0%" : (boundaryTracker.getSkipped() * 100 / moveLookups) + "%", TextColors.WHITE, " | ",
+                    TextColors.GRAY, "Tracked entities: ", TextColors.GOLD, boundaryTracker.size()));
+            src.sendMessage(Text.of(
+                    GP_TEXT, TextColors.GRAY, "Visual packets sent: ", TextColors.GOLD, BlockChangeBatch.getPacketsSent(), TextColors.WHITE, " | ",
+                    TextColors.GRAY, "Blocks: ", TextColors.GOLD, BlockChangeBatch.getBlocksSent()));
+            final ClaimExpirationQueue expirationQueue = DataStore.CLAIM_EXPIRATION_QUEUE;
+            src.sendMessage(Text.of(
+                    GP_TEXT, TextColors.GRAY, "Claim expiration queue: ", TextColors.GOLD, expirationQueue.size(), TextColors.WHITE, " | ",
+                    TextColors.GRAY, "Pending: ", TextColors.GOLD, expirationQueue.getPendingCount(), TextColors.WHITE, " | ",
+                    TextColors.GRAY, "Expired: ", TextColors.RED, expirationQueue.getClaimsExpired()));
+            final ChunkRestoreQueue restoreQueue = GriefPreventionPlugin.CHUNK_RESTORE_QUEUE;
+            src.sendMessage(Text.of(
+                    GP_TEXT, TextColors.GRAY, "Chunk restore queue: ", TextColors.GOLD, restoreQueue.getQueueDepth(), TextColors.WHITE, " | ",
+                    TextColors.GRAY, "Regenerated: ", TextColors.GREEN, restoreQueue.getChunksRegenerated(), TextColors.WHITE, " | ",
+                    TextColors.GRAY, "Skipped: ", TextColors.GOLD, restoreQueue.getChunksSkipped(), TextColors.WHITE, " | ",
+                    TextColors.GRAY, "Restored: ", TextColors.GREEN, restoreQueue.getChunksRestored()));
+            final DebugRecordExporter debugExporter = GriefPreventionPlugin.DEBUG_RECORD_EXPORTER;
+            src.sendMessage(Text.of(
+                    GP_TEXT, TextColors.GRAY, "Debug sessions: ", TextColors.GOLD, debugExporter.getActiveSessions(), TextColors.WHITE, " | ",
+                    TextColors.GRAY, "Records exported: ", TextColors.GREEN, debugExporter.getRecordsExported(), TextColors.WHITE, " | ",
+                    TextColors.GRAY, "Dropped: ", TextColors.RED, debugExporter.getRecordsDropped()));
+            return CommandResult.success();
+        }
+        if (target.equalsIgnoreCase("verify")) {
+            final World world = src instanceof Player ? ((Player) src).getWorld()
+                    : Sponge.getServer().getWorld(Sponge.getServer().getDefaultWorldName()).orElse(null);
+            if (world == null || Sponge.getServer().getOnlinePlayers().isEmpty()) {
+                src.sendMessage(Text.of(TextColors.RED, "Nothing to verify, a world and at least one online player are required."));
+                return CommandResult.success();
+            }
+            final PermissionQueryCheckTask checkTask = new PermissionQueryCheckTask(src, world);
+            src.sendMessage(Text.of(GP_TEXT, TextColors.GRAY, "Checking ", TextColors.GOLD, checkTask.getQueryCount(), TextColors.GRAY,
+                    " permission queries from several threads..."));
+            checkTask.run();
+            return CommandResult.success();
+        }
+
         GPDebugData debugData = null;
         boolean paste = false;
         if (target.equalsIgnoreCase("on")) {
@@ -49,13 +130,15 @@ public CommandResult execute(CommandSource src, CommandContext ctx) {
         } else if (target.equalsIgnoreCase("paste")) {
             paste = true;
         } else if (target.equalsIgnoreCase("off")) {
-            GriefPreventionPlugin.instance.getDebugUserMap().remove(src.getIdentifier());
+            final GPDebugData removed = GriefPreventionPlugin.instance.getDebugUserMap().remove(src.getIdentifier());
+            if (removed != null) {
+                removed.stopRecording();
+            }
             if (GriefPreventionPlugin.instance.getDebugUserMap().isEmpty()) {
                 GriefPreventionPlugin.debugActive = false;
             }
         }
 
-        final Text GP_TEXT = Text.of(TextColors.RESET, "[", TextColors.AQUA, "GP", TextColors.WHITE, "] ");
         if (debugData == null) {
             if (paste) {
                 debugData = GriefPreventionPlugin.instance.getDebugUserMap().get(src.getIdentifier());
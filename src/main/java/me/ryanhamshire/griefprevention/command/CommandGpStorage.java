@@ -0,0 +1,75 @@
+/*
+ * This file is part of GriefPrevention, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) bloodmc
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package me.ryanhamshire.griefprevention.command;
+
+import me.ryanhamshire.griefprevention.BinaryFileDataStore;
+import me.ryanhamshire.griefprevention.DataStore;
+import me.ryanhamshire.griefprevention.GriefPreventionPlugin;
+import me.ryanhamshire.griefprevention.configuration.ClaimLogStore;
+import org.spongepowered.api.command.CommandResult;
+import org.spongepowered.api.command.CommandSource;
+import org.spongepowered.api.command.args.CommandContext;
+import org.spongepowered.api.command.spec.CommandExecutor;
+import org.spongepowered.api.text.Text;
+import org.spongepowered.api.text.format.TextColors;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Map;
+
+public class CommandGpStorage implements CommandExecutor {
+
+    @Override
+    public CommandResult execute(CommandSource src, CommandContext ctx) {
+        final String action = ctx.<String>getOne("action").orElse(null);
+        if (!(GriefPreventionPlugin.instance.dataStore instanceof BinaryFileDataStore)) {
+            src.sendMessage(Text.of(TextColors.RED, "Claim data is not stored in binary format."));
+            return CommandResult.success();
+        }
+
+        DataStore.CLAIM_SAVE_QUEUE.flush();
+        int count = 0;
+        for (Map.Entry<Path, ClaimLogStore> entry : ((BinaryFileDataStore) GriefPreventionPlugin.instance.dataStore).getClaimLogs().entrySet()) {
+            try {
+                if (action.equalsIgnoreCase("export")) {
+                    count += entry.getValue().exportFiles(entry.getKey());
+                } else {
+                    entry.getValue().compact();
+                    count++;
+                }
+            } catch (IOException e) {
+                e.printStackTrace();
+                src.sendMessage(Text.of(TextColors.RED, "Failed to " + action + " claim log for ", entry.getKey(), ": ", e.getMessage()));
+            }
+        }
+
+        if (action.equalsIgnoreCase("export")) {
+            src.sendMessage(Text.of(TextColors.GREEN, "Exported ", count, " claims to HOCON claim files."));
+        } else {
+            src.sendMessage(Text.of(TextColors.GREEN, "Compacted ", count, " claim logs."));
+        }
+        return CommandResult.success();
+    }
+}
@@ -29,7 +29,6 @@
 import com.flowpowered.math.vector.Vector3i;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
-import com.google.gson.Gson;
 import me.ryanhamshire.griefprevention.GPFlags;
 import me.ryanhamshire.griefprevention.GPPlayerData;
 import me.ryanhamshire.griefprevention.GriefPreventionPlugin;
@@ -44,13 +43,16 @@
 import me.ryanhamshire.griefprevention.claim.GPClaim;
 import me.ryanhamshire.griefprevention.claim.GPFlagResult;
 import me.ryanhamshire.griefprevention.command.ClaimFlagBase.FlagType;
+import me.ryanhamshire.griefprevention.configuration.EconomyDataConfig;
 import me.ryanhamshire.griefprevention.configuration.GriefPreventionConfig;
 import me.ryanhamshire.griefprevention.configuration.MessageStorage;
 import me.ryanhamshire.griefprevention.economy.GPBankTransaction;
 import me.ryanhamshire.griefprevention.event.GPGroupTrustClaimEvent;
 import me.ryanhamshire.griefprevention.event.GPUserTrustClaimEvent;
+import me.ryanhamshire.griefprevention.permission.ClaimPermissionKeys;
 import me.ryanhamshire.griefprevention.permission.GPOptionHandler;
 import me.ryanhamshire.griefprevention.permission.GPOptions;
+import me.ryanhamshire.griefprevention.permission.GPPermissionHandler;
 import me.ryanhamshire.griefprevention.permission.GPPermissions;
 import me.ryanhamshire.griefprevention.util.PermissionUtils;
 import me.ryanhamshire.griefprevention.util.TaskUtils;
@@ -396,11 +398,8 @@ public static FlagResult applyFlagPermission(CommandSource src, Subject subject,
         }
 
         if (source != null) {
-            Pattern p = Pattern.compile("\\.[\\d+]*$");
-            Matcher m = p.matcher(flagPermission);
-            String targetMeta = "";
-            if (m.find()) {
-                targetMeta = m.group(0);
+            final String targetMeta = ClaimPermissionKeys.getTargetMeta(flagPermission);
+            if (!targetMeta.isEmpty()) {
                 flagPermission = flagPermission.replace(targetMeta, "");
             }
             flagPermission += ".source." + source + targetMeta;
@@ -425,6 +424,7 @@ public static FlagResult applyFlagPermission(CommandSource src, Subject subject,
             }
 
             GriefPreventionPlugin.GLOBAL_SUBJECT.getSubjectData().setPermission(contexts, flagPermission, value);
+            GPPermissionHandler.invalidatePermissionCache();
             if (!clicked) {
                 src.sendMessage(Text.of(Text.builder()
                     .append(Text.of(TextColors.WHITE, "\n[", TextColors.AQUA, "Return to flags", TextColors.WHITE, "]\n"))
@@ -447,6 +447,7 @@ TextColors.LIGHT_PURPLE, getClickableText(src, GriefPreventionPlugin.GLOBAL_SUBJ
             }
 
             subject.getSubjectData().setPermission(contexts, flagPermission, value);
+            GPPermissionHandler.invalidatePermissionCache();
             if (!clicked) {
                 src.sendMessage(Text.of(Text.builder()
                         .append(Text.of(TextColors.WHITE, "\n[", TextColors.AQUA, "Return to flags", TextColors.WHITE, "]\n"))
@@ -494,6 +495,7 @@ public static Consumer<CommandSource> createFlagConsumer(CommandSource src, Subj
             String target = flagPermission.replace(GPPermissions.FLAG_BASE + ".",  "");
             Set<Context> newContexts = new HashSet<>(contexts);
             subject.getSubjectData().setPermission(newContexts, flagPermission, newValue);
+            GPPermissionHandler.invalidatePermissionCache();
             src.sendMessage(Text.of(
                     TextColors.GREEN, "Set ", flagTypeText, " permission ", 
                     TextColors.AQUA, target, 
@@ -733,6 +735,7 @@ private static Consumer<CommandSource> createBuyConsumerConfirmed(CommandSource
                 }
                 claim.getEconomyData().setForSale(false);
                 claim.getEconomyData().setSalePrice(0);
+                GriefPreventionPlugin.instance.dataStore.getClaimWorldManager(claim.getWorld().getProperties()).updateClaimIndexes(claim);
                 claim.getData().save();
                 GriefPreventionPlugin.sendMessage(src, message);
             }
@@ -959,8 +962,7 @@ public static void handleUserTrustCommand(Player player, TrustType trustType, Us
 
             for (Claim currentClaim : targetClaims) {
                 GPClaim gpClaim = (GPClaim) currentClaim;
-                final List<UUID> trustList = gpClaim.getUserTrustList(trustType);
-                if (trustList.contains(user.getUniqueId())) {
+                if (!gpClaim.addUserTrustInternal(user.getUniqueId(), trustType)) {
                     final Text message = GriefPreventionPlugin.instance.messageData.trustAlreadyHas
                         .apply(ImmutableMap.of(
                             "target", user.getName(),
@@ -969,7 +971,6 @@ public static void handleUserTrustCommand(Player player, TrustType trustType, Us
                     return;
                 }
 
-                trustList.add(user.getUniqueId());
                 gpClaim.getInternalClaimData().setRequiresSave(true);
                 gpClaim.getInternalClaimData().save();
             }
@@ -1052,6 +1053,7 @@ public static void handleGroupTrustCommand(Player player, TrustType trustType, S
             subject.getSubjectData().setPermission(contexts, permission, Tristate.TRUE);
             gpClaim.getInternalClaimData().setRequiresSave(true);
         }
+        GPPermissionHandler.invalidatePermissionCache();
 
         final Text message = GriefPreventionPlugin.instance.messageData.trustGrant
                 .apply(ImmutableMap.of(
@@ -1267,15 +1269,13 @@ public static void displayClaimBankInfo(CommandSource src, GPClaim claim, boolea
     public static Consumer<CommandSource> createBankTransactionsConsumer(CommandSource src, GPClaim claim, boolean checkTown, boolean returnToClaimInfo) {
         return settings -> {
             final String name = "Bank Transactions";
-            List<String> bankTransactions = new ArrayList<>(claim.getData().getEconomyData().getBankTransactionLog());
+            List<GPBankTransaction> bankTransactions = ((EconomyDataConfig) claim.getData().getEconomyData()).getTransactionLog().getTransactions();
             Collections.reverse(bankTransactions);
             List<Text> textList = new ArrayList<>();
             textList.add(Text.builder().append(Text.of(
                     TextColors.WHITE, "\n[", TextColors.AQUA, "Return to bank info", TextColors.WHITE, "]\n"))
                 .onClick(TextActions.executeCallback(consumer -> { displayClaimBankInfo(src, claim, checkTown, returnToClaimInfo); })).build());
-            Gson gson = new Gson();
-            for (String transaction : bankTransactions) {
-                GPBankTransaction bankTransaction = gson.fromJson(transaction, GPBankTransaction.class);
+            for (GPBankTransaction bankTransaction : bankTransactions) {
                 final Duration duration = Duration.between(bankTransaction.timestamp, Instant.now().truncatedTo(ChronoUnit.SECONDS)) ;
                 final long s = duration.getSeconds();
                 final User user = GriefPreventionPlugin.getOrCreateUser(bankTransaction.source);
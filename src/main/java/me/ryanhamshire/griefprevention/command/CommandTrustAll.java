@@ -49,7 +49,6 @@
 import org.spongepowered.api.text.format.TextColors;
 
 import java.util.List;
-import java.util.UUID;
 
 public class CommandTrustAll implements CommandExecutor {
 
@@ -144,10 +143,7 @@ public CommandResult execute(CommandSource src, CommandContext ctx) {
 
     private void addAllUserTrust(Claim claim, User user) {
         GPClaim gpClaim = (GPClaim) claim;
-        List<UUID> trustList = gpClaim.getUserTrustList(TrustType.BUILDER);
-        if (!trustList.contains(user.getUniqueId())) {
-            trustList.add(user.getUniqueId());
-        }
+        gpClaim.addUserTrustInternal(user.getUniqueId(), TrustType.BUILDER);
 
         gpClaim.getInternalClaimData().setRequiresSave(true);
         for (Claim child : gpClaim.children) {
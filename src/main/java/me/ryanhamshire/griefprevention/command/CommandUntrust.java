@@ -33,6 +33,7 @@
 import me.ryanhamshire.griefprevention.claim.GPClaim;
 import me.ryanhamshire.griefprevention.event.GPGroupTrustClaimEvent;
 import me.ryanhamshire.griefprevention.event.GPUserTrustClaimEvent;
+import me.ryanhamshire.griefprevention.permission.GPPermissionHandler;
 import me.ryanhamshire.griefprevention.permission.GPPermissions;
 import me.ryanhamshire.griefprevention.util.PermissionUtils;
 import org.spongepowered.api.Sponge;
@@ -125,9 +126,7 @@ public CommandResult execute(CommandSource src, CommandContext ctx) {
                     return CommandResult.success();
                 }
 
-                for (TrustType trustType : TrustType.values()) {
-                    claim.getUserTrustList(trustType).remove(user.getUniqueId());
-                }
+                claim.removeAllTrustsFromUser(user.getUniqueId());
             } else {
                 Set<Context> contexts = new HashSet<>();
                 contexts.add(claim.getContext());
@@ -159,6 +158,7 @@ public CommandResult execute(CommandSource src, CommandContext ctx) {
             }
         }
 
+        GPPermissionHandler.invalidatePermissionCache();
         claim.getInternalClaimData().setRequiresSave(true);
         final Text message = GriefPreventionPlugin.instance.messageData.untrustIndividualSingleClaim
                 .apply(ImmutableMap.of(
@@ -34,6 +34,7 @@
 import me.ryanhamshire.griefprevention.claim.GPClaim;
 import me.ryanhamshire.griefprevention.event.GPGroupTrustClaimEvent;
 import me.ryanhamshire.griefprevention.event.GPUserTrustClaimEvent;
+import me.ryanhamshire.griefprevention.permission.GPPermissionHandler;
 import me.ryanhamshire.griefprevention.permission.GPPermissions;
 import me.ryanhamshire.griefprevention.util.PermissionUtils;
 import org.spongepowered.api.Sponge;
@@ -135,6 +136,7 @@ public CommandResult execute(CommandSource src, CommandContext ctx) {
             }
         }
 
+        GPPermissionHandler.invalidatePermissionCache();
         final Text message = GriefPreventionPlugin.instance.messageData.untrustIndividualAllClaims
                 .apply(ImmutableMap.of(
                 "target", user.getName())).build();
@@ -148,7 +150,7 @@ private void removeAllUserTrust(Claim claim, User user) {
         contexts.add(gpClaim.getContext());
         for (TrustType type : TrustType.values()) {
             user.getSubjectData().setPermission(contexts, GPPermissions.getTrustPermission(type), Tristate.UNDEFINED);
-            gpClaim.getUserTrustList(type).remove(user.getUniqueId());
+            gpClaim.removeAllTrustsFromUser(user.getUniqueId());
             gpClaim.getInternalClaimData().setRequiresSave(true);
             for (Claim child : gpClaim.children) {
                 this.removeAllUserTrust(child, user);
@@ -37,12 +37,12 @@
 import org.spongepowered.api.util.Tristate;
 
 import java.time.Instant;
-import java.util.ArrayList;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 @ConfigSerializable
 public class ClaimDataConfig extends ConfigCategory implements IClaimData {
@@ -98,21 +98,21 @@ public class ClaimDataConfig extends ConfigCategory implements IClaimData {
     @Setting(value = ClaimStorageData.MAIN_GREATER_BOUNDARY_CORNER)
     private String greaterBoundaryCornerPos;
     @Setting(value = ClaimStorageData.MAIN_ACCESSORS)
-    private List<UUID> accessors = new ArrayList<>();
+    private List<UUID> accessors = new CopyOnWriteArrayList<>();
     @Setting(value = ClaimStorageData.MAIN_BUILDERS)
-    private List<UUID> builders = new ArrayList<>();
+    private List<UUID> builders = new CopyOnWriteArrayList<>();
     @Setting(value = ClaimStorageData.MAIN_CONTAINERS)
-    private List<UUID> containers = new ArrayList<>();
+    private List<UUID> containers = new CopyOnWriteArrayList<>();
     @Setting(value = ClaimStorageData.MAIN_MANAGERS)
-    private List<UUID> managers = new ArrayList<>();
+    private List<UUID> managers = new CopyOnWriteArrayList<>();
     @Setting(value = ClaimStorageData.MAIN_ACCESSOR_GROUPS)
-    private List<String> accessorGroups = new ArrayList<>();
+    private List<String> accessorGroups = new CopyOnWriteArrayList<>();
     @Setting(value = ClaimStorageData.MAIN_BUILDER_GROUPS)
-    private List<String> builderGroups = new ArrayList<>();
+    private List<String> builderGroups = new CopyOnWriteArrayList<>();
     @Setting(value = ClaimStorageData.MAIN_CONTAINER_GROUPS)
-    private List<String> containerGroups = new ArrayList<>();
+    private List<String> containerGroups = new CopyOnWriteArrayList<>();
     @Setting(value = ClaimStorageData.MAIN_MANAGER_GROUPS)
-    private List<String> managerGroups = new ArrayList<>();
+    private List<String> managerGroups = new CopyOnWriteArrayList<>();
     @Setting
     private EconomyDataConfig economyData = new EconomyDataConfig();
     @Setting
@@ -422,25 +422,40 @@ public void setGreaterBoundaryCorner(String location) {
     @Override
     public void setAccessors(List<UUID> accessors) {
         this.requiresSave = true;
-        this.accessors = accessors;
+        this.accessors = new CopyOnWriteArrayList<>(accessors);
     }
 
     @Override
     public void setBuilders(List<UUID> builders) {
         this.requiresSave = true;
-        this.builders = builders;
+        this.builders = new CopyOnWriteArrayList<>(builders);
     }
 
     @Override
     public void setContainers(List<UUID> containers) {
         this.requiresSave = true;
-        this.containers = containers;
+        this.containers = new CopyOnWriteArrayList<>(containers);
     }
 
     @Override
     public void setManagers(List<UUID> coowners) {
         this.requiresSave = true;
-        this.managers = coowners;
+        this.managers = new CopyOnWriteArrayList<>(coowners);
+    }
+
+    /**
+     * Replaces the trust lists filled in by the object mapper with copy on
+     * write lists. Permission checks read them off the main thread.
+     */
+    public void copyTrustListsOnWrite() {
+        this.accessors = new CopyOnWriteArrayList<>(this.accessors);
+        this.builders = new CopyOnWriteArrayList<>(this.builders);
+        this.containers = new CopyOnWriteArrayList<>(this.containers);
+        this.managers = new CopyOnWriteArrayList<>(this.managers);
+        this.accessorGroups = new CopyOnWriteArrayList<>(this.accessorGroups);
+        this.builderGroups = new CopyOnWriteArrayList<>(this.builderGroups);
+        this.containerGroups = new CopyOnWriteArrayList<>(this.containerGroups);
+        this.managerGroups = new CopyOnWriteArrayList<>(this.managerGroups);
     }
 
     public Map<UUID, ClaimDataConfig> getSubdivisions() {
@@ -0,0 +1,550 @@
+/*
+ * This file is part of GriefPrevention, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) bloodmc
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package me.ryanhamshire.griefprevention.configuration;
+
+import ninja.leaping.configurate.ConfigurationNode;
+import ninja.leaping.configurate.ConfigurationOptions;
+import ninja.leaping.configurate.commented.CommentedConfigurationNode;
+import ninja.leaping.configurate.commented.SimpleCommentedConfigurationNode;
+import ninja.leaping.configurate.hocon.HoconConfigurationLoader;
+import ninja.leaping.configurate.loader.ConfigurationLoader;
+import org.spongepowered.common.SpongeImpl;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import javax.annotation.Nullable;
+
+/**
+ * Append-only binary log holding every claim of a world.
+ *
+ * <p>Each record either puts the binary encoded config node of a claim
+ * under its file path relative to the world's ClaimData folder, or removes
+ * it. The last record for a key wins. Only the position of each live record
+ * is kept in memory, claim data is read back from the log when a claim is
+ * loaded. The log is replayed on open, a torn record at the tail from a
+ * crash is dropped. Once superseded records take more space than live ones
+ * the log is rewritten.</p>
+ */
+public class ClaimLogStore {
+
+    public static final String LOG_FILE_NAME = "ClaimData.gplog";
+
+    // "GPCL"
+    private static final int MAGIC = 0x4750434C;
+    private static final int VERSION = 2;
+    // Version 1 logs stored HOCON text and are converted on open
+    private static final int VERSION_HOCON = 1;
+    private static final int HEADER_SIZE = 8;
+    private static final byte OP_PUT = 1;
+    private static final byte OP_REMOVE = 2;
+    private static final long MIN_COMPACT_BYTES = 1024 * 1024;
+
+    // Node value types
+    private static final byte TYPE_NULL = 0;
+    private static final byte TYPE_MAP = 1;
+    private static final byte TYPE_LIST = 2;
+    private static final byte TYPE_STRING = 3;
+    private static final byte TYPE_BOOLEAN = 4;
+    private static final byte TYPE_INT = 5;
+    private static final byte TYPE_LONG = 6;
+    private static final byte TYPE_FLOAT = 7;
+    private static final byte TYPE_DOUBLE = 8;
+
+    private final Path logPath;
+    // Claim file key -> position of its data in the log
+    private Map<String, Slot> entries = new LinkedHashMap<>();
+    private FileChannel channel;
+    private long logBytes;
+    private long liveBytes;
+    private int version = VERSION;
+
+    public ClaimLogStore(Path logPath) throws IOException {
+        this.logPath = logPath;
+        if (Files.exists(logPath) && Files.size(logPath) > 0) {
+            this.replay();
+        } else {
+            Files.createDirectories(logPath.getParent());
+            try (FileChannel writeChannel = FileChannel.open(logPath, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING)) {
+                writeHeader(writeChannel);
+                writeChannel.force(false);
+            }
+            this.logBytes = HEADER_SIZE;
+        }
+        this.channel = FileChannel.open(logPath, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        if (this.version == VERSION_HOCON) {
+            this.compact();
+        }
+    }
+
+    public synchronized List<String> getKeys() {
+        return new ArrayList<>(this.entries.keySet());
+    }
+
+    @Nullable
+    public synchronized byte[] get(String key) throws IOException {
+        final Slot slot = this.entries.get(key);
+        return slot == null ? null : this.read(this.channel, slot);
+    }
+
+    public synchronized void put(String key, byte[] data) throws IOException {
+        final long position = this.append(OP_PUT, key, data);
+        final Slot previous = this.entries.put(key, new Slot(position, data.length));
+        if (previous != null) {
+            this.liveBytes -= recordSize(key, previous.length);
+        }
+        this.liveBytes += recordSize(key, data.length);
+        this.compactIfNeeded();
+    }
+
+    public synchronized void remove(String key) throws IOException {
+        final Slot previous = this.entries.remove(key);
+        if (previous == null) {
+            return;
+        }
+        this.append(OP_REMOVE, key, null);
+        this.liveBytes -= recordSize(key, previous.length);
+        this.compactIfNeeded();
+    }
+
+    public synchronized void move(String fromKey, String toKey) throws IOException {
+        final byte[] data = this.get(fromKey);
+        if (data == null) {
+            throw new NoSuchFileException(fromKey);
+        }
+        this.put(toKey, data);
+        this.remove(fromKey);
+    }
+
+    /**
+     * Creates a loader reading and writing the claim stored under the key.
+     *
+     * @param key The claim file key
+     * @return The loader
+     */
+    public ConfigurationLoader<CommentedConfigurationNode> createLoader(String key) {
+        return new Loader(key);
+    }
+
+    /**
+     * Imports every claim file below the folder into the log.
+     *
+     * @param claimDataPath The world's ClaimData folder
+     * @return The number of claim files imported
+     */
+    public synchronized int importFiles(Path claimDataPath) throws IOException {
+        if (Files.notExists(claimDataPath)) {
+            return 0;
+        }
+
+        int count = 0;
+        try (Stream<Path> paths = Files.walk(claimDataPath)) {
+            for (Path path : (Iterable<Path>) paths::iterator) {
+                // claim files are named by their UUID
+                if (!Files.isRegularFile(path) || path.getFileName().toString().length() != 36) {
+                    continue;
+                }
+                this.put(toKey(claimDataPath, path), encodeNode(HoconConfigurationLoader.builder().setPath(path).build().load()));
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Writes every claim in the log back out as a HOCON file below the folder.
+     *
+     * @param claimDataPath The world's ClaimData folder
+     * @return The number of claim files written
+     */
+    public synchronized int exportFiles(Path claimDataPath) throws IOException {
+        for (Map.Entry<String, Slot> entry : this.entries.entrySet()) {
+            final Path path = claimDataPath.resolve(entry.getKey());
+            final CommentedConfigurationNode node = SimpleCommentedConfigurationNode.root();
+            decodeNode(this.read(this.channel, entry.getValue()), node);
+            Files.createDirectories(path.getParent());
+            HoconConfigurationLoader.builder().setPath(path).build().save(node);
+        }
+        return this.entries.size();
+    }
+
+    public synchronized void compact() throws IOException {
+        final Path tempPath = this.logPath.resolveSibling(this.logPath.getFileName() + ".tmp");
+        final Map<String, Slot> compacted = new LinkedHashMap<>();
+        long position = HEADER_SIZE;
+        try (FileChannel writeChannel = FileChannel.open(tempPath, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            writeHeader(writeChannel);
+            for (Map.Entry<String, Slot> entry : this.entries.entrySet()) {
+                byte[] data = this.read(this.channel, entry.getValue());
+                if (this.version == VERSION_HOCON) {
+                    final String text = new String(data, StandardCharsets.UTF_8);
+                    data = encodeNode(HoconConfigurationLoader.builder().setSource(() -> new BufferedReader(new StringReader(text))).build().load());
+                }
+                final ByteBuffer buffer = encode(OP_PUT, entry.getKey(), data);
+                compacted.put(entry.getKey(), new Slot(position + buffer.limit() - data.length, data.length));
+                position += buffer.limit();
+                while (buffer.hasRemaining()) {
+                    writeChannel.write(buffer);
+                }
+            }
+            writeChannel.force(false);
+        }
+
+        // the log must be closed before it can be replaced on all platforms
+        this.channel.close();
+        try {
+            Files.move(tempPath, this.logPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(tempPath, this.logPath, StandardCopyOption.REPLACE_EXISTING);
+        }
+        this.entries = compacted;
+        this.logBytes = position;
+        this.liveBytes = position - HEADER_SIZE;
+        this.version = VERSION;
+        this.channel = FileChannel.open(this.logPath, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    }
+
+    public synchronized void close() throws IOException {
+        if (this.channel.isOpen()) {
+            this.channel.force(false);
+            this.channel.close();
+        }
+    }
+
+    public static String toKey(Path claimDataPath, Path claimFile) {
+        return claimDataPath.relativize(claimFile).toString().replace('\\', '/');
+    }
+
+    /**
+     * Encodes a config node and its children. Comments are not stored, they
+     * are restored by the object mapper when the claim is saved.
+     *
+     * @param node The node
+     * @return The encoded node
+     */
+    public static byte[] encodeNode(ConfigurationNode node) throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream(512);
+        try (DataOutputStream output = new DataOutputStream(bytes)) {
+            writeNode(output, node);
+        }
+        return bytes.toByteArray();
+    }
+
+    public static void decodeNode(byte[] data, ConfigurationNode node) throws IOException {
+        try (DataInputStream input = new DataInputStream(new ByteArrayInputStream(data))) {
+            readNode(input, node);
+        }
+    }
+
+    private static void writeNode(DataOutputStream output, ConfigurationNode node) throws IOException {
+        if (node.hasMapChildren()) {
+            final Map<Object, ? extends ConfigurationNode> children = node.getChildrenMap();
+            output.writeByte(TYPE_MAP);
+            output.writeInt(children.size());
+            for (Map.Entry<Object, ? extends ConfigurationNode> child : children.entrySet()) {
+                writeString(output, child.getKey().toString());
+                writeNode(output, child.getValue());
+            }
+            return;
+        }
+        if (node.hasListChildren()) {
+            final List<? extends ConfigurationNode> children = node.getChildrenList();
+            output.writeByte(TYPE_LIST);
+            output.writeInt(children.size());
+            for (ConfigurationNode child : children) {
+                writeNode(output, child);
+            }
+            return;
+        }
+
+        final Object value = node.getValue();
+        if (value == null) {
+            output.writeByte(TYPE_NULL);
+        } else if (value instanceof Boolean) {
+            output.writeByte(TYPE_BOOLEAN);
+            output.writeBoolean((Boolean) value);
+        } else if (value instanceof Integer) {
+            output.writeByte(TYPE_INT);
+            output.writeInt((Integer) value);
+        } else if (value instanceof Long) {
+            output.writeByte(TYPE_LONG);
+            output.writeLong((Long) value);
+        } else if (value instanceof Float) {
+            output.writeByte(TYPE_FLOAT);
+            output.writeFloat((Float) value);
+        } else if (value instanceof Double) {
+            output.writeByte(TYPE_DOUBLE);
+            output.writeDouble((Double) value);
+        } else {
+            output.writeByte(TYPE_STRING);
+            writeString(output, value.toString());
+        }
+    }
+
+    private static void readNode(DataInputStream input, ConfigurationNode node) throws IOException {
+        final byte type = input.readByte();
+        switch (type) {
+            case TYPE_NULL:
+                break;
+            case TYPE_MAP: {
+                final int size = input.readInt();
+                if (size == 0) {
+                    node.setValue(Collections.emptyMap());
+                }
+                for (int i = 0; i < size; i++) {
+                    readNode(input, node.getNode(readString(input)));
+                }
+                break;
+            }
+            case TYPE_LIST: {
+                final int size = input.readInt();
+                if (size == 0) {
+                    node.setValue(Collections.emptyList());
+                }
+                for (int i = 0; i < size; i++) {
+                    readNode(input, node.getAppendedNode());
+                }
+                break;
+            }
+            case TYPE_STRING:
+                node.setValue(readString(input));
+                break;
+            case TYPE_BOOLEAN:
+                node.setValue(input.readBoolean());
+                break;
+            case TYPE_INT:
+                node.setValue(input.readInt());
+                break;
+            case TYPE_LONG:
+                node.setValue(input.readLong());
+                break;
+            case TYPE_FLOAT:
+                node.setValue(input.readFloat());
+                break;
+            case TYPE_DOUBLE:
+                node.setValue(input.readDouble());
+                break;
+            default:
+                throw new IOException("Unknown node type " + type);
+        }
+    }
+
+    private static void writeString(DataOutputStream output, String value) throws IOException {
+        final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        output.writeInt(bytes.length);
+        output.write(bytes);
+    }
+
+    private static String readString(DataInputStream input) throws IOException {
+        final byte[] bytes = new byte[input.readInt()];
+        input.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private void compactIfNeeded() throws IOException {
+        final long deadBytes = this.logBytes - HEADER_SIZE - this.liveBytes;
+        if (deadBytes >= MIN_COMPACT_BYTES && deadBytes > this.liveBytes) {
+            this.compact();
+        }
+    }
+
+    // Returns the position of the record's data
+    private long append(byte op, String key, @Nullable byte[] data) throws IOException {
+        final ByteBuffer buffer = encode(op, key, data);
+        final long position = this.logBytes;
+        while (buffer.hasRemaining()) {
+            this.channel.write(buffer, position + buffer.position());
+        }
+        this.logBytes += buffer.limit();
+        return data == null ? -1 : this.logBytes - data.length;
+    }
+
+    private byte[] read(FileChannel readChannel, Slot slot) throws IOException {
+        final ByteBuffer buffer = ByteBuffer.allocate(slot.length);
+        while (buffer.hasRemaining()) {
+            if (readChannel.read(buffer, slot.position + buffer.position()) < 0) {
+                throw new EOFException("Claim log " + this.logPath + " ends inside a record");
+            }
+        }
+        return buffer.array();
+    }
+
+    private void replay() throws IOException {
+        try (FileChannel readChannel = FileChannel.open(this.logPath, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            final long size = readChannel.size();
+            // read through a stream, a mapped log could not be truncated on Windows
+            final DataInputStream input = new DataInputStream(new BufferedInputStream(Channels.newInputStream(readChannel), 64 * 1024));
+            if (size < HEADER_SIZE || input.readInt() != MAGIC) {
+                throw new IOException("Invalid claim log " + this.logPath);
+            }
+            this.version = input.readInt();
+            if (this.version != VERSION && this.version != VERSION_HOCON) {
+                throw new IOException("Unsupported claim log version " + this.version + " in " + this.logPath);
+            }
+
+            long validEnd = HEADER_SIZE;
+            try {
+                while (validEnd < size) {
+                    final byte op = input.readByte();
+                    final byte[] keyBytes = new byte[input.readUnsignedShort()];
+                    input.readFully(keyBytes);
+                    final String key = new String(keyBytes, StandardCharsets.UTF_8);
+                    long next = validEnd + 1 + 2 + keyBytes.length;
+                    if (op == OP_PUT) {
+                        final int length = input.readInt();
+                        next += 4;
+                        if (length < 0 || next + length > size) {
+                            break;
+                        }
+                        skipFully(input, length);
+                        this.entries.put(key, new Slot(next, length));
+                        next += length;
+                    } else if (op == OP_REMOVE) {
+                        this.entries.remove(key);
+                    } else {
+                        break;
+                    }
+                    validEnd = next;
+                }
+            } catch (EOFException e) {
+                // torn write, stop at the last complete record
+            }
+
+            if (validEnd < size) {
+                SpongeImpl.getLogger().warn("Dropping " + (size - validEnd) + " bytes of incomplete records from claim log " + this.logPath);
+                readChannel.truncate(validEnd);
+            }
+            this.logBytes = validEnd;
+        }
+
+        for (Map.Entry<String, Slot> entry : this.entries.entrySet()) {
+            this.liveBytes += recordSize(entry.getKey(), entry.getValue().length);
+        }
+    }
+
+    private static void skipFully(DataInputStream input, int length) throws IOException {
+        int remaining = length;
+        while (remaining > 0) {
+            final int skipped = input.skipBytes(remaining);
+            if (skipped <= 0) {
+                throw new EOFException();
+            }
+            remaining -= skipped;
+        }
+    }
+
+    private static void writeHeader(FileChannel writeChannel) throws IOException {
+        final ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(MAGIC).putInt(VERSION).flip();
+        while (header.hasRemaining()) {
+            writeChannel.write(header);
+        }
+    }
+
+    private static ByteBuffer encode(byte op, String key, @Nullable byte[] data) {
+        final byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        final ByteBuffer buffer = ByteBuffer.allocate(1 + 2 + keyBytes.length + (data == null ? 0 : 4 + data.length));
+        buffer.put(op).putShort((short) keyBytes.length).put(keyBytes);
+        if (data != null) {
+            buffer.putInt(data.length).put(data);
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    private static long recordSize(String key, int length) {
+        return 1 + 2 + key.getBytes(StandardCharsets.UTF_8).length + 4 + length;
+    }
+
+    private static final class Slot {
+
+        final long position;
+        final int length;
+
+        Slot(long position, int length) {
+            this.position = position;
+            this.length = length;
+        }
+    }
+
+    private final class Loader implements ConfigurationLoader<CommentedConfigurationNode> {
+
+        private final String key;
+
+        Loader(String key) {
+            this.key = key;
+        }
+
+        @Override
+        public ConfigurationOptions getDefaultOptions() {
+            return ConfigurationOptions.defaults();
+        }
+
+        @Override
+        public CommentedConfigurationNode load(ConfigurationOptions options) throws IOException {
+            final CommentedConfigurationNode node = SimpleCommentedConfigurationNode.root(options);
+            final byte[] data = get(this.key);
+            if (data != null) {
+                decodeNode(data, node);
+            }
+            return node;
+        }
+
+        @Override
+        public void save(ConfigurationNode node) throws IOException {
+            put(this.key, encodeNode(node));
+        }
+
+        @Override
+        public CommentedConfigurationNode createEmptyNode(ConfigurationOptions options) {
+            return SimpleCommentedConfigurationNode.root(options);
+        }
+    }
+}
@@ -25,6 +25,7 @@
 package me.ryanhamshire.griefprevention.configuration;
 
 import com.flowpowered.math.vector.Vector3i;
+import me.ryanhamshire.griefprevention.DataStore;
 import me.ryanhamshire.griefprevention.GriefPreventionPlugin;
 import me.ryanhamshire.griefprevention.api.claim.ClaimType;
 import me.ryanhamshire.griefprevention.claim.GPClaim;
@@ -32,7 +33,7 @@
 import ninja.leaping.configurate.ConfigurationOptions;
 import ninja.leaping.configurate.commented.CommentedConfigurationNode;
 import ninja.leaping.configurate.commented.SimpleCommentedConfigurationNode;
-import ninja.leaping.configurate.hocon.HoconConfigurationLoader;
+import ninja.leaping.configurate.loader.ConfigurationLoader;
 import ninja.leaping.configurate.objectmapping.ObjectMapper;
 import ninja.leaping.configurate.objectmapping.ObjectMappingException;
 import org.spongepowered.api.Sponge;
@@ -51,9 +52,11 @@
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ForkJoinPool;
 
+import javax.annotation.Nullable;
+
 public class ClaimStorageData {
 
-    protected HoconConfigurationLoader loader;
+    protected ConfigurationLoader<CommentedConfigurationNode> loader;
     private CommentedConfigurationNode root = SimpleCommentedConfigurationNode.root(ConfigurationOptions.defaults()
             .setHeader(GriefPreventionPlugin.CONFIG_HEADER));
     protected ObjectMapper<ClaimDataConfig>.BoundInstance configMapper;
@@ -104,12 +107,7 @@ public ClaimStorageData(Path path, UUID worldUniqueId, UUID ownerUniqueId, Claim
         this.filePath = path;
         this.folderPath = path.getParent();
         try {
-            Files.createDirectories(path.getParent());
-            if (Files.notExists(path)) {
-                Files.createFile(path);
-            }
-
-            this.loader = HoconConfigurationLoader.builder().setPath(path).build();
+            this.loader = GriefPreventionPlugin.instance.dataStore.createClaimLoader(path);
             if (type == ClaimType.TOWN) {
                 this.configMapper = (ObjectMapper.BoundInstance) ObjectMapper.forClass(TownDataConfig.class).bindToNew();
             } else {
@@ -132,12 +130,7 @@ public ClaimStorageData(Path path, UUID worldUniqueId, ClaimDataConfig claimData
         this.filePath = path;
         this.folderPath = path.getParent();
         try {
-            Files.createDirectories(path.getParent());
-            if (Files.notExists(path)) {
-                Files.createFile(path);
-            }
-
-            this.loader = HoconConfigurationLoader.builder().setPath(path).build();
+            this.loader = GriefPreventionPlugin.instance.dataStore.createClaimLoader(path);
             this.configMapper = (ObjectMapper.BoundInstance) ObjectMapper.forClass(ClaimDataConfig.class).bind(claimData);
             this.configMapper.getInstance().setClaimStorageData(this);
             reload();
@@ -148,24 +141,28 @@ public ClaimStorageData(Path path, UUID worldUniqueId, ClaimDataConfig claimData
     }
 
     // Used during server load
-    @SuppressWarnings({"unchecked", "rawtypes"})
     public ClaimStorageData(Path path, UUID worldUniqueId) {
+        this(path, worldUniqueId, (CommentedConfigurationNode) null);
+    }
+
+    // Used during server load, root is the file content when it was already read off the main thread
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public ClaimStorageData(Path path, UUID worldUniqueId, @Nullable CommentedConfigurationNode root) {
         this.filePath = path;
         this.folderPath = path.getParent();
         try {
-            Files.createDirectories(path.getParent());
-            if (Files.notExists(path)) {
-                Files.createFile(path);
-            }
-
-            this.loader = HoconConfigurationLoader.builder().setPath(path).build();
+            this.loader = GriefPreventionPlugin.instance.dataStore.createClaimLoader(path);
             if (path.getParent().endsWith("town")) {
                 this.configMapper = (ObjectMapper.BoundInstance) ObjectMapper.forClass(TownDataConfig.class).bindToNew();
             } else {
                 this.configMapper = (ObjectMapper.BoundInstance) ObjectMapper.forClass(ClaimDataConfig.class).bindToNew();
             }
             this.configMapper.getInstance().setClaimStorageData(this);
-            reload();
+            if (root == null) {
+                reload();
+            } else {
+                this.populate(root);
+            }
             ((EconomyDataConfig) this.configMapper.getInstance().getEconomyData()).activeConfig = GriefPreventionPlugin.getActiveConfig(worldUniqueId);
         } catch (Exception e) {
             SpongeImpl.getLogger().error("Failed to initialize configuration", e);
@@ -180,23 +177,30 @@ public void save() {
         try {
             // subdivisions are stored in their own claim files
             this.root.getNode(GriefPreventionPlugin.MOD_ID).removeChild("subdivisions");
+            ((EconomyDataConfig) this.configBase.getEconomyData()).prepareSave();
             this.configMapper.serialize(this.root.getNode(GriefPreventionPlugin.MOD_ID));
-            this.loader.save(this.root);
+            // written off-thread, snapshot so later changes don't race the writer
+            DataStore.CLAIM_SAVE_QUEUE.enqueue(this.filePath, this.root.copy());
             this.configBase.setRequiresSave(false);
-        } catch (IOException | ObjectMappingException e) {
+        } catch (ObjectMappingException e) {
             SpongeImpl.getLogger().error("Failed to save configuration", e);
         }
     }
 
     public void reload() {
         try {
-            this.root = this.loader.load(ConfigurationOptions.defaults().setHeader(GriefPreventionPlugin.CONFIG_HEADER));
-            this.configBase = this.configMapper.populate(this.root.getNode(GriefPreventionPlugin.MOD_ID));
+            this.populate(this.loader.load(ConfigurationOptions.defaults().setHeader(GriefPreventionPlugin.CONFIG_HEADER)));
         } catch (Exception e) {
             SpongeImpl.getLogger().error("Failed to load configuration", e);
         }
     }
 
+    private void populate(CommentedConfigurationNode root) throws ObjectMappingException {
+        this.root = root;
+        this.configBase = this.configMapper.populate(this.root.getNode(GriefPreventionPlugin.MOD_ID));
+        this.configBase.copyTrustListsOnWrite();
+    }
+
     public void migrateSubdivision(GPClaim parent) throws Exception {
         try {
             for (Map.Entry<Object, ? extends CommentedConfigurationNode> mapEntry : this.root.getNode(GriefPreventionPlugin.MOD_ID).getChildrenMap().entrySet()) {
@@ -267,6 +271,7 @@ public CompletableFuture<CommentedConfigurationNode> updateSetting(String key, O
             CommentedConfigurationNode upd = getSetting(key);
             upd.setValue(value);
             this.configBase = this.configMapper.populate(this.root.getNode(GriefPreventionPlugin.MOD_ID));
+            this.configBase.copyTrustListsOnWrite();
             this.loader.save(this.root);
             return upd;
         }, ForkJoinPool.commonPool());
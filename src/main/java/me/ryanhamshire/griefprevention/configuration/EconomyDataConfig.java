@@ -24,10 +24,11 @@
  */
 package me.ryanhamshire.griefprevention.configuration;
 
-import com.google.gson.Gson;
 import me.ryanhamshire.griefprevention.api.data.EconomyData;
 import me.ryanhamshire.griefprevention.api.economy.BankTransaction;
 import me.ryanhamshire.griefprevention.configuration.category.ConfigCategory;
+import me.ryanhamshire.griefprevention.economy.BankTransactionLog;
+import me.ryanhamshire.griefprevention.economy.GPBankTransaction;
 import ninja.leaping.configurate.objectmapping.Setting;
 import ninja.leaping.configurate.objectmapping.serialize.ConfigSerializable;
 
@@ -50,8 +51,11 @@ public class EconomyDataConfig extends ConfigCategory implements EconomyData {
     private double taxBalance = 0.0;
     @Setting(value = ClaimStorageData.MAIN_TAX_PAST_DUE_DATE)
     private String taxPastDueDate;
+    // Persisted form of the transaction log, only updated on save
     @Setting
     private List<String> bankTransactionLog = new ArrayList<>();
+    private BankTransactionLog transactionLog;
+    private boolean transactionLogChanged = false;
 
     @Override
     public boolean isForSale() {
@@ -102,19 +106,49 @@ public void setSalePrice(double price) {
 
     @Override
     public List<String> getBankTransactionLog() {
-        return this.bankTransactionLog;
+        final List<String> log = new ArrayList<>();
+        for (GPBankTransaction transaction : this.getTransactionLog().getTransactions()) {
+            log.add(BankTransactionLog.GSON.toJson(transaction));
+        }
+        return log;
+    }
+
+    public BankTransactionLog getTransactionLog() {
+        if (this.transactionLog == null) {
+            this.transactionLog = new BankTransactionLog(this.getTransactionLogLimit());
+            this.transactionLog.decode(this.bankTransactionLog);
+        } else {
+            this.transactionLog.setCapacity(this.getTransactionLogLimit());
+        }
+        return this.transactionLog;
     }
 
     @Override
     public void addBankTransaction(BankTransaction transaction) {
-        if (this.getBankTransactionLog().size() == this.activeConfig.getConfig().claim.bankTransactionLogLimit) {
-            this.getBankTransactionLog().remove(0);
-        }
-        this.getBankTransactionLog().add(new Gson().toJson(transaction));
+        final GPBankTransaction bankTransaction = transaction instanceof GPBankTransaction ? (GPBankTransaction) transaction
+                : new GPBankTransaction(transaction.getType(), transaction.getSource().orElse(null), transaction.getTimestamp(), transaction.getAmount());
+        this.getTransactionLog().add(bankTransaction);
+        this.transactionLogChanged = true;
     }
 
     @Override
     public void clearBankTransactionLog() {
-        this.bankTransactionLog.clear();
+        this.getTransactionLog().clear();
+        this.transactionLogChanged = true;
+    }
+
+    /**
+     * Writes the transaction log back to its persisted form. Called before
+     * the claim data is serialized.
+     */
+    public void prepareSave() {
+        if (this.transactionLogChanged) {
+            this.bankTransactionLog = this.transactionLog.encode();
+            this.transactionLogChanged = false;
+        }
+    }
+
+    private int getTransactionLogLimit() {
+        return this.activeConfig == null ? 60 : this.activeConfig.getConfig().claim.bankTransactionLogLimit;
     }
 }
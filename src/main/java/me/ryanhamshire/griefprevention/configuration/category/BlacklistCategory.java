@@ -25,11 +25,14 @@
 package me.ryanhamshire.griefprevention.configuration.category;
 
 import me.ryanhamshire.griefprevention.api.claim.ClaimFlag;
+import me.ryanhamshire.griefprevention.util.BlacklistMatcher;
 import ninja.leaping.configurate.objectmapping.Setting;
 import ninja.leaping.configurate.objectmapping.serialize.ConfigSerializable;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import javax.annotation.Nullable;
 
@@ -147,6 +150,11 @@ public class BlacklistCategory extends ConfigCategory {
     @Setting(value = "projectile-impact-entity")
     private List<String> blacklistProjectileImpactEntity = new ArrayList<>();
 
+    // Compiled on first use, a reload creates a new category which drops them
+    private BlacklistMatcher globalSourceMatcher;
+    private BlacklistMatcher globalTargetMatcher;
+    private final Map<String, BlacklistMatcher> flagMatchers = new ConcurrentHashMap<>();
+
     public List<String> getBlockBreakBlacklist() {
         return this.blacklistBlockBreak;
     }
@@ -158,6 +166,36 @@ public List<String> getGlobalTargetBlacklist() {
         return this.globalTargetBlacklist;
     }
 
+    @Nullable
+    public BlacklistMatcher getGlobalSourceMatcher() {
+        if (this.globalSourceMatcher == null && this.globalSourceBlacklist != null) {
+            this.globalSourceMatcher = new BlacklistMatcher(this.globalSourceBlacklist);
+        }
+        return this.globalSourceMatcher;
+    }
+
+    @Nullable
+    public BlacklistMatcher getGlobalTargetMatcher() {
+        if (this.globalTargetMatcher == null && this.globalTargetBlacklist != null) {
+            this.globalTargetMatcher = new BlacklistMatcher(this.globalTargetBlacklist);
+        }
+        return this.globalTargetMatcher;
+    }
+
+    @Nullable
+    public BlacklistMatcher getFlagMatcher(String flag) {
+        BlacklistMatcher matcher = this.flagMatchers.get(flag);
+        if (matcher == null) {
+            final List<String> flagBlacklist = this.getFlagBlacklist(flag);
+            if (flagBlacklist == null) {
+                return null;
+            }
+            matcher = new BlacklistMatcher(flagBlacklist);
+            this.flagMatchers.put(flag, matcher);
+        }
+        return matcher;
+    }
+
     @Nullable
     public List<String> getFlagBlacklist(String flag) {
         if (flag.equalsIgnoreCase("block-pre")) {
@@ -43,6 +43,8 @@ public class ClaimCategory extends ConfigCategory {
     public boolean deliverManuals = false;
     @Setting(value = "auto-nature-restore", comment = "Whether survival claims will be automatically restored to nature when auto-deleted. \nNote: This only supports vanilla blocks. Use with caution if using custom biomes.")
     public boolean claimAutoNatureRestore = false;
+    @Setting(value = "restore-chunks-per-tick", comment = "The maximum number of chunks regenerated or restored to nature per tick. Default: 2")
+    public int restoreChunksPerTick = 2;
     @Setting(value = "investigation-tool", comment = "The item used to investigate claims with a right-click.")
     public String investigationTool = "minecraft:stick";
     @Setting(value = "modification-tool", comment = "The item used to create/resize claims with a right click.")
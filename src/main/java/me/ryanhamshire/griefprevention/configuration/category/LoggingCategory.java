@@ -38,4 +38,8 @@ public class LoggingCategory extends ConfigCategory {
     public boolean loggingSocialActions = false;
     @Setting(value = "suspicious-activity", comment = "Log suspicious activity.")
     public boolean loggingSuspiciousActivity = false;
+    @Setting(value = "queue-limit", comment = "How many log entries can wait to be written before the queue is full. Set to 0 for no limit.")
+    public int queueLimit = 10000;
+    @Setting(value = "block-when-full", comment = "Wait for queued entries to be written instead of dropping new entries when the queue is full.")
+    public boolean blockWhenFull = false;
 }
\ No newline at end of file
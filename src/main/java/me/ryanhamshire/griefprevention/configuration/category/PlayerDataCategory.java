@@ -55,4 +55,10 @@ public class PlayerDataCategory extends ConfigCategory {
             + "\nExample: If a player has 5 basic claims with a total cost of 1000, this will set their accrued claim blocks to 1000."
             + "\nNote: This will also reset all bonus claim blocks to 0. It is highly recommended to backup before using.")
     public boolean resetAccruedClaimBlocks = false;
+    @Setting(value = "cache-expiration", comment = "The number of minutes an offline player's data is kept in memory after it was last used. (Default: 10)"
+            + "\nPlayer data is loaded again on demand, such as on join or when a claim needs its owner.")
+    public int cacheExpiration = 10;
+    @Setting(value = "cache-max-offline", comment = "The maximum number of offline players whose data is kept in memory. (Default: 1000)"
+            + "\nThe least recently used data is saved and dropped first.")
+    public int cacheMaxOffline = 1000;
 }
\ No newline at end of file
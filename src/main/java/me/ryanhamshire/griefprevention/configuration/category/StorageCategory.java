@@ -22,40 +22,22 @@
  * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
  * THE SOFTWARE.
  */
-package me.ryanhamshire.griefprevention.util;
+package me.ryanhamshire.griefprevention.configuration.category;
 
-import org.spongepowered.api.util.Tristate;
-import org.spongepowered.common.SpongeImpl;
+import ninja.leaping.configurate.objectmapping.Setting;
+import ninja.leaping.configurate.objectmapping.serialize.ConfigSerializable;
 
-public class BlockPosCache {
+@ConfigSerializable
+public class StorageCategory extends ConfigCategory {
 
-    private int lastTickCounter;
-    private short lastBlockPos;
-    private Tristate lastResult = Tristate.UNDEFINED;
+    @Setting(value = "claim-format", comment = "The format used to store claim data. (Default: hocon)" +
+            "\nhocon: One HOCON file per claim in each world's ClaimData folder." +
+            "\nbinary: A single append-only log per world in ClaimData.gplog." +
+            "\nNote: When switching to binary, existing HOCON claim files are imported on first load and left in place." +
+            "\nNote: Use '/gpstorage export' to write binary claim data back out as HOCON files.")
+    public String claimFormat = "hocon";
 
-    public BlockPosCache(short pos) {
-        this.lastBlockPos = pos;
-        this.lastTickCounter = SpongeImpl.getServer().getTickCounter();
-    }
-
-    public void setLastResult(Tristate result) {
-        this.lastResult = result;
-    }
-
-    public Tristate getCacheResult(short pos) {
-        int currentTick = SpongeImpl.getServer().getTickCounter();
-        if (this.lastBlockPos != pos) {
-            this.lastBlockPos = pos;
-            this.lastTickCounter = currentTick;
-            return Tristate.UNDEFINED;
-        }
-
-        if ((currentTick - this.lastTickCounter) <= 2) {
-            this.lastTickCounter = currentTick;
-            return this.lastResult;
-        }
-
-        this.lastTickCounter = currentTick;
-        return Tristate.UNDEFINED;
+    public boolean isBinaryClaimFormat() {
+        return this.claimFormat.equalsIgnoreCase("binary");
     }
 }
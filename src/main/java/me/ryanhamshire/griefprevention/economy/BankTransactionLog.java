@@ -0,0 +1,163 @@
+/*
+ * This file is part of GriefPrevention, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) bloodmc
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package me.ryanhamshire.griefprevention.economy;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import me.ryanhamshire.griefprevention.api.economy.BankTransactionType;
+import org.spongepowered.common.SpongeImpl;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Fixed capacity ring of the most recent bank transactions of a claim.
+ *
+ * <p>Transactions are persisted as compact {@code type,millis,amount[,source]}
+ * lines. Lines written as JSON by older versions are still read.</p>
+ */
+public class BankTransactionLog {
+
+    public static final Gson GSON = new Gson();
+    private static final char SEPARATOR = ',';
+
+    private GPBankTransaction[] transactions;
+    private int head = 0;
+    private int size = 0;
+
+    public BankTransactionLog(int capacity) {
+        this.transactions = new GPBankTransaction[Math.max(1, capacity)];
+    }
+
+    /**
+     * Adds a transaction, replacing the oldest one once the log is full.
+     *
+     * @param transaction The transaction
+     */
+    public void add(GPBankTransaction transaction) {
+        final int capacity = this.transactions.length;
+        this.transactions[(this.head + this.size) % capacity] = transaction;
+        if (this.size < capacity) {
+            this.size++;
+        } else {
+            this.head = (this.head + 1) % capacity;
+        }
+    }
+
+    /**
+     * Changes the capacity, keeping the most recent transactions.
+     *
+     * @param capacity The new capacity
+     */
+    public void setCapacity(int capacity) {
+        capacity = Math.max(1, capacity);
+        if (capacity == this.transactions.length) {
+            return;
+        }
+
+        final List<GPBankTransaction> current = this.getTransactions();
+        this.transactions = new GPBankTransaction[capacity];
+        this.head = 0;
+        this.size = 0;
+        for (int i = Math.max(0, current.size() - capacity); i < current.size(); i++) {
+            this.add(current.get(i));
+        }
+    }
+
+    public int size() {
+        return this.size;
+    }
+
+    public void clear() {
+        for (int i = 0; i < this.transactions.length; i++) {
+            this.transactions[i] = null;
+        }
+        this.head = 0;
+        this.size = 0;
+    }
+
+    /**
+     * Gets the transactions, oldest first.
+     *
+     * @return A copy of the transactions
+     */
+    public List<GPBankTransaction> getTransactions() {
+        final List<GPBankTransaction> list = new ArrayList<>(this.size);
+        for (int i = 0; i < this.size; i++) {
+            list.add(this.transactions[(this.head + i) % this.transactions.length]);
+        }
+        return list;
+    }
+
+    public List<String> encode() {
+        final List<String> lines = new ArrayList<>(this.size);
+        for (int i = 0; i < this.size; i++) {
+            lines.add(encode(this.transactions[(this.head + i) % this.transactions.length]));
+        }
+        return lines;
+    }
+
+    public void decode(List<String> lines) {
+        for (String line : lines) {
+            final GPBankTransaction transaction = decode(line);
+            if (transaction != null) {
+                this.add(transaction);
+            }
+        }
+    }
+
+    public static String encode(GPBankTransaction transaction) {
+        final StringBuilder builder = new StringBuilder(64)
+                .append(transaction.type.name()).append(SEPARATOR)
+                .append(transaction.timestamp.toEpochMilli()).append(SEPARATOR)
+                .append(transaction.amount);
+        if (transaction.source != null) {
+            builder.append(SEPARATOR).append(transaction.source);
+        }
+        return builder.toString();
+    }
+
+    public static GPBankTransaction decode(String line) {
+        try {
+            if (line.startsWith("{")) {
+                return GSON.fromJson(line, GPBankTransaction.class);
+            }
+
+            final String[] parts = line.split(String.valueOf(SEPARATOR));
+            final BankTransactionType type = BankTransactionType.valueOf(parts[0]);
+            final Instant timestamp = Instant.ofEpochMilli(Long.parseLong(parts[1]));
+            final double amount = Double.parseDouble(parts[2]);
+            if (parts.length > 3) {
+                return new GPBankTransaction(type, UUID.fromString(parts[3]), timestamp, amount);
+            }
+            return new GPBankTransaction(type, timestamp, amount);
+        } catch (JsonParseException | IllegalArgumentException | ArrayIndexOutOfBoundsException e) {
+            SpongeImpl.getLogger().error("Skipping invalid bank transaction '" + line + "'", e);
+            return null;
+        }
+    }
+}
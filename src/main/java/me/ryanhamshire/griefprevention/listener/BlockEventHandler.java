@@ -39,11 +39,12 @@
 import me.ryanhamshire.griefprevention.api.claim.TrustType;
 import me.ryanhamshire.griefprevention.claim.GPClaim;
 import me.ryanhamshire.griefprevention.configuration.GriefPreventionConfig;
+import me.ryanhamshire.griefprevention.permission.ClaimPermissionBatch;
 import me.ryanhamshire.griefprevention.permission.GPPermissionHandler;
 import me.ryanhamshire.griefprevention.permission.GPPermissions;
-import me.ryanhamshire.griefprevention.util.BlockPosCache;
 import me.ryanhamshire.griefprevention.util.BlockUtils;
 import me.ryanhamshire.griefprevention.util.CauseContextHelper;
+import me.ryanhamshire.griefprevention.util.EntityBlockCollideCache;
 import me.ryanhamshire.griefprevention.visual.Visualization;
 import me.ryanhamshire.griefprevention.visual.VisualizationType;
 import net.minecraft.block.BlockBasePressurePlate;
@@ -84,6 +85,7 @@
 import org.spongepowered.api.world.LocatableBlock;
 import org.spongepowered.api.world.Location;
 import org.spongepowered.api.world.World;
+import org.spongepowered.common.SpongeImpl;
 import org.spongepowered.common.interfaces.world.IMixinLocation;
 
 import java.util.ArrayList;
@@ -143,6 +145,11 @@ public void onBlockPre(ChangeBlockEvent.Pre event) {
             return;
         }
 
+        // evaluate each claim and target block once for all locations of this event
+        final ClaimPermissionBatch fireBatch = isFireSource ? new ClaimPermissionBatch(event, GPPermissions.FIRE_SPREAD, source, user, false) : null;
+        final ClaimPermissionBatch liquidBatch = isLiquidSource ? new ClaimPermissionBatch(event, GPPermissions.LIQUID_FLOW, source, user, false) : null;
+        final ClaimPermissionBatch breakBatch = new ClaimPermissionBatch(event, GPPermissions.BLOCK_BREAK, source, user, false);
+
         if (sourceLocation != null) {
             if (!GriefPreventionPlugin.instance.claimsEnabledForWorld(sourceLocation.getExtent().getProperties())) {
                 GPTimings.BLOCK_PRE_EVENT.stopTimingIfSync();
@@ -178,21 +185,21 @@ public void onBlockPre(ChangeBlockEvent.Pre event) {
                     }
                 }
                 if (isFireSource) {
-                    if (GPPermissionHandler.getClaimPermission(event, location, targetClaim, GPPermissions.FIRE_SPREAD, source, location.getBlock(), user) == Tristate.FALSE) {
+                    if (fireBatch.getClaimPermission(location, targetClaim) == Tristate.FALSE) {
                         event.setCancelled(true);
                         GPTimings.BLOCK_PRE_EVENT.stopTimingIfSync();
                         continue;
                     }
                 }
                 if (isLiquidSource) {
-                    if (GPPermissionHandler.getClaimPermission(event, location, targetClaim, GPPermissions.LIQUID_FLOW, source, location.getBlock(), user) == Tristate.FALSE) {
+                    if (liquidBatch.getClaimPermission(location, targetClaim) == Tristate.FALSE) {
                         event.setCancelled(true);
                         GPTimings.BLOCK_PRE_EVENT.stopTimingIfSync();
                         return;
                     }
                     continue;
                 }
-                if (GPPermissionHandler.getClaimPermission(event, location, targetClaim, GPPermissions.BLOCK_BREAK, source, location.getBlock(), user) == Tristate.FALSE) {
+                if (breakBatch.getClaimPermission(location, targetClaim) == Tristate.FALSE) {
                     // PRE events can be spammy so we need to avoid sending player messages here.
                     event.setCancelled(true);
                     GPTimings.BLOCK_PRE_EVENT.stopTimingIfSync();
@@ -215,7 +222,7 @@ public void onBlockPre(ChangeBlockEvent.Pre event) {
                 }
 
                 if (isFireSource) {
-                    if (GPPermissionHandler.getClaimPermission(event, location, targetClaim, GPPermissions.FIRE_SPREAD, source, location.getBlock(), user) == Tristate.FALSE) {
+                    if (fireBatch.getClaimPermission(location, targetClaim) == Tristate.FALSE) {
                         event.setCancelled(true);
                         GPTimings.BLOCK_PRE_EVENT.stopTimingIfSync();
                         continue;
@@ -223,7 +230,7 @@ public void onBlockPre(ChangeBlockEvent.Pre event) {
                 }
 
                 if (isLiquidSource) {
-                    if (GPPermissionHandler.getClaimPermission(event, location, targetClaim, GPPermissions.LIQUID_FLOW, source, location.getBlock(), user) == Tristate.FALSE) {
+                    if (liquidBatch.getClaimPermission(location, targetClaim) == Tristate.FALSE) {
                         event.setCancelled(true);
                         GPTimings.BLOCK_PRE_EVENT.stopTimingIfSync();
                         return;
@@ -232,7 +239,7 @@ public void onBlockPre(ChangeBlockEvent.Pre event) {
                 }
 
                 boolean userAllowed = false;
-                boolean canBreak = GPPermissionHandler.getClaimPermission(event, location, targetClaim, GPPermissions.BLOCK_BREAK, source, location.getBlock(), user) == Tristate.TRUE;
+                boolean canBreak = breakBatch.getClaimPermission(location, targetClaim) == Tristate.TRUE;
                 if (hasFakePlayer) {
                     if (!canBreak) {
                         userAllowed = false;
@@ -379,23 +386,17 @@ public void onBlockCollide(CollideBlockEvent event, @Root Entity source) {
             return;
         }
 
-        BlockPos collidePos = ((IMixinLocation)(Object) event.getTargetLocation()).getBlockPos();
-        short shortPos = BlockUtils.blockPosToShort(collidePos);
-        int entityId = ((net.minecraft.entity.Entity) source).getEntityId();
-        BlockPosCache entityBlockCache = BlockUtils.ENTITY_BLOCK_CACHE.get(entityId);
-        if (entityBlockCache == null) {
-            entityBlockCache = new BlockPosCache(shortPos);
-            BlockUtils.ENTITY_BLOCK_CACHE.put(entityId, entityBlockCache);
-        } else {
-            Tristate result = entityBlockCache.getCacheResult(shortPos);
-            if (result != Tristate.UNDEFINED) {
-                if (result == Tristate.FALSE) {
-                    event.setCancelled(true);
-                }
-
-                GPTimings.BLOCK_COLLIDE_EVENT.stopTimingIfSync();
-                return;
+        final BlockPos collidePos = ((IMixinLocation)(Object) event.getTargetLocation()).getBlockPos();
+        final int entityId = ((net.minecraft.entity.Entity) source).getEntityId();
+        final EntityBlockCollideCache entityBlockCache = BlockUtils.ENTITY_BLOCK_CACHE;
+        final Tristate cacheResult = entityBlockCache.get(entityId, collidePos.toLong(), SpongeImpl.getServer().getTickCounter());
+        if (cacheResult != Tristate.UNDEFINED) {
+            if (cacheResult == Tristate.FALSE) {
+                event.setCancelled(true);
             }
+
+            GPTimings.BLOCK_COLLIDE_EVENT.stopTimingIfSync();
+            return;
         }
 
         GPPlayerData playerData = null;
@@ -413,12 +414,12 @@ public void onBlockCollide(CollideBlockEvent event, @Root Entity source) {
                 if (playerData != null) {
                     playerData.setLastInteractData(targetClaim);
                 }
-                entityBlockCache.setLastResult(Tristate.TRUE);
+                entityBlockCache.setResult(entityId, Tristate.TRUE);
                 GPTimings.BLOCK_COLLIDE_EVENT.stopTimingIfSync();
                 return;
             }
 
-            entityBlockCache.setLastResult(Tristate.FALSE);
+            entityBlockCache.setResult(entityId, Tristate.FALSE);
             event.setCancelled(true);
             GPTimings.BLOCK_COLLIDE_EVENT.stopTimingIfSync();
             return;
@@ -429,7 +430,7 @@ public void onBlockCollide(CollideBlockEvent event, @Root Entity source) {
                 if (playerData != null) {
                     playerData.setLastInteractData(targetClaim);
                 }
-                entityBlockCache.setLastResult(Tristate.TRUE);
+                entityBlockCache.setResult(entityId, Tristate.TRUE);
                 GPTimings.BLOCK_COLLIDE_EVENT.stopTimingIfSync();
                 return;
             }
@@ -445,7 +446,7 @@ public void onBlockCollide(CollideBlockEvent event, @Root Entity source) {
                                 .apply(ImmutableMap.of(
                                 "owner", targetClaim.getOwnerName())).build();*/
                         event.setCancelled(true);
-                        entityBlockCache.setLastResult(Tristate.FALSE);
+                        entityBlockCache.setResult(entityId, Tristate.FALSE);
                         GPTimings.BLOCK_COLLIDE_EVENT.stopTimingIfSync();
                         return;
                     }
@@ -453,7 +454,7 @@ public void onBlockCollide(CollideBlockEvent event, @Root Entity source) {
             }
 
             event.setCancelled(true);
-            entityBlockCache.setLastResult(Tristate.FALSE);
+            entityBlockCache.setResult(entityId, Tristate.FALSE);
             GPTimings.BLOCK_COLLIDE_EVENT.stopTimingIfSync();
             return;
         }
@@ -461,7 +462,7 @@ public void onBlockCollide(CollideBlockEvent event, @Root Entity source) {
         if (playerData != null) {
             playerData.setLastInteractData(targetClaim);
         }
-        entityBlockCache.setLastResult(Tristate.TRUE);
+        entityBlockCache.setResult(entityId, Tristate.TRUE);
         GPTimings.BLOCK_COLLIDE_EVENT.stopTimingIfSync();
     }
 
@@ -520,6 +521,10 @@ public void onExplosion(ExplosionEvent.Post event) {
 
         GPTimings.EXPLOSION_EVENT.startTimingIfSync();
         final User user = CauseContextHelper.getEventUser(event);
+        // evaluate each claim and target block once for all transactions of this explosion
+        final ClaimPermissionBatch surfaceBatch = GPFlags.EXPLOSION_SURFACE ? new ClaimPermissionBatch(event, GPPermissions.EXPLOSION_SURFACE, source, user, true) : null;
+        final ClaimPermissionBatch explosionBatch = new ClaimPermissionBatch(event, GPPermissions.EXPLOSION, source, user, true);
+        final int seaLevel = ((net.minecraft.world.World) world).getSeaLevel();
         GPClaim targetClaim = null;
         for (Transaction<BlockSnapshot> transaction : event.getTransactions()) {
             BlockSnapshot blockSnapshot = transaction.getOriginal();
@@ -529,13 +534,13 @@ public void onExplosion(ExplosionEvent.Post event) {
             }
 
             targetClaim =  GriefPreventionPlugin.instance.dataStore.getClaimAt(blockSnapshot.getLocation().get(), targetClaim);
-            if (GPFlags.EXPLOSION_SURFACE && location.getPosition().getY() > ((net.minecraft.world.World) world).getSeaLevel() && GPPermissionHandler.getClaimPermission(event, location, targetClaim, GPPermissions.EXPLOSION_SURFACE, source, blockSnapshot, user, true) == Tristate.FALSE) {
+            if (surfaceBatch != null && location.getBlockY() > seaLevel && surfaceBatch.getClaimPermission(location, targetClaim, blockSnapshot) == Tristate.FALSE) {
                 event.setCancelled(true);
                 GPTimings.EXPLOSION_EVENT.stopTimingIfSync();
                 return;
             }
 
-            if (GPPermissionHandler.getClaimPermission(event, location, targetClaim, GPPermissions.EXPLOSION, source, blockSnapshot, user, true) == Tristate.FALSE) {
+            if (explosionBatch.getClaimPermission(location, targetClaim, blockSnapshot) == Tristate.FALSE) {
                 // Avoid lagging server from large explosions.
                 if (event.getTransactions().size() > 100) {
                     event.setCancelled(true);
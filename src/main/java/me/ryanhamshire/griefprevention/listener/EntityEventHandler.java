@@ -53,12 +53,15 @@
 import net.minecraft.entity.player.EntityPlayer;
 import net.minecraft.init.Items;
 import net.minecraft.inventory.ContainerPlayer;
+import net.minecraft.util.math.ChunkPos;
 import nl.riebie.mcclans.api.ClanPlayer;
 import org.spongepowered.api.Sponge;
 import org.spongepowered.api.block.BlockSnapshot;
 import org.spongepowered.api.command.source.ConsoleSource;
 import org.spongepowered.api.entity.Entity;
+import org.spongepowered.api.entity.EntityType;
 import org.spongepowered.api.entity.EntityTypes;
+import org.spongepowered.api.entity.Item;
 import org.spongepowered.api.entity.explosive.Explosive;
 import org.spongepowered.api.entity.living.Living;
 import org.spongepowered.api.entity.living.player.Player;
@@ -92,7 +95,6 @@
 import org.spongepowered.api.world.Location;
 import org.spongepowered.api.world.World;
 import org.spongepowered.api.world.explosion.Explosion;
-import org.spongepowered.api.world.storage.WorldProperties;
 import org.spongepowered.common.SpongeImplHooks;
 import org.spongepowered.common.data.util.NbtDataUtil;
 import org.spongepowered.common.interfaces.entity.IMixinEntity;
@@ -100,7 +102,10 @@
 import java.lang.ref.WeakReference;
 import java.time.Instant;
 import java.util.Calendar;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
+import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
 import java.util.function.Predicate;
@@ -210,6 +215,12 @@ public void onEntitySpawn(SpawnEntityEvent event, @Root Object source) {
 
         GPTimings.ENTITY_SPAWN_EVENT.startTimingIfSync();
         final User user = CauseContextHelper.getEventUser(event);
+        if (isChunkSpawn) {
+            this.filterChunkSpawn(event, source, world, user);
+            GPTimings.ENTITY_SPAWN_EVENT.stopTimingIfSync();
+            return;
+        }
+
         event.filterEntities(new Predicate<Entity>() {
             GPClaim targetClaim = null;
 
@@ -225,14 +236,7 @@ public boolean test(Entity entity) {
                 }
 
                 String permission = GPPermissions.ENTITY_SPAWN;
-                if (isChunkSpawn) {
-                    if (GriefPreventionPlugin.isTargetIdBlacklisted(ClaimFlag.ENTITY_CHUNK_SPAWN.toString(), entity, world.getProperties())) {
-                        return true;
-                    }
-                    permission = GPPermissions.ENTITY_CHUNK_SPAWN;
-                }
-
-                if (!isChunkSpawn && (entity instanceof EntityItem || entity instanceof EntityXPOrb)) {
+                if (entity instanceof EntityItem || entity instanceof EntityXPOrb) {
                     if (user == null) {
                         return true;
                     }
@@ -277,6 +281,61 @@ public boolean test(Entity entity) {
         GPTimings.ENTITY_SPAWN_EVENT.stopTimingIfSync();
     }
 
+    // Chunk loads spawn many entities of few types into the same claims so
+    // blacklist and permission results are resolved once per entity type and claim
+    private void filterChunkSpawn(SpawnEntityEvent event, Object source, World world, User user) {
+        final GPClaimManager claimManager = this.dataStore.getClaimWorldManager(world.getProperties());
+        final Map<EntityType, Boolean> blacklistedTypes = new IdentityHashMap<>();
+        final Map<GPClaim, Map<EntityType, Boolean>> decisions = new HashMap<>();
+        event.filterEntities(new Predicate<Entity>() {
+            GPClaim targetClaim = null;
+            long lastChunk = Long.MIN_VALUE;
+            boolean chunkHasClaims;
+
+            @Override
+            public boolean test(Entity entity) {
+                // items and players are identified by more than their type
+                final boolean typeKeyed = !(entity instanceof Item) && !(entity instanceof EntityItem) && !(entity instanceof EntityPlayer);
+                final EntityType type = entity.getType();
+                Boolean blacklisted = typeKeyed ? blacklistedTypes.get(type) : null;
+                if (blacklisted == null) {
+                    blacklisted = GriefPreventionPlugin.isTargetIdBlacklisted(ClaimFlag.ENTITY_SPAWN.toString(), entity, world.getProperties())
+                            || GriefPreventionPlugin.isTargetIdBlacklisted(ClaimFlag.ENTITY_CHUNK_SPAWN.toString(), entity, world.getProperties());
+                    if (typeKeyed) {
+                        blacklistedTypes.put(type, blacklisted);
+                    }
+                }
+                if (blacklisted) {
+                    return true;
+                }
+
+                final Location<World> location = entity.getLocation();
+                final int chunkX = location.getBlockX() >> 4;
+                final int chunkZ = location.getBlockZ() >> 4;
+                final long chunk = ChunkPos.asLong(chunkX, chunkZ);
+                if (chunk != this.lastChunk) {
+                    this.lastChunk = chunk;
+                    this.chunkHasClaims = claimManager.getClaimIndex().getClaimsInChunk(chunkX, chunkZ).length > 0;
+                }
+                // skip the index lookup when no claim touches the chunk
+                this.targetClaim = this.chunkHasClaims ? (GPClaim) claimManager.getClaimAt(location, this.targetClaim) : claimManager.getWildernessClaim();
+                if (this.targetClaim == null) {
+                    return true;
+                }
+
+                final Map<EntityType, Boolean> claimDecisions = typeKeyed ? decisions.computeIfAbsent(this.targetClaim, k -> new IdentityHashMap<>()) : null;
+                Boolean allowed = claimDecisions != null ? claimDecisions.get(type) : null;
+                if (allowed == null) {
+                    allowed = GPPermissionHandler.getClaimPermission(event, location, this.targetClaim, GPPermissions.ENTITY_CHUNK_SPAWN, source, entity, user, true) != Tristate.FALSE;
+                    if (claimDecisions != null) {
+                        claimDecisions.put(type, allowed);
+                    }
+                }
+                return allowed;
+            }
+        });
+    }
+
     @Listener(order = Order.FIRST, beforeModifications = true)
     public void onEntityAttack(AttackEntityEvent event, @First DamageSource damageSource) {
         if (!GPFlags.ENTITY_DAMAGE || !GriefPreventionPlugin.instance.claimsEnabledForWorld(event.getTargetEntity().getWorld().getProperties())) {
@@ -648,8 +707,8 @@ public void onEntityMove(MoveEntityEvent event){
 
         if (player == null && owner == null) {
             // Handle border event without player
-            GPClaim fromClaim = this.dataStore.getClaimAt(fromLocation);
-            GPClaim toClaim = this.dataStore.getClaimAt(toLocation);
+            GPClaim fromClaim = this.getMoveClaimAt(entity, fromLocation);
+            GPClaim toClaim = this.getMoveClaimAt(entity, toLocation);
             if (fromClaim != toClaim) {
                 GPBorderClaimEvent gpEvent = new GPBorderClaimEvent(entity, fromClaim, toClaim);
                 // enter
@@ -671,13 +730,9 @@ public void onEntityMove(MoveEntityEvent event){
             return;
         }
 
-        GPClaim fromClaim = null;
-        GPClaim toClaim = this.dataStore.getClaimAt(toLocation);
-        if (playerData != null) {
-            fromClaim = this.dataStore.getClaimAtPlayer(playerData, fromLocation);
-        } else {
-            fromClaim = this.dataStore.getClaimAt(fromLocation);
-        }
+        // resolve origin first so the tracked box moves along with the entity
+        final GPClaim fromClaim = this.getMoveClaimAt(entity, fromLocation);
+        final GPClaim toClaim = this.getMoveClaimAt(entity, toLocation);
 
         if (GPFlags.ENTER_CLAIM && !enterBlacklisted && playerData != null && playerData.lastClaim != null) {
             final GPClaim lastClaim = (GPClaim) playerData.lastClaim.get();
@@ -811,6 +866,12 @@ public void onEntityMove(MoveEntityEvent event){
         GPTimings.ENTITY_MOVE_EVENT.stopTimingIfSync();
     }
 
+    // Moves within the tracked claim box of an entity skip the claim lookup
+    private GPClaim getMoveClaimAt(Entity entity, Location<World> location) {
+        final GPClaimManager claimManager = this.dataStore.getClaimWorldManager(location.getExtent().getProperties());
+        return DataStore.CLAIM_BOUNDARY_TRACKER.getClaimAt(((net.minecraft.entity.Entity) entity).getEntityId(), claimManager, location);
+    }
+
     // when a player teleports
     @Listener(order = Order.FIRST, beforeModifications = true)
     public void onEntityTeleport(MoveEntityEvent.Teleport event) {
@@ -923,19 +984,16 @@ public void onEntityTeleport(MoveEntityEvent.Teleport event) {
             GPClaimManager claimWorldManager = GriefPreventionPlugin.instance.dataStore.getClaimWorldManager(destination.getExtent().getProperties());
 
             try (final CauseStackManager.StackFrame frame = Sponge.getCauseStackManager().pushCauseFrame()) {
-                // update lastActive timestamps for claims this player owns
-                WorldProperties worldProperties = destination.getExtent().getProperties();
+                // update lastActive timestamps for claims this player owns, claims are already registered
                 UUID playerUniqueId = player.getUniqueId();
                 Sponge.getCauseStackManager().pushCause(GriefPreventionPlugin.instance);
-                for (Claim claim : this.dataStore.getClaimWorldManager(worldProperties).getWorldClaims()) {
-                    if (claim.getOwnerUniqueId().equals(playerUniqueId)) {
-                        // update lastActive timestamp for claim
-                        claim.getData().setDateLastActive(Instant.now());
-                        claimWorldManager.addClaim(claim);
-                    } else if (claim.getParent().isPresent() && claim.getParent().get().getOwnerUniqueId().equals(playerUniqueId)) {
-                        // update lastActive timestamp for subdivisions if parent owner logs on
-                        claim.getData().setDateLastActive(Instant.now());
-                        claimWorldManager.addClaim(claim);
+                final Instant dateNow = Instant.now();
+                for (Claim claim : claimWorldManager.getWorldPlayerClaims(playerUniqueId)) {
+                    claim.getData().setDateLastActive(dateNow);
+                    DataStore.CLAIM_EXPIRATION_QUEUE.markChanged(claim);
+                    // update lastActive timestamp for subdivisions if parent owner logs on
+                    for (Claim subdivision : ((GPClaim) claim).children) {
+                        subdivision.getData().setDateLastActive(dateNow);
                     }
                 }
             }
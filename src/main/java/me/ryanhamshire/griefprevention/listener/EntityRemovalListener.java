@@ -24,6 +24,7 @@
  */
 package me.ryanhamshire.griefprevention.listener;
 
+import me.ryanhamshire.griefprevention.DataStore;
 import me.ryanhamshire.griefprevention.util.BlockUtils;
 import net.minecraft.block.state.IBlockState;
 import net.minecraft.entity.Entity;
@@ -39,6 +40,7 @@ public class EntityRemovalListener implements IWorldEventListener {
     @Override
     public void onEntityRemoved(Entity entityIn) {
         BlockUtils.ENTITY_BLOCK_CACHE.remove(entityIn.getEntityId());
+        DataStore.CLAIM_BOUNDARY_TRACKER.remove(entityIn.getEntityId());
     }
 
     @Override
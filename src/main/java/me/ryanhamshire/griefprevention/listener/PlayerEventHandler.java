@@ -98,6 +98,7 @@
 import org.spongepowered.api.event.command.SendCommandEvent;
 import org.spongepowered.api.event.entity.DestructEntityEvent;
 import org.spongepowered.api.event.entity.InteractEntityEvent;
+import org.spongepowered.api.event.entity.MoveEntityEvent;
 import org.spongepowered.api.event.entity.living.humanoid.HandInteractEvent;
 import org.spongepowered.api.event.entity.living.humanoid.player.KickPlayerEvent;
 import org.spongepowered.api.event.entity.living.humanoid.player.RespawnPlayerEvent;
@@ -733,7 +734,7 @@ public void onPlayerCommand(SendCommandEvent event, @First Player player) {
             }
 
             // unless cancelled, log in abridged logs
-            if (!event.isCancelled()) {
+            if (!event.isCancelled() && GriefPreventionPlugin.isLogEntryEnabled(CustomLogEntryTypes.SocialActivity)) {
                 StringBuilder builder = new StringBuilder();
                 for (String arg : args) {
                     builder.append(arg + " ");
@@ -768,6 +769,10 @@ public void onPlayerCommand(SendCommandEvent event, @First Player player) {
     static int longestNameLength = 10;
 
     static void makeSocialLogEntry(String name, String message) {
+        if (!GriefPreventionPlugin.isLogEntryEnabled(CustomLogEntryTypes.SocialActivity)) {
+            return;
+        }
+
         StringBuilder entryBuilder = new StringBuilder(name);
         for (int i = name.length(); i < longestNameLength; i++) {
             entryBuilder.append(' ');
@@ -834,10 +839,11 @@ public void onPlayerLogin(ClientConnectionEvent.Login event) {
         playerData.ipAddress = event.getConnection().getAddress().getAddress();
         final GPClaimManager claimWorldManager = this.dataStore.getClaimWorldManager(worldProperties);
         final Instant dateNow = Instant.now();
-        for (Claim claim : claimWorldManager.getWorldClaims()) {
-            if (claim.getType() != ClaimType.ADMIN && claim.getOwnerUniqueId().equals(playerUniqueId)) {
+        for (Claim claim : claimWorldManager.getWorldPlayerClaims(playerUniqueId)) {
+            if (claim.getType() != ClaimType.ADMIN) {
                 // update lastActive timestamp for claim
                 claim.getData().setDateLastActive(dateNow);
+                DataStore.CLAIM_EXPIRATION_QUEUE.markChanged(claim);
                 // update timestamps for subdivisions
                 for (Claim subdivision : ((GPClaim) claim).children) {
                     subdivision.getData().setDateLastActive(dateNow);
@@ -865,6 +871,7 @@ public void onPlayerJoin(ClientConnectionEvent.Join event) {
         long now = nowDate.getTime();
         final GPPlayerData playerData = this.dataStore.getOrCreatePlayerData(player.getWorld(), playerID);
         playerData.lastSpawn = now;
+        playerData.permissionContexts = null;
         final GPClaim claim = this.dataStore.getClaimAtPlayer(playerData, player.getLocation());
         if (claim.isInTown()) {
             playerData.inTown = true;
@@ -977,6 +984,7 @@ public void onPlayerRespawn(RespawnPlayerEvent event) {
         GPPlayerData playerData = GriefPreventionPlugin.instance.dataStore.getOrCreatePlayerData(player.getWorld(), player.getUniqueId());
         playerData.lastSpawn = Calendar.getInstance().getTimeInMillis();
         playerData.lastPvpTimestamp = 0; // no longer in pvp combat
+        playerData.permissionContexts = null;
 
         // also send him any messaged from grief prevention he would have
         // received while dead
@@ -990,6 +998,24 @@ public void onPlayerRespawn(RespawnPlayerEvent event) {
         GPTimings.PLAYER_RESPAWN_EVENT.stopTimingIfSync();
     }
 
+    @Listener(order = Order.POST)
+    public void onPlayerChangeWorld(MoveEntityEvent.Teleport event) {
+        final Entity entity = event.getTargetEntity();
+        final World fromWorld = event.getFromTransform().getExtent();
+        final World toWorld = event.getToTransform().getExtent();
+        if (!(entity instanceof Player) || fromWorld.equals(toWorld)) {
+            return;
+        }
+
+        // the world is part of the active contexts
+        for (World world : new World[] {fromWorld, toWorld}) {
+            final GPPlayerData playerData = this.dataStore.getPlayerData(world, entity.getUniqueId());
+            if (playerData != null) {
+                playerData.permissionContexts = null;
+            }
+        }
+    }
+
     // when a player dies...
     @Listener(order = Order.FIRST)
     public void onPlayerDeath(DestructEntityEvent.Death event, @Root DamageSource damageSource) {
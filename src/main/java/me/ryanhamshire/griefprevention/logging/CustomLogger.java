@@ -24,30 +24,66 @@
  */
 package me.ryanhamshire.griefprevention.logging;
 
-import com.google.common.io.Files;
 import me.ryanhamshire.griefprevention.DataStore;
 import me.ryanhamshire.griefprevention.GriefPreventionPlugin;
+import me.ryanhamshire.griefprevention.configuration.category.LoggingCategory;
 import org.spongepowered.api.Sponge;
 import org.spongepowered.api.scheduler.Scheduler;
+import org.spongepowered.common.SpongeImpl;
 
 import java.io.File;
-import java.nio.charset.Charset;
-import java.text.SimpleDateFormat;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
 import java.util.Calendar;
-import java.util.Date;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
 
+/**
+ * Abridged activity log.
+ *
+ * <p>Entries are queued as records on a lock-free queue and formatted by a
+ * single writer thread, which appends them to the log file of the day
+ * through a channel kept open until the date changes. When the queue holds
+ * the configured number of entries, new entries are either dropped or the
+ * caller waits for the writer, depending on the logging config.</p>
+ */
 public class CustomLogger {
 
-    private final SimpleDateFormat timestampFormat = new SimpleDateFormat("HH:mm");
-    private final SimpleDateFormat filenameFormat = new SimpleDateFormat("yyyy_MM_dd");
+    private static final DateTimeFormatter TIMESTAMP_FORMAT = DateTimeFormatter.ofPattern("HH:mm");
+    private static final DateTimeFormatter FILENAME_FORMAT = DateTimeFormatter.ofPattern("yyyy_MM_dd");
     private final String logFolderPath = DataStore.dataLayerFolderPath + File.separator + "Logs";
     private final int secondsBetweenWrites = 10;
 
-    // stringbuilder is not thread safe, stringbuffer is
-    private StringBuffer queuedEntries = new StringBuffer();
+    private final Queue<Entry> queuedEntries = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger queueSize = new AtomicInteger();
+    private final AtomicBoolean writeRequested = new AtomicBoolean();
+    private final AtomicLong droppedEntries = new AtomicLong();
+    private final ScheduledExecutorService writer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        final Thread thread = new Thread(runnable, "GriefPrevention Log Writer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // Only accessed by the writer thread
+    private final StringBuilder unwritten = new StringBuilder();
+    private FileChannel channel;
+    private LocalDate channelDate;
 
     public CustomLogger() {
         // ensure log folder exists
@@ -60,34 +96,75 @@ public CustomLogger() {
         // unless disabled, schedule recurring tasks
         int daysToKeepLogs = GriefPreventionPlugin.getGlobalConfig().getConfig().logging.loggingDaysToKeep;
         if (daysToKeepLogs > 0) {
+            this.writer.scheduleWithFixedDelay(this::writeEntries, this.secondsBetweenWrites, this.secondsBetweenWrites, TimeUnit.SECONDS);
             Scheduler scheduler = Sponge.getGame().getScheduler();
-            scheduler.createTaskBuilder().async().execute(new EntryWriter()).delay(this.secondsBetweenWrites, TimeUnit.SECONDS).interval(this
-                    .secondsBetweenWrites, TimeUnit.SECONDS).submit(GriefPreventionPlugin.instance);
             scheduler.createTaskBuilder().async().execute(new ExpiredLogRemover()).delay(1, TimeUnit.DAYS).interval(1, TimeUnit.DAYS)
                     .submit(GriefPreventionPlugin
                             .instance);
         }
     }
 
-    private static final Pattern inlineFormatterPattern = Pattern.compile("�.");
-
-    public void addEntry(String entry, CustomLogEntryTypes entryType) {
+    /**
+     * Gets whether entries of the type are written. Callers building
+     * expensive entries should check this first.
+     *
+     * @param entryType The entry type
+     * @return Whether the entry type is logged
+     */
+    public boolean isEnabled(CustomLogEntryTypes entryType) {
         // if disabled, do nothing
-        int daysToKeepLogs = GriefPreventionPlugin.getGlobalConfig().getConfig().logging.loggingDaysToKeep;
-        if (daysToKeepLogs == 0) {
-            return;
+        if (GriefPreventionPlugin.getGlobalConfig().getConfig().logging.loggingDaysToKeep == 0) {
+            return false;
         }
+        return this.isEnabledType(entryType);
+    }
 
+    public void addEntry(String entry, CustomLogEntryTypes entryType) {
         // if entry type is not enabled, do nothing
-        if (!this.isEnabledType(entryType)) {
+        if (!this.isEnabled(entryType)) {
             return;
         }
 
-        // otherwise write to the in-memory buffer, after removing formatters
-        Matcher matcher = inlineFormatterPattern.matcher(entry);
-        entry = matcher.replaceAll("");
-        String timestamp = this.timestampFormat.format(new Date());
-        this.queuedEntries.append(timestamp + " " + entry + "\n");
+        final LoggingCategory config = GriefPreventionPlugin.getGlobalConfig().getConfig().logging;
+        final int queueLimit = config.queueLimit;
+        if (queueLimit > 0 && this.queueSize.get() >= queueLimit) {
+            this.requestWrite();
+            if (!config.blockWhenFull) {
+                this.droppedEntries.incrementAndGet();
+                return;
+            }
+            while (this.queueSize.get() >= queueLimit) {
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+            }
+        }
+
+        // formatting happens on the writer thread
+        this.queuedEntries.add(new Entry(System.currentTimeMillis(), entry));
+        this.queueSize.incrementAndGet();
+    }
+
+    /**
+     * Writes every queued entry, waits for completion, closes the log file
+     * and stops the writer thread.
+     */
+    public void close() {
+        try {
+            this.writer.submit(() -> {
+                this.writeEntries();
+                this.closeChannel();
+            }).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            SpongeImpl.getLogger().error("Failed to write log entries", e.getCause());
+        }
+        this.writer.shutdown();
+    }
+
+    private void requestWrite() {
+        if (this.writeRequested.compareAndSet(false, true)) {
+            this.writer.execute(this::writeEntries);
+        }
     }
 
     private boolean isEnabledType(CustomLogEntryTypes entryType) {
@@ -111,27 +188,80 @@ private boolean isEnabledType(CustomLogEntryTypes entryType) {
     }
 
     void writeEntries() {
+        this.writeRequested.set(false);
+        final long dropped = this.droppedEntries.getAndSet(0);
+        if (dropped > 0) {
+            SpongeImpl.getLogger().warn("Dropped " + dropped + " abridged log entries, the logging queue limit was reached.");
+        }
         try {
-            // if nothing to write, stop here
-            if (this.queuedEntries.length() == 0) {
-                return;
+            // write entries in batches per day, rotating the file when the date changes
+            Entry entry;
+            while ((entry = this.queuedEntries.poll()) != null) {
+                this.queueSize.decrementAndGet();
+                final Instant instant = Instant.ofEpochMilli(entry.time);
+                final LocalDate date = instant.atZone(ZoneId.systemDefault()).toLocalDate();
+                if (!date.equals(this.channelDate)) {
+                    this.flush();
+                    this.openChannel(date);
+                }
+                this.format(entry, instant);
             }
+            this.flush();
+        } catch (Exception e) {
+            // in case of a failure to write, the unwritten entries will
+            // remain in the buffer for the next write to retry
+            e.printStackTrace();
+        }
+    }
 
-            // determine filename based on date
-            String filename = this.filenameFormat.format(new Date()) + ".log";
-            String filepath = this.logFolderPath + File.separator + filename;
-            File logFile = new File(filepath);
+    private void format(Entry entry, Instant instant) {
+        this.unwritten.append(TIMESTAMP_FORMAT.format(instant.atZone(ZoneId.systemDefault()))).append(' ');
+        // remove formatters
+        final String message = entry.message;
+        for (int i = 0; i < message.length(); i++) {
+            final char c = message.charAt(i);
+            if (c == '\u00A7' || c == '\uFFFD') {
+                i++;
+                continue;
+            }
+            this.unwritten.append(c);
+        }
+        this.unwritten.append('\n');
+    }
 
-            // dump content
-            Files.append(this.queuedEntries.toString(), logFile, Charset.forName("UTF-8"));
+    private void flush() throws IOException {
+        if (this.unwritten.length() == 0 || this.channel == null) {
+            return;
+        }
 
-            // in case of a failure to write the above due to exception,
-            // the unwritten entries will remain the buffer for the next write
-            // to retry
-            this.queuedEntries.setLength(0);
-        } catch (Exception e) {
+        final ByteBuffer buffer = ByteBuffer.wrap(this.unwritten.toString().getBytes(StandardCharsets.UTF_8));
+        while (buffer.hasRemaining()) {
+            this.channel.write(buffer);
+        }
+        this.unwritten.setLength(0);
+    }
+
+    private void openChannel(LocalDate date) throws IOException {
+        this.closeChannel();
+        // determine filename based on date
+        final String filename = FILENAME_FORMAT.format(date) + ".log";
+        this.channel = FileChannel.open(Paths.get(this.logFolderPath, filename), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND);
+        this.channelDate = date;
+    }
+
+    private void closeChannel() {
+        if (this.channel == null) {
+            return;
+        }
+
+        try {
+            this.channel.close();
+        } catch (IOException e) {
             e.printStackTrace();
         }
+        this.channel = null;
+        this.channelDate = null;
     }
 
     private void deleteExpiredLogs() {
@@ -179,12 +309,14 @@ private void deleteExpiredLogs() {
         }
     }
 
-    // transfers the internal buffer to a log file
-    private class EntryWriter implements Runnable {
+    private static final class Entry {
 
-        @Override
-        public void run() {
-            writeEntries();
+        final long time;
+        final String message;
+
+        Entry(long time, String message) {
+            this.time = time;
+            this.message = message;
         }
     }
 
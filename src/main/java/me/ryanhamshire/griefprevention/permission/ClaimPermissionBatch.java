@@ -0,0 +1,92 @@
+/*
+ * This file is part of GriefPrevention, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) bloodmc
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package me.ryanhamshire.griefprevention.permission;
+
+import me.ryanhamshire.griefprevention.claim.GPClaim;
+import org.spongepowered.api.block.BlockSnapshot;
+import org.spongepowered.api.block.BlockState;
+import org.spongepowered.api.entity.living.player.User;
+import org.spongepowered.api.event.Event;
+import org.spongepowered.api.util.Tristate;
+import org.spongepowered.api.world.Location;
+import org.spongepowered.api.world.World;
+
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import javax.annotation.Nullable;
+
+/**
+ * Evaluates one flag permission for all block locations of a single bulk
+ * event such as an explosion, liquid flow or piston move.
+ *
+ * <p>The source, user and flag are fixed for the event so a result only
+ * depends on the claim and target block state. Each distinct pair is
+ * evaluated once through {@link GPPermissionHandler} and reused for every
+ * other location of the event. A batch must not outlive its event.</p>
+ */
+public class ClaimPermissionBatch {
+
+    private final Event event;
+    private final String flagPermission;
+    private final Object source;
+    @Nullable private final User user;
+    private final boolean checkOverride;
+    // Claim -> target state -> result. Block states are singletons so identity is enough.
+    private final Map<GPClaim, Map<BlockState, Tristate>> results = new HashMap<>();
+
+    public ClaimPermissionBatch(Event event, String flagPermission, Object source, @Nullable User user, boolean checkOverride) {
+        this.event = event;
+        this.flagPermission = flagPermission;
+        this.source = source;
+        this.user = user;
+        this.checkOverride = checkOverride;
+    }
+
+    public Tristate getClaimPermission(Location<World> location, GPClaim claim) {
+        return this.getClaimPermission(location, claim, location.getBlock());
+    }
+
+    public Tristate getClaimPermission(Location<World> location, GPClaim claim, BlockSnapshot snapshot) {
+        return this.getClaimPermission(location, claim, snapshot.getState());
+    }
+
+    public Tristate getClaimPermission(Location<World> location, GPClaim claim, BlockState target) {
+        if (claim == null) {
+            return Tristate.TRUE;
+        }
+
+        final Map<BlockState, Tristate> claimResults = this.results.computeIfAbsent(claim, k -> new IdentityHashMap<>());
+        Tristate result = claimResults.get(target);
+        if (result == null) {
+            // first location of this claim and target, the handler records it for debugging
+            result = GPPermissionHandler.getClaimPermission(this.event, location, claim, this.flagPermission, this.source, target, this.user,
+                    this.checkOverride);
+            claimResults.put(target, result);
+        }
+        return result;
+    }
+}
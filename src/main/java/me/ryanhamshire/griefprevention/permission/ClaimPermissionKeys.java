@@ -0,0 +1,150 @@
+/*
+ * This file is part of GriefPrevention, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) bloodmc
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package me.ryanhamshire.griefprevention.permission;
+
+import org.apache.commons.lang3.StringUtils;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.annotation.Nullable;
+
+/**
+ * The permission nodes checked for a flag, source and target combination.
+ *
+ * <p>Nodes are built once per distinct combination and shared afterwards
+ * so hot block and entity events do not rebuild them on every check.</p>
+ */
+public final class ClaimPermissionKeys {
+
+    // Matches target meta such as ".0" at the end of an identifier
+    public static final Pattern TARGET_META_PATTERN = Pattern.compile("\\.[\\d+]*$");
+    private static final int MAX_CACHED_KEYS = 16384;
+
+    // Flag permission -> source id -> target id -> keys
+    private static final Map<String, Map<String, Map<String, ClaimPermissionKeys>>> KEY_CACHE = new ConcurrentHashMap<>();
+    private static final AtomicInteger cachedKeyCount = new AtomicInteger();
+
+    public final String permission;
+    @Nullable public final String modPermission;
+    @Nullable public final String metaPermission;
+
+    private ClaimPermissionKeys(String permission, @Nullable String modPermission, @Nullable String metaPermission) {
+        this.permission = permission;
+        this.modPermission = modPermission;
+        this.metaPermission = metaPermission;
+    }
+
+    public static ClaimPermissionKeys of(String flagPermission, String sourceId, String targetId) {
+        Map<String, Map<String, ClaimPermissionKeys>> sourceMap = KEY_CACHE.get(flagPermission);
+        if (sourceMap == null) {
+            sourceMap = new ConcurrentHashMap<>();
+            final Map<String, Map<String, ClaimPermissionKeys>> existing = KEY_CACHE.putIfAbsent(flagPermission, sourceMap);
+            if (existing != null) {
+                sourceMap = existing;
+            }
+        }
+        Map<String, ClaimPermissionKeys> targetMap = sourceMap.get(sourceId);
+        if (targetMap == null) {
+            targetMap = new ConcurrentHashMap<>();
+            final Map<String, ClaimPermissionKeys> existing = sourceMap.putIfAbsent(sourceId, targetMap);
+            if (existing != null) {
+                targetMap = existing;
+            }
+        }
+
+        ClaimPermissionKeys keys = targetMap.get(targetId);
+        if (keys != null) {
+            return keys;
+        }
+
+        keys = create(flagPermission, sourceId, targetId);
+        if (cachedKeyCount.incrementAndGet() > MAX_CACHED_KEYS) {
+            // Ids are bounded by registered catalog types so this only happens
+            // with mods generating ids on the fly. Start over rather than grow.
+            // The maps read above are dropped, the keys are cached on their next use.
+            clearCache();
+            return keys;
+        }
+        targetMap.put(targetId, keys);
+        return keys;
+    }
+
+    public static void clearCache() {
+        KEY_CACHE.clear();
+        cachedKeyCount.set(0);
+    }
+
+    public static String getTargetMeta(String targetId) {
+        final Matcher m = TARGET_META_PATTERN.matcher(targetId);
+        if (m.find()) {
+            return m.group(0);
+        }
+        return "";
+    }
+
+    private static ClaimPermissionKeys create(String flagPermission, String sourceId, String targetId) {
+        String targetPermission = flagPermission;
+        String targetModPermission = null;
+        String targetMetaPermission = null;
+        if (!targetId.isEmpty()) {
+            String[] parts = targetId.split(":");
+            String targetMod = parts[0];
+            // move target meta to end of permission
+            String targetMeta = "";
+            if (!flagPermission.contains("command-execute")) {
+                targetMeta = getTargetMeta(targetId);
+                if (!targetMeta.isEmpty()) {
+                    targetId = targetId.replace(targetMeta, "");
+                    targetMetaPermission = flagPermission + "." + targetId.replace(":", ".") + targetMeta;
+                }
+            }
+            if (!sourceId.isEmpty()) {
+                targetModPermission = flagPermission + "." + targetMod + ".source." + sourceId + targetMeta;
+                targetModPermission = StringUtils.replace(targetModPermission, ":", ".");
+                targetPermission += "." + targetId + ".source." + sourceId + targetMeta;
+            } else {
+                targetModPermission = flagPermission + "." + targetMod + targetMeta;
+                targetModPermission = StringUtils.replace(targetModPermission, ":", ".");
+                targetPermission += "." + targetId + targetMeta;
+            }
+        } else if (!sourceId.isEmpty()) {
+            String targetMod = "";
+            if (sourceId.contains(":")) {
+                String[] parts = sourceId.split(":");
+                targetMod = parts[0];
+                targetModPermission = flagPermission + "." + targetMod + ".source." + sourceId;
+                targetModPermission = StringUtils.replace(targetModPermission, ":", ".");
+            }
+            targetPermission += ".source." + sourceId;
+        }
+
+        targetPermission = StringUtils.replace(targetPermission, ":", ".");
+        return new ClaimPermissionKeys(targetPermission, targetModPermission, targetMetaPermission);
+    }
+}
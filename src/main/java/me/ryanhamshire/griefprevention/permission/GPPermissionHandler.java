@@ -73,16 +73,21 @@
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Set;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+
+import javax.annotation.Nullable;
 
 public class GPPermissionHandler {
 
-    private static Event currentEvent;
-    private static Location<World> eventLocation;
-    private static Subject eventSubject;
-    private static String eventSourceId = "none";
-    private static String eventTargetId = "none";
+    private static final PermissionDecisionCache DECISION_CACHE = new PermissionDecisionCache();
+
+    public static PermissionDecisionCache getDecisionCache() {
+        return DECISION_CACHE;
+    }
+
+    // Must be called whenever GP changes flag permissions or trusts
+    public static void invalidatePermissionCache() {
+        DECISION_CACHE.invalidate();
+    }
 
     public static Tristate getClaimPermission(Event event, Location<World> location, GPClaim claim, String flagPermission, Object source, Object target, User user) {
         return getClaimPermission(event, location, claim, flagPermission, source, target, user, null, false);
@@ -98,69 +103,63 @@ public static Tristate getClaimPermission(Event event, Location<World> location,
         }
 
         GPPlayerData playerData = null;
-        eventSubject = null;
-        if (user != null) {
-            eventSubject = user;
-            if (user instanceof Player) {
-                playerData = GriefPreventionPlugin.instance.dataStore.getOrCreatePlayerData(claim.world, user.getUniqueId());
-            }
+        if (user instanceof Player) {
+            playerData = GriefPreventionPlugin.instance.dataStore.getOrCreatePlayerData(claim.world, user.getUniqueId());
         }
-        currentEvent = event;
-        eventLocation = location;
+        return evaluateClaimPermission(event, location, claim, flagPermission, source, target, user, playerData, type, checkOverride);
+    }
 
-        String sourceId = getPermissionIdentifier(source, true);
-        String targetPermission = flagPermission;
-        String targetId = getPermissionIdentifier(target);
-        String targetModPermission = null;
-        String targetMetaPermission = null;
-        if (!targetId.isEmpty()) {
-            String[] parts = targetId.split(":");
-            String targetMod = parts[0];
-            // move target meta to end of permission
-            Pattern p = Pattern.compile("\\.[\\d+]*$");
-            Matcher m = p.matcher(targetId);
-            String targetMeta = "";
-            if (!flagPermission.contains("command-execute")) {
-                if (m.find()) {
-                    targetMeta = m.group(0);
-                    targetId = targetId.replace(targetMeta, "");
-                }
-                if (!targetMeta.isEmpty()) {
-                    targetMetaPermission = flagPermission + "." + targetId.replace(":", ".") + targetMeta;
-                }
-            }
-            if (!sourceId.isEmpty()) {
-                targetModPermission = flagPermission + "." + targetMod + ".source." + sourceId + targetMeta;
-                targetModPermission = StringUtils.replace(targetModPermission, ":", ".");
-                targetPermission += "." + targetId + ".source." + sourceId + targetMeta;
-            } else {
-                targetModPermission = flagPermission + "." + targetMod + targetMeta;
-                targetModPermission = StringUtils.replace(targetModPermission, ":", ".");
-                targetPermission += "." + targetId + targetMeta;
-            }
-        } else if (!sourceId.isEmpty()) {
-            String targetMod = "";
-            if (sourceId.contains(":")) {
-                String[] parts = sourceId.split(":");
-                targetMod = parts[0];
-                targetModPermission = flagPermission + "." + targetMod + ".source." + sourceId;
-                targetModPermission = StringUtils.replace(targetModPermission, ":", ".");
-            }
-            targetPermission += ".source." + sourceId;
+    /**
+     * Gets the value of a flag permission in a claim outside of any event.
+     *
+     * <p>Safe to call from any thread. Each call keeps its state in its own
+     * {@link PermissionEvaluationContext}, player data is never created or
+     * loaded and trusts are read from published snapshots, so this can be
+     * used from async events or for bulk analysis.</p>
+     *
+     * @param claim The claim
+     * @param flagPermission The base flag permission
+     * @param source The source object, or null
+     * @param target The target object, or null
+     * @param user The user to check, or null to only check claim flags
+     * @param type The trust type that grants the permission, or null
+     * @param checkOverride Whether to check flag overrides first
+     * @return The permission value
+     */
+    public static Tristate queryClaimPermission(GPClaim claim, String flagPermission, @Nullable Object source, @Nullable Object target,
+            @Nullable User user, @Nullable TrustType type, boolean checkOverride) {
+        if (claim == null) {
+            return Tristate.TRUE;
         }
 
-        targetPermission = StringUtils.replace(targetPermission, ":", ".");
+        GPPlayerData playerData = null;
+        if (user instanceof Player) {
+            playerData = GriefPreventionPlugin.instance.dataStore.getPlayerData(claim.world, user.getUniqueId());
+        }
+        return evaluateClaimPermission(null, null, claim, flagPermission, source, target, user, playerData, type, checkOverride);
+    }
+
+    private static Tristate evaluateClaimPermission(@Nullable Event event, @Nullable Location<World> location, GPClaim claim, String flagPermission,
+            Object source, Object target, User user, GPPlayerData playerData, TrustType type, boolean checkOverride) {
+        final String sourceId = getPermissionIdentifier(source, true);
+        final String targetId = getPermissionIdentifier(target);
+        final PermissionEvaluationContext context = new PermissionEvaluationContext(event, location, getEventSubject(user, source, target),
+                sourceId, targetId);
+        final ClaimPermissionKeys permissionKeys = ClaimPermissionKeys.of(flagPermission, sourceId, targetId);
+        final String targetPermission = permissionKeys.permission;
+        final String targetModPermission = permissionKeys.modPermission;
+        final String targetMetaPermission = permissionKeys.metaPermission;
         if (checkOverride) {
             Tristate override = Tristate.UNDEFINED;
             if (user != null) {
                 // check global bans in wilderness
-                override = getFlagOverride((GPClaim) claim.getWilderness(), user, user, playerData, targetPermission, targetModPermission, targetMetaPermission);
+                override = getFlagOverride(context, (GPClaim) claim.getWilderness(), user, user, playerData, targetPermission, targetModPermission, targetMetaPermission);
                 if (override != Tristate.UNDEFINED) {
                     return override;
                 }
             }
             // First check for claim flag overrides
-            override = getFlagOverride(claim, user == null ? GriefPreventionPlugin.GLOBAL_SUBJECT : user, user, playerData, targetPermission, targetModPermission, targetMetaPermission);
+            override = getFlagOverride(context, claim, user == null ? GriefPreventionPlugin.GLOBAL_SUBJECT : user, user, playerData, targetPermission, targetModPermission, targetMetaPermission);
             if (override != Tristate.UNDEFINED) {
                 return override;
             }
@@ -169,36 +168,66 @@ public static Tristate getClaimPermission(Event event, Location<World> location,
         if (playerData != null) {
             if (playerData.debugClaimPermissions) {
                 if (user != null && type != null && claim.isUserTrusted(user, type)) {
-                    return processResult(claim, "trust." + type.toString().toLowerCase(), Tristate.TRUE, user);
+                    return processResult(context, claim, "trust." + type.toString().toLowerCase(), Tristate.TRUE, user);
                 }
-                return getClaimFlagPermission(claim, targetPermission, targetModPermission, targetMetaPermission);
+                return getClaimFlagPermission(context, claim, permissionKeys);
             }
              // Check for ignoreclaims after override and debug checks
             if (playerData.canIgnoreClaim(claim)) {
-                return processResult(claim, "trust.ignore", Tristate.TRUE, user);
+                return processResult(context, claim, "trust.ignore", Tristate.TRUE, user);
             }
         }
         if (user != null) {
             if (type != null) {
                 if (claim.isUserTrusted(user, type)) {
-                    return processResult(claim, "trust." + type.toString().toLowerCase(), Tristate.TRUE, user);
+                    return processResult(context, claim, "trust." + type.toString().toLowerCase(), Tristate.TRUE, user);
                 }
             }
-            return getUserPermission(user, claim, targetPermission, targetModPermission, targetMetaPermission, playerData);
+            return getUserPermission(context, user, claim, permissionKeys, playerData);
         }
 
-        return getClaimFlagPermission(claim, targetPermission, targetModPermission, targetMetaPermission);
+        return getClaimFlagPermission(context, claim, permissionKeys);
     }
 
-    private static Tristate getUserPermission(User user, GPClaim claim, String permission, String targetModPermission, String targetMetaPermission, GPPlayerData playerData) {
-        final List<Claim> inheritParents = claim.getInheritedParents();
-        if (playerData != null) {
-            playerData.ignoreActiveContexts = true;
+    private static Tristate getUserPermission(PermissionEvaluationContext context, User user, GPClaim claim, ClaimPermissionKeys keys, GPPlayerData playerData) {
+        final PermissionDecisionCache.UserKey subjectKey = getUserKey(user, playerData);
+        PermissionDecisionCache.Decision decision = DECISION_CACHE.get(claim, subjectKey, keys);
+        if (decision == null) {
+            final long generation = DECISION_CACHE.getGeneration();
+            decision = resolveUserPermission(user, claim, keys, new HashSet<>(subjectKey.getContexts()), generation);
+            DECISION_CACHE.put(claim, subjectKey, keys, decision);
         }
-        final Set<Context> contexts = new HashSet<>(user.getActiveContexts());
-        if (playerData != null) {
-            playerData.ignoreActiveContexts = false;
+
+        return processResult(context, decision.claim, decision.permission, decision.value, decision.globalSubject ? GriefPreventionPlugin.GLOBAL_SUBJECT : user);
+    }
+
+    private static PermissionDecisionCache.UserKey getUserKey(User user, GPPlayerData playerData) {
+        PermissionDecisionCache.UserKey key = playerData == null ? null : playerData.permissionContexts;
+        if (key == null || key.isExpired()) {
+            key = PermissionDecisionCache.getUserKey(user.getUniqueId(), getActiveContexts(user, playerData, false));
+            if (playerData != null) {
+                playerData.permissionContexts = key;
+            }
         }
+        return key;
+    }
+
+    private static Tristate getClaimFlagPermission(PermissionEvaluationContext context, GPClaim claim, ClaimPermissionKeys keys) {
+        PermissionDecisionCache.Decision decision = DECISION_CACHE.get(claim, GriefPreventionPlugin.GLOBAL_SUBJECT, keys);
+        if (decision == null) {
+            final long generation = DECISION_CACHE.getGeneration();
+            decision = resolveClaimFlagPermission(claim, keys, generation);
+            DECISION_CACHE.put(claim, GriefPreventionPlugin.GLOBAL_SUBJECT, keys, decision);
+        }
+
+        return processResult(context, decision.claim, decision.permission, decision.value, GriefPreventionPlugin.GLOBAL_SUBJECT);
+    }
+
+    private static PermissionDecisionCache.Decision resolveUserPermission(User user, GPClaim claim, ClaimPermissionKeys keys, Set<Context> contexts, long generation) {
+        final String permission = keys.permission;
+        final String targetModPermission = keys.modPermission;
+        final String targetMetaPermission = keys.metaPermission;
+        final List<Claim> inheritParents = claim.getInheritedParents();
 
         for (Claim parentClaim : inheritParents) {
             GPClaim parent = (GPClaim) parentClaim;
@@ -207,12 +236,12 @@ private static Tristate getUserPermission(User user, GPClaim claim, String permi
 
             Tristate value = user.getPermissionValue(contexts, permission);
             if (value != Tristate.UNDEFINED) {
-                return processResult(claim, permission, value, user);
+                return new PermissionDecisionCache.Decision(claim, permission, value, false, generation);
             }
             if (targetModPermission != null) {
                 value = user.getPermissionValue(contexts, targetModPermission);
                 if (value != Tristate.UNDEFINED) {
-                    return processResult(claim, targetModPermission, value, user);
+                    return new PermissionDecisionCache.Decision(claim, targetModPermission, value, false, generation);
                 }
             }
 
@@ -222,50 +251,53 @@ private static Tristate getUserPermission(User user, GPClaim claim, String permi
         contexts.add(claim.getContext());
         Tristate value = user.getPermissionValue(contexts, permission);
         if (value != Tristate.UNDEFINED) {
-            return processResult(claim, permission, value, user);
+            return new PermissionDecisionCache.Decision(claim, permission, value, false, generation);
         }
         if (targetMetaPermission != null) {
             value = user.getPermissionValue(contexts, targetMetaPermission);
             if (value != Tristate.UNDEFINED) {
-                return processResult(claim, targetMetaPermission, value, user);
+                return new PermissionDecisionCache.Decision(claim, targetMetaPermission, value, false, generation);
             }
         }
         if (targetModPermission != null) {
             value = user.getPermissionValue(contexts, targetModPermission);
             if (value != Tristate.UNDEFINED) {
-                return processResult(claim, targetModPermission, value, user);
+                return new PermissionDecisionCache.Decision(claim, targetModPermission, value, false, generation);
             }
         }
 
-        return getClaimFlagPermission(claim, permission, targetModPermission, targetMetaPermission);
+        return resolveClaimFlagPermission(claim, keys, generation);
     }
 
-    private static Tristate getClaimFlagPermission(GPClaim claim, String permission, String targetModPermission, String targetMetaPermission) {
+    private static PermissionDecisionCache.Decision resolveClaimFlagPermission(GPClaim claim, ClaimPermissionKeys keys, long generation) {
+        final String permission = keys.permission;
+        final String targetModPermission = keys.modPermission;
+        final String targetMetaPermission = keys.metaPermission;
         Set<Context> contexts = new HashSet<>(GriefPreventionPlugin.GLOBAL_SUBJECT.getActiveContexts());
         contexts.add(claim.getContext());
 
         Tristate value = GriefPreventionPlugin.GLOBAL_SUBJECT.getPermissionValue(contexts, permission);
         if (value != Tristate.UNDEFINED) {
-            return processResult(claim, permission, value, GriefPreventionPlugin.GLOBAL_SUBJECT);
+            return new PermissionDecisionCache.Decision(claim, permission, value, true, generation);
         }
         if (targetMetaPermission != null) {
             value = GriefPreventionPlugin.GLOBAL_SUBJECT.getPermissionValue(contexts, targetMetaPermission);
             if (value != Tristate.UNDEFINED) {
-                return processResult(claim, targetMetaPermission, value, GriefPreventionPlugin.GLOBAL_SUBJECT);
+                return new PermissionDecisionCache.Decision(claim, targetMetaPermission, value, true, generation);
             }
         }
         if (targetModPermission != null) {
             value = GriefPreventionPlugin.GLOBAL_SUBJECT.getPermissionValue(contexts, targetModPermission);
             if (value != Tristate.UNDEFINED) {
-                return processResult(claim, targetModPermission, value, GriefPreventionPlugin.GLOBAL_SUBJECT);
+                return new PermissionDecisionCache.Decision(claim, targetModPermission, value, true, generation);
             }
         }
 
-        return getFlagDefaultPermission(claim, permission);
+        return resolveFlagDefaultPermission(claim, permission, generation);
     }
 
     // Only uses world and claim type contexts
-    private static Tristate getFlagDefaultPermission(GPClaim claim, String permission) {
+    private static PermissionDecisionCache.Decision resolveFlagDefaultPermission(GPClaim claim, String permission, long generation) {
         // Fallback to defaults
         Set<Context> contexts = new HashSet<>(GriefPreventionPlugin.GLOBAL_SUBJECT.getActiveContexts());
         if (claim.parent != null && claim.getData().doesInheritParent()) {
@@ -288,27 +320,17 @@ private static Tristate getFlagDefaultPermission(GPClaim claim, String permissio
 
         contexts.add(claim.world.getContext());
         // check persisted/transient default data
-        Tristate value = GriefPreventionPlugin.GLOBAL_SUBJECT.getPermissionValue(contexts, permission);
-        if (value != Tristate.UNDEFINED) {
-            return processResult(claim, permission, value, GriefPreventionPlugin.GLOBAL_SUBJECT);
-        }
-
-        return processResult(claim, permission, Tristate.UNDEFINED, GriefPreventionPlugin.GLOBAL_SUBJECT);
+        final Tristate value = GriefPreventionPlugin.GLOBAL_SUBJECT.getPermissionValue(contexts, permission);
+        return new PermissionDecisionCache.Decision(claim, permission, value, true, generation);
     }
 
-    private static Tristate getFlagOverride(GPClaim claim, Subject subject, User user, GPPlayerData playerData, String flagPermission, String targetModPermission, String targetMetaPermission) {
+    private static Tristate getFlagOverride(PermissionEvaluationContext context, GPClaim claim, Subject subject, User user, GPPlayerData playerData, String flagPermission, String targetModPermission, String targetMetaPermission) {
         if (!claim.getInternalClaimData().allowFlagOverrides()) {
             return Tristate.UNDEFINED;
         }
 
         Player player = null;
-        if (playerData != null) {
-            playerData.ignoreActiveContexts = true;
-        }
-        Set<Context> contexts = new LinkedHashSet<>(subject.getActiveContexts());
-        if (playerData != null) {
-            playerData.ignoreActiveContexts = false;
-        }
+        Set<Context> contexts = getActiveContexts(subject, playerData, true);
         if (claim.isAdminClaim()) {
             contexts.add(ClaimContexts.ADMIN_OVERRIDE_CONTEXT);
             contexts.add(claim.world.getContext());
@@ -331,7 +353,7 @@ private static Tristate getFlagOverride(GPClaim claim, Subject subject, User use
                     player.sendMessage(reason);
                 }
             }
-            return processResult(claim, flagPermission, value, user);
+            return processResult(context, claim, flagPermission, value, user);
         }
         if (targetMetaPermission != null) {
             value = subject.getPermissionValue(contexts, targetMetaPermission);
@@ -342,7 +364,7 @@ private static Tristate getFlagOverride(GPClaim claim, Subject subject, User use
                         player.sendMessage(reason);
                     }
                 }
-                return processResult(claim, targetMetaPermission, value, user);
+                return processResult(context, claim, targetMetaPermission, value, user);
             }
         }
         if (targetModPermission != null) {
@@ -354,7 +376,7 @@ private static Tristate getFlagOverride(GPClaim claim, Subject subject, User use
                         player.sendMessage(reason);
                     }
                 }
-                return processResult(claim, targetModPermission, value, user);
+                return processResult(context, claim, targetModPermission, value, user);
             }
         }
 
@@ -373,29 +395,25 @@ public static Tristate getFlagOverride(Event event, Location<World> location, GP
             }
         }
 
-        currentEvent = event;
-        eventLocation = location;
-        eventSubject = user;
+        final String sourceId = getPermissionIdentifier(source, true);
+        final PermissionEvaluationContext context = new PermissionEvaluationContext(event, location, getEventSubject(user, source, target),
+                sourceId, getPermissionIdentifier(target));
         Player player = null;
         final Subject subject = user != null ? user : GriefPreventionPlugin.GLOBAL_SUBJECT;
         String targetModPermission = null;
         String targetMetaPermission = null;
         if (target != null && source == null) {
-            String targetId = getPermissionIdentifier(target);
+            String targetId = context.getTargetId();
             flagPermission += "." + targetId;
         } else if (target != null && source != null) {
-            String sourceId = getPermissionIdentifier(source, true);
             String targetId = getPermissionIdentifier(target);
             if (!targetId.isEmpty()) {
                 String[] parts = targetId.split(":");
                 String targetMod = parts[0];
                 if (!sourceId.isEmpty()) {
                     // move target meta to end of permission
-                    Pattern p = Pattern.compile("\\.[\\d+]*$");
-                    Matcher m = p.matcher(targetId);
-                    String targetMeta = "";
-                    if (m.find()) {
-                        targetMeta = m.group(0);
+                    final String targetMeta = ClaimPermissionKeys.getTargetMeta(targetId);
+                    if (!targetMeta.isEmpty()) {
                         targetId = targetId.replace(targetMeta, "");
                     }
                     if (!targetMeta.isEmpty()) {
@@ -411,13 +429,7 @@ public static Tristate getFlagOverride(Event event, Location<World> location, GP
         }
 
         flagPermission = StringUtils.replace(flagPermission, ":", ".");
-        if (playerData != null) {
-            playerData.ignoreActiveContexts = true;
-        }
-        Set<Context> contexts = new LinkedHashSet<>(subject.getActiveContexts());
-        if (playerData != null) {
-            playerData.ignoreActiveContexts = false;
-        }
+        Set<Context> contexts = getActiveContexts(subject, playerData, true);
         if (claim.isWilderness()) {
             contexts.add(ClaimContexts.WILDERNESS_OVERRIDE_CONTEXT);
             player = user instanceof Player ? (Player) user : null;
@@ -440,7 +452,7 @@ public static Tristate getFlagOverride(Event event, Location<World> location, GP
                     player.sendMessage(reason);
                 }
             }
-            return processResult(claim, flagPermission, value, user);
+            return processResult(context, claim, flagPermission, value, user);
         }
         if (targetMetaPermission != null) {
             value = subject.getPermissionValue(contexts, targetMetaPermission);
@@ -451,7 +463,7 @@ public static Tristate getFlagOverride(Event event, Location<World> location, GP
                         player.sendMessage(reason);
                     }
                 }
-                return processResult(claim, targetMetaPermission, value, user);
+                return processResult(context, claim, targetMetaPermission, value, user);
             }
         }
         // check target modid
@@ -464,7 +476,7 @@ public static Tristate getFlagOverride(Event event, Location<World> location, GP
                         player.sendMessage(reason);
                     }
                 }
-                return processResult(claim, targetModPermission, value, user);
+                return processResult(context, claim, targetModPermission, value, user);
             }
         }
 
@@ -483,11 +495,8 @@ public static Tristate getClaimPermission(GPClaim claim, ClaimFlag flag, Subject
                 String[] parts = targetId.split(":");
                 String targetMod = parts[0];
                 // move target meta to end of permission
-                Pattern p = Pattern.compile("\\.[\\d+]*$");
-                Matcher m = p.matcher(targetId);
-                String targetMeta = "";
-                if (m.find()) {
-                    targetMeta = m.group(0);
+                final String targetMeta = ClaimPermissionKeys.getTargetMeta(targetId);
+                if (!targetMeta.isEmpty()) {
                     targetId = targetId.replace(targetMeta, "");
                 }
                 targetModPermission = flagBasePermission + "." + targetMod + ".source." + sourceId + targetMeta;
@@ -503,29 +512,63 @@ public static Tristate getClaimPermission(GPClaim claim, ClaimFlag flag, Subject
         return subject.getPermissionValue(contexts, targetPermission);
     }
 
-    public static Tristate processResult(GPClaim claim, String permission, Tristate permissionValue, Subject permissionSubject) {
-        if (GriefPreventionPlugin.debugActive) {
+    public static Tristate processResult(PermissionEvaluationContext context, GPClaim claim, String permission, Tristate permissionValue, Subject permissionSubject) {
+        // results of queries made outside of an event are not logged
+        final Event event = context.getEvent();
+        if (GriefPreventionPlugin.debugActive && event != null) {
+            final User eventSubject = context.getSubject();
             if (permissionSubject == null) {
                 if (eventSubject != null) {
                     permissionSubject = eventSubject;
-                } else if (currentEvent.getCause().root() instanceof User) {
-                    permissionSubject = (Subject) currentEvent.getCause().root();
+                } else if (event.getCause().root() instanceof User) {
+                    permissionSubject = (Subject) event.getCause().root();
                 } else {
                     permissionSubject = GriefPreventionPlugin.GLOBAL_SUBJECT;
                 }
             }
-            if (currentEvent instanceof CollideEvent || currentEvent instanceof NotifyNeighborBlockEvent) {
+            if (event instanceof CollideEvent || event instanceof NotifyNeighborBlockEvent) {
                 if (claim.getWorld().getProperties().getTotalTime() % 100 == 0L) {
-                    GriefPreventionPlugin.addEventLogEntry(currentEvent, claim, eventLocation, eventSubject, eventSourceId, eventTargetId, permissionSubject, permission, permissionValue);
+                    GriefPreventionPlugin.addEventLogEntry(event, claim, context.getLocation(), eventSubject, context.getSourceId(), context.getTargetId(), permissionSubject, permission, permissionValue);
                 }
             } else {
-                GriefPreventionPlugin.addEventLogEntry(currentEvent, claim, eventLocation, eventSubject, eventSourceId, eventTargetId, permissionSubject, permission, permissionValue);
+                GriefPreventionPlugin.addEventLogEntry(event, claim, context.getLocation(), eventSubject, context.getSourceId(), context.getTargetId(), permissionSubject, permission, permissionValue);
             }
         }
 
         return permissionValue;
     }
 
+    // The user an evaluation is attributed to, falling back to a user dealing the damage
+    private static User getEventSubject(User user, Object source, Object target) {
+        if (user != null) {
+            return user;
+        }
+        if (source instanceof EntityDamageSource && ((EntityDamageSource) source).getSource() instanceof User) {
+            return (User) ((EntityDamageSource) source).getSource();
+        }
+        if (target instanceof EntityDamageSource && ((EntityDamageSource) target).getSource() instanceof User) {
+            return (User) ((EntityDamageSource) target).getSource();
+        }
+        return null;
+    }
+
+    // Active contexts without GP's claim contexts
+    // Guarded by the player data so concurrent evaluations for the same player don't reset each other's flag
+    private static Set<Context> getActiveContexts(Subject subject, GPPlayerData playerData, boolean ordered) {
+        if (playerData == null) {
+            return ordered ? new LinkedHashSet<>(subject.getActiveContexts()) : new HashSet<>(subject.getActiveContexts());
+        }
+
+        synchronized (playerData) {
+            playerData.ignoreActiveContexts = true;
+            try {
+                return ordered ? new LinkedHashSet<>(subject.getActiveContexts()) : new HashSet<>(subject.getActiveContexts());
+            } finally {
+                playerData.ignoreActiveContexts = false;
+            }
+        }
+    }
+
     public static String getPermissionIdentifier(Object obj) {
         return getPermissionIdentifier(obj, false);
     }
@@ -553,7 +596,6 @@ public static String getPermissionIdentifier(Object obj, boolean isSource) {
                 if (id.contains("unknown") && SpongeImplHooks.isFakePlayer(mcEntity)) {
                     id = "fakeplayer:" + ((EntityPlayer) obj).getName().toLowerCase();
                 }
-                populateEventSourceTarget(id, isSource);
                 if (!isSource && targetEntity instanceof Living) {
                     for (EnumCreatureType type : EnumCreatureType.values()) {
                         if (SpongeImplHooks.isCreatureOfType(mcEntity, type)) {
@@ -568,40 +610,30 @@ public static String getPermissionIdentifier(Object obj, boolean isSource) {
 
                 if (targetEntity instanceof Item) {
                     id = ((Item) targetEntity).getItemType().getId();
-                    populateEventSourceTarget(id, isSource);
                 }
 
                 return id.toLowerCase();
             } else if (obj instanceof EntityType) {
-                final String id = ((EntityType) obj).getId();
-                populateEventSourceTarget(id, isSource);
                 return ((EntityType) obj).getId();
             } else if (obj instanceof BlockType) {
-                final String id = ((BlockType) obj).getId();
-                populateEventSourceTarget(id, isSource);
-                return id;
+                return ((BlockType) obj).getId();
             } else if (obj instanceof BlockSnapshot) {
                 final BlockSnapshot blockSnapshot = (BlockSnapshot) obj;
                 final BlockState blockstate = blockSnapshot.getState();
                 final String id = blockstate.getType().getId() + "." + BlockUtils.getBlockStateMeta(blockstate);
-                populateEventSourceTarget(id, isSource);
                 return id.toLowerCase();
             } else if (obj instanceof BlockState) {
                 final BlockState blockstate = (BlockState) obj;
                 final String id = blockstate.getType().getId() + "." + BlockUtils.getBlockStateMeta(blockstate);
-                populateEventSourceTarget(id, isSource);
                 return id.toLowerCase();
             } else if (obj instanceof LocatableBlock) {
                 final LocatableBlock locatableBlock = (LocatableBlock) obj;
                 final BlockState blockstate = locatableBlock.getBlockState();
                 final String id = blockstate.getType().getId() + "." + BlockUtils.getBlockStateMeta(blockstate);
-                populateEventSourceTarget(id, isSource);
                 return id.toLowerCase();
             } else if (obj instanceof TileEntity) {
                 TileEntity tileEntity = (TileEntity) obj;
-                final String id = tileEntity.getType().getId().toLowerCase();
-                populateEventSourceTarget(id, isSource);
-                return id;
+                return tileEntity.getType().getId().toLowerCase();
             } else if (obj instanceof ItemStack) {
                 final ItemStack itemstack = (ItemStack) obj;
                 String id = "";
@@ -614,20 +646,11 @@ public static String getPermissionIdentifier(Object obj, boolean isSource) {
                     id = itemstack.getType().getId() + "." + ((net.minecraft.item.ItemStack)(Object) itemstack).getItemDamage();
                 }
 
-                populateEventSourceTarget(id, isSource);
                 return id.toLowerCase();
             } else if (obj instanceof ItemType) {
-                final String id = ((ItemType) obj).getId().toLowerCase();
-                populateEventSourceTarget(id, isSource);
-                return id;
+                return ((ItemType) obj).getId().toLowerCase();
             } else if (obj instanceof EntityDamageSource) {
                 final EntityDamageSource damageSource = (EntityDamageSource) obj;
-                if (eventSubject == null && damageSource.getSource() instanceof User) {
-                    eventSubject = (User) damageSource.getSource();
-                }
-
-                final String id = damageSource.getSource().getType().getId();
-                populateEventSourceTarget(id, isSource);
                 return damageSource.getSource().getType().getId();
             } else if (obj instanceof DamageSource) {
                 final DamageSource damageSource = (DamageSource) obj;
@@ -636,30 +659,20 @@ public static String getPermissionIdentifier(Object obj, boolean isSource) {
                     id = "minecraft:" + id;
                 }
 
-                populateEventSourceTarget(id, isSource);
                 return id;
             } else if (obj instanceof ItemStackSnapshot) {
-                final String id = ((ItemStackSnapshot) obj).getType().getId();
-                populateEventSourceTarget(id, isSource);
-                return id;
+                return ((ItemStackSnapshot) obj).getType().getId();
             } else if (obj instanceof CatalogType) {
-                final String id = ((CatalogType) obj).getId();
-                populateEventSourceTarget(id, isSource);
-                return id;
+                return ((CatalogType) obj).getId();
             } else if (obj instanceof String) {
-                final String id = obj.toString().toLowerCase();
-                populateEventSourceTarget(id, isSource);
-                return id;
+                return obj.toString().toLowerCase();
             } else if (obj instanceof PluginContainer) {
-                final String id = ((PluginContainer) obj).getId();
-                populateEventSourceTarget(id, isSource);
-                return id;
+                return ((PluginContainer) obj).getId();
             } else if (obj instanceof Inventory) {
                 return ((Inventory) obj).getArchetype().getId();
             }
         }
 
-        populateEventSourceTarget("none", isSource);
         return "";
     }
 
@@ -708,13 +721,10 @@ public static String getPermission(Object source, Object target, String flagPerm
         if (!targetId.isEmpty()) {
             if (!sourceId.isEmpty()) {
                 // move target meta to end of permission
-                Pattern p = Pattern.compile("\\.[\\d+]*$");
-                Matcher m = p.matcher(targetId);
-                String targetMeta = "";
-                if (m.find()) {
-                    targetMeta = m.group(0);
+                final String targetMeta = ClaimPermissionKeys.getTargetMeta(targetId);
+                if (!targetMeta.isEmpty()) {
                     targetId = targetId.replace(targetMeta, "");
-        }
+                }
                 targetPermission += "." + targetId + ".source." + sourceId + targetMeta;
             } else {
                 targetPermission += "." + targetId;
@@ -725,21 +735,10 @@ public static String getPermission(Object source, Object target, String flagPerm
     }
 
     public static String getIdentifierWithoutMeta(String targetId) {
-        Pattern p = Pattern.compile("\\.[\\d+]*$");
-        Matcher m = p.matcher(targetId);
-        String targetMeta = "";
-        if (m.find()) {
-            targetMeta = m.group(0);
+        final String targetMeta = ClaimPermissionKeys.getTargetMeta(targetId);
+        if (!targetMeta.isEmpty()) {
             targetId = targetId.replace(targetMeta, "");
         }
         return targetId;
     }
-
-    private static void populateEventSourceTarget(String id, boolean isSource) {
-        if (isSource) {
-            eventSourceId = id.toLowerCase();
-        } else {
-            eventTargetId = id.toLowerCase();
-        }
-    }
 }
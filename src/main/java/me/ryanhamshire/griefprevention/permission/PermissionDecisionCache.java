@@ -0,0 +1,197 @@
+/*
+ * This file is part of GriefPrevention, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) bloodmc
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package me.ryanhamshire.griefprevention.permission;
+
+import com.google.common.collect.ImmutableSet;
+import me.ryanhamshire.griefprevention.claim.GPClaim;
+import org.spongepowered.api.service.context.Context;
+import org.spongepowered.api.util.Tristate;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.Nullable;
+
+/**
+ * Caches resolved flag permission decisions per claim, subject and
+ * permission keys. User decisions are keyed by the user together with the
+ * active contexts they were resolved with, so a world or context change
+ * never serves a decision made under other contexts. Player data keeps its
+ * user key between lookups, so a hit costs no context lookup.
+ *
+ * <p>Every change GP makes to flags or trusts bumps the generation which
+ * invalidates all decisions at once. Decisions also expire after a short
+ * time so changes made directly through the permission plugin are picked
+ * up without a reload.</p>
+ */
+public class PermissionDecisionCache {
+
+    private static final long MAX_DECISION_AGE_NANOS = TimeUnit.SECONDS.toNanos(5);
+    private static final int MAX_CACHED_CLAIMS = 8192;
+
+    private final AtomicLong generation = new AtomicLong();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    // Claim -> subject key -> permission keys -> decision
+    private final Map<GPClaim, Map<Object, Map<ClaimPermissionKeys, Decision>>> decisions = new ConcurrentHashMap<>();
+
+    @Nullable
+    public Decision get(GPClaim claim, Object subjectKey, ClaimPermissionKeys keys) {
+        final Map<Object, Map<ClaimPermissionKeys, Decision>> subjectMap = this.decisions.get(claim);
+        if (subjectMap != null) {
+            final Map<ClaimPermissionKeys, Decision> keyMap = subjectMap.get(subjectKey);
+            if (keyMap != null) {
+                final Decision decision = keyMap.get(keys);
+                if (decision != null && decision.generation == this.generation.get()
+                        && (System.nanoTime() - decision.created) <= MAX_DECISION_AGE_NANOS) {
+                    this.hits.incrementAndGet();
+                    return decision;
+                }
+            }
+        }
+
+        this.misses.incrementAndGet();
+        return null;
+    }
+
+    public void put(GPClaim claim, Object subjectKey, ClaimPermissionKeys keys, Decision decision) {
+        if (decision.generation != this.generation.get()) {
+            // flags or trusts changed while resolving
+            return;
+        }
+
+        Map<Object, Map<ClaimPermissionKeys, Decision>> subjectMap = this.decisions.get(claim);
+        if (subjectMap == null) {
+            if (this.decisions.size() >= MAX_CACHED_CLAIMS) {
+                this.decisions.clear();
+            }
+            subjectMap = new ConcurrentHashMap<>();
+            final Map<Object, Map<ClaimPermissionKeys, Decision>> existing = this.decisions.putIfAbsent(claim, subjectMap);
+            if (existing != null) {
+                subjectMap = existing;
+            }
+        }
+        Map<ClaimPermissionKeys, Decision> keyMap = subjectMap.get(subjectKey);
+        if (keyMap == null) {
+            keyMap = new ConcurrentHashMap<>();
+            final Map<ClaimPermissionKeys, Decision> existing = subjectMap.putIfAbsent(subjectKey, keyMap);
+            if (existing != null) {
+                keyMap = existing;
+            }
+        }
+        keyMap.put(keys, decision);
+    }
+
+    public static UserKey getUserKey(UUID uuid, Set<Context> contexts) {
+        return new UserKey(uuid, contexts);
+    }
+
+    public long getGeneration() {
+        return this.generation.get();
+    }
+
+    public void invalidate() {
+        this.generation.incrementAndGet();
+        this.decisions.clear();
+    }
+
+    public long getHits() {
+        return this.hits.get();
+    }
+
+    public long getMisses() {
+        return this.misses.get();
+    }
+
+    public void resetStats() {
+        this.hits.set(0);
+        this.misses.set(0);
+    }
+
+    public static final class UserKey {
+
+        private final UUID uuid;
+        private final Set<Context> contexts;
+        private final int hash;
+        private final long created;
+
+        UserKey(UUID uuid, Set<Context> contexts) {
+            this.uuid = uuid;
+            this.contexts = ImmutableSet.copyOf(contexts);
+            this.hash = 31 * uuid.hashCode() + this.contexts.hashCode();
+            this.created = System.nanoTime();
+        }
+
+        public Set<Context> getContexts() {
+            return this.contexts;
+        }
+
+        // Contexts from the permission plugin can change without an event, refresh them as often as decisions expire
+        public boolean isExpired() {
+            return (System.nanoTime() - this.created) > MAX_DECISION_AGE_NANOS;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof UserKey)) {
+                return false;
+            }
+            final UserKey other = (UserKey) o;
+            return this.hash == other.hash && this.uuid.equals(other.uuid) && this.contexts.equals(other.contexts);
+        }
+
+        @Override
+        public int hashCode() {
+            return this.hash;
+        }
+    }
+
+    public static class Decision {
+
+        public final GPClaim claim;
+        public final String permission;
+        public final Tristate value;
+        // Whether the value was resolved from the global subject rather than the user
+        public final boolean globalSubject;
+        final long generation;
+        final long created;
+
+        public Decision(GPClaim claim, String permission, Tristate value, boolean globalSubject, long generation) {
+            this.claim = claim;
+            this.permission = permission;
+            this.value = value;
+            this.globalSubject = globalSubject;
+            this.generation = generation;
+            this.created = System.nanoTime();
+        }
+    }
+}
@@ -0,0 +1,80 @@
+/*
+ * This file is part of GriefPrevention, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) bloodmc
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package me.ryanhamshire.griefprevention.permission;
+
+import org.spongepowered.api.entity.living.player.User;
+import org.spongepowered.api.event.Event;
+import org.spongepowered.api.world.Location;
+import org.spongepowered.api.world.World;
+
+import javax.annotation.Nullable;
+
+/**
+ * The state of a single permission evaluation, used to attribute results
+ * in debug output.
+ *
+ * <p>Instances are immutable and created per call, so evaluations on
+ * different threads or nested evaluations never see each other's state.</p>
+ */
+public final class PermissionEvaluationContext {
+
+    @Nullable private final Event event;
+    @Nullable private final Location<World> location;
+    @Nullable private final User subject;
+    private final String sourceId;
+    private final String targetId;
+
+    public PermissionEvaluationContext(@Nullable Event event, @Nullable Location<World> location, @Nullable User subject, String sourceId,
+            String targetId) {
+        this.event = event;
+        this.location = location;
+        this.subject = subject;
+        this.sourceId = sourceId.isEmpty() ? "none" : sourceId;
+        this.targetId = targetId.isEmpty() ? "none" : targetId;
+    }
+
+    @Nullable
+    public Event getEvent() {
+        return this.event;
+    }
+
+    @Nullable
+    public Location<World> getLocation() {
+        return this.location;
+    }
+
+    @Nullable
+    public User getSubject() {
+        return this.subject;
+    }
+
+    public String getSourceId() {
+        return this.sourceId;
+    }
+
+    public String getTargetId() {
+        return this.targetId;
+    }
+}
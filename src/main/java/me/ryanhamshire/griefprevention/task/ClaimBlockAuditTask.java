@@ -0,0 +1,57 @@
+/*
+ * This file is part of GriefPrevention, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Ryan Hamshire
+ * Copyright (c) bloodmc
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package me.ryanhamshire.griefprevention.task;
+
+import me.ryanhamshire.griefprevention.DataStore;
+import me.ryanhamshire.griefprevention.GriefPreventionPlugin;
+import me.ryanhamshire.griefprevention.claim.GPClaimManager;
+import me.ryanhamshire.griefprevention.claim.OwnerClaimList;
+import org.spongepowered.api.Sponge;
+import org.spongepowered.api.world.World;
+
+//recomputes the running claim block totals of owners and repairs any drift
+//runs every 10 minutes on the main thread
+public class ClaimBlockAuditTask implements Runnable {
+
+    @Override
+    public void run() {
+        int drifted = 0;
+        if (DataStore.USE_GLOBAL_PLAYER_STORAGE) {
+            // all worlds share the same owner claim lists
+            drifted = GriefPreventionPlugin.instance.dataStore.getClaimWorldManager(null).verifyClaimBlockTotals();
+        } else {
+            for (World world : Sponge.getServer().getWorlds()) {
+                final GPClaimManager claimManager = GriefPreventionPlugin.instance.dataStore.getClaimWorldManager(world.getProperties());
+                drifted += claimManager.verifyClaimBlockTotals();
+            }
+        }
+
+        if (drifted > 0) {
+            GriefPreventionPlugin.instance.getLogger().warn("Corrected claim block totals for " + drifted + " owner(s). Total drift corrections since startup: "
+                    + OwnerClaimList.getDriftCount());
+        }
+    }
+}
@@ -25,10 +25,10 @@
  */
 package me.ryanhamshire.griefprevention.task;
 
-import me.ryanhamshire.griefprevention.GPPlayerData;
+import me.ryanhamshire.griefprevention.DataStore;
 import me.ryanhamshire.griefprevention.GriefPreventionPlugin;
-import me.ryanhamshire.griefprevention.api.claim.Claim;
 import me.ryanhamshire.griefprevention.api.event.GPContextKeys;
+import me.ryanhamshire.griefprevention.claim.ClaimExpirationQueue;
 import me.ryanhamshire.griefprevention.claim.ClaimsMode;
 import me.ryanhamshire.griefprevention.claim.GPClaim;
 import me.ryanhamshire.griefprevention.claim.GPClaimManager;
@@ -40,88 +40,67 @@
 
 import java.time.Duration;
 import java.time.Instant;
-import java.util.ArrayList;
-import java.util.Iterator;
+import java.util.concurrent.TimeUnit;
 
 //FEATURE: automatically remove inactive claims
-//runs every 5 minutes on the main thread
+//runs every tick on the main thread, claims are expired in order of their expiration within a time budget
 public class CleanupUnusedClaimsTask implements Runnable {
 
-    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static final long TICK_BUDGET_NANOS = TimeUnit.MILLISECONDS.toNanos(2);
+
     @Override
     public void run() {
-        for (WorldProperties worldProperties : Sponge.getServer().getAllWorldProperties()) {
-            // don't do anything when there are no claims
-            GPClaimManager claimManager = GriefPreventionPlugin.instance.dataStore.getClaimWorldManager(worldProperties);
-            ArrayList<Claim> claimList = (ArrayList<Claim>) claimManager.getWorldClaims();
-            if (claimList.size() == 0) {
-                continue;
-            }
-
-            Iterator<GPClaim> iterator = ((ArrayList) claimList.clone()).iterator();
-            while (iterator.hasNext()) {
-                GPClaim claim = iterator.next();
-                final GPPlayerData playerData = claim.getOwnerPlayerData();
-                // skip administrative claims
-                if (claim.isAdminClaim() || !claim.getInternalClaimData().allowExpiration() || playerData == null) {
-                    continue;
-                }
+        final long deadline = System.nanoTime() + TICK_BUDGET_NANOS;
+        final ClaimExpirationQueue expirationQueue = DataStore.CLAIM_EXPIRATION_QUEUE;
+        expirationQueue.processPending(deadline);
 
-                if (!playerData.dataInitialized) {
-                    continue;
-                }
-
-                GriefPreventionConfig<?> activeConfig = GriefPreventionPlugin.getActiveConfig(worldProperties);
-                // determine area of the default chest claim
-                int areaOfDefaultClaim = 0;
-                if (activeConfig.getConfig().claim.claimRadius >= 0) {
-                    areaOfDefaultClaim = (int) Math.pow(activeConfig.getConfig().claim.claimRadius * 2 + 1, 2);
-                }
-    
-                Instant claimLastActive = claim.getInternalClaimData().getDateLastActive();
+        final Instant now = Instant.now();
+        while (System.nanoTime() < deadline) {
+            final GPClaim claim = expirationQueue.pollExpired(now);
+            if (claim == null) {
+                break;
+            }
 
-                try (final CauseStackManager.StackFrame frame = Sponge.getCauseStackManager().pushCauseFrame()) {
-                    Sponge.getCauseStackManager().addContext(GPContextKeys.CHEST_CLAIM_EXPIRED, GriefPreventionPlugin.instance.pluginContainer);
-                    // if this claim is a chest claim and those are set to expire
-                    final int claimExpirationChest = playerData.getChestClaimExpiration();
-                    if (claim.getArea() <= areaOfDefaultClaim && claimExpirationChest > 0) {
-                        if (claimLastActive.plus(Duration.ofDays(claimExpirationChest))
-                            .isBefore(Instant.now())) {
-                            Sponge.getCauseStackManager().addContext(GPContextKeys.CHEST_CLAIM_EXPIRED, GriefPreventionPlugin.instance.pluginContainer);
+            this.expireClaim(claim, now);
+        }
+    }
 
-                            claim.removeSurfaceFluids(null);
-                            claimManager.deleteClaim(claim);
+    private void expireClaim(GPClaim claim, Instant now) {
+        final WorldProperties worldProperties = claim.getWorld().getProperties();
+        final GPClaimManager claimManager = GriefPreventionPlugin.instance.dataStore.getClaimWorldManager(worldProperties);
+        final GriefPreventionConfig<?> activeConfig = GriefPreventionPlugin.getActiveConfig(worldProperties);
+        final Instant claimLastActive = claim.getInternalClaimData().getDateLastActive();
+        // if configured to do so, restore the land to natural
+        final boolean restoreNature = GriefPreventionPlugin.instance.claimModeIsActive(worldProperties, ClaimsMode.Creative)
+                || activeConfig.getConfig().claim.claimAutoNatureRestore;
 
-                            // if configured to do so, restore the land to natural
-                            if (GriefPreventionPlugin.instance.claimModeIsActive(worldProperties, ClaimsMode.Creative) || activeConfig
-                                .getConfig().claim.claimAutoNatureRestore) {
-                                GriefPreventionPlugin.instance.restoreClaim(claim, 0);
-                            }
+        try (final CauseStackManager.StackFrame frame = Sponge.getCauseStackManager().pushCauseFrame()) {
+            // if this claim is a chest claim and those are set to expire
+            final int claimExpirationChest = DataStore.CLAIM_EXPIRATION_QUEUE.getChestClaimExpiration(claim);
+            if (claim.getArea() <= ClaimExpirationQueue.getDefaultClaimArea(activeConfig) && claimExpirationChest > 0
+                    && claimLastActive.plus(Duration.ofDays(claimExpirationChest)).isBefore(now)) {
+                Sponge.getCauseStackManager().addContext(GPContextKeys.CHEST_CLAIM_EXPIRED, GriefPreventionPlugin.instance.pluginContainer);
 
-                            GriefPreventionPlugin.addLogEntry(" " + claim.getOwnerName() + "'s new player claim " + "'" + claim.id + "' expired.",
-                                CustomLogEntryTypes.AdminActivity);
-                        }
-                    }
+                claim.removeSurfaceFluids(null);
+                claimManager.deleteClaim(claim);
+                if (restoreNature) {
+                    GriefPreventionPlugin.instance.restoreClaim(claim, 0);
+                }
 
-                    if (playerData.optionClaimExpirationBasic > 0) {
-                        if (claimLastActive.plus(Duration.ofDays(playerData.optionClaimExpirationBasic))
-                            .isBefore(Instant.now())) {
-                            Sponge.getCauseStackManager().addContext(GPContextKeys.PLAYER_CLAIM_EXPIRED, GriefPreventionPlugin.instance.pluginContainer);
+                GriefPreventionPlugin.addLogEntry(" " + claim.getOwnerName() + "'s new player claim " + "'" + claim.id + "' expired.",
+                    CustomLogEntryTypes.AdminActivity);
+                return;
+            }
 
-                            claimManager.deleteClaim(claim);
-                            GriefPreventionPlugin.addLogEntry("Removed " + claim.getOwnerName() + "'s unused claim @ "
-                                                              + GriefPreventionPlugin.getfriendlyLocationString(claim.getLesserBoundaryCorner()),
-                                CustomLogEntryTypes.AdminActivity);
+            Sponge.getCauseStackManager().addContext(GPContextKeys.PLAYER_CLAIM_EXPIRED, GriefPreventionPlugin.instance.pluginContainer);
 
-                            // if configured to do so, restore the land to natural
-                            if (GriefPreventionPlugin.instance.claimModeIsActive(worldProperties, ClaimsMode.Creative)
-                                || activeConfig.getConfig().claim.claimAutoNatureRestore) {
-                                // restore the claim area to natural state
-                                GriefPreventionPlugin.instance.restoreClaim(claim, 0);
-                            }
-                        }
-                    }
-                }
+            claimManager.deleteClaim(claim);
+            GriefPreventionPlugin.addLogEntry("Removed " + claim.getOwnerName() + "'s unused claim @ "
+                                              + GriefPreventionPlugin.getfriendlyLocationString(claim.getLesserBoundaryCorner()),
+                CustomLogEntryTypes.AdminActivity);
+            if (restoreNature) {
+                // restore the claim area to natural state
+                GriefPreventionPlugin.instance.restoreClaim(claim, 0);
             }
         }
     }
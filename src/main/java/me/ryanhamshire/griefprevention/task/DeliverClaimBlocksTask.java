@@ -100,11 +100,15 @@ public void run() {
                     return;
                 }
 
-                GriefPreventionPlugin.addLogEntry("Delivering " + accruedBlocks + " blocks to " + player.getName(), CustomLogEntryTypes.Debug, false);
+                if (GriefPreventionPlugin.isLogEntryEnabled(CustomLogEntryTypes.Debug)) {
+                    GriefPreventionPlugin.addLogEntry("Delivering " + accruedBlocks + " blocks to " + player.getName(), CustomLogEntryTypes.Debug, false);
+                }
                 PlayerStorageData playerStorage = playerData.getStorageData();
                 playerStorage.getConfig().setAccruedClaimBlocks(playerStorage.getConfig().getAccruedClaimBlocks() + accruedBlocks);
             } else {
-                GriefPreventionPlugin.addLogEntry(player.getName() + " isn't active enough.", CustomLogEntryTypes.Debug, false);
+                if (GriefPreventionPlugin.isLogEntryEnabled(CustomLogEntryTypes.Debug)) {
+                    GriefPreventionPlugin.addLogEntry(player.getName() + " isn't active enough.", CustomLogEntryTypes.Debug, false);
+                }
             }
 
             // remember current location for next time
@@ -0,0 +1,183 @@
+/*
+ * This file is part of GriefPrevention, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) bloodmc
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package me.ryanhamshire.griefprevention.task;
+
+import me.ryanhamshire.griefprevention.GriefPreventionPlugin;
+import me.ryanhamshire.griefprevention.api.claim.Claim;
+import me.ryanhamshire.griefprevention.api.claim.TrustType;
+import me.ryanhamshire.griefprevention.claim.GPClaim;
+import me.ryanhamshire.griefprevention.claim.GPClaimManager;
+import me.ryanhamshire.griefprevention.permission.GPPermissionHandler;
+import me.ryanhamshire.griefprevention.permission.GPPermissions;
+import org.spongepowered.api.Sponge;
+import org.spongepowered.api.command.CommandSource;
+import org.spongepowered.api.entity.living.player.Player;
+import org.spongepowered.api.text.Text;
+import org.spongepowered.api.text.format.TextColors;
+import org.spongepowered.api.util.Tristate;
+import org.spongepowered.api.world.World;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+//stress check for GPPermissionHandler.queryClaimPermission, started by /gpdebug verify
+//resolves a set of queries on the main thread, then repeats them from several threads
+//at once while the server keeps running and reports every result that differs
+public class PermissionQueryCheckTask implements Runnable {
+
+    private static final int THREADS = 4;
+    private static final int ITERATIONS = 25;
+    private static final int MAX_CLAIMS = 256;
+    private static final String[] FLAGS = {GPPermissions.BLOCK_BREAK, GPPermissions.BLOCK_PLACE, GPPermissions.INTERACT_BLOCK_SECONDARY,
+            GPPermissions.INVENTORY_OPEN, GPPermissions.INTERACT_ENTITY_SECONDARY};
+    private static final TrustType[] TRUST_TYPES = {TrustType.BUILDER, TrustType.BUILDER, TrustType.ACCESSOR, TrustType.CONTAINER,
+            TrustType.ACCESSOR};
+
+    private final CommandSource src;
+    private final List<Query> queries = new ArrayList<>();
+    private final AtomicLong evaluations = new AtomicLong();
+    private final AtomicInteger mismatches = new AtomicInteger();
+    private final AtomicInteger errors = new AtomicInteger();
+    private final AtomicReference<String> firstProblem = new AtomicReference<>();
+
+    // must be created on the main thread, the expected results are resolved here
+    public PermissionQueryCheckTask(CommandSource src, World world) {
+        this.src = src;
+        final GPClaimManager claimManager = GriefPreventionPlugin.instance.dataStore.getClaimWorldManager(world.getProperties());
+        final List<GPClaim> claims = new ArrayList<>();
+        claims.add(claimManager.getWildernessClaim());
+        for (Claim claim : claimManager.getWorldClaims()) {
+            if (claims.size() >= MAX_CLAIMS) {
+                break;
+            }
+            claims.add((GPClaim) claim);
+            for (Claim child : claim.getChildren(true)) {
+                if (claims.size() >= MAX_CLAIMS) {
+                    break;
+                }
+                claims.add((GPClaim) child);
+            }
+        }
+
+        for (GPClaim claim : claims) {
+            for (Player player : Sponge.getServer().getOnlinePlayers()) {
+                for (int i = 0; i < FLAGS.length; i++) {
+                    final Tristate expected = GPPermissionHandler.queryClaimPermission(claim, FLAGS[i], null, null, player, TRUST_TYPES[i], true);
+                    this.queries.add(new Query(claim, FLAGS[i], player, TRUST_TYPES[i], expected));
+                }
+            }
+        }
+    }
+
+    public int getQueryCount() {
+        return this.queries.size();
+    }
+
+    @Override
+    public void run() {
+        final ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        final CompletableFuture<?>[] workers = new CompletableFuture<?>[THREADS];
+        final long start = System.nanoTime();
+        for (int i = 0; i < THREADS; i++) {
+            final int worker = i;
+            workers[i] = CompletableFuture.runAsync(() -> this.check(worker), pool);
+        }
+        CompletableFuture.allOf(workers).whenComplete((result, error) -> {
+            pool.shutdown();
+            final long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            Sponge.getScheduler().createTaskBuilder().execute(() -> this.report(millis)).submit(GriefPreventionPlugin.instance);
+        });
+    }
+
+    private void check(int worker) {
+        final int size = this.queries.size();
+        for (int iteration = 0; iteration < ITERATIONS; iteration++) {
+            if (worker == 0) {
+                // resolve again instead of only reading decisions cached by the other workers
+                GPPermissionHandler.invalidatePermissionCache();
+            }
+            // each worker walks the queries from a different offset
+            final int offset = worker * size / THREADS;
+            for (int i = 0; i < size; i++) {
+                final Query query = this.queries.get((i + offset) % size);
+                try {
+                    final Tristate result = GPPermissionHandler.queryClaimPermission(query.claim, query.flagPermission, null, null, query.player,
+                            query.trustType, true);
+                    if (result != query.expected) {
+                        this.mismatches.incrementAndGet();
+                        this.firstProblem.compareAndSet(null, query + " returned " + result + ", expected " + query.expected);
+                    }
+                } catch (Throwable t) {
+                    this.errors.incrementAndGet();
+                    this.firstProblem.compareAndSet(null, query + " failed with " + t);
+                }
+                this.evaluations.incrementAndGet();
+            }
+        }
+    }
+
+    private void report(long millis) {
+        this.src.sendMessage(Text.of(
+                GriefPreventionPlugin.GP_TEXT, TextColors.GRAY, "Permission query check: ", TextColors.GOLD, this.evaluations.get(), TextColors.GRAY,
+                " queries on ", TextColors.GOLD, THREADS, TextColors.GRAY, " threads in ", TextColors.GOLD, millis, "ms", TextColors.WHITE, " | ",
+                TextColors.GRAY, "Mismatches: ", this.mismatches.get() == 0 ? TextColors.GREEN : TextColors.RED, this.mismatches.get(), TextColors.WHITE, " | ",
+                TextColors.GRAY, "Errors: ", this.errors.get() == 0 ? TextColors.GREEN : TextColors.RED, this.errors.get()));
+        final String problem = this.firstProblem.get();
+        if (problem != null) {
+            // results may also differ when trusts or flags were changed while the check ran
+            this.src.sendMessage(Text.of(GriefPreventionPlugin.GP_TEXT, TextColors.RED, problem));
+            GriefPreventionPlugin.instance.getLogger().warn("Permission query check: " + problem);
+        }
+    }
+
+    private static final class Query {
+
+        final GPClaim claim;
+        final String flagPermission;
+        final Player player;
+        final TrustType trustType;
+        final Tristate expected;
+
+        Query(GPClaim claim, String flagPermission, Player player, TrustType trustType, Tristate expected) {
+            this.claim = claim;
+            this.flagPermission = flagPermission;
+            this.player = player;
+            this.trustType = trustType;
+            this.expected = expected;
+        }
+
+        @Override
+        public String toString() {
+            return this.flagPermission + " for " + this.player.getName() + " in claim " + this.claim.getUniqueId();
+        }
+    }
+}
@@ -30,8 +30,8 @@
 import me.ryanhamshire.griefprevention.api.claim.ClaimType;
 import me.ryanhamshire.griefprevention.claim.GPClaim;
 import me.ryanhamshire.griefprevention.util.BlockUtils;
+import me.ryanhamshire.griefprevention.util.PaletteChunkSnapshot;
 import org.spongepowered.api.Sponge;
-import org.spongepowered.api.block.BlockSnapshot;
 import org.spongepowered.api.block.BlockState;
 import org.spongepowered.api.block.BlockTypes;
 import org.spongepowered.api.entity.Entity;
@@ -53,7 +53,7 @@ class RestoreNatureExecutionTask implements Runnable {
 
     // results from processing thread
     // will be applied to the world
-    private BlockSnapshot[][][] snapshots;
+    private PaletteChunkSnapshot snapshot;
 
     // boundaries for changes
     private int miny;
@@ -64,9 +64,9 @@ class RestoreNatureExecutionTask implements Runnable {
     // when the restoration is complete)
     private Player player;
 
-    public RestoreNatureExecutionTask(BlockSnapshot[][][] snapshots, int miny, Location<World> lesserCorner, Location<World> greaterCorner,
+    public RestoreNatureExecutionTask(PaletteChunkSnapshot snapshot, int miny, Location<World> lesserCorner, Location<World> greaterCorner,
             Player player) {
-        this.snapshots = snapshots;
+        this.snapshot = snapshot;
         this.miny = miny;
         this.lesserCorner = lesserCorner;
         this.greaterCorner = greaterCorner;
@@ -80,16 +80,26 @@ public void run() {
         // band around the outside of the chunk)
         // those data were sent to the processing thread for reference
         // purposes, but aren't part of the area selected for restoration
-        for (int x = 1; x < this.snapshots.length - 1; x++) {
-            for (int z = 1; z < this.snapshots[0][0].length - 1; z++) {
-                for (int y = this.miny; y < this.snapshots[0].length; y++) {
-                    BlockSnapshot blockUpdate = this.snapshots[x][y][z];
-                    BlockState currentBlock = blockUpdate.getLocation().get().getBlock();
-                    int originalMeta = BlockUtils.getBlockStateMeta(blockUpdate.getState());
-                    int newMeta = BlockUtils.getBlockStateMeta(currentBlock);
-                    if (!blockUpdate.getState().getType().equals(currentBlock.getType()) || originalMeta != newMeta) {
-                        blockUpdate.restore(true, BlockChangeFlags.PHYSICS);
-                    }
+        // only blocks changed by the processing thread need to be visited
+        final World world = this.lesserCorner.getExtent();
+        final int originX = this.snapshot.getOriginX();
+        final int originZ = this.snapshot.getOriginZ();
+        try (final CauseStackManager.StackFrame frame = Sponge.getCauseStackManager().pushCauseFrame()) {
+            Sponge.getCauseStackManager().pushCause(GriefPreventionPlugin.instance);
+            for (int index = this.snapshot.nextChanged(0); index >= 0; index = this.snapshot.nextChanged(index + 1)) {
+                final int x = PaletteChunkSnapshot.indexX(index);
+                final int y = PaletteChunkSnapshot.indexY(index);
+                final int z = PaletteChunkSnapshot.indexZ(index);
+                if (y < this.miny || x == 0 || z == 0 || x == PaletteChunkSnapshot.SIZE - 1 || z == PaletteChunkSnapshot.SIZE - 1) {
+                    continue;
+                }
+
+                final BlockState blockUpdate = this.snapshot.getBlock(x, y, z);
+                final BlockState currentBlock = world.getBlock(originX + x, y, originZ + z);
+                final int originalMeta = BlockUtils.getBlockStateMeta(blockUpdate);
+                final int newMeta = BlockUtils.getBlockStateMeta(currentBlock);
+                if (!blockUpdate.getType().equals(currentBlock.getType()) || originalMeta != newMeta) {
+                    world.setBlock(originX + x, y, originZ + z, blockUpdate, BlockChangeFlags.PHYSICS);
                 }
             }
         }
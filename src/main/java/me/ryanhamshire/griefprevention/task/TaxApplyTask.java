@@ -24,6 +24,7 @@
  */
 package me.ryanhamshire.griefprevention.task;
 
+import me.ryanhamshire.griefprevention.DataStore;
 import me.ryanhamshire.griefprevention.GPPlayerData;
 import me.ryanhamshire.griefprevention.GriefPreventionPlugin;
 import me.ryanhamshire.griefprevention.api.claim.Claim;
@@ -37,47 +38,76 @@
 import me.ryanhamshire.griefprevention.permission.GPOptions;
 import org.spongepowered.api.Sponge;
 import org.spongepowered.api.event.CauseStackManager;
+import org.spongepowered.api.event.cause.Cause;
+import org.spongepowered.api.scheduler.Task;
 import org.spongepowered.api.service.economy.EconomyService;
 import org.spongepowered.api.service.economy.account.Account;
 import org.spongepowered.api.service.economy.transaction.ResultType;
 import org.spongepowered.api.service.economy.transaction.TransactionResult;
 import org.spongepowered.api.service.permission.Subject;
 import org.spongepowered.api.world.storage.WorldProperties;
+import org.spongepowered.common.SpongeImpl;
 
 import java.math.BigDecimal;
 import java.time.Duration;
 import java.time.Instant;
 import java.util.ArrayList;
-import java.util.Iterator;
 import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import javax.annotation.Nullable;
+
+/**
+ * Collects claim taxes for a world.
+ *
+ * <p>Collection runs as a pipeline. The taxable claims are snapshotted on
+ * the main thread, tax rates are looked up on the plugin executor, tax
+ * events are posted back on the main thread, the economy transactions run
+ * in a batch on the executor and the results are applied to the claims on
+ * the main thread. Main thread work is limited to
+ * {@link #CLAIMS_PER_TICK} claims each tick.</p>
+ */
 public class TaxApplyTask implements Runnable {
 
+    private static final int CLAIMS_PER_TICK = 100;
+
     final WorldProperties worldProperties;
     final EconomyService economyService;
     final GriefPreventionConfig<?> activeConfig;
     private int bankTransactionLogLimit = 60;
 
+    // Entries waiting for main thread work, filled by the executor
+    private final Queue<TaxEntry> mainThreadQueue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger remaining = new AtomicInteger();
+    // Only accessed from the main thread
+    private boolean running = false;
+
     public TaxApplyTask(WorldProperties worldProperties) {
         this.worldProperties = worldProperties;
         this.economyService = GriefPreventionPlugin.instance.economyService.get();
         this.activeConfig = GriefPreventionPlugin.getActiveConfig(this.worldProperties);
     }
 
-    @SuppressWarnings({"unchecked", "rawtypes"})
     @Override
     public void run() {
+        if (this.running) {
+            // previous collection is still in progress
+            return;
+        }
+
         // don't do anything when there are no claims
         GPClaimManager claimManager = GriefPreventionPlugin.instance.dataStore.getClaimWorldManager(this.worldProperties);
-        ArrayList<Claim> claimList = (ArrayList<Claim>) claimManager.getWorldClaims();
+        List<Claim> claimList = claimManager.getWorldClaims();
         if (claimList.size() == 0) {
             return;
         }
 
         this.bankTransactionLogLimit = this.activeConfig.getConfig().claim.bankTransactionLogLimit;
-        Iterator<GPClaim> iterator = ((ArrayList) claimList.clone()).iterator();
-        while (iterator.hasNext()) {
-            GPClaim claim = iterator.next();
+        final List<TaxEntry> entries = new ArrayList<>();
+        for (Claim worldClaim : claimList) {
+            final GPClaim claim = (GPClaim) worldClaim;
             final GPPlayerData playerData = claim.getOwnerPlayerData();
             if (claim.isWilderness()) {
                 continue;
@@ -95,74 +125,39 @@ public void run() {
                 final List<Claim> children = claim.getChildren(false);
                 for (Claim child : children) {
                     if (child.isTown()) {
-                        handleTownTax((GPClaim) child, playerData);
+                        collectTownTax((GPClaim) child, playerData, entries);
                     } else if (child.isBasicClaim()) {
-                        handleClaimTax((GPClaim) child, playerData, false);
+                        collectClaimTax((GPClaim) child, playerData, null, entries);
                     }
                 }
             } else {
                 if (claim.isTown()) {
-                    handleTownTax(claim, playerData);
+                    collectTownTax(claim, playerData, entries);
                 } else if (claim.isBasicClaim()){
-                    handleClaimTax(claim, playerData, false);
+                    collectClaimTax(claim, playerData, null, entries);
                 }
             }
         }
+        if (entries.isEmpty()) {
+            return;
+        }
+
+        this.running = true;
+        this.remaining.set(entries.size());
+        GriefPreventionPlugin.instance.executor.execute(() -> this.calculateTax(entries));
+        Sponge.getScheduler().createTaskBuilder().intervalTicks(1).execute(this::processMainThread).submit(GriefPreventionPlugin.instance);
     }
 
-    private void handleClaimTax(GPClaim claim, GPPlayerData playerData, boolean inTown) {
-        final Subject subject = playerData.getPlayerSubject();
+    private void collectClaimTax(GPClaim claim, GPPlayerData playerData, @Nullable GPClaim town, List<TaxEntry> entries) {
         final Account claimAccount = claim.getEconomyAccount().orElse(null);
-        double taxRate = GPOptionHandler.getClaimOptionDouble(subject, claim, GPOptions.Type.TAX_RATE, playerData);
-        double taxOwed = (claim.getClaimBlocks() / 256) * taxRate;
-        try (final CauseStackManager.StackFrame frame = Sponge.getCauseStackManager().pushCauseFrame()) {
-            Sponge.getCauseStackManager().pushCause(GriefPreventionPlugin.instance);
-            GPTaxClaimEvent event = new GPTaxClaimEvent(claim, taxRate, taxOwed);
-            Sponge.getEventManager().post(event);
-            if (event.isCancelled()) {
-                return;
-            }
-            taxRate = event.getTaxRate();
-            taxOwed = claim.getClaimBlocks() * taxRate;
-
-            TransactionResult result = claimAccount.withdraw(this.economyService.getDefaultCurrency(), BigDecimal.valueOf(taxOwed), Sponge.getCauseStackManager().getCurrentCause());
-            if (result.getResult() != ResultType.SUCCESS) {
-                final Instant localNow = Instant.now();
-                Instant taxPastDueDate = claim.getEconomyData().getTaxPastDueDate().orElse(null);
-                if (taxPastDueDate == null) {
-                    claim.getEconomyData().setTaxPastDueDate(Instant.now());
-                } else {
-                    final int taxExpirationDays = GPOptionHandler.getClaimOptionDouble(subject, claim, GPOptions.Type.TAX_EXPIRATION, playerData).intValue();
-                    if (claim.getData().isExpired()) {
-                        final int expireDaysToKeep = GPOptionHandler.getClaimOptionDouble(subject, claim, GPOptions.Type.EXPIRATION_DAYS_KEEP, playerData).intValue();
-                        //if (taxPastDueDate.plus(Duration.ofDays(taxExpirationDays + expireDaysToKeep)).isBefore(localNow)) {
-                        //}
-                    } else {
-                        if (taxPastDueDate.plus(Duration.ofDays(taxExpirationDays)).isBefore(localNow)) {
-                            claim.getData().setExpiration(true);
-                        }
-                    }
-                }
-                final double totalTaxOwed = claim.getEconomyData().getTaxBalance() + taxOwed;
-                claim.getEconomyData().setTaxBalance(totalTaxOwed);
-                claim.getEconomyData().addBankTransaction(new GPBankTransaction(BankTransactionType.TAX_FAIL, Instant.now(), taxOwed));
-            } else {
-                claim.getEconomyData().addBankTransaction(new GPBankTransaction(BankTransactionType.TAX_SUCCESS, Instant.now(), taxOwed));
-                claim.getEconomyData().setTaxPastDueDate(null);
-                if (inTown) {
-                    final GPClaim town = claim.getTownClaim();
-                    town.getData()
-                        .getEconomyData()
-                        .addBankTransaction(new GPBankTransaction(BankTransactionType.TAX_SUCCESS, Instant.now(), taxOwed));
-                    town.getEconomyAccount()
-                        .get()
-                        .deposit(this.economyService.getDefaultCurrency(), BigDecimal.valueOf(taxOwed), Sponge.getCauseStackManager().getCurrentCause());
-                }
-            }
+        if (claimAccount == null) {
+            return;
         }
+
+        entries.add(new TaxEntry(claim, playerData, claimAccount, town));
     }
 
-    private void handleTownTax(GPClaim town, GPPlayerData playerData) {
+    private void collectTownTax(GPClaim town, GPPlayerData playerData, List<TaxEntry> entries) {
         Account townAccount = town.getEconomyAccount().orElse(null);
         if (townAccount == null) {
             // Virtual Accounts not supported by Economy Plugin so ignore
@@ -172,11 +167,169 @@ private void handleTownTax(GPClaim town, GPPlayerData playerData) {
         for (Claim child : children) {
             // resident tax
             if (child.isBasicClaim()) {
-                handleClaimTax((GPClaim) child, playerData, true);
+                collectClaimTax((GPClaim) child, playerData, ((GPClaim) child).getTownClaim(), entries);
             }
         }
         if (town.getOwnerUniqueId().equals(playerData.playerID)) {
-            handleClaimTax(town, playerData, false);
+            collectClaimTax(town, playerData, null, entries);
+        }
+    }
+
+    // Runs on the executor
+    private void calculateTax(List<TaxEntry> entries) {
+        for (TaxEntry entry : entries) {
+            try {
+                entry.taxRate = GPOptionHandler.getClaimOptionDouble(entry.subject, entry.claim, GPOptions.Type.TAX_RATE, entry.playerData);
+                entry.taxOwed = (entry.claimBlocks / 256) * entry.taxRate;
+                if (entry.taxPastDueDate != null) {
+                    entry.taxExpirationDays = GPOptionHandler.getClaimOptionDouble(entry.subject, entry.claim, GPOptions.Type.TAX_EXPIRATION, entry.playerData).intValue();
+                }
+            } catch (Throwable t) {
+                SpongeImpl.getLogger().error("Failed to calculate tax for claim " + entry.claim.getUniqueId(), t);
+                entry.stage = Stage.DONE;
+            }
+            this.mainThreadQueue.add(entry);
+        }
+    }
+
+    // Runs on the executor
+    private void settleTax(List<TaxEntry> entries) {
+        for (TaxEntry entry : entries) {
+            try {
+                final TransactionResult result = entry.claimAccount.withdraw(this.economyService.getDefaultCurrency(), BigDecimal.valueOf(entry.taxOwed), entry.cause);
+                entry.success = result.getResult() == ResultType.SUCCESS;
+                if (entry.success && entry.townAccount != null) {
+                    entry.townAccount.deposit(this.economyService.getDefaultCurrency(), BigDecimal.valueOf(entry.taxOwed), entry.cause);
+                }
+                entry.stage = Stage.SETTLED;
+            } catch (Throwable t) {
+                SpongeImpl.getLogger().error("Failed to collect tax for claim " + entry.claim.getUniqueId(), t);
+                entry.stage = Stage.DONE;
+            }
+            this.mainThreadQueue.add(entry);
+        }
+    }
+
+    private void processMainThread(Task task) {
+        final List<TaxEntry> settleBatch = new ArrayList<>();
+        for (int i = 0; i < CLAIMS_PER_TICK; i++) {
+            final TaxEntry entry = this.mainThreadQueue.poll();
+            if (entry == null) {
+                break;
+            }
+
+            try {
+                if (entry.stage == Stage.CALCULATED && this.isClaimValid(entry)) {
+                    if (this.postTaxEvent(entry)) {
+                        settleBatch.add(entry);
+                        continue;
+                    }
+                } else if (entry.stage == Stage.SETTLED) {
+                    if (this.isClaimValid(entry)) {
+                        this.applyResult(entry);
+                    } else {
+                        SpongeImpl.getLogger().warn("Claim " + entry.claim.getUniqueId() + " was removed while its tax was collected, "
+                                + entry.taxOwed + " was " + (entry.success ? "withdrawn" : "not withdrawn"));
+                    }
+                }
+            } catch (Throwable t) {
+                SpongeImpl.getLogger().error("Failed to process tax for claim " + entry.claim.getUniqueId(), t);
+            }
+            this.remaining.decrementAndGet();
+        }
+
+        if (!settleBatch.isEmpty()) {
+            GriefPreventionPlugin.instance.executor.execute(() -> this.settleTax(settleBatch));
+        }
+        if (this.remaining.get() == 0) {
+            this.running = false;
+            task.cancel();
+        }
+    }
+
+    // the claim may have been deleted between stages
+    private boolean isClaimValid(TaxEntry entry) {
+        final GPClaimManager claimManager = GriefPreventionPlugin.instance.dataStore.getClaimWorldManager(this.worldProperties);
+        return claimManager.getClaimByUUID(entry.claim.getUniqueId()).orElse(null) == entry.claim;
+    }
+
+    private boolean postTaxEvent(TaxEntry entry) {
+        try (final CauseStackManager.StackFrame frame = Sponge.getCauseStackManager().pushCauseFrame()) {
+            Sponge.getCauseStackManager().pushCause(GriefPreventionPlugin.instance);
+            GPTaxClaimEvent event = new GPTaxClaimEvent(entry.claim, entry.taxRate, entry.taxOwed);
+            Sponge.getEventManager().post(event);
+            if (event.isCancelled()) {
+                return false;
+            }
+            entry.taxRate = event.getTaxRate();
+            entry.taxOwed = entry.claimBlocks * entry.taxRate;
+            entry.cause = Sponge.getCauseStackManager().getCurrentCause();
+            return true;
+        }
+    }
+
+    private void applyResult(TaxEntry entry) {
+        final GPClaim claim = entry.claim;
+        if (!entry.success) {
+            final Instant localNow = Instant.now();
+            Instant taxPastDueDate = claim.getEconomyData().getTaxPastDueDate().orElse(null);
+            if (taxPastDueDate == null) {
+                claim.getEconomyData().setTaxPastDueDate(Instant.now());
+            } else if (!claim.getData().isExpired()) {
+                if (taxPastDueDate.plus(Duration.ofDays(entry.taxExpirationDays)).isBefore(localNow)) {
+                    claim.getData().setExpiration(true);
+                    DataStore.CLAIM_EXPIRATION_QUEUE.markChanged(claim);
+                }
+            }
+            final double totalTaxOwed = claim.getEconomyData().getTaxBalance() + entry.taxOwed;
+            claim.getEconomyData().setTaxBalance(totalTaxOwed);
+            claim.getEconomyData().addBankTransaction(new GPBankTransaction(BankTransactionType.TAX_FAIL, Instant.now(), entry.taxOwed));
+        } else {
+            claim.getEconomyData().addBankTransaction(new GPBankTransaction(BankTransactionType.TAX_SUCCESS, Instant.now(), entry.taxOwed));
+            claim.getEconomyData().setTaxPastDueDate(null);
+            if (entry.town != null) {
+                entry.town.getData()
+                    .getEconomyData()
+                    .addBankTransaction(new GPBankTransaction(BankTransactionType.TAX_SUCCESS, Instant.now(), entry.taxOwed));
+            }
+        }
+    }
+
+    private enum Stage {
+        CALCULATED,
+        SETTLED,
+        DONE
+    }
+
+    private static final class TaxEntry {
+
+        final GPClaim claim;
+        final GPPlayerData playerData;
+        final Subject subject;
+        final Account claimAccount;
+        // Town receiving the tax of a resident claim
+        @Nullable final GPClaim town;
+        @Nullable final Account townAccount;
+        final int claimBlocks;
+        @Nullable final Instant taxPastDueDate;
+
+        // Handed between threads through the main thread queue and executor
+        volatile Stage stage = Stage.CALCULATED;
+        double taxRate;
+        double taxOwed;
+        int taxExpirationDays;
+        Cause cause;
+        boolean success;
+
+        TaxEntry(GPClaim claim, GPPlayerData playerData, Account claimAccount, @Nullable GPClaim town) {
+            this.claim = claim;
+            this.playerData = playerData;
+            this.subject = playerData.getPlayerSubject();
+            this.claimAccount = claimAccount;
+            this.town = town;
+            this.townAccount = town == null ? null : town.getEconomyAccount().orElse(null);
+            this.claimBlocks = claim.getClaimBlocks();
+            this.taxPastDueDate = claim.getEconomyData().getTaxPastDueDate().orElse(null);
         }
     }
 }
@@ -27,9 +27,9 @@
 
 import me.ryanhamshire.griefprevention.GPPlayerData;
 import me.ryanhamshire.griefprevention.GriefPreventionPlugin;
+import me.ryanhamshire.griefprevention.visual.BlockChangeBatch;
 import me.ryanhamshire.griefprevention.visual.Visualization;
 import org.spongepowered.api.Sponge;
-import org.spongepowered.api.block.BlockSnapshot;
 import org.spongepowered.api.entity.living.player.Player;
 
 import java.util.ArrayList;
@@ -62,10 +62,12 @@ public void run() {
             }
         }
 
-        for (int i = 0; i < this.visualization.elements.size(); i++) {
-            BlockSnapshot snapshot = this.visualization.elements.get(i).getFinal();
-            this.player.sendBlockChange(snapshot.getPosition(), snapshot.getState());
+        if (this.playerData.visualBatch != null) {
+            this.playerData.visualBatch.cancel();
         }
+        // large visuals are spread over several ticks
+        this.playerData.visualBatch = new BlockChangeBatch(this.player, this.visualization.elements, false);
+        this.playerData.visualBatch.send();
 
         // remember the visualization applied to this player for later (so it can be inexpensively reverted)
         if (this.visualization.getClaim() != null) {
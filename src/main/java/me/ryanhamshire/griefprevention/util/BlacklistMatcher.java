@@ -0,0 +1,162 @@
+/*
+ * This file is part of GriefPrevention, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) bloodmc
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package me.ryanhamshire.griefprevention.util;
+
+import it.unimi.dsi.fastutil.chars.Char2ObjectMap;
+import it.unimi.dsi.fastutil.chars.Char2ObjectOpenHashMap;
+import me.ryanhamshire.griefprevention.permission.GPPermissionHandler;
+import org.apache.commons.io.FilenameUtils;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Matches ids against a blacklist compiled once from config.
+ *
+ * <p>Entries without wildcards are looked up in a hash set. Wildcard entries
+ * are stored in a trie keyed by their literal prefix so only patterns sharing
+ * a prefix with the id are tested. Results are memoized per id.</p>
+ */
+public class BlacklistMatcher {
+
+    private static final int MAX_MEMO_SIZE = 4096;
+
+    private final Set<String> exactIds = new HashSet<>();
+    private final PrefixNode patternRoot = new PrefixNode();
+    private final boolean empty;
+    private final Map<String, Boolean> memo = new ConcurrentHashMap<>();
+
+    public BlacklistMatcher(List<String> entries) {
+        for (String entry : entries) {
+            if (entry == null) {
+                continue;
+            }
+            final int wildcardIndex = indexOfWildcard(entry);
+            if (wildcardIndex == -1) {
+                this.exactIds.add(entry);
+                continue;
+            }
+
+            PrefixNode node = this.patternRoot;
+            for (int i = 0; i < wildcardIndex; i++) {
+                node = node.getOrCreateChild(entry.charAt(i));
+            }
+            node.patterns.add(entry);
+        }
+        this.empty = this.exactIds.isEmpty() && this.patternRoot.isEmpty();
+    }
+
+    /**
+     * Checks if the id, or the id without its meta, is blacklisted.
+     *
+     * @param id The permission identifier
+     * @return Whether the id matches an entry
+     */
+    public boolean matches(String id) {
+        if (this.empty) {
+            return false;
+        }
+
+        Boolean result = this.memo.get(id);
+        if (result == null) {
+            result = this.matchesEntry(id);
+            if (!result) {
+                final String idNoMeta = GPPermissionHandler.getIdentifierWithoutMeta(id);
+                result = !idNoMeta.equals(id) && this.matchesEntry(idNoMeta);
+            }
+            if (this.memo.size() >= MAX_MEMO_SIZE) {
+                this.memo.clear();
+            }
+            this.memo.put(id, result);
+        }
+        return result;
+    }
+
+    private boolean matchesEntry(String id) {
+        if (this.exactIds.contains(id)) {
+            return true;
+        }
+
+        PrefixNode node = this.patternRoot;
+        if (node.matchesPattern(id)) {
+            return true;
+        }
+        for (int i = 0; i < id.length(); i++) {
+            node = node.children == null ? null : node.children.get(id.charAt(i));
+            if (node == null) {
+                return false;
+            }
+            if (node.matchesPattern(id)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static int indexOfWildcard(String entry) {
+        for (int i = 0; i < entry.length(); i++) {
+            final char c = entry.charAt(i);
+            if (c == '*' || c == '?') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static class PrefixNode {
+
+        private Char2ObjectMap<PrefixNode> children;
+        private final List<String> patterns = new ArrayList<>(1);
+
+        PrefixNode getOrCreateChild(char c) {
+            if (this.children == null) {
+                this.children = new Char2ObjectOpenHashMap<>();
+            }
+            PrefixNode child = this.children.get(c);
+            if (child == null) {
+                child = new PrefixNode();
+                this.children.put(c, child);
+            }
+            return child;
+        }
+
+        boolean matchesPattern(String id) {
+            for (String pattern : this.patterns) {
+                if (FilenameUtils.wildcardMatch(id, pattern)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        boolean isEmpty() {
+            return this.patterns.isEmpty() && (this.children == null || this.children.isEmpty());
+        }
+    }
+}
@@ -27,7 +27,6 @@
 
 import com.flowpowered.math.vector.Vector3i;
 import com.google.common.collect.Maps;
-import it.unimi.dsi.fastutil.ints.Int2ObjectArrayMap;
 import me.ryanhamshire.griefprevention.GPPlayerData;
 import me.ryanhamshire.griefprevention.GriefPreventionPlugin;
 import me.ryanhamshire.griefprevention.api.claim.ClaimBlockSystem;
@@ -65,12 +64,8 @@
 public class BlockUtils {
 
     public static final Direction[] CARDINAL_DIRECTIONS = new Direction[] {Direction.NORTH, Direction.SOUTH, Direction.EAST, Direction.WEST};
-    private static final int NUM_XZ_BITS = 4;
-    private static final int NUM_SHORT_Y_BITS = 8;
-    private static final short XZ_MASK = 0xF;
-    private static final short Y_SHORT_MASK = 0xFF;
 
-    public static final Map<Integer, BlockPosCache> ENTITY_BLOCK_CACHE = new Int2ObjectArrayMap<>();
+    public static final EntityBlockCollideCache ENTITY_BLOCK_CACHE = new EntityBlockCollideCache(8192);
     private static final Map<BlockState, Integer> BLOCKSTATE_META_CACHE = Maps.newHashMap();
     private static final String locationStringDelimiter = ";";
 
@@ -195,20 +190,6 @@ public static int getClaimBlockCost(World world, Vector3i lesser, Vector3i great
         return claimLength * claimWidth * claimHeight;
     }
 
-    /**
-     * Serialize this BlockPos into a short value
-     */
-    public static short blockPosToShort(BlockPos pos) {
-        short serialized = (short) setNibble(0, pos.getX() & XZ_MASK, 0, NUM_XZ_BITS);
-        serialized = (short) setNibble(serialized, pos.getY() & Y_SHORT_MASK, 1, NUM_SHORT_Y_BITS);
-        serialized = (short) setNibble(serialized, pos.getZ() & XZ_MASK, 3, NUM_XZ_BITS);
-        return serialized;
-    }
-
-    private static int setNibble(int num, int data, int which, int bitsToReplace) {
-        return (num & ~(bitsToReplace << (which * 4)) | (data << (which * 4)));
-    }
-
     private static void saveChunkData(ChunkProviderServer chunkProviderServer, Chunk chunkIn)
     {
         try
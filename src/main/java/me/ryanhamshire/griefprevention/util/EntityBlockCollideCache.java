@@ -0,0 +1,224 @@
+/*
+ * This file is part of GriefPrevention, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) bloodmc
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package me.ryanhamshire.griefprevention.util;
+
+import it.unimi.dsi.fastutil.HashCommon;
+import org.spongepowered.api.util.Tristate;
+
+import java.util.Arrays;
+
+/**
+ * Remembers the last entity collide result per entity so an entity standing
+ * on or walking into the same block is not re-evaluated every tick.
+ *
+ * <p>Entries are kept in flat primitive arrays using open addressing with
+ * linear probing, keyed by entity id. Each entry stores the full packed
+ * block position ({@code BlockPos#toLong}), the tick it was last touched
+ * and the last result. Stale entries are swept incrementally once per tick
+ * and the number of entries is bounded so the cache cannot grow with the
+ * number of loaded entities. Only accessed from the main thread.</p>
+ */
+public class EntityBlockCollideCache {
+
+    // entry is reused if the entity touches the same block within this many ticks
+    private static final int MAX_AGE_TICKS = 2;
+    private static final int EMPTY = Integer.MIN_VALUE;
+    private static final byte UNDEFINED = 0;
+    private static final byte TRUE = 1;
+    private static final byte FALSE = 2;
+
+    private final int[] keys;
+    private final long[] positions;
+    private final int[] ticks;
+    private final byte[] results;
+    private final int mask;
+    private final int maxSize;
+    // slots swept per tick so the whole table is covered every few ticks
+    private final int sweepSlots;
+    private int size;
+    private int sweepCursor;
+    private int lastSweepTick = -1;
+    private long hits;
+    private long misses;
+
+    public EntityBlockCollideCache(int maxSize) {
+        // keep the load factor at or below 0.5
+        final int capacity = HashCommon.nextPowerOfTwo(Math.max(16, maxSize * 2));
+        this.keys = new int[capacity];
+        this.positions = new long[capacity];
+        this.ticks = new int[capacity];
+        this.results = new byte[capacity];
+        this.mask = capacity - 1;
+        this.maxSize = maxSize;
+        this.sweepSlots = Math.max(64, capacity / 8);
+        Arrays.fill(this.keys, EMPTY);
+    }
+
+    /**
+     * Gets the cached result for an entity colliding with a block.
+     *
+     * <p>If the entity moved to another block or the entry is too old the
+     * entry is reset to the new position and {@link Tristate#UNDEFINED} is
+     * returned. The caller is then expected to evaluate and call
+     * {@link #setResult(int, Tristate)}.</p>
+     *
+     * @param entityId The entity id
+     * @param packedPos The packed block position
+     * @param tick The current server tick
+     * @return The cached result, or undefined if none
+     */
+    public Tristate get(int entityId, long packedPos, int tick) {
+        if (tick != this.lastSweepTick) {
+            this.lastSweepTick = tick;
+            this.sweep(tick, this.sweepSlots);
+        }
+        if (entityId == EMPTY) {
+            this.misses++;
+            return Tristate.UNDEFINED;
+        }
+
+        int slot = this.find(entityId);
+        if (slot >= 0) {
+            if (this.positions[slot] == packedPos && (tick - this.ticks[slot]) <= MAX_AGE_TICKS && this.results[slot] != UNDEFINED) {
+                this.ticks[slot] = tick;
+                this.hits++;
+                return this.results[slot] == TRUE ? Tristate.TRUE : Tristate.FALSE;
+            }
+        } else {
+            if (this.size >= this.maxSize) {
+                // full, drop everything stale and skip caching if still full
+                this.sweep(tick, this.keys.length);
+                if (this.size >= this.maxSize) {
+                    this.misses++;
+                    return Tristate.UNDEFINED;
+                }
+            }
+            slot = -slot - 1;
+            this.keys[slot] = entityId;
+            this.size++;
+        }
+
+        this.positions[slot] = packedPos;
+        this.ticks[slot] = tick;
+        this.results[slot] = UNDEFINED;
+        this.misses++;
+        return Tristate.UNDEFINED;
+    }
+
+    public void setResult(int entityId, Tristate result) {
+        if (entityId == EMPTY) {
+            return;
+        }
+        final int slot = this.find(entityId);
+        if (slot >= 0) {
+            this.results[slot] = result == Tristate.TRUE ? TRUE : result == Tristate.FALSE ? FALSE : UNDEFINED;
+        }
+    }
+
+    public void remove(int entityId) {
+        if (entityId == EMPTY) {
+            return;
+        }
+        final int slot = this.find(entityId);
+        if (slot >= 0) {
+            this.removeSlot(slot);
+        }
+    }
+
+    public void clear() {
+        Arrays.fill(this.keys, EMPTY);
+        this.size = 0;
+    }
+
+    public int size() {
+        return this.size;
+    }
+
+    public int capacity() {
+        return this.maxSize;
+    }
+
+    public long getHits() {
+        return this.hits;
+    }
+
+    public long getMisses() {
+        return this.misses;
+    }
+
+    // Returns the slot of the key, or -(insertion slot) - 1 if absent
+    private int find(int entityId) {
+        int slot = HashCommon.mix(entityId) & this.mask;
+        while (true) {
+            final int key = this.keys[slot];
+            if (key == EMPTY) {
+                return -slot - 1;
+            }
+            if (key == entityId) {
+                return slot;
+            }
+            slot = (slot + 1) & this.mask;
+        }
+    }
+
+    private void sweep(int tick, int slots) {
+        if (this.size == 0) {
+            return;
+        }
+        for (int i = 0; i < slots; i++) {
+            final int slot = this.sweepCursor;
+            if (this.keys[slot] != EMPTY && (tick - this.ticks[slot]) > MAX_AGE_TICKS) {
+                // another entry may shift into this slot, check it again before moving on
+                this.removeSlot(slot);
+                continue;
+            }
+            this.sweepCursor = (slot + 1) & this.mask;
+        }
+    }
+
+    // Backward shift deletion keeps probe sequences intact without tombstones
+    private void removeSlot(int slot) {
+        int last = slot;
+        int current = (slot + 1) & this.mask;
+        while (true) {
+            final int key = this.keys[current];
+            if (key == EMPTY) {
+                break;
+            }
+            final int home = HashCommon.mix(key) & this.mask;
+            // move the entry back if its home slot is not between last and current (cyclically)
+            if (last <= current ? (home <= last || home > current) : (home <= last && home > current)) {
+                this.keys[last] = key;
+                this.positions[last] = this.positions[current];
+                this.ticks[last] = this.ticks[current];
+                this.results[last] = this.results[current];
+                last = current;
+            }
+            current = (current + 1) & this.mask;
+        }
+        this.keys[last] = EMPTY;
+        this.size--;
+    }
+}
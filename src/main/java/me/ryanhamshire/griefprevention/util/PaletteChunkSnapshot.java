@@ -0,0 +1,270 @@
+/*
+ * This file is part of GriefPrevention, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) bloodmc
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package me.ryanhamshire.griefprevention.util;
+
+import net.minecraft.init.Blocks;
+import net.minecraft.world.chunk.Chunk;
+import net.minecraft.world.chunk.storage.ExtendedBlockStorage;
+import org.spongepowered.api.block.BlockState;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Compact copy of the blocks of a chunk, including a one block border
+ * of its neighbors, used by nature restoration.
+ *
+ * <p>Each 16 block high section keeps a small palette of the block states
+ * it contains and packs palette indices into longs, so a typical chunk
+ * costs a few kilobytes instead of one {@link org.spongepowered.api.block.BlockSnapshot}
+ * per block. Sections without blocks are not stored at all.</p>
+ *
+ * <p>The snapshot is captured on the main thread and may then be read and
+ * modified by a single other thread. Blocks modified through
+ * {@link #setBlock(int, int, int, BlockState)} are tracked so only those need
+ * to be applied back to the world.</p>
+ */
+public class PaletteChunkSnapshot {
+
+    public static final int SIZE = 18;
+    private static final int LAYER_VOLUME = SIZE * SIZE;
+    private static final int SECTION_VOLUME = LAYER_VOLUME * 16;
+    private static final BlockState AIR = (BlockState) Blocks.AIR.getDefaultState();
+
+    private final int originX;
+    private final int originZ;
+    private final int height;
+    private final Section[] sections;
+    private final BitSet changed;
+
+    private PaletteChunkSnapshot(int originX, int originZ, int height) {
+        this.originX = originX;
+        this.originZ = originZ;
+        this.height = height;
+        this.sections = new Section[height >> 4];
+        this.changed = new BitSet(LAYER_VOLUME * height);
+    }
+
+    /**
+     * Captures the chunk at the given chunk coordinates along with the
+     * bordering column of each neighbor. Must be called on the main thread.
+     *
+     * @param world The world
+     * @param chunkX The chunk x coordinate
+     * @param chunkZ The chunk z coordinate
+     * @return The snapshot
+     */
+    public static PaletteChunkSnapshot capture(net.minecraft.world.World world, int chunkX, int chunkZ) {
+        final int originX = (chunkX << 4) - 1;
+        final int originZ = (chunkZ << 4) - 1;
+        final PaletteChunkSnapshot snapshot = new PaletteChunkSnapshot(originX, originZ, world.getHeight());
+        for (int cx = chunkX - 1; cx <= chunkX + 1; cx++) {
+            for (int cz = chunkZ - 1; cz <= chunkZ + 1; cz++) {
+                // the part of this chunk that falls within the snapshot
+                final int minX = Math.max(cx << 4, originX) - originX;
+                final int maxX = Math.min((cx << 4) + 15, originX + SIZE - 1) - originX;
+                final int minZ = Math.max(cz << 4, originZ) - originZ;
+                final int maxZ = Math.min((cz << 4) + 15, originZ + SIZE - 1) - originZ;
+                final Chunk chunk = world.getChunkProvider().provideChunk(cx, cz);
+                final ExtendedBlockStorage[] storageArray = chunk.getBlockStorageArray();
+                for (int sectionY = 0; sectionY < storageArray.length && sectionY < snapshot.sections.length; sectionY++) {
+                    final ExtendedBlockStorage storage = storageArray[sectionY];
+                    if (storage == Chunk.NULL_BLOCK_STORAGE || storage.isEmpty()) {
+                        continue;
+                    }
+
+                    for (int y = 0; y < 16; y++) {
+                        for (int z = minZ; z <= maxZ; z++) {
+                            for (int x = minX; x <= maxX; x++) {
+                                final BlockState state = (BlockState) storage.get((originX + x) & 15, y, (originZ + z) & 15);
+                                if (state != AIR) {
+                                    snapshot.getOrCreateSection(sectionY).set(sectionIndex(x, y, z), state);
+                                }
+                            }
+                        }
+                    }
+                }
+            }
+        }
+        return snapshot;
+    }
+
+    private static int sectionIndex(int x, int y, int z) {
+        return (y & 15) * LAYER_VOLUME + z * SIZE + x;
+    }
+
+    private Section getOrCreateSection(int sectionY) {
+        Section section = this.sections[sectionY];
+        if (section == null) {
+            section = new Section();
+            this.sections[sectionY] = section;
+        }
+        return section;
+    }
+
+    public int getOriginX() {
+        return this.originX;
+    }
+
+    public int getOriginZ() {
+        return this.originZ;
+    }
+
+    public int getHeight() {
+        return this.height;
+    }
+
+    /**
+     * Gets the block state at the given snapshot relative position. Positions
+     * above or below the world are treated as air.
+     *
+     * @param x The x offset, 0 to 17
+     * @param y The block y
+     * @param z The z offset, 0 to 17
+     * @return The block state
+     */
+    public BlockState getBlock(int x, int y, int z) {
+        if (y < 0 || y >= this.height) {
+            return AIR;
+        }
+        final Section section = this.sections[y >> 4];
+        if (section == null) {
+            return AIR;
+        }
+        return section.get(sectionIndex(x, y, z));
+    }
+
+    /**
+     * Sets the block state at the given snapshot relative position and marks
+     * it as changed.
+     *
+     * @param x The x offset, 0 to 17
+     * @param y The block y
+     * @param z The z offset, 0 to 17
+     * @param state The new block state
+     */
+    public void setBlock(int x, int y, int z, BlockState state) {
+        if (y < 0 || y >= this.height) {
+            return;
+        }
+        Section section = this.sections[y >> 4];
+        if (section == null) {
+            if (state == AIR) {
+                return;
+            }
+            section = this.getOrCreateSection(y >> 4);
+        }
+        final int index = sectionIndex(x, y, z);
+        if (section.get(index) == state) {
+            return;
+        }
+        section.set(index, state);
+        this.changed.set(y * LAYER_VOLUME + z * SIZE + x);
+    }
+
+    /**
+     * Gets the next changed block index at or after the given index.
+     *
+     * @param fromIndex The index to start from
+     * @return The next changed index, or -1 if there is none
+     */
+    public int nextChanged(int fromIndex) {
+        return this.changed.nextSetBit(fromIndex);
+    }
+
+    public int getChangedCount() {
+        return this.changed.cardinality();
+    }
+
+    public static int indexX(int index) {
+        return index % SIZE;
+    }
+
+    public static int indexY(int index) {
+        return index / LAYER_VOLUME;
+    }
+
+    public static int indexZ(int index) {
+        return (index / SIZE) % SIZE;
+    }
+
+    private static final class Section {
+
+        private BlockState[] palette = new BlockState[] {AIR, null};
+        private int paletteSize = 1;
+        private int bits = 1;
+        private long[] data = new long[(SECTION_VOLUME + 63) / 64];
+
+        BlockState get(int index) {
+            return this.palette[this.getId(index)];
+        }
+
+        void set(int index, BlockState state) {
+            int id = -1;
+            for (int i = 0; i < this.paletteSize; i++) {
+                if (this.palette[i] == state) {
+                    id = i;
+                    break;
+                }
+            }
+            if (id == -1) {
+                if (this.paletteSize == this.palette.length) {
+                    this.resize(this.bits + 1);
+                }
+                id = this.paletteSize++;
+                this.palette[id] = state;
+            }
+            this.setId(index, id);
+        }
+
+        private int getId(int index) {
+            final int valuesPerLong = 64 / this.bits;
+            final int shift = (index % valuesPerLong) * this.bits;
+            return (int) (this.data[index / valuesPerLong] >>> shift) & ((1 << this.bits) - 1);
+        }
+
+        private void setId(int index, int id) {
+            final int valuesPerLong = 64 / this.bits;
+            final int shift = (index % valuesPerLong) * this.bits;
+            final long mask = (long) ((1 << this.bits) - 1) << shift;
+            final int word = index / valuesPerLong;
+            this.data[word] = (this.data[word] & ~mask) | ((long) id << shift);
+        }
+
+        private void resize(int newBits) {
+            final int[] ids = new int[SECTION_VOLUME];
+            for (int i = 0; i < SECTION_VOLUME; i++) {
+                ids[i] = this.getId(i);
+            }
+            final int valuesPerLong = 64 / newBits;
+            this.bits = newBits;
+            this.data = new long[(SECTION_VOLUME + valuesPerLong - 1) / valuesPerLong];
+            this.palette = Arrays.copyOf(this.palette, 1 << newBits);
+            for (int i = 0; i < SECTION_VOLUME; i++) {
+                this.setId(i, ids[i]);
+            }
+        }
+    }
+}
@@ -0,0 +1,186 @@
+/*
+ * This file is part of GriefPrevention, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Ryan Hamshire
+ * Copyright (c) bloodmc
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+package me.ryanhamshire.griefprevention.visual;
+
+import io.netty.buffer.Unpooled;
+import me.ryanhamshire.griefprevention.GPTimings;
+import me.ryanhamshire.griefprevention.GriefPreventionPlugin;
+import net.minecraft.block.Block;
+import net.minecraft.block.state.IBlockState;
+import net.minecraft.entity.player.EntityPlayerMP;
+import net.minecraft.network.PacketBuffer;
+import net.minecraft.network.play.server.SPacketMultiBlockChange;
+import net.minecraft.util.math.ChunkPos;
+import org.spongepowered.api.Sponge;
+import org.spongepowered.api.block.BlockSnapshot;
+import org.spongepowered.api.data.Transaction;
+import org.spongepowered.api.entity.living.player.Player;
+import org.spongepowered.api.scheduler.Task;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Sends a set of fake block changes to a player using one multi block
+ * change packet per chunk instead of one packet per block.
+ *
+ * <p>A batch sends at most {@link #MAX_BLOCKS_PER_TICK} blocks per tick and
+ * defers the remaining chunks to the following ticks. Batches that are
+ * cancelled before completion stop sending.</p>
+ */
+public class BlockChangeBatch implements Consumer<Task> {
+
+    // blocks sent per tick before the remaining chunks are deferred
+    public static final int MAX_BLOCKS_PER_TICK = 4096;
+
+    private static final AtomicLong PACKETS_SENT = new AtomicLong();
+    private static final AtomicLong BLOCKS_SENT = new AtomicLong();
+
+    private final Player player;
+    private final List<SPacketMultiBlockChange> packets = new ArrayList<>();
+    private final List<Integer> packetSizes = new ArrayList<>();
+    private int nextPacket;
+    private volatile boolean cancelled;
+
+    /**
+     * Creates a batch for visual elements.
+     *
+     * @param player The player
+     * @param elements The visual elements
+     * @param original Whether to send the original (real) blocks instead of the visual blocks
+     */
+    public BlockChangeBatch(Player player, List<Transaction<BlockSnapshot>> elements, boolean original) {
+        this.player = player;
+        // Chunk -> encoded {offset, state id} pairs
+        final Map<Long, List<int[]>> chunks = new LinkedHashMap<>();
+        for (int i = 0; i < elements.size(); i++) {
+            final BlockSnapshot snapshot = original ? elements.get(i).getOriginal() : elements.get(i).getFinal();
+            final int x = snapshot.getPosition().getX();
+            final int y = snapshot.getPosition().getY();
+            final int z = snapshot.getPosition().getZ();
+            if (y < 0 || y > 255) {
+                continue;
+            }
+            final int stateId = Block.BLOCK_STATE_IDS.get((IBlockState) snapshot.getState());
+            if (stateId == -1) {
+                continue;
+            }
+            final int offset = (x & 15) << 12 | (z & 15) << 8 | y;
+            chunks.computeIfAbsent(ChunkPos.asLong(x >> 4, z >> 4), k -> new ArrayList<>()).add(new int[] {offset, stateId});
+        }
+
+        for (Map.Entry<Long, List<int[]>> entry : chunks.entrySet()) {
+            final long chunkKey = entry.getKey();
+            final List<int[]> changes = entry.getValue();
+            final PacketBuffer buffer = new PacketBuffer(Unpooled.buffer());
+            buffer.writeInt((int) chunkKey);
+            buffer.writeInt((int) (chunkKey >> 32));
+            buffer.writeVarInt(changes.size());
+            for (int[] change : changes) {
+                buffer.writeShort(change[0]);
+                buffer.writeVarInt(change[1]);
+            }
+
+            final SPacketMultiBlockChange packet = new SPacketMultiBlockChange();
+            try {
+                packet.readPacketData(buffer);
+            } catch (IOException e) {
+                // only reads from memory
+                throw new IllegalStateException(e);
+            } finally {
+                buffer.release();
+            }
+            this.packets.add(packet);
+            this.packetSizes.add(changes.size());
+        }
+    }
+
+    /**
+     * Sends the first part of this batch now and schedules the remainder
+     * over the following ticks.
+     */
+    public void send() {
+        this.accept(null);
+    }
+
+    /**
+     * Sends the complete batch now regardless of the per tick budget.
+     */
+    public void sendAll() {
+        this.sendPackets(Integer.MAX_VALUE);
+    }
+
+    public void cancel() {
+        this.cancelled = true;
+    }
+
+    public boolean isDone() {
+        return this.cancelled || this.nextPacket >= this.packets.size();
+    }
+
+    @Override
+    public void accept(Task task) {
+        if (this.cancelled || !this.player.isOnline()) {
+            return;
+        }
+
+        GPTimings.VISUALIZATION_SEND.startTimingIfSync();
+        this.sendPackets(MAX_BLOCKS_PER_TICK);
+        GPTimings.VISUALIZATION_SEND.stopTimingIfSync();
+        if (!this.isDone()) {
+            Sponge.getScheduler().createTaskBuilder().delayTicks(1).execute(this).submit(GriefPreventionPlugin.instance);
+        }
+    }
+
+    private void sendPackets(int blockBudget) {
+        final EntityPlayerMP playerMP = (EntityPlayerMP) this.player;
+        int sent = 0;
+        while (!this.cancelled && this.nextPacket < this.packets.size()) {
+            final int size = this.packetSizes.get(this.nextPacket);
+            // always send at least one chunk per call
+            if (sent > 0 && sent + size > blockBudget) {
+                break;
+            }
+            playerMP.connection.sendPacket(this.packets.get(this.nextPacket));
+            this.nextPacket++;
+            sent += size;
+            PACKETS_SENT.incrementAndGet();
+        }
+        BLOCKS_SENT.addAndGet(sent);
+    }
+
+    public static long getPacketsSent() {
+        return PACKETS_SENT.get();
+    }
+
+    public static long getBlocksSent() {
+        return BLOCKS_SENT.get();
+    }
+}
@@ -33,6 +33,8 @@
 import me.ryanhamshire.griefprevention.claim.GPClaim;
 import me.ryanhamshire.griefprevention.task.VisualizationApplicationTask;
 import net.minecraft.block.state.IBlockState;
+import net.minecraft.init.Blocks;
+import net.minecraft.world.chunk.Chunk;
 import org.spongepowered.api.Sponge;
 import org.spongepowered.api.block.BlockSnapshot;
 import org.spongepowered.api.block.BlockState;
@@ -41,13 +43,15 @@
 import org.spongepowered.api.data.Transaction;
 import org.spongepowered.api.data.property.block.MatterProperty;
 import org.spongepowered.api.entity.living.player.Player;
-import org.spongepowered.api.util.Direction;
 import org.spongepowered.api.world.Location;
 import org.spongepowered.api.world.World;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Supplier;
 
 //represents a visualization sent to a player
 //FEATURE: to show players visually where claim boundaries are, we send them fake block change packets
@@ -55,7 +59,9 @@
 public class Visualization {
 
     public ArrayList<Transaction<BlockSnapshot>> elements;
-    private ArrayList<Transaction<BlockSnapshot>> newElements;
+    private List<VisualBlock> newElements;
+    // element geometry still being created off the main thread
+    private final List<CompletableFuture<List<Transaction<BlockSnapshot>>>> pendingElements = new ArrayList<>();
     private ArrayList<Vector3i> corners;
     private VisualizationType type;
     private GPClaim claim;
@@ -165,6 +171,16 @@ public void apply(Player player, boolean resetActive) {
         // if he has any current visualization, clear it first
         //playerData.revertActiveVisual(player);
 
+        // wait for geometry created off the main thread, then continue on the main thread
+        if (player.isOnline() && !this.pendingElements.isEmpty()) {
+            CompletableFuture.allOf(this.pendingElements.toArray(new CompletableFuture<?>[0])).whenComplete((result, throwable) ->
+                    Sponge.getScheduler().createTaskBuilder().execute(() -> {
+                        this.drainPendingElements();
+                        this.apply(player, resetActive);
+                    }).submit(GriefPreventionPlugin.instance));
+            return;
+        }
+
         // if he's online, create a task to send him the visualization
         if (player.isOnline() && this.elements.size() > 0
                 && this.elements.get(0).getOriginal().getLocation().get().getExtent().equals(player.getWorld())) {
@@ -193,19 +209,17 @@ public void revert(Player player) {
             this.removeElementsOutOfRange(this.elements, minx, minz, maxx, maxz);
         }
 
-        // send real block information for any remaining elements
-        for (int i = 0; i < this.elements.size(); i++) {
-            BlockSnapshot snapshot = this.elements.get(i).getOriginal();
-
-            // check player still in world where visualization exists
-            if (i == 0) {
-                if (!player.getWorld().equals(snapshot.getLocation().get().getExtent())) {
-                    return;
-                }
-            }
+        // check player still in world where visualization exists
+        if (!this.elements.isEmpty() && !player.getWorld().equals(this.elements.get(0).getOriginal().getLocation().get().getExtent())) {
+            return;
+        }
 
-            player.sendBlockChange(snapshot.getPosition(), snapshot.getState());
+        // send real block information for any remaining elements
+        if (playerData.visualBatch != null) {
+            playerData.visualBatch.cancel();
+            playerData.visualBatch = null;
         }
+        new BlockChangeBatch(player, this.elements, true).sendAll();
 
         playerData.visualBlocks = null;
         if (playerData.visualRevertTask != null) {
@@ -227,6 +241,7 @@ public static Visualization fromClick(Location<World> location, int height, Visu
     public void resetVisuals() {
         this.elements.clear();
         this.newElements.clear();
+        this.pendingElements.clear();
     }
 
     public void createClaimBlockVisualWithType(GPClaim claim, int height, Location<World> locality, GPPlayerData playerData, VisualizationType visualType) {
@@ -236,7 +251,7 @@ public void createClaimBlockVisualWithType(GPClaim claim, int height, Location<W
     }
 
     public void createClaimBlockVisuals(int height, Location<World> locality, GPPlayerData playerData) {
-        if (this.elements.size() != 0) {
+        if (this.elements.size() != 0 || !this.pendingElements.isEmpty()) {
             return;
         }
 
@@ -304,176 +319,201 @@ private void addClaimElements(int height, Location<World> locality, GPPlayerData
     public void addVisuals3D(GPClaim claim, GPPlayerData playerData) {
         World world = claim.world;
 
-        this.addTopLine(world, this.smally, this.cornerMaterial, this.accentMaterial);
-        this.addTopLine(world, this.bigy, this.cornerMaterial, this.accentMaterial);
-        this.addBottomLine(world, this.smally, this.cornerMaterial, this.accentMaterial);
-        this.addBottomLine(world, this.bigy, this.cornerMaterial, this.accentMaterial);
-        this.addLeftLine(world, this.smally, this.cornerMaterial, this.accentMaterial);
-        this.addLeftLine(world, this.bigy, this.cornerMaterial, this.accentMaterial);
-        this.addRightLine(world, this.smally, this.cornerMaterial, this.accentMaterial);
-        this.addRightLine(world, this.bigy, this.cornerMaterial, this.accentMaterial);
+        this.addTopLine(this.smally, this.cornerMaterial, this.accentMaterial);
+        this.addTopLine(this.bigy, this.cornerMaterial, this.accentMaterial);
+        this.addBottomLine(this.smally, this.cornerMaterial, this.accentMaterial);
+        this.addBottomLine(this.bigy, this.cornerMaterial, this.accentMaterial);
+        this.addLeftLine(this.smally, this.cornerMaterial, this.accentMaterial);
+        this.addLeftLine(this.bigy, this.cornerMaterial, this.accentMaterial);
+        this.addRightLine(this.smally, this.cornerMaterial, this.accentMaterial);
+        this.addRightLine(this.bigy, this.cornerMaterial, this.accentMaterial);
         // don't show corners while subdividing
         if (playerData == null || (playerData.claimSubdividing == null)) {
             // top corners
-            this.addCorners(world, this.bigy - 1, this.accentMaterial);
+            this.addCorners(this.bigy - 1, this.accentMaterial);
             // bottom corners
-            this.addCorners(world, this.smally + 1, this.accentMaterial);
+            this.addCorners(this.smally + 1, this.accentMaterial);
         }
 
         if (STEP != 0 && (playerData == null || playerData.showVisualFillers)) {
             for (int y = this.smally + STEP; y < this.bigy - STEP / 2; y += STEP) {
-                this.addTopLine(world, y, fillerMaterial, fillerMaterial);
+                this.addTopLine(y, fillerMaterial, fillerMaterial);
             }
             for (int y = this.smally + STEP; y < this.bigy - STEP / 2; y += STEP) {
-                this.addBottomLine(world, y, fillerMaterial, fillerMaterial);
+                this.addBottomLine(y, fillerMaterial, fillerMaterial);
             }
             for (int y = this.smally + STEP; y < this.bigy - STEP / 2; y += STEP) {
-                this.addLeftLine(world, y, fillerMaterial, fillerMaterial);
+                this.addLeftLine(y, fillerMaterial, fillerMaterial);
             }
             for (int y = this.smally + STEP; y < this.bigy - STEP / 2; y += STEP) {
-                this.addRightLine(world, y, fillerMaterial, fillerMaterial);
+                this.addRightLine(y, fillerMaterial, fillerMaterial);
             }
         }
-        this.elements.addAll(newElements);
+
+        // only read the real blocks here, snapshots are built off the main thread
+        final List<VisualBlock> blocks = this.takeNewElements();
+        final ChunkBlockReader reader = new ChunkBlockReader((net.minecraft.world.World) world);
+        final IBlockState[] originals = new IBlockState[blocks.size()];
+        for (int i = 0; i < blocks.size(); i++) {
+            final VisualBlock block = blocks.get(i);
+            originals[i] = reader.getBlockState(block.x, block.y, block.z);
+        }
+
+        final UUID worldUniqueId = world.getUniqueId();
+        this.submitGeometry(() -> {
+            final BlockSnapshot.Builder builder = Sponge.getRegistry().createBuilder(BlockSnapshot.Builder.class);
+            final List<Transaction<BlockSnapshot>> result = new ArrayList<>(blocks.size());
+            for (int i = 0; i < blocks.size(); i++) {
+                final VisualBlock block = blocks.get(i);
+                result.add(createTransaction(builder, worldUniqueId, block.x, block.y, block.z, (BlockState) originals[i], block.state));
+            }
+            return result;
+        });
     }
 
     public void addVisuals2D(GPClaim claim, int height, boolean liquidTransparent) {
         World world = claim.world;
-        this.addTopLine(world, 0, this.cornerMaterial, this.accentMaterial);
-        this.addBottomLine(world, 0, this.cornerMaterial, this.accentMaterial);
-        this.addLeftLine(world, 0, this.cornerMaterial, this.accentMaterial);
-        this.addRightLine(world, 0, this.cornerMaterial, this.accentMaterial);
+        this.addTopLine(0, this.cornerMaterial, this.accentMaterial);
+        this.addBottomLine(0, this.cornerMaterial, this.accentMaterial);
+        this.addLeftLine(0, this.cornerMaterial, this.accentMaterial);
+        this.addRightLine(0, this.cornerMaterial, this.accentMaterial);
 
         // remove any out of range elements
-        this.removeElementsOutOfRange(this.newElements, this.minx, this.minz, this.maxx, this.maxz);
+        final List<VisualBlock> blocks = this.takeNewElements();
+        blocks.removeIf(block -> block.x < this.minx || block.x > this.maxx || block.z < this.minz || block.z > this.maxz
+                || !claim.contains(new Location<>(world, block.x, block.y, block.z)));
+
+        // search the ground here, reading only the blocks the search visits. snapshots are built off the main thread
+        final int buildHeight = world.getDimension().getBuildHeight();
+        final ChunkBlockReader reader = new ChunkBlockReader((net.minecraft.world.World) world);
+        final int[] visibleY = new int[blocks.size()];
+        final IBlockState[] originals = new IBlockState[blocks.size()];
+        for (int i = 0; i < blocks.size(); i++) {
+            final VisualBlock block = blocks.get(i);
+            // each element starts searching at the height of the previous one
+            height = getVisibleY(reader, block.x, height, block.z, buildHeight, liquidTransparent);
+            visibleY[i] = height;
+            originals[i] = reader.getBlockState(block.x, height, block.z);
+        }
 
-        for (int i = 0; i < this.newElements.size(); i++) {
-            BlockSnapshot element = this.newElements.get(i).getFinal();
-            if (!claim.contains(element.getLocation().get())) {
-                this.newElements.remove(i);
+        final UUID worldUniqueId = world.getUniqueId();
+        this.submitGeometry(() -> {
+            final BlockSnapshot.Builder builder = Sponge.getRegistry().createBuilder(BlockSnapshot.Builder.class);
+            final List<Transaction<BlockSnapshot>> result = new ArrayList<>(blocks.size());
+            for (int i = 0; i < blocks.size(); i++) {
+                final VisualBlock block = blocks.get(i);
+                result.add(createTransaction(builder, worldUniqueId, block.x, visibleY[i], block.z, (BlockState) originals[i], block.state));
             }
-        }
+            return result;
+        });
+    }
+
+    public void addCorners(int y, BlockType accentMaterial) {
+        this.addVisualBlock(this.smallx, y, this.bigz, accentMaterial);
+        this.addVisualBlock(this.bigx, y, this.bigz, accentMaterial);
+        this.addVisualBlock(this.bigx, y, this.smallz, accentMaterial);
+        this.addVisualBlock(this.smallx, y, this.smallz, accentMaterial);
+    }
 
-        // set Y values and real block information for any remaining visualization blocks
-        ArrayList<Transaction<BlockSnapshot>> actualElements = new ArrayList<Transaction<BlockSnapshot>>();
-        for (Transaction<BlockSnapshot> element : this.newElements) {
-            Location<World> tempLocation = element.getFinal().getLocation().get();
-            Location<World> visibleLocation =
-                    getVisibleLocation(tempLocation.getExtent(), tempLocation.getBlockX(), height, tempLocation.getBlockZ(), liquidTransparent);
-            element = new Transaction<BlockSnapshot>(element.getOriginal().withLocation(visibleLocation).withState(visibleLocation.getBlock()),
-                    element.getFinal().withLocation(visibleLocation));
-            height = element.getFinal().getPosition().getY();
-            actualElements.add(element);
-        }
-
-        this.elements.addAll(actualElements);
-    }
-
-    public void addCorners(World world, int y, BlockType accentMaterial) {
-        BlockSnapshot corner1 =
-                snapshotBuilder.from(new Location<World>(world, this.smallx, y, this.bigz)).blockState(accentMaterial.getDefaultState()).build();
-        newElements.add(new Transaction<BlockSnapshot>(corner1.getLocation().get().createSnapshot(), corner1));
-        BlockSnapshot corner2 =
-                snapshotBuilder.from(new Location<World>(world, this.bigx, y, this.bigz)).blockState(accentMaterial.getDefaultState()).build();
-        newElements.add(new Transaction<BlockSnapshot>(corner2.getLocation().get().createSnapshot(), corner2));
-        BlockSnapshot corner3 =
-                snapshotBuilder.from(new Location<World>(world, this.bigx, y, this.smallz)).blockState(accentMaterial.getDefaultState()).build();
-        newElements.add(new Transaction<BlockSnapshot>(corner3.getLocation().get().createSnapshot(), corner3));
-        BlockSnapshot corner4 =
-                snapshotBuilder.from(new Location<World>(world, this.smallx, y, this.smallz)).blockState(accentMaterial.getDefaultState()).build();
-        newElements.add(new Transaction<BlockSnapshot>(corner4.getLocation().get().createSnapshot(), corner4));
-    }
-
-    public void addTopLine(World world, int y, BlockType cornerMaterial, BlockType accentMaterial) {
-        BlockSnapshot topVisualBlock1 =
-                snapshotBuilder.from(new Location<World>(world, this.smallx, y, this.bigz)).blockState(cornerMaterial.getDefaultState()).build();
-        newElements.add(new Transaction<BlockSnapshot>(topVisualBlock1.getLocation().get().createSnapshot(), topVisualBlock1));
-        this.corners.add(topVisualBlock1.getPosition());
-        BlockSnapshot topVisualBlock2 =
-                snapshotBuilder.from(new Location<World>(world, this.smallx + 1, y, this.bigz)).blockState(accentMaterial.getDefaultState()).build();
-        newElements.add(new Transaction<BlockSnapshot>(topVisualBlock2.getLocation().get().createSnapshot(), topVisualBlock2));
-        BlockSnapshot topVisualBlock3 =
-                snapshotBuilder.from(new Location<World>(world, this.bigx - 1, y, this.bigz)).blockState(accentMaterial.getDefaultState()).build();
-        newElements.add(new Transaction<BlockSnapshot>(topVisualBlock3.getLocation().get().createSnapshot(), topVisualBlock3));
+    public void addTopLine(int y, BlockType cornerMaterial, BlockType accentMaterial) {
+        this.addVisualBlock(this.smallx, y, this.bigz, cornerMaterial);
+        this.corners.add(new Vector3i(this.smallx, y, this.bigz));
+        this.addVisualBlock(this.smallx + 1, y, this.bigz, accentMaterial);
+        this.addVisualBlock(this.bigx - 1, y, this.bigz, accentMaterial);
 
         if (STEP != 0) {
             for (int x = this.smallx + STEP; x < this.bigx - STEP / 2; x += STEP) {
                 if ((y != 0 && x >= this.smallx && x <= this.bigx) || (x > this.minx && x < this.maxx)) {
-                    BlockSnapshot visualBlock =
-                            snapshotBuilder.from(new Location<World>(world, x, y, this.bigz)).blockState(accentMaterial.getDefaultState()).build();
-                    newElements.add(new Transaction<BlockSnapshot>(visualBlock.getLocation().get().createSnapshot(), visualBlock));
+                    this.addVisualBlock(x, y, this.bigz, accentMaterial);
                 }
             }
         }
     }
 
-    public void addBottomLine(World world, int y, BlockType cornerMaterial, BlockType accentMaterial) {
-        BlockSnapshot bottomVisualBlock1 =
-                this.snapshotBuilder.from(new Location<World>(world, this.smallx + 1, y, this.smallz)).blockState(accentMaterial.getDefaultState()).build();
-        this.newElements.add(new Transaction<BlockSnapshot>(bottomVisualBlock1.getLocation().get().createSnapshot(), bottomVisualBlock1));
-        this.corners.add(bottomVisualBlock1.getPosition());
-        BlockSnapshot bottomVisualBlock2 =
-                this.snapshotBuilder.from(new Location<World>(world, this.bigx - 1, y, this.smallz)).blockState(accentMaterial.getDefaultState()).build();
-        this.newElements.add(new Transaction<BlockSnapshot>(bottomVisualBlock2.getLocation().get().createSnapshot(), bottomVisualBlock2));
+    public void addBottomLine(int y, BlockType cornerMaterial, BlockType accentMaterial) {
+        this.addVisualBlock(this.smallx + 1, y, this.smallz, accentMaterial);
+        this.corners.add(new Vector3i(this.smallx + 1, y, this.smallz));
+        this.addVisualBlock(this.bigx - 1, y, this.smallz, accentMaterial);
 
         if (STEP != 0) {
             for (int x = this.smallx + STEP; x < this.bigx - STEP / 2; x += STEP) {
                 if ((y != 0 && x >= this.smallx && x <= this.bigx) || (x > this.minx && x < this.maxx)) {
-                    BlockSnapshot visualBlock =
-                            this.snapshotBuilder.from(new Location<World>(world, x, y, this.smallz)).blockState(accentMaterial.getDefaultState()).build();
-                    newElements.add(new Transaction<BlockSnapshot>(visualBlock.getLocation().get().createSnapshot(), visualBlock));
+                    this.addVisualBlock(x, y, this.smallz, accentMaterial);
                 }
             }
         }
     }
 
-    public void addLeftLine(World world, int y, BlockType cornerMaterial, BlockType accentMaterial) {
-        BlockSnapshot leftVisualBlock1 =
-                snapshotBuilder.from(new Location<World>(world, this.smallx, y, this.smallz)).blockState(cornerMaterial.getDefaultState()).build();
-        newElements.add(new Transaction<BlockSnapshot>(leftVisualBlock1.getLocation().get().createSnapshot(), leftVisualBlock1));
-        this.corners.add(leftVisualBlock1.getPosition());
-        BlockSnapshot leftVisualBlock2 =
-                snapshotBuilder.from(new Location<World>(world, this.smallx, y, this.smallz + 1)).blockState(accentMaterial.getDefaultState()).build();
-        newElements.add(new Transaction<BlockSnapshot>(leftVisualBlock2.getLocation().get().createSnapshot(), leftVisualBlock2));
-        BlockSnapshot leftVisualBlock3 =
-                snapshotBuilder.from(new Location<World>(world, this.smallx, y, this.bigz - 1)).blockState(accentMaterial.getDefaultState()).build();
-        newElements.add(new Transaction<BlockSnapshot>(leftVisualBlock3.getLocation().get().createSnapshot(), leftVisualBlock3));
+    public void addLeftLine(int y, BlockType cornerMaterial, BlockType accentMaterial) {
+        this.addVisualBlock(this.smallx, y, this.smallz, cornerMaterial);
+        this.corners.add(new Vector3i(this.smallx, y, this.smallz));
+        this.addVisualBlock(this.smallx, y, this.smallz + 1, accentMaterial);
+        this.addVisualBlock(this.smallx, y, this.bigz - 1, accentMaterial);
 
         if (STEP != 0) {
             for (int z = this.smallz + STEP; z < this.bigz - STEP / 2; z += STEP) {
                 if ((y != 0 && z >= this.smallz && z <= this.bigz) || (z > this.minz && z < this.maxz)) {
-                    BlockSnapshot visualBlock =
-                            snapshotBuilder.from(new Location<World>(world, this.smallx, y, z)).blockState(accentMaterial.getDefaultState()).build();
-                    newElements.add(new Transaction<BlockSnapshot>(visualBlock.getLocation().get().createSnapshot(), visualBlock));
-               }
+                    this.addVisualBlock(this.smallx, y, z, accentMaterial);
+                }
             }
         }
     }
 
-    public void addRightLine(World world, int y, BlockType cornerMaterial, BlockType accentMaterial) {
-        BlockSnapshot rightVisualBlock1 =
-                snapshotBuilder.from(new Location<World>(world, this.bigx, y, this.smallz)).blockState(cornerMaterial.getDefaultState()).build();
-        newElements.add(new Transaction<BlockSnapshot>(rightVisualBlock1.getLocation().get().createSnapshot(), rightVisualBlock1));
-        this.corners.add(rightVisualBlock1.getPosition());
-        BlockSnapshot rightVisualBlock2 =
-                snapshotBuilder.from(new Location<World>(world, this.bigx, y, this.smallz + 1)).blockState(accentMaterial.getDefaultState()).build();
-        newElements.add(new Transaction<BlockSnapshot>(rightVisualBlock2.getLocation().get().createSnapshot(), rightVisualBlock2));
+    public void addRightLine(int y, BlockType cornerMaterial, BlockType accentMaterial) {
+        this.addVisualBlock(this.bigx, y, this.smallz, cornerMaterial);
+        this.corners.add(new Vector3i(this.bigx, y, this.smallz));
+        this.addVisualBlock(this.bigx, y, this.smallz + 1, accentMaterial);
         if (STEP != 0) {
             for (int z = this.smallz + STEP; z < this.bigz - STEP / 2; z += STEP) {
                 if ((y != 0 && z >= this.smallz && z <= this.bigz) || (z > this.minz && z < this.maxz)) {
-                    BlockSnapshot visualBlock =
-                            snapshotBuilder.from(new Location<World>(world, this.bigx, y, z)).blockState(accentMaterial.getDefaultState()).build();
-                    newElements.add(new Transaction<BlockSnapshot>(visualBlock.getLocation().get().createSnapshot(), visualBlock));
+                    this.addVisualBlock(this.bigx, y, z, accentMaterial);
                 }
             }
         }
-        BlockSnapshot rightVisualBlock3 =
-                snapshotBuilder.from(new Location<World>(world, this.bigx, y, this.bigz - 1)).blockState(accentMaterial.getDefaultState()).build();
-        newElements.add(new Transaction<BlockSnapshot>(rightVisualBlock3.getLocation().get().createSnapshot(), rightVisualBlock3));
-        BlockSnapshot rightVisualBlock4 =
-                snapshotBuilder.from(new Location<World>(world, this.bigx, y, this.bigz)).blockState(cornerMaterial.getDefaultState()).build();
-        newElements.add(new Transaction<BlockSnapshot>(rightVisualBlock4.getLocation().get().createSnapshot(), rightVisualBlock4));
-        this.corners.add(rightVisualBlock4.getPosition());
+        this.addVisualBlock(this.bigx, y, this.bigz - 1, accentMaterial);
+        this.addVisualBlock(this.bigx, y, this.bigz, cornerMaterial);
+        this.corners.add(new Vector3i(this.bigx, y, this.bigz));
+    }
+
+    private void addVisualBlock(int x, int y, int z, BlockType type) {
+        this.newElements.add(new VisualBlock(x, y, z, type.getDefaultState()));
+    }
+
+    private List<VisualBlock> takeNewElements() {
+        final List<VisualBlock> blocks = new ArrayList<>(this.newElements);
+        this.newElements.clear();
+        return blocks;
+    }
+
+    // runs element creation on GP's executor, elements are added on the main thread once applied
+    private void submitGeometry(Supplier<List<Transaction<BlockSnapshot>>> geometry) {
+        this.pendingElements.add(CompletableFuture.supplyAsync(geometry, GriefPreventionPlugin.instance.executor));
+    }
+
+    // moves finished geometry into the elements, keeping the order it was requested in
+    private void drainPendingElements() {
+        while (!this.pendingElements.isEmpty() && this.pendingElements.get(0).isDone()) {
+            final CompletableFuture<List<Transaction<BlockSnapshot>>> future = this.pendingElements.remove(0);
+            try {
+                this.elements.addAll(future.join());
+            } catch (CompletionException e) {
+                GriefPreventionPlugin.instance.getLogger().error("Failed to create claim visual", e.getCause());
+            }
+        }
+    }
+
+    // copies the elements of another visualization including geometry still being created
+    private void addElements(Visualization visualization) {
+        this.elements.addAll(visualization.elements);
+        this.pendingElements.addAll(visualization.pendingElements);
+    }
+
+    private static Transaction<BlockSnapshot> createTransaction(BlockSnapshot.Builder builder, UUID worldUniqueId, int x, int y, int z, BlockState original,
+            BlockState visual) {
+        final Vector3i position = new Vector3i(x, y, z);
+        final BlockSnapshot originalSnapshot = builder.reset().worldId(worldUniqueId).position(position).blockState(original).build();
+        final BlockSnapshot visualSnapshot = builder.reset().worldId(worldUniqueId).position(position).blockState(visual).build();
+        return new Transaction<>(originalSnapshot, visualSnapshot);
     }
 
     public List<Transaction<BlockSnapshot>> getVisualElements() {
@@ -495,32 +535,27 @@ private void removeElementsOutOfRange(ArrayList<Transaction<BlockSnapshot>> elem
     }
 
     // finds a block the player can probably see. this is how visualizations "cling" to the ground or ceiling
-    private static Location<World> getVisibleLocation(World world, int x, int y, int z, boolean waterIsTransparent) {
-        Location<World> location = world.getLocation(x, y, z);
-        Direction direction = (isTransparent(location.getBlock(), waterIsTransparent)) ? Direction.DOWN : Direction.UP;
-
-        while (location.getPosition().getY() >= 1 &&
-                location.getPosition().getY() < world.getDimension().getBuildHeight() - 1 &&
-                (!isTransparent(location.getRelative(Direction.UP).getBlock(), waterIsTransparent)
-                        || isTransparent(location.getBlock(), waterIsTransparent))) {
-            location = location.getRelative(direction);
+    private static int getVisibleY(ChunkBlockReader reader, int x, int y, int z, int buildHeight, boolean waterIsTransparent) {
+        final int direction = isTransparent(reader.getBlockState(x, y, z), waterIsTransparent) ? -1 : 1;
+        while (y >= 1 && y < buildHeight - 1
+                && (!isTransparent(reader.getBlockState(x, y + 1, z), waterIsTransparent) || isTransparent(reader.getBlockState(x, y, z), waterIsTransparent))) {
+            y += direction;
         }
 
-        return location;
+        return y;
     }
 
     // helper method for above. allows visualization blocks to sit underneath partly transparent blocks like grass and fence
-    private static boolean isTransparent(BlockState blockstate, boolean waterIsTransparent) {
-        if (blockstate.getType() == BlockTypes.SNOW_LAYER) {
+    // the material is what Sponge's MatterProperty reports liquids from
+    private static boolean isTransparent(IBlockState blockstate, boolean waterIsTransparent) {
+        if (blockstate.getBlock() == Blocks.SNOW_LAYER) {
             return false;
         }
 
-        IBlockState iblockstate = (IBlockState)(Object) blockstate;
-        Optional<MatterProperty> matterProperty = blockstate.getProperty(MatterProperty.class);
-        if (!waterIsTransparent && matterProperty.isPresent() && matterProperty.get().getValue() == MatterProperty.Matter.LIQUID) {
+        if (!waterIsTransparent && blockstate.getMaterial().isLiquid()) {
             return false;
         }
-        return !iblockstate.isOpaqueCube();
+        return !blockstate.isOpaqueCube();
     }
 
     public static Visualization fromClaims(List<Claim> claims, int height, Location<World> locality, GPPlayerData playerData, Visualization visualization) {
@@ -534,7 +569,7 @@ public static Visualization fromClaims(List<Claim> claims, int height, Location<
                 fromClaims(gpClaim.children, height, locality, playerData, visualization);
             }
             if (gpClaim.visualization != null) {
-                visualization.elements.addAll(gpClaim.getVisualizer().elements);
+                visualization.addElements(gpClaim.getVisualizer());
             } else {
                 visualization.createClaimBlockVisualWithType(gpClaim, height, locality, playerData, Visualization.getVisualizationType(gpClaim));
             }
@@ -548,7 +583,7 @@ private boolean useCuboidVisual() {
             return true;
         }
 
-        final GPPlayerData ownerData = this.claim.getOwnerPlayerData();
+        final GPPlayerData ownerData = this.claim.getLoadedOwnerPlayerData();
         if (ownerData != null && (ownerData.getMinClaimLevel() > 0 || ownerData.getMaxClaimLevel() < 255)) {
             return true;
         }
@@ -559,4 +594,38 @@ private boolean useCuboidVisual() {
 
         return false;
     }
+
+    // a visual block whose real block has not been read yet
+    private static final class VisualBlock {
+
+        final int x;
+        final int y;
+        final int z;
+        final BlockState state;
+
+        VisualBlock(int x, int y, int z, BlockState state) {
+            this.x = x;
+            this.y = y;
+            this.z = z;
+            this.state = state;
+        }
+    }
+
+    // reads blocks straight from their chunk, looking a chunk up again only when a line of visuals leaves it
+    private static final class ChunkBlockReader {
+
+        final net.minecraft.world.World world;
+        Chunk chunk;
+
+        ChunkBlockReader(net.minecraft.world.World world) {
+            this.world = world;
+        }
+
+        IBlockState getBlockState(int x, int y, int z) {
+            if (this.chunk == null || this.chunk.x != x >> 4 || this.chunk.z != z >> 4) {
+                this.chunk = this.world.getChunkProvider().provideChunk(x >> 4, z >> 4);
+            }
+            return this.chunk.getBlockState(x, y, z);
+        }
+    }
 }